@@ -0,0 +1,116 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.dreesbach.ticketing.BenchmarkSupport.CUSTOMER_EMAIL;
+
+/**
+ * Throughput of complete checkouts through the batch API of {@link TicketServiceImpl}: a batch of holds, then a batch of
+ * reservations of those holds.
+ * <p>
+ * The score is in batches per second, so multiply it by {@link #batchSize} to compare it with
+ * {@link TicketServiceBenchmark#findAndHoldThenReserveSeats()} - a batch size of 1 is the per-call overhead of the batch API
+ * itself. Sold out venues are replaced just like in {@link TicketServiceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class BatchTicketServiceBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "10000", "1000000" })
+    private int venueSize;
+    /**
+     * Number of seats per hold.
+     */
+    @Param({ "4" })
+    private int groupSize;
+    /**
+     * Number of requests per batch.
+     */
+    @Param({ "1", "16", "256" })
+    private int batchSize;
+    /**
+     * The same hold request, {@link #batchSize} times.
+     */
+    private List<HoldRequest> holdRequests;
+    /**
+     * The service currently on sale.
+     */
+    private final AtomicReference<TicketServiceImpl> ticketService = new AtomicReference<>();
+
+    /**
+     * Put the first venue on sale.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        holdRequests = Collections.nCopies(batchSize, new HoldRequest(groupSize, CUSTOMER_EMAIL));
+        ticketService.set(new TicketServiceImpl(BenchmarkSupport.squareVenue(venueSize)));
+    }
+
+    /**
+     * Shut down the service that's on sale at the end.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ticketService.get().close();
+    }
+
+    /**
+     * Hold a batch of groups, then reserve all of their holds in a second batch.
+     *
+     * @return the reservation results
+     */
+    @Benchmark
+    public List<BatchResult<String>> batchFindAndHoldThenReserveSeats() {
+        TicketServiceImpl service = ticketService.get();
+        List<BatchResult<SeatHold>> seatHolds = service.findAndHoldSeats(holdRequests);
+        List<ReservationRequest> reservationRequests = new ArrayList<>(batchSize);
+        for (BatchResult<SeatHold> seatHold : seatHolds) {
+            reservationRequests.add(new ReservationRequest(seatHold.get().getId(), CUSTOMER_EMAIL));
+        }
+        // holds that came up short are reserved too, it's only once per venue
+        List<BatchResult<String>> reservationCodes = service.reserveSeats(reservationRequests);
+        if (seatHolds.getLast().get().getNumSeatsHeld() < groupSize) {
+            soldOut(service);
+        }
+        return reservationCodes;
+    }
+
+    /**
+     * Replace a sold out service with a fresh one, unless another thread got there first.
+     *
+     * @param service the sold out service
+     */
+    private void soldOut(final TicketServiceImpl service) {
+        TicketServiceImpl fresh = new TicketServiceImpl(BenchmarkSupport.squareVenue(venueSize));
+        if (ticketService.compareAndSet(service, fresh)) {
+            service.close();
+        }
+        else {
+            fresh.close();
+        }
+    }
+}
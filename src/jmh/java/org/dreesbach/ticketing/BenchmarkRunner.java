@@ -0,0 +1,58 @@
+package org.dreesbach.ticketing;
+
+import com.google.common.base.Splitter;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count, with the GC profiler enabled so allocation rates are reported next to the
+ * throughput.
+ * <p>
+ * Takes the regular JMH command line (e.g. a benchmark name regex, or {@code -p venueSize=10000} to narrow down the
+ * parameters). JMH can't vary the thread count like a {@code @Param}, so the thread counts to run with are taken from the
+ * {@value #THREADS_PROPERTY} system property instead - unless a thread count is given on the command line with {@code -t}.
+ */
+public final class BenchmarkRunner {
+    /**
+     * System property with the comma-separated thread counts to run the benchmarks with.
+     */
+    static final String THREADS_PROPERTY = "benchmark.threads";
+    /**
+     * Thread counts to run with if {@value #THREADS_PROPERTY} isn't set.
+     */
+    static final String DEFAULT_THREADS = "1,8,64";
+
+    /**
+     * Make utility class non-instantiable.
+     */
+    private BenchmarkRunner() { }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line arguments
+     * @throws CommandLineOptionException if the command line can't be parsed
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.getThreads().hasValue()) {
+            // nothing to vary, let JMH handle it as usual
+            new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+            return;
+        }
+        Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+        for (String threads : splitter.split(System.getProperty(THREADS_PROPERTY, DEFAULT_THREADS))) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads))
+                    .addProfiler(GCProfiler.class)
+                    .build()
+            ).run();
+        }
+    }
+}
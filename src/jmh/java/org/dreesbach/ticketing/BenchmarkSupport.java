@@ -0,0 +1,46 @@
+package org.dreesbach.ticketing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Settings and fixtures shared by the JMH benchmarks.
+ */
+final class BenchmarkSupport {
+    /**
+     * Customer email used for all holds and reservations.
+     */
+    static final String CUSTOMER_EMAIL = "benchmark@example.com";
+    /**
+     * Number of warmup iterations for each benchmark.
+     */
+    static final int WARMUP_ITERATIONS = 3;
+    /**
+     * Number of measurement iterations for each benchmark.
+     */
+    static final int MEASUREMENT_ITERATIONS = 5;
+    /**
+     * Number of warmup iterations for single-shot benchmarks, whose iterations are a single (and short) invocation.
+     */
+    static final int SINGLE_SHOT_WARMUP_ITERATIONS = 5;
+    /**
+     * Number of measurement iterations for single-shot benchmarks.
+     */
+    static final int SINGLE_SHOT_MEASUREMENT_ITERATIONS = 10;
+
+    /**
+     * Make utility class non-instantiable.
+     */
+    private BenchmarkSupport() { }
+
+    /**
+     * Creates a square venue using the simple seat picking strategy.
+     *
+     * @param numSeats total number of seats - must be a perfect square
+     * @return the venue
+     */
+    static RectangularVenue squareVenue(final int numSeats) {
+        int side = (int) Math.sqrt(numSeats);
+        checkArgument(side * side == numSeats, "numSeats must be a perfect square, was %s", numSeats);
+        return new RectangularVenue(side, side, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+}
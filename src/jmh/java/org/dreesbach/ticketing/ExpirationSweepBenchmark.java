@@ -0,0 +1,87 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.dreesbach.ticketing.BenchmarkSupport.CUSTOMER_EMAIL;
+
+/**
+ * Time for one expiration sweep of {@link TicketServiceImpl} when every seat in the venue is held and every hold has expired,
+ * i.e. the worst case at the end of a busy on-sale.
+ * <p>
+ * Each iteration sells out a fresh venue and then sweeps it once, as of a point in time after all the holds have expired, so
+ * this is measured as a single shot per iteration. Every thread sweeps its own service.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = BenchmarkSupport.SINGLE_SHOT_WARMUP_ITERATIONS)
+@Measurement(iterations = BenchmarkSupport.SINGLE_SHOT_MEASUREMENT_ITERATIONS)
+@Fork(1)
+public class ExpirationSweepBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "100", "10000", "1000000" })
+    private int venueSize;
+    /**
+     * Number of seats per hold.
+     */
+    @Param({ "1", "4", "10" })
+    private int groupSize;
+    /**
+     * The service to sweep.
+     */
+    private TicketServiceImpl ticketService;
+    /**
+     * The point in time to sweep as of, by which every hold has expired.
+     */
+    private long afterExpirationNanos;
+
+    /**
+     * Hold every seat of a fresh venue.
+     */
+    @Setup(Level.Iteration)
+    public void holdAllSeats() {
+        RectangularVenue venue = BenchmarkSupport.squareVenue(venueSize);
+        ticketService = new TicketServiceImpl(venue);
+        int numSeatsHeld = 0;
+        while (numSeatsHeld < venue.getTotalNumSeats()) {
+            numSeatsHeld += ticketService.findAndHoldSeats(groupSize, CUSTOMER_EMAIL).getNumSeatsHeld();
+        }
+        afterExpirationNanos = System.nanoTime()
+                + TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME.plus(TicketServiceImpl.CHECK_SEAT_HOLD_EXPIRATION_DURATION)
+                .toNanos();
+    }
+
+    /**
+     * Shut down the swept service.
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        ticketService.close();
+    }
+
+    /**
+     * Expire all holds.
+     *
+     * @return number of holds expired
+     */
+    @Benchmark
+    public int expireSeatHolds() {
+        return ticketService.expireSeatHolds(afterExpirationNanos);
+    }
+}
@@ -0,0 +1,271 @@
+package org.dreesbach.ticketing;
+
+import org.dreesbach.ticketing.id.HoldIdAllocator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of keeping track of the live {@link SeatHold}s of a service: the {@link IntRegistry} the services use now, against
+ * the synchronized {@link LinkedHashMap} presized to the venue that {@link TicketServiceImpl} used before and a plain
+ * {@link ConcurrentHashMap}.
+ * <p>
+ * {@link #claimAndTrack(Cursor)} removes a live hold and puts it back, like a reservation claiming one hold while another gets
+ * tracked, so the number of live holds stays at {@link #liveHolds}; run with {@code -prof gc} (as
+ * {@link BenchmarkRunner} does) to see what that allocates. {@link #footprint(Footprint)} measures how much heap the holds'
+ * entries take up, reported as the {@code retainedBytesPerEntry} counter - the holds themselves aren't counted. Measure that
+ * with a single thread ({@code -t 1}), so that no other thread allocates in the meantime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class HoldRegistryBenchmark {
+    /**
+     * How many times to run the garbage collector before measuring the heap in use.
+     */
+    private static final int NUM_GC_RUNS = 3;
+    /**
+     * How long to give the garbage collector to settle after each run.
+     */
+    private static final long GC_SETTLE_MILLIS = 10L;
+    /**
+     * Which way of keeping track of the holds to measure.
+     */
+    @Param({ "registry", "synchronizedLinkedHashMap", "concurrentHashMap" })
+    private String implementation;
+    /**
+     * Number of live holds.
+     */
+    @Param({ "1000", "100000" })
+    private int liveHolds;
+    /**
+     * Total number of seats in the venue, which the synchronized map is presized to.
+     */
+    @Param({ "1000000" })
+    private int venueSize;
+    /**
+     * The live holds, in the order they were created.
+     */
+    private SeatHold[] seatHolds;
+    /**
+     * The live holds, tracked by the implementation being measured.
+     */
+    private Holds holds;
+    /**
+     * Hands out each thread's share of the live holds.
+     */
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    /**
+     * Create and track the live holds.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        HoldIdAllocator holdIds = new HoldIdAllocator();
+        seatHolds = new SeatHold[liveHolds];
+        for (int i = 0; i < liveHolds; i++) {
+            seatHolds[i] = new SeatHold(List.of(), Duration.ofDays(1), holdIds.next());
+        }
+        holds = newHolds();
+        for (SeatHold seatHold : seatHolds) {
+            holds.putIfAbsent(seatHold.getId(), seatHold);
+        }
+    }
+
+    /**
+     * Claim a live hold, then track it again.
+     *
+     * @param cursor the thread's position among the live holds
+     * @return the hold
+     */
+    @Benchmark
+    public Object claimAndTrack(final Cursor cursor) {
+        SeatHold seatHold = seatHolds[cursor.next()];
+        holds.remove(seatHold.getId());
+        return holds.putIfAbsent(seatHold.getId(), seatHold);
+    }
+
+    /**
+     * Track the live holds in a fresh instance of the implementation, and measure the heap it takes up.
+     *
+     * @param footprint where to report the heap taken up
+     * @return the instance
+     * @throws InterruptedException if interrupted while waiting for the garbage collector
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1) // the counter adds up over iterations, and it's the same every time anyway
+    public Object footprint(final Footprint footprint) throws InterruptedException {
+        long before = usedHeapAfterGc();
+        Holds fresh = newHolds();
+        for (SeatHold seatHold : seatHolds) {
+            fresh.putIfAbsent(seatHold.getId(), seatHold);
+        }
+        long after = usedHeapAfterGc();
+        footprint.retainedBytesPerEntry = (double) (after - before) / liveHolds;
+        // returned so that it's still reachable while the heap is measured
+        return fresh;
+    }
+
+    /**
+     * The heap in use once the garbage collector has run.
+     *
+     * @return bytes in use
+     * @throws InterruptedException if interrupted while waiting for the garbage collector
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < NUM_GC_RUNS; i++) {
+            System.gc();
+            Thread.sleep(GC_SETTLE_MILLIS);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A fresh, empty instance of the implementation being measured.
+     *
+     * @return the instance
+     */
+    private Holds newHolds() {
+        return switch (implementation) {
+            case "registry" -> {
+                IntRegistry<SeatHold> registry = new IntRegistry<>();
+                yield new Holds() {
+                    @Override
+                    public Object putIfAbsent(final int id, final SeatHold seatHold) {
+                        return registry.putIfAbsent(id, seatHold);
+                    }
+
+                    @Override
+                    public Object remove(final int id) {
+                        return registry.remove(id);
+                    }
+                };
+            }
+            case "synchronizedLinkedHashMap" -> mapHolds(Collections.synchronizedMap(new LinkedHashMap<>(venueSize)));
+            case "concurrentHashMap" -> mapHolds(new ConcurrentHashMap<>());
+            default -> throw new IllegalArgumentException("Unknown implementation " + implementation);
+        };
+    }
+
+    /**
+     * Track holds in a map.
+     *
+     * @param map the map
+     * @return the holds
+     */
+    private static Holds mapHolds(final Map<Integer, SeatHold> map) {
+        return new Holds() {
+            @Override
+            public Object putIfAbsent(final int id, final SeatHold seatHold) {
+                return map.putIfAbsent(id, seatHold);
+            }
+
+            @Override
+            public Object remove(final int id) {
+                return map.remove(id);
+            }
+        };
+    }
+
+    /**
+     * The operations of the implementations being measured.
+     */
+    private interface Holds {
+        /**
+         * Track a hold.
+         *
+         * @param id the hold's ID
+         * @param seatHold the hold
+         * @return the hold already tracked under that ID, if any
+         */
+        Object putIfAbsent(int id, SeatHold seatHold);
+
+        /**
+         * Stop tracking a hold.
+         *
+         * @param id the hold's ID
+         * @return the hold
+         */
+        Object remove(int id);
+    }
+
+    /**
+     * A thread's position among its share of the live holds, so that threads don't claim each other's.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        /**
+         * Index of the thread's first hold.
+         */
+        private int first;
+        /**
+         * Number of holds in the thread's share.
+         */
+        private int count;
+        /**
+         * Offset of the next hold within the share.
+         */
+        private int offset;
+
+        /**
+         * Pick the thread's share.
+         *
+         * @param benchmark the benchmark
+         * @param params the benchmark's parameters
+         */
+        @Setup(Level.Trial)
+        public void setup(final HoldRegistryBenchmark benchmark, final BenchmarkParams params) {
+            count = benchmark.liveHolds / params.getThreads();
+            first = benchmark.nextThread.getAndIncrement() * count;
+        }
+
+        /**
+         * The index of the next hold.
+         *
+         * @return the index
+         */
+        int next() {
+            int index = first + offset;
+            offset = (offset + 1) % count;
+            return index;
+        }
+    }
+
+    /**
+     * Heap taken up per live hold, reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        /**
+         * Bytes of heap per live hold.
+         */
+        public double retainedBytesPerEntry;
+    }
+}
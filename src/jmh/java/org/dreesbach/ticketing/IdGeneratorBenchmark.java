@@ -0,0 +1,80 @@
+package org.dreesbach.ticketing;
+
+import org.dreesbach.ticketing.id.HoldIdAllocator;
+import org.dreesbach.ticketing.id.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link HoldIdAllocator}'s seat hold IDs and {@link IdGenerator}'s reservation codes, both packed and as
+ * strings.
+ * <p>
+ * Neither keeps track of the IDs in use, so there's nothing to fill up front or retire afterwards; run with more threads
+ * (e.g. {@code -Dbenchmark.threads=16}) to see that they don't contend either. Run with {@code -prof gc} to see that only
+ * turning a code into a string allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+    /**
+     * The seat hold ID allocator, shared by all threads like a venue's.
+     */
+    private final HoldIdAllocator holdIds = new HoldIdAllocator();
+    /**
+     * A reservation code to decode.
+     */
+    private final String reservationCode = IdGenerator.generateReservationCode();
+
+    /**
+     * Allocate a seat hold ID.
+     *
+     * @return the ID
+     */
+    @Benchmark
+    public int allocateHoldId() {
+        return holdIds.next();
+    }
+
+    /**
+     * Generate a packed reservation code.
+     *
+     * @return the packed code
+     */
+    @Benchmark
+    public int nextReservationCode() {
+        return IdGenerator.nextReservationCode();
+    }
+
+    /**
+     * Generate a reservation code as a string, as handed to customers.
+     *
+     * @return the reservation code
+     */
+    @Benchmark
+    public String generateReservationCode() {
+        return IdGenerator.generateReservationCode();
+    }
+
+    /**
+     * Turn a reservation code back into its packed form, as on cancellation.
+     *
+     * @return the packed code
+     */
+    @Benchmark
+    public int decodeReservationCode() {
+        return IdGenerator.decodeReservationCode(reservationCode);
+    }
+}
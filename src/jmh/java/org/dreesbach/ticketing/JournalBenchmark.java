@@ -0,0 +1,115 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.dreesbach.ticketing.BenchmarkSupport.CUSTOMER_EMAIL;
+
+/**
+ * What recording every change in a {@link Journal} adds to a checkout: hold seats, reserve them, and cancel the reservation
+ * again - three records, so the venue never sells out. {@code off} is the same without a journal.
+ * <p>
+ * The journal file goes to the default temporary directory, unless {@code -Djava.io.tmpdir} points elsewhere - point it at
+ * the device to measure, since what {@link Journal.Durability#PER_OP} costs is mostly up to the device's flushes. Run it with
+ * more threads (e.g. {@code -t 16}) to see group commit spread the flushes over concurrent operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+    /**
+     * The journal's durability, or {@code off} for none.
+     */
+    @Param({ "off", "NONE", "BATCHED", "PER_OP" })
+    private String durability;
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "10000" })
+    private int venueSize;
+    /**
+     * Number of seats per hold.
+     */
+    @Param({ "4" })
+    private int groupSize;
+    /**
+     * The journal file.
+     */
+    private Path path;
+    /**
+     * The journal, if any.
+     */
+    private Journal journal;
+    /**
+     * The venue.
+     */
+    private RectangularVenue venue;
+    /**
+     * The service.
+     */
+    private TicketServiceImpl ticketService;
+
+    /**
+     * Put the venue on sale, with a fresh journal.
+     *
+     * @throws IOException if the journal can't be created
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        venue = BenchmarkSupport.squareVenue(venueSize);
+        if ("off".equals(durability)) {
+            ticketService = new TicketServiceImpl(venue);
+        }
+        else {
+            path = Files.createTempFile("journal", ".log");
+            journal = new Journal(path, Journal.Durability.valueOf(durability));
+            ticketService = new TicketServiceImpl(venue, journal);
+        }
+    }
+
+    /**
+     * Shut down the service and the journal, and delete the journal file.
+     *
+     * @throws IOException if the journal can't be closed or deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ticketService.close();
+        if (journal != null) {
+            journal.close();
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Hold seats, reserve them, and cancel the reservation.
+     *
+     * @return the reservation code
+     */
+    @Benchmark
+    public String holdReserveAndCancel() {
+        SeatHold seatHold = ticketService.findAndHoldSeats(groupSize, CUSTOMER_EMAIL);
+        String reservationCode = ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+        venue.cancelReservation(reservationCode);
+        return reservationCode;
+    }
+}
@@ -0,0 +1,124 @@
+package org.dreesbach.ticketing;
+
+import com.google.common.base.Splitter;
+
+import java.time.Duration;
+
+/**
+ * Runs a {@link LoadSimulator} on-sale against each {@link TicketService} implementation in turn and prints the reports:
+ * by default, 50000 buyers arriving within the first 10 seconds at a venue of about 100000 seats, in groups of mostly 2. Most of
+ * them buy; some walk off, and some holds are left to expire.
+ * <p>
+ * Configured with system properties, e.g. {@code -Dsimulation.implementations=concurrent -Dsimulation.clients=64} for 64
+ * closed-loop clients against {@link ConcurrentTicketServiceImpl} only:
+ * <ul>
+ *     <li>{@value #IMPLEMENTATIONS_PROPERTY}: comma-separated, from {@code synchronized}, {@code concurrent} and
+ *     {@code singleWriter}</li>
+ *     <li>{@value #VENUE_SIZE_PROPERTY}: number of seats, a perfect square</li>
+ *     <li>{@value #BUYERS_PROPERTY}: number of buyers</li>
+ *     <li>{@value #SECONDS_PROPERTY}: seconds over which they arrive</li>
+ *     <li>{@value #CLIENTS_PROPERTY}: number of closed-loop clients, or 0 for buyers to arrive open-loop</li>
+ *     <li>{@value #CONVERSION_PROPERTY} and {@value #ABANDONMENT_PROPERTY}: in percent</li>
+ *     <li>{@value #THINK_MILLIS_PROPERTY} and {@value #EXPIRATION_MILLIS_PROPERTY}: longest time a buyer thinks before
+ *     reserving, and how long holds last</li>
+ * </ul>
+ */
+public final class OnSaleSimulation {
+    /**
+     * System property with the implementations to simulate.
+     */
+    static final String IMPLEMENTATIONS_PROPERTY = "simulation.implementations";
+    /**
+     * System property with the number of seats.
+     */
+    static final String VENUE_SIZE_PROPERTY = "simulation.venueSize";
+    /**
+     * System property with the number of buyers.
+     */
+    static final String BUYERS_PROPERTY = "simulation.buyers";
+    /**
+     * System property with the number of seconds over which the buyers arrive.
+     */
+    static final String SECONDS_PROPERTY = "simulation.seconds";
+    /**
+     * System property with the number of closed-loop clients.
+     */
+    static final String CLIENTS_PROPERTY = "simulation.clients";
+    /**
+     * System property with the share of holds that get reserved, in percent.
+     */
+    static final String CONVERSION_PROPERTY = "simulation.conversion";
+    /**
+     * System property with the share of buyers that walk off without holding, in percent.
+     */
+    static final String ABANDONMENT_PROPERTY = "simulation.abandonment";
+    /**
+     * System property with the longest time a buyer thinks before reserving, in milliseconds.
+     */
+    static final String THINK_MILLIS_PROPERTY = "simulation.thinkMillis";
+    /**
+     * System property with how long holds last, in milliseconds.
+     */
+    static final String EXPIRATION_MILLIS_PROPERTY = "simulation.expirationMillis";
+    /**
+     * Weights of groups of 1 to 6 seats.
+     */
+    private static final double[] GROUP_SIZE_WEIGHTS = { 15, 50, 10, 20, 3, 2 };
+    /**
+     * How often the services look for expired holds.
+     */
+    private static final Duration CHECK_EXPIRATION = Duration.ofMillis(100);
+    /**
+     * Percent, as a fraction.
+     */
+    private static final double PERCENT = 100.0;
+
+    /**
+     * Make utility class non-instantiable.
+     */
+    private OnSaleSimulation() { }
+
+    /**
+     * Runs the simulations.
+     *
+     * @param args ignored, see the system properties
+     */
+    public static void main(final String[] args) {
+        int buyers = Integer.getInteger(BUYERS_PROPERTY, 50_000);
+        Duration duration = Duration.ofSeconds(Integer.getInteger(SECONDS_PROPERTY, 10));
+        int clients = Integer.getInteger(CLIENTS_PROPERTY, 0);
+        LoadSimulator.Builder builder;
+        if (clients > 0) {
+            builder = LoadSimulator.closedLoop(clients);
+        }
+        else {
+            builder = LoadSimulator.openLoop(LoadSimulator.ArrivalRate.constant(buyers * 1e9 / duration.toNanos()));
+        }
+        LoadSimulator simulator = builder
+                .duration(duration)
+                .maxBuyers(buyers)
+                .groupSizes(LoadSimulator.GroupSizes.weighted(GROUP_SIZE_WEIGHTS))
+                .conversionRate(Integer.getInteger(CONVERSION_PROPERTY, 90) / PERCENT)
+                .abandonmentRate(Integer.getInteger(ABANDONMENT_PROPERTY, 5) / PERCENT)
+                .thinkTime(Duration.ofMillis(Integer.getInteger(THINK_MILLIS_PROPERTY, 2_000)))
+                .build();
+        Duration expiration = Duration.ofMillis(Integer.getInteger(EXPIRATION_MILLIS_PROPERTY, 5_000));
+        int venueSize = Integer.getInteger(VENUE_SIZE_PROPERTY, 100_489);
+        Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+        for (String implementation : splitter.split(System.getProperty(IMPLEMENTATIONS_PROPERTY,
+                "synchronized,concurrent,singleWriter"
+        ))) {
+            RectangularVenue venue = BenchmarkSupport.squareVenue(venueSize);
+            try (TicketService service = switch (implementation) {
+                case "synchronized" -> new TicketServiceImpl(venue, CHECK_EXPIRATION, expiration);
+                case "concurrent" -> new ConcurrentTicketServiceImpl(venue, CHECK_EXPIRATION, expiration);
+                case "singleWriter" -> new SingleWriterTicketServiceImpl(venue, CHECK_EXPIRATION, expiration,
+                        SingleWriterTicketServiceImpl.DEFAULT_RING_BUFFER_CAPACITY
+                );
+                default -> throw new IllegalArgumentException("Unknown implementation " + implementation);
+            }) {
+                System.out.printf("== %s, %d seats%n%s%n", implementation, venueSize, simulator.run(service));
+            }
+        }
+    }
+}
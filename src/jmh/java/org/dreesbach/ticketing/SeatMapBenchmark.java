@@ -0,0 +1,80 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of buyers fetching {@link SeatMap}s while another thread keeps holding and releasing seats, and of that thread
+ * in turn - the seat maps shouldn't hold up the holds. Most maps are shared between readers, so how many are copied depends
+ * on how often the seats change.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class SeatMapBenchmark {
+    /**
+     * Number of threads fetching seat maps.
+     */
+    private static final int NUM_READERS = 4;
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "10000", "1000000" })
+    private int venueSize;
+    /**
+     * The venue.
+     */
+    private RectangularVenue venue;
+
+    /**
+     * Create the venue.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        venue = BenchmarkSupport.squareVenue(venueSize);
+    }
+
+    /**
+     * Hold the best seats and release them again.
+     *
+     * @return the hold
+     */
+    @Benchmark
+    @Group("onSale")
+    @GroupThreads(1)
+    public SeatHold holdAndRelease() {
+        SeatHold seatHold = venue.holdSeats(2, Duration.ofMinutes(1));
+        venue.removeHold(seatHold);
+        return seatHold;
+    }
+
+    /**
+     * Fetch the seat map.
+     *
+     * @return the map
+     */
+    @Benchmark
+    @Group("onSale")
+    @GroupThreads(NUM_READERS)
+    public SeatMap seatMap() {
+        return venue.getSeatMap();
+    }
+}
@@ -0,0 +1,87 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a {@link SeatMap} out in the compact form of {@link SeatMapFormat}, into a buffer that is reused from one
+ * visitor to the next, for a venue partway through its on-sale: the front rows are reserved, a few seats are held, and the
+ * rest is available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class SeatMapExportBenchmark {
+    /**
+     * Share of the seats that have been reserved.
+     */
+    private static final double RESERVED_SHARE = 0.3;
+    /**
+     * Number of holds of a few seats that are live.
+     */
+    private static final int NUM_HOLDS = 100;
+    /**
+     * Number of seats of each of those holds.
+     */
+    private static final int SEATS_PER_HOLD = 3;
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "10000", "1000000" })
+    private int venueSize;
+    /**
+     * Whether to write the section summaries too.
+     */
+    @Param({ "false", "true" })
+    private boolean withSectionSummaries;
+    /**
+     * The map to write.
+     */
+    private SeatMap seatMap;
+    /**
+     * The buffer it's written into, big enough for any map of the venue.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Create the venue, sell part of it, and take its map.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        RectangularVenue venue = BenchmarkSupport.squareVenue(venueSize);
+        var _ = venue.reserve(venue.holdSeats((int) (venueSize * RESERVED_SHARE), Duration.ofHours(1)));
+        for (int i = 0; i < NUM_HOLDS; i++) {
+            var _ = venue.holdSeats(SEATS_PER_HOLD, Duration.ofHours(1));
+        }
+        seatMap = venue.getSeatMap();
+        buffer = ByteBuffer.allocateDirect(SeatMapFormat.HEADER_BYTES + 2 * SeatMapFormat.MAX_VARINT_BYTES * venueSize);
+    }
+
+    /**
+     * Write the map.
+     *
+     * @return number of bytes written
+     */
+    @Benchmark
+    public int writeSeatMap() {
+        var _ = buffer.clear();
+        return seatMap.writeTo(buffer, withSectionSummaries);
+    }
+}
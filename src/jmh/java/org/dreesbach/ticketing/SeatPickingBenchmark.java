@@ -0,0 +1,89 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Throughput of the seat picking strategies for a {@link RectangularVenue} on their own, without the holds and bookkeeping of
+ * the service around them: {@link RectangularVenueSimpleSeatPickingStrategy} picks the individually best seats,
+ * {@link RectangularVenueContiguousSeatPickingStrategy} the best block of adjacent ones.
+ * <p>
+ * Picked seats aren't given back, so once a venue has handed out every seat the thread that notices swaps in a fresh one
+ * (whose construction, including ranking all of its seats, is part of the measurement, amortized over the venue's capacity).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class SeatPickingBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "100", "10000", "1000000" })
+    private int venueSize;
+    /**
+     * Number of seats to pick at a time.
+     */
+    @Param({ "1", "4", "10" })
+    private int groupSize;
+    /**
+     * Which strategy to benchmark.
+     */
+    @Param({ "simple", "contiguous" })
+    private String strategyName;
+    /**
+     * The strategy doing the picking - it's stateless, so it can serve every venue.
+     */
+    private SeatPickingStrategy<RectangularVenue> strategy;
+    /**
+     * The venue currently being picked from.
+     */
+    private final AtomicReference<RectangularVenue> venue = new AtomicReference<>();
+
+    /**
+     * Set up the strategy and create the first venue.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("contiguous".equals(strategyName)) {
+            strategy = new RectangularVenueContiguousSeatPickingStrategy();
+        }
+        else {
+            strategy = new RectangularVenueSimpleSeatPickingStrategy();
+        }
+        venue.set(BenchmarkSupport.squareVenue(venueSize));
+    }
+
+    /**
+     * Pick the best available seats - the strategy of the venue itself doesn't matter, since it isn't used.
+     *
+     * @return the seats picked
+     */
+    @Benchmark
+    public List<Seat> pickBestAvailableSeats() {
+        while (true) {
+            RectangularVenue current = venue.get();
+            List<Seat> seats = strategy.pickBestAvailableSeats(current, groupSize);
+            if (seats.size() == groupSize) {
+                return seats;
+            }
+            venue.compareAndSet(current, BenchmarkSupport.squareVenue(venueSize));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Throughput of holding the best available seats of a stadium-sized {@link SectionedVenue} from many threads at once, to show
+ * how far splitting the venue into sections lifts the ceiling a single venue monitor puts on holds. With one section every
+ * hold waits for the one before, like in a {@link RectangularVenue}.
+ * <p>
+ * Holds go straight to the venue, without a service, and are never released; the thread that finds the venue sold out swaps
+ * in a fresh one, which is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class SectionedVenueBenchmark {
+    /**
+     * Number of rows, and of seats per row.
+     */
+    private static final int SIDE = 1_000;
+    /**
+     * How long the holds last - they're never released, so it doesn't matter.
+     */
+    private static final Duration EXPIRATION = Duration.ofHours(1);
+    /**
+     * Number of sections.
+     */
+    @Param({ "1", "10", "50" })
+    private int numSections;
+    /**
+     * How many seats further back than the best seat a hold may go to avoid a busy section.
+     */
+    @Param({ "0", "2" })
+    private double tolerance;
+    /**
+     * Number of seats per hold.
+     */
+    @Param({ "1", "4" })
+    private int groupSize;
+    /**
+     * The venue currently on sale.
+     */
+    private final AtomicReference<SectionedVenue> venue = new AtomicReference<>();
+
+    /**
+     * Put the first venue on sale.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        venue.set(newVenue());
+    }
+
+    /**
+     * Hold the best available seats.
+     *
+     * @return the hold
+     */
+    @Benchmark
+    public SeatHold holdSeats() {
+        while (true) {
+            SectionedVenue current = venue.get();
+            SeatHold seatHold = current.holdSeats(groupSize, EXPIRATION);
+            if (seatHold.getNumSeatsHeld() == groupSize) {
+                return seatHold;
+            }
+            var _ = venue.compareAndSet(current, newVenue());
+        }
+    }
+
+    /**
+     * A fresh venue.
+     *
+     * @return the venue
+     */
+    private SectionedVenue newVenue() {
+        return new SectionedVenue(SIDE, SIDE, SIDE / numSections, tolerance, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+}
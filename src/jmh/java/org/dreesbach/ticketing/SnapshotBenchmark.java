@@ -0,0 +1,128 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link VenueSnapshot}s of a venue in the middle of an on-sale, with {@link #numReservations} single-seat
+ * reservations and {@link #numLiveHolds} live holds of {@link #groupSize} seats.
+ * <p>
+ * {@link #capture()} is what {@link RectangularVenue#snapshot()} takes, including the checksum computed after sales resume -
+ * so sales pause for less than that. {@link #restore()} reads the snapshot file through a memory mapping and restores it into
+ * a fresh venue, which is what a restart takes before replaying the journal's tail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = BenchmarkSupport.SINGLE_SHOT_WARMUP_ITERATIONS)
+@Measurement(iterations = BenchmarkSupport.SINGLE_SHOT_MEASUREMENT_ITERATIONS)
+@Fork(1)
+public class SnapshotBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "102400" })
+    private int venueSize;
+    /**
+     * Number of reservations, of a single seat each.
+     */
+    @Param({ "50000" })
+    private int numReservations;
+    /**
+     * Number of live holds.
+     */
+    @Param({ "1000" })
+    private int numLiveHolds;
+    /**
+     * Number of seats per live hold.
+     */
+    @Param({ "4" })
+    private int groupSize;
+    /**
+     * The venue to snapshot.
+     */
+    private RectangularVenue venue;
+    /**
+     * The snapshot file.
+     */
+    private Path path;
+    /**
+     * The venue to restore into.
+     */
+    private RectangularVenue fresh;
+
+    /**
+     * Make the reservations and holds, and write a snapshot file.
+     *
+     * @throws IOException if the snapshot file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        venue = BenchmarkSupport.squareVenue(venueSize);
+        for (int i = 0; i < numReservations; i++) {
+            var _ = venue.reserve(venue.holdSeats(1, Duration.ofDays(1)));
+        }
+        for (int i = 0; i < numLiveHolds; i++) {
+            var _ = venue.holdSeats(groupSize, Duration.ofDays(1));
+        }
+        path = Files.createTempFile("snapshot", ".bin");
+        venue.writeSnapshot(path);
+    }
+
+    /**
+     * Create a fresh venue to restore into.
+     */
+    @Setup(Level.Iteration)
+    public void freshVenue() {
+        fresh = BenchmarkSupport.squareVenue(venueSize);
+    }
+
+    /**
+     * Delete the snapshot file.
+     *
+     * @throws IOException if it can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    /**
+     * Capture a snapshot.
+     *
+     * @return the snapshot
+     */
+    @Benchmark
+    public VenueSnapshot capture() {
+        return venue.snapshot();
+    }
+
+    /**
+     * Read the snapshot file and restore it into a fresh venue.
+     *
+     * @return the live holds restored
+     * @throws IOException if the snapshot file can't be read
+     */
+    @Benchmark
+    public List<SeatHold> restore() throws IOException {
+        return fresh.recover(VenueSnapshot.read(path), null);
+    }
+}
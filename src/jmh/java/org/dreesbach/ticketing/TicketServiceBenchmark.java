@@ -0,0 +1,147 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.dreesbach.ticketing.BenchmarkSupport.CUSTOMER_EMAIL;
+
+/**
+ * Throughput of the on-sale hot paths of {@link TicketServiceImpl}: holding the best available seats, and holding and then
+ * reserving them.
+ * <p>
+ * All benchmark threads share one service. Holds don't expire and reservations aren't cancelled during a run, so once a
+ * venue is sold out the thread that notices swaps in a fresh service and closes the old one (which releases its remaining
+ * holds). That cost is part of the measurement, amortized over the venue's capacity - just like the venue's one-off ranking
+ * of all its seats is.
+ * <p>
+ * {@code instrumented} services record {@link TicketMetrics}, all of them into the same instance, to show what that adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class TicketServiceBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "100", "10000", "1000000" })
+    private int venueSize;
+    /**
+     * Number of seats per hold.
+     */
+    @Param({ "1", "4", "10" })
+    private int groupSize;
+    /**
+     * Whether the services record metrics.
+     */
+    @Param({ "false", "true" })
+    private boolean instrumented;
+    /**
+     * The metrics the services record, if {@link #instrumented}.
+     */
+    private final TicketMetrics metrics = new TicketMetrics();
+    /**
+     * The service currently on sale.
+     */
+    private final AtomicReference<TicketServiceImpl> ticketService = new AtomicReference<>();
+
+    /**
+     * Put the first venue on sale.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        ticketService.set(newService());
+    }
+
+    /**
+     * Shut down the service that's on sale at the end.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ticketService.get().close();
+    }
+
+    /**
+     * Find and hold the best available seats.
+     *
+     * @return the hold
+     */
+    @Benchmark
+    public SeatHold findAndHoldSeats() {
+        while (true) {
+            TicketServiceImpl service = ticketService.get();
+            SeatHold seatHold = service.findAndHoldSeats(groupSize, CUSTOMER_EMAIL);
+            if (seatHold.getNumSeatsHeld() == groupSize) {
+                return seatHold;
+            }
+            soldOut(service);
+        }
+    }
+
+    /**
+     * Find and hold the best available seats, then reserve them - a complete checkout.
+     *
+     * @return the reservation code
+     */
+    @Benchmark
+    public String findAndHoldThenReserveSeats() {
+        while (true) {
+            TicketServiceImpl service = ticketService.get();
+            SeatHold seatHold = service.findAndHoldSeats(groupSize, CUSTOMER_EMAIL);
+            if (seatHold.getNumSeatsHeld() == groupSize) {
+                try {
+                    return service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+                }
+                catch (IllegalStateException e) {
+                    // Another thread found the venue sold out and closed it under us, releasing this hold - go again.
+                    continue;
+                }
+            }
+            soldOut(service);
+        }
+    }
+
+    /**
+     * Replace a sold out service with a fresh one, unless another thread got there first.
+     *
+     * @param service the sold out service
+     */
+    private void soldOut(final TicketServiceImpl service) {
+        TicketServiceImpl fresh = newService();
+        if (ticketService.compareAndSet(service, fresh)) {
+            service.close();
+        }
+        else {
+            fresh.close();
+        }
+    }
+
+    /**
+     * A service for a fresh venue.
+     *
+     * @return the service
+     */
+    private TicketServiceImpl newService() {
+        RectangularVenue venue = BenchmarkSupport.squareVenue(venueSize);
+        if (instrumented) {
+            return new TicketServiceImpl(venue, metrics);
+        }
+        return new TicketServiceImpl(venue);
+    }
+}
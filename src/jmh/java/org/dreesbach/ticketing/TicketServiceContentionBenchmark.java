@@ -0,0 +1,123 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.dreesbach.ticketing.BenchmarkSupport.CUSTOMER_EMAIL;
+
+/**
+ * Throughput of each {@link TicketService} implementation under contention, for a mix of single seat holds of which half
+ * are reserved and the other half are left held - the comparison that shows where the service-wide monitor of
+ * {@link TicketServiceImpl} starts to hold back {@link ConcurrentTicketServiceImpl} and
+ * {@link SingleWriterTicketServiceImpl}, or the other way around. Run it for several thread counts, e.g. with
+ * {@code -Dbenchmark.threads=1,8,64}. Sold out venues are replaced just like in {@link TicketServiceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class TicketServiceContentionBenchmark {
+    /**
+     * Which {@link TicketService} implementation to measure.
+     */
+    @Param({ "synchronized", "concurrent", "singleWriter" })
+    private String implementation;
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "1000000" })
+    private int venueSize;
+    /**
+     * The service currently on sale.
+     */
+    private final AtomicReference<TicketService> ticketService = new AtomicReference<>();
+
+    /**
+     * Put the first venue on sale.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        ticketService.set(newService());
+    }
+
+    /**
+     * Shut down the service that's on sale at the end.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ticketService.get().close();
+    }
+
+    /**
+     * Hold a seat, and reserve it half of the time.
+     *
+     * @return the hold
+     */
+    @Benchmark
+    public SeatHold holdThenMaybeReserve() {
+        while (true) {
+            TicketService service = ticketService.get();
+            try {
+                SeatHold seatHold = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+                if (seatHold.getNumSeatsHeld() == 1) {
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        var _ = service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+                    }
+                    return seatHold;
+                }
+            }
+            catch (IllegalStateException e) {
+                // Another thread found the venue sold out and closed it under us - go again.
+                continue;
+            }
+            soldOut(service);
+        }
+    }
+
+    /**
+     * Replace a sold out service with a fresh one, unless another thread got there first.
+     *
+     * @param service the sold out service
+     */
+    private void soldOut(final TicketService service) {
+        TicketService fresh = newService();
+        if (ticketService.compareAndSet(service, fresh)) {
+            service.close();
+        }
+        else {
+            fresh.close();
+        }
+    }
+
+    /**
+     * A fresh service with a fresh venue.
+     *
+     * @return the service
+     */
+    private TicketService newService() {
+        RectangularVenue venue = BenchmarkSupport.squareVenue(venueSize);
+        return switch (implementation) {
+            case "synchronized" -> new TicketServiceImpl(venue);
+            case "concurrent" -> new ConcurrentTicketServiceImpl(venue);
+            case "singleWriter" -> new SingleWriterTicketServiceImpl(venue);
+            default -> throw new IllegalArgumentException("Unknown implementation " + implementation);
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package org.dreesbach.ticketing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of putting another performance of a hall on sale, once the hall's {@link VenueLayout} has been worked out: copying
+ * the layout's indexes and allocating the packed seat states. Look at {@code gc.alloc.rate.norm} for the memory a
+ * performance takes.
+ * <p>
+ * Also the cost of working out a layout in the first place, which is mostly ranking its seats - done on the common fork/join
+ * pool for large halls, so it depends on the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSupport.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSupport.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+public class VenueLayoutBenchmark {
+    /**
+     * Total number of seats in the venue.
+     */
+    @Param({ "10000", "50176", "1000000" })
+    private int venueSize;
+    /**
+     * The hall's layout.
+     */
+    private VenueLayout layout;
+    /**
+     * The strategy every performance uses.
+     */
+    private final SeatPickingStrategy<RectangularVenue> seatPickingStrategy = new RectangularVenueSimpleSeatPickingStrategy();
+
+    /**
+     * Work out the layout up front, like the first performance of a season would.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        layout = BenchmarkSupport.squareVenue(venueSize).layout();
+    }
+
+    /**
+     * Create a performance.
+     *
+     * @return the performance
+     */
+    @Benchmark
+    public RectangularVenue newPerformance() {
+        return new RectangularVenue(layout, seatPickingStrategy);
+    }
+
+    /**
+     * Rank the seats of the hall, like building its layout does.
+     *
+     * @return the index of the ranked seats
+     */
+    @Benchmark
+    public AvailableSeatIndex rankSeats() {
+        return new AvailableSeatIndex(layout.getNumSeats(), layout::getGoodness);
+    }
+}
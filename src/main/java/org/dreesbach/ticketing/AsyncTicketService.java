@@ -0,0 +1,63 @@
+package org.dreesbach.ticketing;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking variant of {@link TicketService}: every call returns right away, with a {@link CompletableFuture} that
+ * completes once the request has been handled.
+ * <p>
+ * A request that {@link TicketService} would have failed with an exception completes its future exceptionally with that same
+ * exception instead.
+ */
+public interface AsyncTicketService extends AutoCloseable {
+    /**
+     * The number of seats in the venue that are neither held nor reserved.
+     *
+     * @return the number of tickets available in the venue
+     */
+    CompletableFuture<Integer> numSeatsAvailable();
+
+    /**
+     * Find and hold the best available seats for a customer.
+     *
+     * @param numSeats the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a SeatHold object identifying the specific seats and related information
+     */
+    CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail);
+
+    /**
+     * Commit seats held for a specific customer.
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the seat hold is assigned
+     * @return a reservation confirmation code
+     */
+    CompletableFuture<String> reserveSeats(int seatHoldId, String customerEmail);
+
+    /**
+     * Find and hold the best available seats for a batch of requests, in order.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order - a request that fails doesn't fail the others
+     * @see TicketService#findAndHoldSeats(List)
+     */
+    CompletableFuture<List<BatchResult<SeatHold>>> findAndHoldSeats(List<HoldRequest> requests);
+
+    /**
+     * Commit the seats held for a batch of requests, in order.
+     *
+     * @param requests the requests
+     * @return one result per request, with its reservation confirmation code if it succeeded, in the same order - a request
+     *         that fails doesn't fail the others
+     * @see TicketService#reserveSeats(List)
+     */
+    CompletableFuture<List<BatchResult<String>>> reserveSeats(List<ReservationRequest> requests);
+
+    /**
+     * Releases any resources held by this service. Once closed, an {@link AsyncTicketService} should no longer be used.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,149 @@
+package org.dreesbach.ticketing;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An {@link AsyncTicketService} that runs each request against a {@link TicketService} on an executor - by default one virtual
+ * thread per request.
+ * <p>
+ * A virtual thread that blocks on one of the service's locks is parked, rather than tying up a platform thread, so a spike
+ * of requests queueing on the venue costs a few hundred bytes per waiting request instead of a thread stack each. (Since Java
+ * 24 that holds for monitors as well as for {@code java.util.concurrent} locks, so the services don't need to change.)
+ * <p>
+ * Parking is cheap, but not free, and a queue that only ever grows is still a problem - so there is a limit on how many
+ * requests may be in flight at once. A request over that limit is rejected straight away, by failing its future with a
+ * {@link RejectedExecutionException}, instead of waiting for a slot.
+ */
+public final class AsyncTicketServiceImpl implements AsyncTicketService {
+    /**
+     * Default limit on the number of requests in flight at once.
+     */
+    static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+    /**
+     * The service that actually handles the requests.
+     */
+    private final TicketService ticketService;
+    /**
+     * Runs the requests.
+     */
+    private final ExecutorService executor;
+    /**
+     * Limit on the number of requests in flight at once.
+     */
+    private final int maxInFlight;
+    /**
+     * One permit per request that may still be taken on.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * Default constructor, running every request on a virtual thread of its own.
+     *
+     * @param ticketService the service to handle the requests
+     */
+    AsyncTicketServiceImpl(final TicketService ticketService) {
+        this(ticketService, Executors.newVirtualThreadPerTaskExecutor(), DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructor allowing specification of the executor and of the limit on requests in flight.
+     *
+     * @param ticketService the service to handle the requests
+     * @param executor runs the requests - shut down along with this service
+     * @param maxInFlight how many requests may be in flight at once
+     */
+    AsyncTicketServiceImpl(final TicketService ticketService, final ExecutorService executor, final int maxInFlight) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be > 0");
+        this.ticketService = checkNotNull(ticketService, "ticketService cannot be null");
+        this.executor = checkNotNull(executor, "executor cannot be null");
+        this.maxInFlight = maxInFlight;
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public CompletableFuture<Integer> numSeatsAvailable() {
+        return submit(ticketService::numSeatsAvailable);
+    }
+
+    @Override
+    public CompletableFuture<SeatHold> findAndHoldSeats(final int numSeats, final String customerEmail) {
+        return submit(() -> ticketService.findAndHoldSeats(numSeats, customerEmail));
+    }
+
+    @Override
+    public CompletableFuture<String> reserveSeats(final int seatHoldId, final String customerEmail) {
+        return submit(() -> ticketService.reserveSeats(seatHoldId, customerEmail));
+    }
+
+    /**
+     * The whole batch counts as a single request towards the limit on requests in flight.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    public CompletableFuture<List<BatchResult<SeatHold>>> findAndHoldSeats(final List<HoldRequest> requests) {
+        return submit(() -> ticketService.findAndHoldSeats(requests));
+    }
+
+    /**
+     * The whole batch counts as a single request towards the limit on requests in flight.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    public CompletableFuture<List<BatchResult<String>>> reserveSeats(final List<ReservationRequest> requests) {
+        return submit(() -> ticketService.reserveSeats(requests));
+    }
+
+    /**
+     * How many more requests can be taken on right now.
+     *
+     * @return the number of free slots
+     */
+    int availableSlots() {
+        return inFlight.availablePermits();
+    }
+
+    /**
+     * Waits for the requests in flight to finish, then closes the underlying {@link TicketService}. Requests made after this
+     * has been called are rejected.
+     */
+    @Override
+    public void close() {
+        executor.close();
+        ticketService.close();
+    }
+
+    /**
+     * Run a request on the executor, unless there are too many in flight already.
+     *
+     * @param request the request
+     * @param <T> the type of the request's result
+     * @return the request's future, failed with a {@link RejectedExecutionException} if it was rejected
+     */
+    private <T> CompletableFuture<T> submit(final Supplier<T> request) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many requests in flight (max " + maxInFlight + ")"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(request, executor).whenComplete((result, failure) -> inFlight.release());
+        }
+        catch (RejectedExecutionException e) {
+            // the executor has been shut down
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.dreesbach.ticketing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps track of which seats of a venue are available for picking, ordered from best to worst.
+ * <p>
+ * Seats are ranked once, by goodness (ties broken by seat index), and a bitmap over the ranks marks the available seats,
+ * with a bitmap of its non-empty words on top, and so on up to a single word. Finding the best available seat is a descent
+ * through the levels, one trailing-zero count per level, and taking a seat out of or putting it back into the index only
+ * touches the words above it that change, so all operations are O(log<sub>64</sub> n) - in particular a seat that's
+ * released (e.g. when its hold expires or its reservation is cancelled) can be picked again right away, in the right order.
+ * <p>
+ * The ranking never changes, so {@link #AvailableSeatIndex(AvailableSeatIndex) copies} of an index share it: a copy only
+ * has bitmaps of its own, a little over one bit per seat. A {@link VenueLayout} keeps an index with all seats available
+ * for every performance of the layout to copy.
+ * <p>
+ * This class is thread-safe.
+ */
+final class AvailableSeatIndex {
+    /**
+     * Number of seats from which the seats are ranked in parallel, the size from which {@link Arrays#parallelSort(long[])}
+     * starts splitting its work.
+     */
+    private static final int PARALLEL_THRESHOLD = 8_192;
+    /**
+     * Seat index of the seat at each rank, best seat first. Shared with copies.
+     */
+    private final int[] seatByRank;
+    /**
+     * Rank of each seat. Shared with copies.
+     */
+    private final int[] rankBySeat;
+    /**
+     * The availability bitmaps: level 0 has a bit for every rank, set if the seat at that rank is available, which makes
+     * taking and releasing seats idempotent. Every further level has a bit for every word of the level below, set if that
+     * word isn't 0, and the last level is a single word.
+     */
+    private final long[][] available;
+    /**
+     * Number of seats currently available.
+     */
+    private int size;
+
+    /**
+     * Creates an index with all seats available.
+     *
+     * @param numSeats number of seats, with seat indexes from 0 to {@code numSeats - 1} (inclusive)
+     * @param goodness the goodness score of each seat - the lower, the better; called from several threads at once for a large
+     * venue
+     */
+    AvailableSeatIndex(final int numSeats, final IntToDoubleFunction goodness) {
+        checkArgument(numSeats > 0, "numSeats must be > 0");
+        checkNotNull(goodness, "goodness cannot be null");
+        seatByRank = rankSeats(numSeats, goodness);
+        rankBySeat = new int[numSeats];
+        ranks(numSeats).forEach(rank -> rankBySeat[seatByRank[rank]] = rank);
+        List<long[]> levels = new ArrayList<>();
+        int numBits = numSeats;
+        do {
+            long[] level = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+            Arrays.fill(level, -1L);
+            level[level.length - 1] = -1L >>> (level.length * Long.SIZE - numBits);
+            levels.add(level);
+            numBits = level.length;
+        }
+        while (numBits > 1);
+        available = levels.toArray(new long[0][]);
+        size = numSeats;
+    }
+
+    /**
+     * Creates a copy of an index, sharing its ranking.
+     *
+     * @param other the index to copy
+     */
+    AvailableSeatIndex(final AvailableSeatIndex other) {
+        seatByRank = other.seatByRank;
+        rankBySeat = other.rankBySeat;
+        synchronized (other) {
+            available = new long[other.available.length][];
+            for (int level = 0; level < available.length; level++) {
+                available[level] = other.available[level].clone();
+            }
+            size = other.size;
+        }
+    }
+
+    /**
+     * Orders the seats by goodness, ties broken by seat index.
+     * <p>
+     * Sorting boxed seat indexes with a comparator is several times slower than the rest of setting up a large venue, so
+     * instead every seat gets a {@code long} key - its goodness rounded to a {@code float} in the high half, its index in the
+     * low half - and the keys are sorted as primitives. Rounding never swaps the order of two scores, it can only make
+     * distinct scores equal, so afterwards only runs of seats with equal rounded scores need to be put in exact order.
+     * <p>
+     * For a large venue the scores are computed and the keys sorted on the common fork/join pool, which takes ranking a
+     * million seats from a few hundred milliseconds to a fraction of that, given the cores.
+     *
+     * @param numSeats number of seats
+     * @param goodness the goodness score of each seat
+     * @return the seat indexes, best seat first
+     */
+    private static int[] rankSeats(final int numSeats, final IntToDoubleFunction goodness) {
+        double[] scores = new double[numSeats];
+        long[] keys = new long[numSeats];
+        ranks(numSeats).forEach(seat -> {
+            scores[seat] = goodness.applyAsDouble(seat);
+            int bits = Float.floatToIntBits((float) scores[seat]);
+            // flip the magnitude bits of negative scores so that the bits compare like the scores do
+            bits ^= (bits >> (Integer.SIZE - 1)) & Integer.MAX_VALUE;
+            keys[seat] = ((long) bits << Integer.SIZE) | seat;
+        });
+        Arrays.parallelSort(keys);
+        int[] seats = new int[numSeats];
+        int runStart = 0;
+        for (int rank = 0; rank < numSeats; rank++) {
+            seats[rank] = (int) keys[rank];
+            if ((keys[rank] >> Integer.SIZE) != (keys[runStart] >> Integer.SIZE)) {
+                runStart = rank;
+            }
+            // insertion sort within the run - it's stable, so equal scores stay in seat index order
+            for (int i = rank; i > runStart && scores[seats[i - 1]] > scores[seats[i]]; i--) {
+                int swap = seats[i];
+                seats[i] = seats[i - 1];
+                seats[i - 1] = swap;
+            }
+        }
+        return seats;
+    }
+
+    /**
+     * The numbers from 0 to {@code numSeats - 1} (inclusive), to go through the seats or ranks of an index - in parallel for a
+     * large venue, where every number has to be handled independently of the others.
+     *
+     * @param numSeats number of seats
+     * @return the stream of numbers
+     */
+    private static IntStream ranks(final int numSeats) {
+        IntStream ranks = IntStream.range(0, numSeats);
+        if (numSeats >= PARALLEL_THRESHOLD) {
+            return ranks.parallel();
+        }
+        return ranks;
+    }
+
+    /**
+     * Take the best available seats out of the index.
+     *
+     * @param numSeats how many seats to take
+     * @return the seat indexes of the seats taken, best first - fewer than requested if not enough seats are available
+     */
+    synchronized int[] acquireBest(final int numSeats) {
+        checkArgument(numSeats >= 0, "numSeats must be >= 0");
+        int[] seats = new int[Math.min(numSeats, size)];
+        for (int i = 0; i < seats.length; i++) {
+            int rank = firstAvailableRank();
+            remove(rank);
+            seats[i] = seatByRank[rank];
+        }
+        return seats;
+    }
+
+    /**
+     * The best available seat, without taking it out of the index.
+     *
+     * @return the seat index of the best available seat, -1 if none is available
+     */
+    synchronized int best() {
+        if (size == 0) {
+            return -1;
+        }
+        return seatByRank[firstAvailableRank()];
+    }
+
+    /**
+     * Take a particular seat out of the index, e.g. because it was held without being picked. Does nothing if the seat isn't
+     * available.
+     *
+     * @param seat the seat index
+     */
+    synchronized void acquire(final int seat) {
+        int rank = rankBySeat[checkElementIndex(seat, rankBySeat.length)];
+        if (isAvailable(rank)) {
+            remove(rank);
+        }
+    }
+
+    /**
+     * Put a seat back into the index, making it available for picking again. Does nothing if the seat is already available.
+     *
+     * @param seat the seat index
+     */
+    synchronized void release(final int seat) {
+        int rank = rankBySeat[checkElementIndex(seat, rankBySeat.length)];
+        if (!isAvailable(rank)) {
+            int bit = rank;
+            for (long[] level : available) {
+                long word = level[bit / Long.SIZE];
+                level[bit / Long.SIZE] = word | (1L << bit);
+                if (word != 0) {
+                    break;
+                }
+                bit /= Long.SIZE;
+            }
+            size++;
+        }
+    }
+
+    /**
+     * Number of seats available for picking.
+     *
+     * @return number of available seats
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Whether the seat at a rank is available.
+     *
+     * @param rank the rank
+     * @return {@code true} if available
+     */
+    private boolean isAvailable(final int rank) {
+        return (available[0][rank / Long.SIZE] & (1L << rank)) != 0;
+    }
+
+    /**
+     * Mark the seat at a rank as unavailable.
+     *
+     * @param rank the rank
+     */
+    private void remove(final int rank) {
+        int bit = rank;
+        for (long[] level : available) {
+            long word = level[bit / Long.SIZE] & ~(1L << bit);
+            level[bit / Long.SIZE] = word;
+            if (word != 0) {
+                break;
+            }
+            bit /= Long.SIZE;
+        }
+        size--;
+    }
+
+    /**
+     * The best rank that's available, found by descending from the top level to the first set bit of every level. Must only
+     * be called when at least one seat is available.
+     *
+     * @return the rank
+     */
+    private int firstAvailableRank() {
+        int index = 0;
+        for (int level = available.length - 1; level >= 0; level--) {
+            index = index * Long.SIZE + Long.numberOfTrailingZeros(available[level][index]);
+        }
+        return index;
+    }
+}
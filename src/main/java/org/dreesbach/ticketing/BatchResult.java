@@ -0,0 +1,92 @@
+package org.dreesbach.ticketing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The outcome of one request in a batch: either the value the single-request call would have returned, or the exception it
+ * would have thrown. A failed request doesn't affect the others in its batch.
+ *
+ * @param <T> the type of the value
+ */
+public final class BatchResult<T> {
+    /**
+     * The value, {@code null} if the request failed.
+     */
+    private final T value;
+    /**
+     * Why the request failed, {@code null} if it succeeded.
+     */
+    private final RuntimeException failure;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param value the value
+     * @param failure why the request failed
+     */
+    private BatchResult(final T value, final RuntimeException failure) {
+        this.value = value;
+        this.failure = failure;
+    }
+
+    /**
+     * A successful result.
+     *
+     * @param value the value
+     * @param <T> the type of the value
+     * @return the result
+     */
+    static <T> BatchResult<T> success(final T value) {
+        return new BatchResult<>(value, null);
+    }
+
+    /**
+     * A failed result.
+     *
+     * @param failure why the request failed
+     * @param <T> the type of the value
+     * @return the result
+     */
+    static <T> BatchResult<T> failure(final RuntimeException failure) {
+        return new BatchResult<>(null, checkNotNull(failure, "failure cannot be null"));
+    }
+
+    /**
+     * Whether the request succeeded.
+     *
+     * @return {@code true} if it succeeded
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * The value of a successful request.
+     *
+     * @return the value
+     * @throws RuntimeException the exception the request failed with, if it failed
+     */
+    public T get() {
+        if (failure != null) {
+            throw failure;
+        }
+        return value;
+    }
+
+    /**
+     * Why the request failed.
+     *
+     * @return the exception the request failed with, or {@code null} if it succeeded
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        if (failure != null) {
+            return "BatchResult[failure=" + failure + "]";
+        }
+        return "BatchResult[value=" + value + "]";
+    }
+}
@@ -0,0 +1,257 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link TicketService} implementation that doesn't serialize all requests on a single monitor.
+ * <p>
+ * {@link TicketServiceImpl} synchronizes every hold, reservation and expiration sweep on the service instance, so during an
+ * on-sale spike all request threads queue on the same lock and the sweeper blocks everybody for its whole pass. This
+ * implementation instead keeps its {@link SeatHold}s in a lock-striped {@link IntRegistry} and uses the registry itself to
+ * hand out exclusive ownership of a hold: whoever manages to remove a hold from the registry (a reservation or the sweeper)
+ * is the only one allowed to act on it. The only remaining serialization point is the venue's seat picking, which is inherently
+ * sequential for a "best available" policy - reserving hold A never waits on picking seats for hold B.
+ */
+public final class ConcurrentTicketServiceImpl implements TicketService {
+    /**
+     * How long it takes for seat holds to expire.
+     */
+    private final Duration seatHoldExpirationTime;
+    /**
+     * The venue to sell seats for.
+     */
+    private final Venue venue;
+    /**
+     * All live seat holds, keyed by their ID.
+     */
+    private final IntRegistry<SeatHold> seatHolds = new IntRegistry<>();
+    /**
+     * Number of seats of the holds in {@link #seatHolds}, kept in step with it so that it can be read without going through
+     * the registry.
+     */
+    private final AtomicInteger numSeatsHeld = new AtomicInteger();
+    /**
+     * Keeps track of when each {@link SeatHold} expires.
+     */
+    private final ExpirationWheel<SeatHold> expirationWheel;
+    /**
+     * An executor service to periodically advance the {@link #expirationWheel} and expire {@link SeatHold}s that have
+     * exceeded their maximum lifetime.
+     */
+    private final ScheduledExecutorService seatHoldExpiration = new ScheduledThreadPoolExecutor(1);
+
+    /**
+     * Default constructor.
+     *
+     * @param venue an implementation of {@link Venue}
+     */
+    ConcurrentTicketServiceImpl(final Venue venue) {
+        this(venue,
+                TicketServiceImpl.CHECK_SEAT_HOLD_EXPIRATION_DURATION,
+                TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME
+        );
+    }
+
+    /**
+     * Constructor allowing specification of seat hold expiration time.
+     *
+     * @param venue an implementation of {@link Venue}
+     * @param seatHoldCheckExpiration how often we should check for seat hold expiration
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     */
+    ConcurrentTicketServiceImpl(
+            final Venue venue, final Duration seatHoldCheckExpiration, final Duration seatHoldExpirationTime
+    ) {
+        checkNotNull(seatHoldCheckExpiration, "seatHoldCheckExpiration must not be null");
+        checkArgument(
+                !(seatHoldCheckExpiration.isNegative() || seatHoldCheckExpiration.isZero()),
+                "seatHoldCheckExpiration must be > 0"
+        );
+        this.venue = checkNotNull(venue, "venue cannot be null");
+        this.seatHoldExpirationTime = checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null");
+        expirationWheel =
+                new ExpirationWheel<>(seatHoldCheckExpiration, ExpirationWheel.DEFAULT_NUM_BUCKETS, System.nanoTime());
+        // There's nothing to expire yet, so the first sweep only needs to happen one check interval from now
+        var _ = seatHoldExpiration.scheduleWithFixedDelay(this::expireSeatHolds,
+                seatHoldCheckExpiration.toMillis(),
+                seatHoldCheckExpiration.toMillis(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return venue.getAvailableNumSeats();
+    }
+
+    /**
+     * Never returns {@code null} - when no seats are available the returned {@link SeatHold} simply holds no seats.
+     * <p>
+     * The returned SeatHold may have fewer seats than were requested if that many were not available.
+     *
+     * @param numSeatsToHold the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a {@link SeatHold}
+     */
+    @Override
+    public SeatHold findAndHoldSeats(final int numSeatsToHold, final String customerEmail) {
+        TicketServiceImpl.checkHoldParams(numSeatsToHold, customerEmail);
+        SeatHold seatHold = venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+        trackSeatHold(seatHold);
+        return seatHold;
+    }
+
+    /**
+     * Picks the seats for the whole batch under a single acquisition of the venue's monitor, and generates the IDs of all the
+     * {@link SeatHold}s at once.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    public List<BatchResult<SeatHold>> findAndHoldSeats(final List<HoldRequest> requests) {
+        List<BatchResult<SeatHold>> results = new ArrayList<>(checkNotNull(requests, "requests cannot be null").size());
+        int[] numSeatsToHold = TicketServiceImpl.checkHoldRequests(requests, results);
+        List<SeatHold> newSeatHolds = venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+        newSeatHolds.forEach(this::trackSeatHold);
+        TicketServiceImpl.fillInResults(results, newSeatHolds);
+        return results;
+    }
+
+    /**
+     * Start tracking a new {@link SeatHold} and schedule its expiration.
+     *
+     * @param seatHold the hold
+     */
+    private void trackSeatHold(final SeatHold seatHold) {
+        if (seatHolds.putIfAbsent(seatHold.getId(), seatHold) != null) {
+            throw new IllegalStateException("Tried to allocate the same SeatHold ID [" + seatHold.getId() + "] more than once");
+        }
+        var _ = numSeatsHeld.addAndGet(seatHold.getNumSeatsHeld());
+        // Scheduled only after the hold is in the registry, otherwise it could expire before it's there to be released. The flip
+        // side is that a reservation racing this may not see the entry yet, which just leaves it to lapse in the wheel.
+        seatHold.setExpirationEntry(expirationWheel.schedule(seatHold, seatHold.getExpirationNanos()));
+    }
+
+    /**
+     * Removing the {@link SeatHold} from the registry is what claims it for this reservation, so two concurrent reservations of
+     * the same hold (or a reservation racing the expiration sweep) can never both succeed.
+     *
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    @Override
+    public String reserveSeats(final int seatHoldId, final String customerEmail) {
+        return TicketServiceImpl.reserveClaimedSeatHold(venue, claimSeatHold(seatHoldId, customerEmail));
+    }
+
+    /**
+     * Claims all the holds first, then generates all the reservation codes at once.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    public List<BatchResult<String>> reserveSeats(final List<ReservationRequest> requests) {
+        checkNotNull(requests, "requests cannot be null");
+        List<BatchResult<String>> results = new ArrayList<>(requests.size());
+        List<SeatHold> claimed = new ArrayList<>(requests.size());
+        for (ReservationRequest request : requests) {
+            try {
+                checkNotNull(request, "request cannot be null");
+                claimed.add(claimSeatHold(request.seatHoldId(), request.customerEmail()));
+                results.add(null);
+            }
+            catch (IllegalArgumentException | NullPointerException | IllegalStateException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        var _ = TicketServiceImpl.reserveClaimedSeatHolds(venue, claimed, results);
+        return results;
+    }
+
+    /**
+     * Claim a {@link SeatHold} for a reservation by removing it from the registry, releasing it if it has expired.
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the seat hold is assigned
+     * @return the hold
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    private SeatHold claimSeatHold(final int seatHoldId, final String customerEmail) {
+        checkArgument(seatHoldId > 0, "seatHoldId must be > 0");
+        TicketServiceImpl.checkEmailParam(customerEmail);
+        SeatHold seatHold = seatHolds.remove(seatHoldId);
+        if (seatHold == null) {
+            throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] not found");
+        }
+        var _ = numSeatsHeld.addAndGet(-seatHold.getNumSeatsHeld());
+        expirationWheel.cancel(seatHold.getExpirationEntry());
+        if (seatHold.expired()) {
+            // We own the hold now, so the sweeper won't see it anymore - release its seats here instead.
+            venue.removeHold(seatHold);
+            throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] is expired");
+        }
+        return seatHold;
+    }
+
+    /**
+     * How many seats the holds that are currently in effect hold. A counter, updated whenever a hold is tracked or claimed,
+     * so this is constant time and exact even under concurrent modification.
+     *
+     * @return number of seats held
+     */
+    public int numSeatsHeld() {
+        return numSeatsHeld.get();
+    }
+
+    /**
+     * Shuts down the background thread that expires {@link SeatHold}s and releases any holds that are still outstanding, since
+     * nothing would ever expire those anymore. Once closed, this instance should no longer be used.
+     */
+    @Override
+    public void close() {
+        seatHoldExpiration.shutdown();
+        seatHolds.values().forEach(this::expireSeatHold);
+    }
+
+    /**
+     * Whether the background seat hold expiration thread has been shut down.
+     *
+     * @return {@code true} if {@link close()} has been called
+     */
+    boolean isClosed() {
+        return seatHoldExpiration.isShutdown();
+    }
+
+    /**
+     * Removes expired {@link SeatHold}s, visiting only the buckets of the {@link #expirationWheel} for the time elapsed since
+     * the last run.
+     */
+    private void expireSeatHolds() {
+        var _ = TicketEvents.sweep(expirationWheel, System.nanoTime(), this::expireSeatHold);
+    }
+
+    /**
+     * Release an expired {@link SeatHold}, unless a reservation won the race to remove it from the registry.
+     *
+     * @param seatHold the expired hold
+     * @return whether it was released
+     */
+    private boolean expireSeatHold(final SeatHold seatHold) {
+        if (seatHolds.remove(seatHold.getId(), seatHold)) {
+            var _ = numSeatsHeld.addAndGet(-seatHold.getNumSeatsHeld());
+            venue.removeHold(seatHold);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Expires the {@link SeatHold}s of any number of {@link TicketServiceImpl}s, from a single background thread.
+ * <p>
+ * The holds of all the services go into one {@link ExpirationWheel}, in order of their deadlines, and every check interval
+ * the thread advances it and hands each hold that is due back to its service. A service of its own has a scheduler of its
+ * own; a {@link TicketingHost} shares one between all of its performances, so a performance costs the memory of its holds
+ * but no thread - and a sweep only ever visits the holds that are due, however many performances are idle.
+ */
+final class ExpirationScheduler implements AutoCloseable {
+    /**
+     * Keeps track of when each {@link SeatHold} expires, and of the service it belongs to.
+     */
+    private final ExpirationWheel<ScheduledHold> expirationWheel;
+    /**
+     * An executor service to periodically advance the {@link #expirationWheel} and expire {@link SeatHold}s that have
+     * exceeded their maximum lifetime.
+     */
+    private final ScheduledExecutorService seatHoldExpiration = new ScheduledThreadPoolExecutor(1);
+    /**
+     * Where the duration of the sweeps is recorded, {@link TicketMetrics#DISABLED} if it isn't.
+     */
+    private final TicketMetrics metrics;
+
+    /**
+     * Creates a new scheduler and starts its thread.
+     *
+     * @param seatHoldCheckExpiration how often we should check for seat hold expiration
+     * @param metrics where to record the duration of the sweeps
+     */
+    ExpirationScheduler(final Duration seatHoldCheckExpiration, final TicketMetrics metrics) {
+        checkNotNull(seatHoldCheckExpiration, "seatHoldCheckExpiration must not be null");
+        checkArgument(
+                !(seatHoldCheckExpiration.isNegative() || seatHoldCheckExpiration.isZero()),
+                "seatHoldCheckExpiration must be > 0"
+        );
+        this.metrics = checkNotNull(metrics, "metrics cannot be null");
+        // One tick of the wheel per expiration check - holds can't be expired with any finer granularity than that anyway
+        expirationWheel =
+                new ExpirationWheel<>(seatHoldCheckExpiration, ExpirationWheel.DEFAULT_NUM_BUCKETS, System.nanoTime());
+        // We don't want executions to pile up, so we use scheduleWithFixedDelay rather than scheduleAtFixedRate
+        var _ = seatHoldExpiration.scheduleWithFixedDelay(this::expireSeatHolds,
+                0L,
+                seatHoldCheckExpiration.toMillis(),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Schedule a {@link SeatHold} to expire at its {@link SeatHold#getExpirationNanos() expiration time}.
+     *
+     * @param ticketService the service the hold belongs to, which is asked to release it then
+     * @param seatHold the hold
+     * @return a handle that can be used to {@link #cancel(ExpirationWheel.Entry) cancel} the expiration
+     */
+    ExpirationWheel.Entry<ScheduledHold> schedule(final TicketServiceImpl ticketService, final SeatHold seatHold) {
+        return expirationWheel.schedule(new ScheduledHold(ticketService, seatHold), seatHold.getExpirationNanos());
+    }
+
+    /**
+     * Cancel a scheduled expiration, because the hold has been claimed by its service.
+     *
+     * @param entry the handle returned by {@link #schedule(TicketServiceImpl, SeatHold)}, or {@code null}
+     */
+    void cancel(final ExpirationWheel.Entry<?> entry) {
+        var _ = expirationWheel.cancel(entry);
+    }
+
+    /**
+     * The background thread's sweep.
+     */
+    private void expireSeatHolds() {
+        var _ = expireSeatHolds(System.nanoTime());
+    }
+
+    /**
+     * Hands the {@link SeatHold}s that have expired as of a given point in time back to their services to release.
+     * Package-private so that the sweep can be exercised (and benchmarked) without waiting for the background thread.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return number of holds that were due
+     */
+    int expireSeatHolds(final long nowNanos) {
+        long startNanos = metrics.startNanos();
+        int numDue = TicketEvents.sweep(expirationWheel, nowNanos, ScheduledHold::expire);
+        var _ = metrics.record(TicketMetrics.Latency.EXPIRE_SEAT_HOLDS, startNanos);
+        return numDue;
+    }
+
+    /**
+     * Shuts down the background thread. Holds that are still scheduled won't expire anymore.
+     */
+    @Override
+    public void close() {
+        seatHoldExpiration.shutdown();
+    }
+
+    /**
+     * Whether the background thread has been shut down.
+     *
+     * @return {@code true} if {@link #close()} has been called
+     */
+    boolean isClosed() {
+        return seatHoldExpiration.isShutdown();
+    }
+
+    /**
+     * A {@link SeatHold} in the {@link #expirationWheel}.
+     *
+     * @param ticketService the service the hold belongs to
+     * @param seatHold the hold
+     */
+    record ScheduledHold(TicketServiceImpl ticketService, SeatHold seatHold) {
+        /**
+         * Have the service release the hold, unless it was claimed in the meantime.
+         *
+         * @return whether it was released
+         */
+        boolean expire() {
+            return ticketService.expireSeatHold(seatHold);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A hashed timer wheel for expiring items (e.g. {@link SeatHold}s) at arbitrary, per-item deadlines.
+ * <p>
+ * Time is divided into ticks, and every tick maps onto one of a fixed number of buckets, each a doubly-linked list of the
+ * entries due in that tick. Scheduling and cancelling an entry are O(1) and only lock the one bucket involved, so they
+ * don't contend with each other unless they hit the same tick. {@link #advance(long, Consumer)} walks the buckets for the
+ * ticks that have elapsed and hands the expired entries of each bucket to the caller as a batch, after the bucket's lock has
+ * been released - so the caller can do its (potentially slow) expiration work without blocking anybody scheduling new
+ * entries.
+ * <p>
+ * Deadlines further out than one revolution of the wheel are fine: such entries simply stay in their bucket until a pass
+ * finds their deadline has been reached.
+ *
+ * @param <T> the type of item being expired
+ */
+final class ExpirationWheel<T> {
+    /**
+     * Default number of buckets. With the default one-second tick that covers more than eight minutes in a single revolution,
+     * comfortably above the default {@link SeatHold} lifetime.
+     */
+    static final int DEFAULT_NUM_BUCKETS = 512;
+    /**
+     * Length of a tick in nanoseconds.
+     */
+    private final long tickNanos;
+    /**
+     * The {@link System#nanoTime()} that tick 0 starts at.
+     */
+    private final long startNanos;
+    /**
+     * The buckets - each one is its own lock.
+     */
+    private final Bucket<T>[] buckets;
+    /**
+     * {@code buckets.length - 1}, used to map a tick onto its bucket.
+     */
+    private final int mask;
+    /**
+     * The last tick that has been processed. Only ever written by {@link #advance(long, Consumer)} while holding the lock of
+     * that tick's bucket, which is what lets {@link #schedule(Object, long)} detect that it lost a race against a pass.
+     */
+    private volatile long processedTick;
+
+    /**
+     * Creates a new wheel.
+     *
+     * @param tickDuration the length of a tick, i.e. the granularity at which entries expire
+     * @param numBuckets number of buckets - must be a power of two
+     * @param startNanos the {@link System#nanoTime()} the wheel starts at
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    ExpirationWheel(final Duration tickDuration, final int numBuckets, final long startNanos) {
+        checkNotNull(tickDuration, "tickDuration cannot be null");
+        checkArgument(!(tickDuration.isNegative() || tickDuration.isZero()), "tickDuration must be > 0");
+        checkArgument(numBuckets > 0 && Integer.bitCount(numBuckets) == 1, "numBuckets must be a power of two");
+        this.tickNanos = TimeUnit.NANOSECONDS.convert(tickDuration);
+        this.startNanos = startNanos;
+        buckets = new Bucket[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            buckets[i] = new Bucket<>();
+        }
+        mask = numBuckets - 1;
+    }
+
+    /**
+     * Schedule an item to expire.
+     *
+     * @param item the item
+     * @param deadlineNanos the {@link System#nanoTime()} at which the item expires
+     * @return a handle that can be used to {@link #cancel(Entry) cancel} the expiration
+     */
+    Entry<T> schedule(final T item, final long deadlineNanos) {
+        Entry<T> entry = new Entry<>(checkNotNull(item, "item cannot be null"), deadlineNanos);
+        // round up, so an entry never sits in a bucket that's processed before its deadline
+        long tick = Math.ceilDiv(deadlineNanos - startNanos, tickNanos);
+        while (true) {
+            long target = Math.max(tick, processedTick + 1);
+            Bucket<T> bucket = buckets[(int) (target & mask)];
+            synchronized (bucket) {
+                // if a pass got to this tick in the meantime we'd only be looked at again after a full revolution, so retry
+                if (target > processedTick) {
+                    bucket.add(entry);
+                    return entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancel a scheduled expiration, e.g. because the item has been consumed. Does nothing if the entry already expired or
+     * was cancelled before.
+     * <p>
+     * A {@code null} entry is accepted and ignored, for callers that can race with the item being scheduled: an entry that
+     * doesn't get cancelled that way is harmless, it just lingers in the wheel until its deadline.
+     *
+     * @param entry the handle returned by {@link #schedule(Object, long)}, or {@code null}
+     * @return {@code true} if the entry was still scheduled
+     */
+    boolean cancel(final Entry<?> entry) {
+        if (entry == null) {
+            return false;
+        }
+        return unlink(entry);
+    }
+
+    /**
+     * Unlink an entry from the bucket it's in, if any.
+     *
+     * @param entry the entry
+     * @param <U> the type of item of the entry - a captured wildcard, so that {@link SeatHold}s can keep their entries
+     *            without knowing what kind of wheel they're in
+     * @return {@code true} if the entry was in a bucket
+     */
+    private static <U> boolean unlink(final Entry<U> entry) {
+        Bucket<U> bucket = entry.bucket;
+        if (bucket == null) {
+            return false;
+        }
+        synchronized (bucket) {
+            return bucket.remove(entry);
+        }
+    }
+
+    /**
+     * Expire all entries whose deadline has been reached.
+     * <p>
+     * Entries are handed to {@code expire} one bucket at a time, outside of the bucket's lock. Only one thread should advance a
+     * wheel at a time, which this method enforces.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @param expire what to do with each expired item
+     * @return the number of items expired
+     */
+    synchronized int advance(final long nowNanos, final Consumer<? super T> expire) {
+        long nowTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+        // after a long pause, visiting every bucket once (with the latest ticks) is enough to find everything that's due
+        long firstTick = Math.max(processedTick + 1, nowTick - mask);
+        int numExpired = 0;
+        List<T> expired = new ArrayList<>();
+        for (long tick = firstTick; tick <= nowTick; tick++) {
+            Bucket<T> bucket = buckets[(int) (tick & mask)];
+            synchronized (bucket) {
+                processedTick = tick;
+                bucket.drainExpired(nowNanos, expired);
+            }
+            for (T item : expired) {
+                expire.accept(item);
+            }
+            numExpired += expired.size();
+            expired.clear();
+        }
+        return numExpired;
+    }
+
+    /**
+     * Number of entries currently scheduled. Walks every bucket, so this is meant for tests and diagnostics only.
+     *
+     * @return number of scheduled entries
+     */
+    int size() {
+        int size = 0;
+        for (Bucket<T> bucket : buckets) {
+            synchronized (bucket) {
+                size += bucket.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A scheduled expiration.
+     *
+     * @param <T> the type of item being expired
+     */
+    static final class Entry<T> {
+        /**
+         * The item to expire.
+         */
+        private final T item;
+        /**
+         * When the item expires, as a {@link System#nanoTime()}.
+         */
+        private final long deadlineNanos;
+        /**
+         * The bucket this entry is in, {@code null} when it's not scheduled (anymore). Guarded by the bucket's lock.
+         */
+        private volatile Bucket<T> bucket;
+        /**
+         * Previous entry in the bucket. Guarded by the bucket's lock.
+         */
+        private Entry<T> prev;
+        /**
+         * Next entry in the bucket. Guarded by the bucket's lock.
+         */
+        private Entry<T> next;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param item the item to expire
+         * @param deadlineNanos when the item expires
+         */
+        private Entry(final T item, final long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * The entries due in a particular tick (or one of the ticks that map onto the same bucket in later revolutions).
+     *
+     * @param <T> the type of item being expired
+     */
+    private static final class Bucket<T> {
+        /**
+         * First entry in the list.
+         */
+        private Entry<T> head;
+        /**
+         * Number of entries in the list.
+         */
+        private int size;
+
+        /**
+         * Link an entry into this bucket.
+         *
+         * @param entry the entry
+         */
+        private void add(final Entry<T> entry) {
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            }
+            head = entry;
+            entry.bucket = this;
+            size++;
+        }
+
+        /**
+         * Unlink an entry from this bucket.
+         *
+         * @param entry the entry
+         * @return {@code true} if the entry was in this bucket
+         */
+        private boolean remove(final Entry<T> entry) {
+            if (entry.bucket != this) {
+                return false;
+            }
+            if (entry.prev == null) {
+                head = entry.next;
+            }
+            else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            entry.bucket = null;
+            size--;
+            return true;
+        }
+
+        /**
+         * Unlink all entries whose deadline has been reached.
+         *
+         * @param nowNanos the current {@link System#nanoTime()}
+         * @param expired collects the expired items
+         */
+        private void drainExpired(final long nowNanos, final List<T> expired) {
+            Entry<T> entry = head;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                if (nowNanos - entry.deadlineNanos >= 0) {
+                    remove(entry);
+                    expired.add(entry.item);
+                }
+                entry = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package org.dreesbach.ticketing;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Keeps track of the runs of adjacent available seats in every row of a rectangular venue, and finds the best block of
+ * adjacent seats in a single row.
+ * <p>
+ * Availability is a bitmap with one bit per seat, where every row starts on a fresh word, so runs are found a word at a time
+ * with {@link Long#numberOfTrailingZeros(long)} rather than seat by seat. On top of that a segment tree over the rows holds,
+ * for every row, its longest run and how far its most central available seat is from the center. Taking a seat or putting it
+ * back only rescans that seat's row and then updates O(log rows) tree nodes.
+ * <p>
+ * Blocks are ranked like {@link RectangularVenue#getGoodness(int, int)} ranks seats, by the sum of {@code row * row + x * x}
+ * over their seats, where {@code x} is the distance from the center of the row - and {@code row} counts from the front of
+ * the whole venue, for an index of one of the sections of a {@link SectionedVenue}. {@link #bestBlock(int)} searches the tree
+ * branch-and-bound: a group of rows can't hold a better block than one in its front row, made of the seats closest to the
+ * center that might still be free - so whole groups of rows are ruled out at once, and only a few rows are ever looked at
+ * seat by seat. Distances are measured in half seats, which makes them integers, so blocks compare exactly.
+ * <p>
+ * A {@link VenueLayout} keeps an index with all seats available, so that every performance of the layout starts out with a
+ * {@link #FreeRunIndex(FreeRunIndex) copy} of its arrays rather than building them again.
+ * <p>
+ * This class is thread-safe.
+ */
+final class FreeRunIndex {
+    /**
+     * Stands in for the distance to the most central available seat of a row that has none.
+     */
+    private static final int NO_SEAT = Integer.MAX_VALUE;
+    /**
+     * Number of rows in front of the first row of this index.
+     */
+    private final int firstRow;
+    /**
+     * Number of rows.
+     */
+    private final int numRows;
+    /**
+     * Number of seats per row.
+     */
+    private final int seatsPerRow;
+    /**
+     * Number of bitmap words per row.
+     */
+    private final int wordsPerRow;
+    /**
+     * The availability bitmap - a set bit is an available seat. Bits past the end of a row are always clear.
+     */
+    private final long[] free;
+    /**
+     * Number of leaves in the segment tree, the smallest power of two that's at least {@link #numRows}.
+     */
+    private final int numLeaves;
+    /**
+     * Segment tree (1-based, leaves at {@code numLeaves + row}) holding the longest run of available seats of every row, and
+     * the maximum of its children for every inner node.
+     */
+    private final int[] longestRuns;
+    /**
+     * Segment tree like {@link #longestRuns} holding the distance, in half seats, from the center of every row to its most
+     * central available seat ({@link #NO_SEAT} if there is none), and the minimum of its children for every inner node.
+     */
+    private final int[] centralGaps;
+
+    /**
+     * Creates an index with all seats available.
+     *
+     * @param numRows number of rows
+     * @param seatsPerRow number of seats per row
+     */
+    FreeRunIndex(final int numRows, final int seatsPerRow) {
+        this(0, numRows, seatsPerRow);
+    }
+
+    /**
+     * Creates an index with all seats available, of rows that are further back in the venue.
+     *
+     * @param firstRow number of rows in front of the first row of this index
+     * @param numRows number of rows
+     * @param seatsPerRow number of seats per row
+     */
+    FreeRunIndex(final int firstRow, final int numRows, final int seatsPerRow) {
+        checkArgument(firstRow >= 0, "firstRow must be >= 0");
+        checkArgument(numRows > 0, "numRows must be > 0");
+        checkArgument(seatsPerRow > 0, "seatsPerRow must be > 0");
+        this.firstRow = firstRow;
+        this.numRows = numRows;
+        this.seatsPerRow = seatsPerRow;
+        wordsPerRow = (seatsPerRow + Long.SIZE - 1) / Long.SIZE;
+        free = new long[numRows * wordsPerRow];
+        for (int row = 0; row < numRows; row++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                int seatsInWord = Math.min(Long.SIZE, seatsPerRow - word * Long.SIZE);
+                free[row * wordsPerRow + word] = -1L >>> (Long.SIZE - seatsInWord);
+            }
+        }
+        numLeaves = Integer.highestOneBit(Math.max(1, numRows - 1)) << 1;
+        longestRuns = new int[2 * numLeaves];
+        centralGaps = new int[2 * numLeaves];
+        Arrays.fill(centralGaps, NO_SEAT);
+        // the center seat of an odd row is right on the center, an even row has two seats half a seat either side of it
+        int centralGap = (seatsPerRow + 1) % 2;
+        for (int row = 0; row < numRows; row++) {
+            longestRuns[numLeaves + row] = seatsPerRow;
+            centralGaps[numLeaves + row] = centralGap;
+        }
+        for (int node = numLeaves - 1; node > 0; node--) {
+            updateNode(node);
+        }
+    }
+
+    /**
+     * Creates a copy of an index.
+     *
+     * @param other the index to copy
+     */
+    FreeRunIndex(final FreeRunIndex other) {
+        firstRow = other.firstRow;
+        numRows = other.numRows;
+        seatsPerRow = other.seatsPerRow;
+        wordsPerRow = other.wordsPerRow;
+        numLeaves = other.numLeaves;
+        synchronized (other) {
+            free = other.free.clone();
+            longestRuns = other.longestRuns.clone();
+            centralGaps = other.centralGaps.clone();
+        }
+    }
+
+    /**
+     * Take a seat out of the index. Does nothing if the seat isn't available.
+     *
+     * @param seat the seat index, in row-major order
+     */
+    synchronized void acquire(final int seat) {
+        checkElementIndex(seat, numRows * seatsPerRow);
+        int row = seat / seatsPerRow;
+        int col = seat % seatsPerRow;
+        free[row * wordsPerRow + col / Long.SIZE] &= ~(1L << col);
+        updateRow(row);
+    }
+
+    /**
+     * Put a seat back into the index. Does nothing if the seat is already available.
+     *
+     * @param seat the seat index, in row-major order
+     */
+    synchronized void release(final int seat) {
+        checkElementIndex(seat, numRows * seatsPerRow);
+        int row = seat / seatsPerRow;
+        int col = seat % seatsPerRow;
+        free[row * wordsPerRow + col / Long.SIZE] |= 1L << col;
+        updateRow(row);
+    }
+
+    /**
+     * The longest run of available seats anywhere in the venue.
+     *
+     * @return length of the longest run, 0 if no seats are available
+     */
+    synchronized int longestRun() {
+        return longestRuns[1];
+    }
+
+    /**
+     * The longest run of available seats in a row.
+     *
+     * @param row the row
+     * @return length of the row's longest run
+     */
+    synchronized int longestRun(final int row) {
+        return longestRuns[numLeaves + checkElementIndex(row, numRows)];
+    }
+
+    /**
+     * Find the best block of adjacent available seats in a single row - ties go to the block that comes first in row-major
+     * order.
+     *
+     * @param length the number of adjacent seats needed
+     * @return the seat index of the block's first seat, or -1 if no row has a run that's long enough
+     */
+    synchronized int bestBlock(final int length) {
+        checkArgument(length > 0, "length must be > 0");
+        BlockSearch search = new BlockSearch(length);
+        search.searchNode(1, 0, numLeaves);
+        return search.bestSeat;
+    }
+
+    /**
+     * Find the block of adjacent available seats in a row that's closest to the center of the row.
+     *
+     * @param row the row
+     * @param length the number of adjacent seats needed
+     * @return the column the most central block starts at (the leftmost one if two are equally central), or -1 if the row has
+     *         no run that's long enough
+     */
+    synchronized int mostCentralStart(final int row, final int length) {
+        checkElementIndex(row, numRows);
+        checkArgument(length > 0, "length must be > 0");
+        // a centered block starts at (seatsPerRow - length) / 2, which may be half a seat off a column - so measure in halves
+        int doubleCenteredStart = seatsPerRow - length;
+        int bestStart = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int runStart = nextFree(row, 0);
+        while (runStart < seatsPerRow) {
+            int runEnd = nextTaken(row, runStart);
+            if (runEnd - runStart >= length) {
+                int start = Math.clamp(doubleCenteredStart / 2, runStart, runEnd - length);
+                int distance = Math.abs(2 * start - doubleCenteredStart);
+                if (distance < bestDistance) {
+                    bestStart = start;
+                    bestDistance = distance;
+                }
+            }
+            runStart = nextFree(row, runEnd);
+        }
+        return bestStart;
+    }
+
+    /**
+     * Recompute the longest run and the most central available seat of a row, and propagate them up the tree.
+     *
+     * @param row the row
+     */
+    private void updateRow(final int row) {
+        int longest = 0;
+        int centralGap = NO_SEAT;
+        int runStart = nextFree(row, 0);
+        while (runStart < seatsPerRow) {
+            int runEnd = nextTaken(row, runStart);
+            longest = Math.max(longest, runEnd - runStart);
+            centralGap = Math.min(centralGap, gap(Math.clamp((seatsPerRow - 1) / 2, runStart, runEnd - 1)));
+            runStart = nextFree(row, runEnd);
+        }
+        int node = numLeaves + row;
+        longestRuns[node] = longest;
+        centralGaps[node] = centralGap;
+        for (node /= 2; node > 0; node /= 2) {
+            updateNode(node);
+        }
+    }
+
+    /**
+     * Recompute an inner node of the tree from its children.
+     *
+     * @param node the node
+     */
+    private void updateNode(final int node) {
+        longestRuns[node] = Math.max(longestRuns[2 * node], longestRuns[2 * node + 1]);
+        centralGaps[node] = Math.min(centralGaps[2 * node], centralGaps[2 * node + 1]);
+    }
+
+    /**
+     * Distance of a seat from the center of its row.
+     *
+     * @param col the seat's column
+     * @return the distance, in half seats
+     */
+    private int gap(final int col) {
+        return Math.abs(2 * col - (seatsPerRow - 1));
+    }
+
+    /**
+     * The first available seat in a row at or after a column.
+     *
+     * @param row the row
+     * @param fromCol the column to start looking at
+     * @return the seat's column, or {@code seatsPerRow} if there is none
+     */
+    private int nextFree(final int row, final int fromCol) {
+        return nextSetBit(row, fromCol, 0L);
+    }
+
+    /**
+     * The first unavailable seat in a row at or after a column.
+     *
+     * @param row the row
+     * @param fromCol the column to start looking at
+     * @return the seat's column, or {@code seatsPerRow} if there is none
+     */
+    private int nextTaken(final int row, final int fromCol) {
+        return nextSetBit(row, fromCol, -1L);
+    }
+
+    /**
+     * Find the next set bit of a row's availability bitmap, optionally inverted, a word at a time.
+     *
+     * @param row the row
+     * @param fromCol the column to start looking at
+     * @param invert 0 to look for available seats, all ones to look for unavailable ones
+     * @return the seat's column, or {@code seatsPerRow} if there is none
+     */
+    private int nextSetBit(final int row, final int fromCol, final long invert) {
+        if (fromCol >= seatsPerRow) {
+            return seatsPerRow;
+        }
+        int base = row * wordsPerRow;
+        int word = fromCol / Long.SIZE;
+        long bits = (free[base + word] ^ invert) & (-1L << fromCol);
+        while (bits == 0) {
+            word++;
+            if (word == wordsPerRow) {
+                return seatsPerRow;
+            }
+            bits = free[base + word] ^ invert;
+        }
+        // the clear padding bits at the end of a row read as unavailable seats, so cap at the row's end
+        return Math.min(word * Long.SIZE + Long.numberOfTrailingZeros(bits), seatsPerRow);
+    }
+
+    /**
+     * One branch-and-bound search for the best block of a given length. Costs are four times the goodness of a block, which
+     * makes them integers.
+     */
+    private final class BlockSearch {
+        /**
+         * The number of adjacent seats needed.
+         */
+        private final int length;
+        /**
+         * Cost of the columns of a perfectly centered block - no block's columns cost less.
+         */
+        private final long centeredCost;
+        /**
+         * Cost of the best block found so far.
+         */
+        private long bestCost = Long.MAX_VALUE;
+        /**
+         * First seat of the best block found so far, -1 if none.
+         */
+        private int bestSeat = -1;
+
+        /**
+         * Creates a new search.
+         *
+         * @param length the number of adjacent seats needed
+         */
+        BlockSearch(final int length) {
+            this.length = length;
+            centeredCost = columnCost((seatsPerRow - length) / 2);
+        }
+
+        /**
+         * Search the rows under a node of the tree, unless they can't hold a block that beats the best one found so far.
+         *
+         * @param node the tree node
+         * @param nodeStart first row covered by the node
+         * @param nodeEnd row after the last one covered by the node
+         */
+        void searchNode(final int node, final int nodeStart, final int nodeEnd) {
+            if (longestRuns[node] < length || !canBeatBest(lowerBound(node, nodeStart), nodeStart * seatsPerRow)) {
+                return;
+            }
+            if (nodeEnd - nodeStart == 1) {
+                searchRow(nodeStart);
+                return;
+            }
+            int middle = (nodeStart + nodeEnd) / 2;
+            // the more promising half first, so that the other one is more likely to be ruled out
+            if (lowerBound(2 * node + 1, middle) < lowerBound(2 * node, nodeStart)) {
+                searchNode(2 * node + 1, middle, nodeEnd);
+                searchNode(2 * node, nodeStart, middle);
+            }
+            else {
+                searchNode(2 * node, nodeStart, middle);
+                searchNode(2 * node + 1, middle, nodeEnd);
+            }
+        }
+
+        /**
+         * Find the most central block of a row, and keep it if it's the best one so far.
+         *
+         * @param row the row
+         */
+        private void searchRow(final int row) {
+            int start = mostCentralStart(row, length);
+            long cost = rowCost(row) + columnCost(start);
+            int seat = row * seatsPerRow + start;
+            if (canBeatBest(cost, seat)) {
+                bestCost = cost;
+                bestSeat = seat;
+            }
+        }
+
+        /**
+         * Whether a block, or a group of blocks, with a given cost, starting no earlier than a given seat, could be better
+         * than the best block found so far.
+         *
+         * @param cost the (least possible) cost
+         * @param seat the (first possible) seat
+         * @return {@code true} if the best block could be beaten
+         */
+        private boolean canBeatBest(final long cost, final int seat) {
+            return cost < bestCost || (cost == bestCost && seat < bestSeat);
+        }
+
+        /**
+         * The least any block in the rows under a node can cost: it's at least as far back as the node's first row, and none of
+         * its seats are closer to the center than the node's most central available seat. Unless that seat is right next to
+         * the center, a block can't straddle the center either, so it reaches out to one side.
+         *
+         * @param node the tree node
+         * @param nodeStart first row covered by the node
+         * @return the lower bound on the cost
+         */
+        private long lowerBound(final int node, final int nodeStart) {
+            int centralGap = centralGaps[node];
+            if (centralGap == NO_SEAT || nodeStart >= numRows) {
+                return Long.MAX_VALUE;
+            }
+            long columnCost = centeredCost;
+            if (centralGap > 1) {
+                columnCost = 0;
+                for (long gap = centralGap; gap < centralGap + 2L * length; gap += 2) {
+                    columnCost += gap * gap;
+                }
+            }
+            return rowCost(nodeStart) + columnCost;
+        }
+
+        /**
+         * The cost a row contributes to a block.
+         *
+         * @param row the row
+         * @return the cost
+         */
+        private long rowCost(final int row) {
+            // twice the row, since all distances are in half seats
+            long halfRows = 2L * (firstRow + row);
+            return halfRows * halfRows * length;
+        }
+
+        /**
+         * The cost the columns contribute to a block.
+         *
+         * @param start the block's first column
+         * @return the cost
+         */
+        private long columnCost(final int start) {
+            long cost = 0;
+            for (int col = start; col < start + length; col++) {
+                long gap = gap(col);
+                cost += gap * gap;
+            }
+            return cost;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.dreesbach.ticketing;
+
+/**
+ * One request in a batch passed to {@link TicketService#findAndHoldSeats(java.util.List)}.
+ *
+ * @param numSeats the number of seats to find and hold
+ * @param customerEmail unique identifier for the customer
+ */
+public record HoldRequest(int numSeats, String customerEmail) { }
@@ -0,0 +1,407 @@
+package org.dreesbach.ticketing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A concurrent map from {@code int} keys to values, for the live {@link SeatHold}s of a service (keyed by hold ID) and the
+ * reservations of a venue (keyed by packed reservation code).
+ * <p>
+ * Unlike a {@code Map<Integer, V>} nothing is ever boxed and there's no node per entry: the keys are split over a fixed
+ * number of segments by their hash, and each segment keeps its keys and values in two parallel arrays with open addressing
+ * (linear probing). Removal shifts the following entries of the probe sequence back rather than leaving tombstones, so
+ * lookups never get slower with churn. The arrays start out small and double when three quarters full, so an idle registry
+ * costs next to nothing no matter how big the venue is. Lookups, insertions and removals are O(1) and don't allocate,
+ * except for the occasional growth of a segment.
+ * <p>
+ * Each segment is its own lock, so threads only contend when their keys hash to the same segment. The key 0 marks an empty
+ * slot and can't be stored - hold IDs and reservation codes are never 0.
+ *
+ * @param <V> the type of values
+ */
+final class IntRegistry<V> {
+    /**
+     * Number of segments, a power of 2.
+     */
+    private static final int NUM_SEGMENTS = 16;
+    /**
+     * Number of slots a segment starts out with, a power of 2.
+     */
+    private static final int INITIAL_SEGMENT_CAPACITY = 8;
+    /**
+     * 2<sup>32</sup> divided by the golden ratio, to spread keys over segments and slots (Fibonacci hashing).
+     */
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    /**
+     * Number of bits of a hash that pick the segment - the top ones.
+     */
+    private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(NUM_SEGMENTS);
+    /**
+     * The segments - each one is its own lock.
+     */
+    private final Segment<V>[] segments;
+
+    /**
+     * Creates an empty registry.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    IntRegistry() {
+        segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * The hash of a key.
+     *
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(final int key) {
+        return key * GOLDEN_RATIO;
+    }
+
+    /**
+     * The segment a key belongs to.
+     *
+     * @param hash the key's hash
+     * @return the segment
+     */
+    private Segment<V> segmentFor(final int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    /**
+     * The value for a key.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if there is none
+     */
+    V get(final int key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Whether there's a value for a key.
+     *
+     * @param key the key
+     * @return {@code true} if there is
+     */
+    boolean containsKey(final int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Store a value, unless there already is one for the key.
+     *
+     * @param key the key, != 0
+     * @param value the value
+     * @return the value that was already there, or {@code null} if the given value was stored
+     */
+    V putIfAbsent(final int key, final V value) {
+        checkArgument(key != 0, "key cannot be 0");
+        checkNotNull(value, "value cannot be null");
+        int hash = hash(key);
+        return segmentFor(hash).putIfAbsent(key, hash, value);
+    }
+
+    /**
+     * Remove the value for a key.
+     *
+     * @param key the key
+     * @return the value that was removed, or {@code null} if there was none
+     */
+    V remove(final int key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Remove the value for a key, but only if it's equal to the given one.
+     *
+     * @param key the key
+     * @param value the value
+     * @return {@code true} if the value was removed
+     */
+    boolean remove(final int key, final V value) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, checkNotNull(value, "value cannot be null")) != null;
+    }
+
+    /**
+     * Number of values stored. Under concurrent modification this is only an approximation.
+     *
+     * @return the number of values
+     */
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * A snapshot of the values, segment by segment - under concurrent modification it's not a snapshot of any single point in
+     * time, but it can be iterated while the registry changes.
+     *
+     * @return the values
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Segment<V> segment : segments) {
+            segment.addValuesTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * Hand every key and its value to a visitor, segment by segment - like {@link #values()}, under concurrent modification
+     * that's not a snapshot of any single point in time. The visitor must not modify the registry.
+     *
+     * @param visitor the visitor
+     */
+    void forEach(final EntryVisitor<? super V> visitor) {
+        for (Segment<V> segment : segments) {
+            segment.forEach(visitor);
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * One segment of the registry: an open-addressing hash table, guarded by its own monitor.
+     *
+     * @param <V> the type of values
+     */
+    private static final class Segment<V> {
+        /**
+         * The keys, 0 for empty slots.
+         */
+        private int[] keys = new int[INITIAL_SEGMENT_CAPACITY];
+        /**
+         * The values, in the same slots as their keys.
+         */
+        private Object[] values = new Object[INITIAL_SEGMENT_CAPACITY];
+        /**
+         * Number of values stored.
+         */
+        private int size;
+
+        /**
+         * The slot a hash is probed from.
+         *
+         * @param hash the hash
+         * @param mask the number of slots minus 1
+         * @return the slot
+         */
+        private static int homeSlot(final int hash, final int mask) {
+            // the top bits pick the segment, so take the ones right below those
+            return (hash << SEGMENT_BITS) >>> Integer.numberOfLeadingZeros(mask);
+        }
+
+        /**
+         * The slot of a key.
+         *
+         * @param key the key
+         * @param hash the key's hash
+         * @return the slot, or -1 if the key isn't there
+         */
+        private int slotOf(final int key, final int hash) {
+            int mask = keys.length - 1;
+            for (int slot = homeSlot(hash, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * See {@link IntRegistry#get(int)}.
+         *
+         * @param key the key
+         * @param hash the key's hash
+         * @return the value, or {@code null}
+         */
+        @SuppressWarnings("unchecked")
+        synchronized V get(final int key, final int hash) {
+            int slot = slotOf(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            return (V) values[slot];
+        }
+
+        /**
+         * See {@link IntRegistry#putIfAbsent(int, Object)}.
+         *
+         * @param key the key
+         * @param hash the key's hash
+         * @param value the value
+         * @return the value that was already there, or {@code null}
+         */
+        @SuppressWarnings("unchecked")
+        synchronized V putIfAbsent(final int key, final int hash, final V value) {
+            int existing = slotOf(key, hash);
+            if (existing >= 0) {
+                return (V) values[existing];
+            }
+            // grow at a load factor of 3/4, keeping probe sequences short
+            if (size + 1 > keys.length - (keys.length >>> 2)) {
+                grow();
+            }
+            insert(key, hash, value);
+            size++;
+            return null;
+        }
+
+        /**
+         * Put a key that isn't there yet into its first free slot.
+         *
+         * @param key the key
+         * @param hash the key's hash
+         * @param value the value
+         */
+        private void insert(final int key, final int hash, final Object value) {
+            int mask = keys.length - 1;
+            int slot = homeSlot(hash, mask);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        /**
+         * Double the number of slots.
+         */
+        private void grow() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(oldKeys[i], hash(oldKeys[i]), oldValues[i]);
+                }
+            }
+        }
+
+        /**
+         * See {@link IntRegistry#remove(int)} and {@link IntRegistry#remove(int, Object)}.
+         *
+         * @param key the key
+         * @param hash the key's hash
+         * @param expected the value to remove, or {@code null} to remove whatever is there
+         * @return the value that was removed, or {@code null} if nothing was
+         */
+        @SuppressWarnings("unchecked")
+        synchronized V remove(final int key, final int hash, final V expected) {
+            int slot = slotOf(key, hash);
+            if (slot < 0 || (expected != null && !expected.equals(values[slot]))) {
+                return null;
+            }
+            V removed = (V) values[slot];
+            closeGap(slot);
+            size--;
+            return removed;
+        }
+
+        /**
+         * Empty a slot, moving entries further along the probe sequence back into it where that's closer to their home slot,
+         * so that no lookup ever stops short at the gap.
+         *
+         * @param slot the slot to empty
+         */
+        private void closeGap(final int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int home = homeSlot(hash(keys[next]), mask);
+                // the entry can move into the gap if the gap lies between its home slot and where it is now
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+        }
+
+        /**
+         * Number of values stored.
+         *
+         * @return the number of values
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Add all values to a list.
+         *
+         * @param list the list
+         */
+        @SuppressWarnings("unchecked")
+        synchronized void addValuesTo(final List<V> list) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    list.add((V) values[i]);
+                }
+            }
+        }
+
+        /**
+         * See {@link IntRegistry#forEach(EntryVisitor)}.
+         *
+         * @param visitor the visitor
+         */
+        @SuppressWarnings("unchecked")
+        synchronized void forEach(final EntryVisitor<? super V> visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    visitor.visit(keys[i], (V) values[i]);
+                }
+            }
+        }
+
+        /**
+         * Remove all values, shrinking back to the initial number of slots.
+         */
+        synchronized void clear() {
+            keys = new int[INITIAL_SEGMENT_CAPACITY];
+            values = new Object[INITIAL_SEGMENT_CAPACITY];
+            size = 0;
+        }
+    }
+
+    /**
+     * Visits the entries of a registry, see {@link IntRegistry#forEach(EntryVisitor)}.
+     *
+     * @param <V> the type of values
+     */
+    @FunctionalInterface
+    interface EntryVisitor<V> {
+        /**
+         * Visit an entry.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void visit(int key, V value);
+    }
+}
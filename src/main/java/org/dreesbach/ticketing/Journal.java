@@ -0,0 +1,531 @@
+package org.dreesbach.ticketing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An append-only log of every change to the seats of a {@link RectangularVenue} - holds, reservations, released holds and
+ * cancelled reservations - so that the venue can be brought back after a restart, see
+ * {@link RectangularVenue#recover(Journal)}.
+ * <p>
+ * Records are appended to an in-memory buffer under this journal's monitor, which only takes a few dozen nanoseconds, and
+ * written to the file in batches through a {@link FileChannel} (group commit): whoever commits writes out everything
+ * appended so far with a single write, and forces it to the device with a single {@link FileChannel#force(boolean)}. How
+ * often that happens, and whether callers wait for it, is up to the {@link Durability}. Each record carries its length and
+ * a CRC32C checksum, so a record that was only partly written when the process died is recognized - the journal is cut
+ * off right before it when it is opened again.
+ * <p>
+ * On disk, the file starts with a magic number and a version, followed by the records. Each record is its payload's length
+ * and checksum followed by the payload: a type byte and the event's fields, see {@link JournalEvents}.
+ */
+final class Journal implements JournalEvents, AutoCloseable {
+    /**
+     * How often records are committed in the background by default, unless every operation commits its own.
+     */
+    static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(10);
+    /**
+     * Marks a file as a journal - "TKTJ" in ASCII.
+     */
+    private static final int MAGIC = 0x544B544A;
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of the file header: the magic number and the version.
+     */
+    private static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+    /**
+     * Size of a record's header: the payload's length and checksum.
+     */
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    /**
+     * Size the append buffers start out with - they double whenever a record doesn't fit.
+     */
+    private static final int INITIAL_BUFFER_BYTES = 65_536;
+    /**
+     * Record type of {@link JournalEvents#held(int, long, int[])}.
+     */
+    private static final byte HELD = 1;
+    /**
+     * Record type of {@link JournalEvents#reserved(int, int)}.
+     */
+    private static final byte RESERVED = 2;
+    /**
+     * Record type of {@link JournalEvents#released(int)}.
+     */
+    private static final byte RELEASED = 3;
+    /**
+     * Record type of {@link JournalEvents#cancelled(int)}.
+     */
+    private static final byte CANCELLED = 4;
+    /**
+     * The journal file.
+     */
+    private final FileChannel channel;
+    /**
+     * When records are written and forced to the device.
+     */
+    private final Durability durability;
+    /**
+     * Where the records that were in the file when it was opened end, i.e. the ones to {@link #replay(JournalEvents)}.
+     */
+    private final long recoveredEnd;
+    /**
+     * Computes the records' checksums. Guarded by this journal's monitor.
+     */
+    private final CRC32C checksum = new CRC32C();
+    /**
+     * Records appended but not yet handed to a commit. Guarded by this journal's monitor.
+     */
+    private ByteBuffer pending = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+    /**
+     * Position in the file right after the last record appended. Guarded by this journal's monitor.
+     */
+    private long appended;
+    /**
+     * Whether {@link #close()} has been called. Guarded by this journal's monitor.
+     */
+    private boolean closed;
+    /**
+     * Held while committing, so that there's only ever one commit at a time - the ones that come in meanwhile find their
+     * records already committed, or all commit together next.
+     */
+    private final Object commitLock = new Object();
+    /**
+     * The buffer being written out by a commit, swapped with {@link #pending}. Guarded by {@link #commitLock}.
+     */
+    private ByteBuffer committing = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+    /**
+     * Position in the file right after the last record committed. Guarded by {@link #commitLock}.
+     */
+    private long committed;
+    /**
+     * Position in the file right after the last record forced to the device. Guarded by {@link #commitLock}.
+     */
+    private long forced;
+    /**
+     * The first failure writing to the file. Once there is one, the journal stays failed.
+     */
+    private volatile IOException failure;
+    /**
+     * Commits in the background, unless every operation commits its own.
+     */
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Opens a journal, committing every {@link #DEFAULT_COMMIT_INTERVAL} unless every operation commits its own.
+     *
+     * @param path the journal file - created if it doesn't exist
+     * @param durability when records are written and forced to the device
+     * @throws IOException if the file can't be opened, or isn't a journal
+     */
+    Journal(final Path path, final Durability durability) throws IOException {
+        this(path, durability, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * Opens a journal. Should the last record be incomplete or corrupt, the file is cut off right before it.
+     *
+     * @param path the journal file - created if it doesn't exist
+     * @param durability when records are written and forced to the device
+     * @param commitInterval how often to commit in the background, unless every operation commits its own
+     * @throws IOException if the file can't be opened, or isn't a journal
+     */
+    Journal(final Path path, final Durability durability, final Duration commitInterval) throws IOException {
+        checkNotNull(path, "path cannot be null");
+        this.durability = checkNotNull(durability, "durability cannot be null");
+        checkNotNull(commitInterval, "commitInterval cannot be null");
+        checkArgument(!(commitInterval.isNegative() || commitInterval.isZero()), "commitInterval must be > 0");
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recoveredEnd = openLog();
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        appended = recoveredEnd;
+        committed = recoveredEnd;
+        forced = recoveredEnd;
+        if (durability == Durability.PER_OP) {
+            committer = null;
+        }
+        else {
+            committer = new ScheduledThreadPoolExecutor(1);
+            var _ = committer.scheduleWithFixedDelay(this::commitInBackground,
+                    commitInterval.toNanos(),
+                    commitInterval.toNanos(),
+                    TimeUnit.NANOSECONDS
+            );
+        }
+    }
+
+    /**
+     * Write the file header if the file is new, otherwise check it and find where the last intact record ends, cutting off
+     * anything after it.
+     *
+     * @return the position right after the last intact record
+     * @throws IOException if the file can't be read or written, or isn't a journal
+     */
+    private long openLog() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            return FILE_HEADER_BYTES;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal of " + size + " bytes is too large to replay");
+        }
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (size < FILE_HEADER_BYTES || log.getInt(0) != MAGIC) {
+            throw new IOException("Not a journal");
+        }
+        if (log.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported journal version " + log.getInt(Integer.BYTES));
+        }
+        long end = scan(log, null);
+        if (end < size) {
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return end;
+    }
+
+    /**
+     * Go through the intact records of a journal, in order.
+     *
+     * @param log the journal, starting with its file header
+     * @param events where to hand the records to, or {@code null} to only check them
+     * @return the position right after the last intact record
+     */
+    private static long scan(final ByteBuffer log, final JournalEvents events) {
+        return scan(log, FILE_HEADER_BYTES, events);
+    }
+
+    /**
+     * Go through the intact records of a journal from some position on, in order.
+     *
+     * @param log the journal, starting with its file header
+     * @param from where the first record starts
+     * @param events where to hand the records to, or {@code null} to only check them
+     * @return the position right after the last intact record
+     */
+    private static long scan(final ByteBuffer log, final int from, final JournalEvents events) {
+        CRC32C crc = new CRC32C();
+        int position = from;
+        while (log.limit() - position >= RECORD_HEADER_BYTES) {
+            int length = log.getInt(position);
+            int start = position + RECORD_HEADER_BYTES;
+            if (length <= 0 || length > log.limit() - start) {
+                break;
+            }
+            ByteBuffer payload = log.slice(start, length);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != log.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            if (events != null) {
+                dispatch(payload.rewind(), events);
+            }
+            position = start + length;
+        }
+        return position;
+    }
+
+    /**
+     * Hand a record to the matching method.
+     *
+     * @param payload the record's payload
+     * @param events where to hand it to
+     */
+    private static void dispatch(final ByteBuffer payload, final JournalEvents events) {
+        byte type = payload.get();
+        switch (type) {
+            case HELD -> {
+                int holdId = payload.getInt();
+                long expiresAtMillis = payload.getLong();
+                int[] seatIndexes = new int[payload.getInt()];
+                payload.asIntBuffer().get(seatIndexes);
+                events.held(holdId, expiresAtMillis, seatIndexes);
+            }
+            case RESERVED -> events.reserved(payload.getInt(), payload.getInt());
+            case RELEASED -> events.released(payload.getInt());
+            case CANCELLED -> events.cancelled(payload.getInt());
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Hand the records that were in the file when it was opened to a listener, in order. Must be done before anything is
+     * appended.
+     *
+     * @param events the listener
+     * @throws IOException if the file can't be read
+     */
+    void replay(final JournalEvents events) throws IOException {
+        replay(FILE_HEADER_BYTES, events);
+    }
+
+    /**
+     * Hand the records that were in the file when it was opened to a listener, in order, starting at some {@link #position()}
+     * - e.g. the one a {@link VenueSnapshot} was taken at. Must be done before anything is appended.
+     *
+     * @param from a position this journal was at before, at most where the records in the file end
+     * @param events the listener
+     * @throws IOException if the file can't be read
+     */
+    synchronized void replay(final long from, final JournalEvents events) throws IOException {
+        checkNotNull(events, "events cannot be null");
+        checkState(appended == recoveredEnd, "The journal must be replayed before anything is appended to it");
+        checkArgument(from >= FILE_HEADER_BYTES && from <= recoveredEnd,
+                "Position %s is outside of the journal, which ends at %s",
+                from,
+                recoveredEnd
+        );
+        var _ = scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, recoveredEnd), (int) from, events);
+    }
+
+    /**
+     * Position in the file right after the last record appended so far - the state of a venue at this point is the one
+     * replaying up to here yields.
+     *
+     * @return the position
+     */
+    synchronized long position() {
+        return appended;
+    }
+
+    @Override
+    public synchronized void held(final int holdId, final long expiresAtMillis, final int[] seatIndexes) {
+        int start = beginRecord(Byte.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + seatIndexes.length * Integer.BYTES);
+        pending.put(HELD).putInt(holdId).putLong(expiresAtMillis).putInt(seatIndexes.length);
+        for (int seatIndex : seatIndexes) {
+            pending.putInt(seatIndex);
+        }
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void reserved(final int holdId, final int reservationCode) {
+        int start = beginRecord(Byte.BYTES + 2 * Integer.BYTES);
+        pending.put(RESERVED).putInt(holdId).putInt(reservationCode);
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void released(final int holdId) {
+        int start = beginRecord(Byte.BYTES + Integer.BYTES);
+        pending.put(RELEASED).putInt(holdId);
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void cancelled(final int reservationCode) {
+        int start = beginRecord(Byte.BYTES + Integer.BYTES);
+        pending.put(CANCELLED).putInt(reservationCode);
+        endRecord(start);
+    }
+
+    /**
+     * Make room for a record in {@link #pending} and write its header, with a placeholder for the checksum. Only call this
+     * holding this journal's monitor.
+     *
+     * @param length length of the record's payload
+     * @return where the record starts in {@link #pending}
+     */
+    private int beginRecord(final int length) {
+        checkState(!closed, "Journal is closed");
+        if (pending.remaining() < RECORD_HEADER_BYTES + length) {
+            int capacity = pending.capacity();
+            while (capacity - pending.position() < RECORD_HEADER_BYTES + length) {
+                capacity *= 2;
+            }
+            pending = ByteBuffer.allocateDirect(capacity).put(pending.flip());
+        }
+        int start = pending.position();
+        pending.putInt(length).putInt(0);
+        return start;
+    }
+
+    /**
+     * Fill in the checksum of the record that was just written to {@link #pending}. Only call this holding this journal's
+     * monitor.
+     *
+     * @param start where the record starts in {@link #pending}
+     */
+    private void endRecord(final int start) {
+        int payloadStart = start + RECORD_HEADER_BYTES;
+        int length = pending.position() - payloadStart;
+        checksum.reset();
+        checksum.update(pending.slice(payloadStart, length));
+        pending.putInt(start + Integer.BYTES, (int) checksum.getValue());
+        appended += RECORD_HEADER_BYTES + length;
+    }
+
+    /**
+     * Make sure the records appended so far are as durable as the {@link Durability} promises: with
+     * {@link Durability#PER_OP} this waits until they've been forced to the device, otherwise it returns straight away.
+     *
+     * @throws UncheckedIOException if writing to the file has failed, now or before
+     */
+    void sync() {
+        if (durability == Durability.PER_OP) {
+            try {
+                commit(position(), true);
+            }
+            catch (IOException e) {
+                fail(e);
+            }
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("Writing to the journal failed", failed);
+        }
+    }
+
+    /**
+     * Remember the first failure writing to the file.
+     *
+     * @param e the failure
+     */
+    private void fail(final IOException e) {
+        synchronized (commitLock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Write out all records appended so far and force them to the device, whatever the {@link Durability}.
+     *
+     * @throws IOException if writing to the file fails, now or before
+     */
+    void force() throws IOException {
+        commit(position(), true);
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IOException("Writing to the journal failed", failed);
+        }
+    }
+
+    /**
+     * Write out all records appended so far and, if asked to, force them to the device - unless a commit that has already
+     * finished covered them. Records appended while a commit is in progress are all covered by the next one. Once writing
+     * has failed, nothing is written anymore.
+     *
+     * @param upTo position in the file right after the last record to commit
+     * @param force whether to force the records to the device
+     * @throws IOException if writing to the file fails
+     */
+    private void commit(final long upTo, final boolean force) throws IOException {
+        synchronized (commitLock) {
+            if (failure != null || (committed >= upTo && (!force || forced >= upTo))) {
+                return;
+            }
+            if (committed < upTo) {
+                long end;
+                synchronized (this) {
+                    ByteBuffer full = pending;
+                    pending = committing;
+                    committing = full;
+                    end = appended;
+                }
+                committing.flip();
+                while (committing.hasRemaining()) {
+                    channel.write(committing);
+                }
+                committing.clear();
+                committed = end;
+            }
+            if (force) {
+                channel.force(false);
+                forced = committed;
+            }
+        }
+    }
+
+    /**
+     * Commit whatever has been appended, as the background {@link #committer}.
+     */
+    private void commitInBackground() {
+        try {
+            commit(position(), durability == Durability.BATCHED);
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Commits whatever has been appended - forcing it to the device, unless the durability is {@link Durability#NONE} - and
+     * closes the file. Nothing can be appended anymore afterwards.
+     *
+     * @throws IOException if writing to the file fails, or failed before
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (committer != null) {
+            committer.shutdown();
+        }
+        try {
+            commit(position(), durability != Durability.NONE);
+        }
+        finally {
+            synchronized (commitLock) {
+                channel.close();
+            }
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IOException("Writing to the journal failed", failed);
+        }
+    }
+
+    /**
+     * When records are written to the file and forced to the device - the trade-off between how much can be lost in a crash
+     * and how long each operation takes.
+     */
+    enum Durability {
+        /**
+         * Records are written to the file in the background every commit interval, but never forced to the device. They
+         * survive the process dying once written, but not the machine going down. Operations never wait.
+         */
+        NONE,
+        /**
+         * Records are written to the file and forced to the device in the background every commit interval, so at most the
+         * last interval's worth is lost in a crash. Operations never wait.
+         */
+        BATCHED,
+        /**
+         * Every operation waits until its records have been forced to the device. Operations that come in while a force is
+         * in progress are all covered by the next one, so under load the cost of forcing is spread over many of them.
+         */
+        PER_OP
+    }
+}
@@ -0,0 +1,38 @@
+package org.dreesbach.ticketing;
+
+/**
+ * The events recorded in a journal. Appending them is what {@link Journal} does with them; when the journal is replayed
+ * they're handed to another implementation, in the order they were appended.
+ */
+interface JournalEvents {
+    /**
+     * Seats were held.
+     *
+     * @param holdId ID of the {@link SeatHold}
+     * @param expiresAtMillis when the hold expires, in milliseconds since the epoch
+     * @param seatIndexes indexes of the seats held
+     */
+    void held(int holdId, long expiresAtMillis, int[] seatIndexes);
+
+    /**
+     * The seats of a hold were reserved.
+     *
+     * @param holdId ID of the {@link SeatHold}
+     * @param reservationCode the packed reservation code, see {@link org.dreesbach.ticketing.id.IdGenerator}
+     */
+    void reserved(int holdId, int reservationCode);
+
+    /**
+     * A hold was released, e.g. because it expired.
+     *
+     * @param holdId ID of the {@link SeatHold}
+     */
+    void released(int holdId);
+
+    /**
+     * A reservation was cancelled.
+     *
+     * @param reservationCode the packed reservation code
+     */
+    void cancelled(int reservationCode);
+}
@@ -0,0 +1,169 @@
+package org.dreesbach.ticketing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A histogram of latencies in nanoseconds, with log-linear buckets in the manner of an HDR histogram: every power of two is
+ * split into {@value #SUB_BUCKETS} buckets of equal width, so every recorded value is known to within ~1.6% over the whole
+ * range of {@code long}, in a fixed array of counts.
+ * <p>
+ * Recording is a single atomic increment of the value's bucket, and allocates nothing, so any number of threads can record
+ * at once. Everything else - the count, the mean, the percentiles - is worked out from the buckets when it's pulled, so it
+ * may miss a recording that is in progress - fine for monitoring.
+ */
+public final class LatencyHistogram {
+    /**
+     * Number of bits of a value that determine its bucket.
+     */
+    private static final int PRECISION_BITS = 7;
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << (PRECISION_BITS - 1);
+    /**
+     * Number of buckets in all: values below {@code 2^PRECISION_BITS} have a bucket each, then every power of two up to
+     * {@code 2^62} has {@link #SUB_BUCKETS}.
+     */
+    private static final int NUM_BUCKETS = (Long.SIZE + 1 - PRECISION_BITS) * SUB_BUCKETS;
+    /**
+     * Number of percent in the whole.
+     */
+    private static final double ONE_HUNDRED_PERCENT = 100.0;
+    /**
+     * Number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    /**
+     * Highest value recorded.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency - negative ones (from a clock going backwards) count as 0
+     */
+    void record(final long nanos) {
+        long value = Math.max(nanos, 0L);
+        counts.getAndIncrement(bucket(value));
+        long highest = max.get();
+        while (value > highest && !max.compareAndSet(highest, value)) {
+            highest = max.get();
+        }
+    }
+
+    /**
+     * The bucket a value falls into.
+     *
+     * @param value the value, >= 0
+     * @return the index of the bucket
+     */
+    static int bucket(final long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - PRECISION_BITS + 1;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * The lowest value that falls into a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the lowest value
+     */
+    static long lowestValue(final int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return highestValue(bucket - 1) + 1;
+    }
+
+    /**
+     * The highest value that falls into a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest value
+     */
+    static long highestValue(final int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Number of latencies recorded.
+     *
+     * @return the count
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Mean of the latencies recorded, taking every latency to be in the middle of its bucket.
+     *
+     * @return the mean in nanoseconds, 0 if none were recorded
+     */
+    public double meanNanos() {
+        long count = 0;
+        double sum = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                count += bucketCount;
+                sum += bucketCount * (highestValue(i) / 2.0 + lowestValue(i) / 2.0);
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        return sum / count;
+    }
+
+    /**
+     * Highest latency recorded.
+     *
+     * @return the highest latency in nanoseconds, 0 if none were recorded
+     */
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * The latency that a percentage of the recorded latencies are at or below, e.g. 99 for the 99th percentile.
+     *
+     * @param percentile the percentage, from 0 to 100 (inclusive)
+     * @return the highest latency of the bucket the percentile falls into, in nanoseconds (at most {@link #maxNanos()}), 0 if
+     *         none were recorded
+     */
+    public long valueAtPercentile(final double percentile) {
+        checkArgument(percentile >= 0 && percentile <= ONE_HUNDRED_PERCENT, "percentile must be between 0 and 100 (inclusive)");
+        long[] snapshot = new long[NUM_BUCKETS];
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / ONE_HUNDRED_PERCENT * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), maxNanos());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,170 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * How a {@link TicketService} held up under a {@link LoadSimulator} run. Its {@link #toString()} is the report to print.
+ *
+ * @param elapsed how long the run took, from the start of the on-sale until the last buyer was done
+ * @param sellOutTime when the first buyer found no seats left, or {@code null} if none did
+ * @param buyers number of buyers that arrived
+ * @param turnedAway number of buyers that found no seats left
+ * @param abandoned number of buyers that walked off without holding seats
+ * @param seatsHeld number of seats held
+ * @param seatsReserved number of seats reserved
+ * @param seatsLost number of seats held but never reserved, which were left to expire
+ * @param latencies the latencies of the calls of each kind that succeeded
+ * @param failures the number of calls of each kind that failed
+ */
+public record LoadReport(
+        Duration elapsed,
+        Duration sellOutTime,
+        long buyers,
+        long turnedAway,
+        long abandoned,
+        long seatsHeld,
+        long seatsReserved,
+        long seatsLost,
+        Map<LoadSimulator.Operation, LatencyHistogram> latencies,
+        Map<LoadSimulator.Operation, Long> failures
+) {
+    /**
+     * Percentiles shown in the report.
+     */
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    /**
+     * Number of nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * Number of nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Check the report, and keep copies of the maps that can't be changed.
+     *
+     * @param elapsed how long the run took, from the start of the on-sale until the last buyer was done
+     * @param sellOutTime when the first buyer found no seats left, or {@code null} if none did
+     * @param buyers number of buyers that arrived
+     * @param turnedAway number of buyers that found no seats left
+     * @param abandoned number of buyers that walked off without holding seats
+     * @param seatsHeld number of seats held
+     * @param seatsReserved number of seats reserved
+     * @param seatsLost number of seats held but never reserved, which were left to expire
+     * @param latencies the latencies of the calls of each kind that succeeded
+     * @param failures the number of calls of each kind that failed
+     */
+    public LoadReport {
+        checkNotNull(elapsed, "elapsed cannot be null");
+        latencies = Collections.unmodifiableMap(new EnumMap<>(checkNotNull(latencies, "latencies cannot be null")));
+        failures = Collections.unmodifiableMap(new EnumMap<>(checkNotNull(failures, "failures cannot be null")));
+    }
+
+    /**
+     * Number of calls of a kind that succeeded.
+     *
+     * @param operation the kind of call
+     * @return number of calls
+     */
+    public long count(final LoadSimulator.Operation operation) {
+        return latencies.get(operation).count();
+    }
+
+    /**
+     * Reservations per second while there were seats to sell: up to the {@link #sellOutTime() sell-out}, or over the whole
+     * run if there was none.
+     *
+     * @return reservations per second
+     */
+    public double reservationsPerSecond() {
+        Duration selling = elapsed;
+        if (sellOutTime != null) {
+            selling = sellOutTime;
+        }
+        return perSecond(count(LoadSimulator.Operation.RESERVE), selling);
+    }
+
+    /**
+     * Calls per second over the whole run, of all kinds, whether they succeeded or not.
+     *
+     * @return calls per second
+     */
+    public double operationsPerSecond() {
+        long numCalls = 0;
+        for (LoadSimulator.Operation operation : LoadSimulator.Operation.values()) {
+            numCalls += count(operation) + failures.get(operation);
+        }
+        return perSecond(numCalls, elapsed);
+    }
+
+    /**
+     * The rate of events over a period of time.
+     *
+     * @param count number of events
+     * @param period the period
+     * @return events per second, or 0 for no time at all
+     */
+    private static double perSecond(final long count, final Duration period) {
+        if (period.isZero()) {
+            return 0;
+        }
+        return count * NANOS_PER_SECOND / period.toNanos();
+    }
+
+    /**
+     * The report, e.g.
+     * <pre>
+     * 50000 buyers in 10.412 s, sold out after 3.208 s: 0 turned away, 2500 walked off
+     * 61000 seats held, 54900 reserved, 6100 lost to expiry
+     * 4276.9 reservations/s sustained, 13521.4 calls/s
+     * AVAILABILITY    50000 ok      0 failed  p50 1.2 us  p99 35.6 us  p99.9 120.3 us  max 410.9 us
+     * ...
+     * </pre>
+     *
+     * @return the report
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d buyers in %.3f s", buyers, elapsed.toNanos() / NANOS_PER_SECOND));
+        if (sellOutTime != null) {
+            report.append(String.format(", sold out after %.3f s", sellOutTime.toNanos() / NANOS_PER_SECOND));
+        }
+        report.append(String.format(": %d turned away, %d walked off%n", turnedAway, abandoned))
+                .append(String.format("%d seats held, %d reserved, %d lost to expiry%n", seatsHeld, seatsReserved, seatsLost))
+                .append(String.format("%.1f reservations/s sustained, %.1f calls/s%n",
+                        reservationsPerSecond(),
+                        operationsPerSecond()
+                ));
+        for (LoadSimulator.Operation operation : LoadSimulator.Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            report.append(String.format("%-12s %8d ok %6d failed", operation, histogram.count(), failures.get(operation)));
+            for (double percentile : PERCENTILES) {
+                report.append(String.format("  p%s %.1f us", formatPercentile(percentile),
+                        histogram.valueAtPercentile(percentile) / NANOS_PER_MICRO
+                ));
+            }
+            report.append(String.format("  max %.1f us%n", histogram.maxNanos() / NANOS_PER_MICRO));
+        }
+        return report.toString();
+    }
+
+    /**
+     * A percentile without trailing zeros, e.g. {@code 99.9} or {@code 50}.
+     *
+     * @param percentile the percentile
+     * @return the formatted percentile
+     */
+    private static String formatPercentile(final double percentile) {
+        if (percentile == Math.rint(percentile)) {
+            return Long.toString((long) percentile);
+        }
+        return Double.toString(percentile);
+    }
+}
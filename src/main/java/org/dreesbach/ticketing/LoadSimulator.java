@@ -0,0 +1,692 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Puts a {@link TicketService} through a synthetic on-sale - thousands of buyers arriving within seconds, each on a virtual
+ * thread of its own - and reports how it held up, see {@link LoadReport}. Only the public {@link TicketService} methods
+ * are used, so any implementation can be simulated.
+ * <p>
+ * Every buyer goes through the same funnel: they look at the {@link TicketService#numSeatsAvailable() number of seats
+ * available} and leave if there are none; a share of them walks off right away (the abandonment rate); the others
+ * {@link TicketService#findAndHoldSeats(int, String) hold} seats for their group; a share of the holds is
+ * {@link TicketService#reserveSeats(int, String) reserved} after the buyer has thought about it for a while (the
+ * conversion rate), and the rest are left to expire, and their seats are lost to the on-sale until they do.
+ * <p>
+ * Buyers arrive either open-loop, following an {@link ArrivalRate} no matter how fast the service answers - like real
+ * buyers, who don't wait for each other - or closed-loop, from a fixed number of clients that start a new buyer as soon as
+ * the last one is done. Open-loop latencies of the first call of every buyer are measured from when the buyer was due to
+ * arrive rather than from when the call was made, so a service that falls behind can't hide it by slowing down the
+ * arrivals.
+ */
+public final class LoadSimulator {
+    /**
+     * Email address all buyers hold and reserve with.
+     */
+    static final String CUSTOMER_EMAIL = "load.simulator@example.com";
+    /**
+     * Default length of the on-sale.
+     */
+    static final Duration DEFAULT_DURATION = Duration.ofMinutes(1);
+    /**
+     * How far the clock moves on while nobody arrives, in seconds.
+     */
+    private static final double IDLE_TICK = 0.001;
+    /**
+     * Number of nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * How buyers arrive, or {@code null} for closed-loop clients.
+     */
+    private final ArrivalRate arrivalRate;
+    /**
+     * Number of closed-loop clients.
+     */
+    private final int numClients;
+    /**
+     * How long buyers keep arriving.
+     */
+    private final Duration duration;
+    /**
+     * Most buyers that arrive.
+     */
+    private final long maxBuyers;
+    /**
+     * How large the buyers' groups are.
+     */
+    private final GroupSizes groupSizes;
+    /**
+     * Share of buyers that leave without holding seats.
+     */
+    private final double abandonmentRate;
+    /**
+     * Share of holds that get reserved.
+     */
+    private final double conversionRate;
+    /**
+     * Longest a buyer thinks before reserving.
+     */
+    private final Duration thinkTime;
+
+    /**
+     * Creates a simulator from its builder.
+     *
+     * @param builder the builder
+     */
+    private LoadSimulator(final Builder builder) {
+        arrivalRate = builder.arrivalRate;
+        numClients = builder.numClients;
+        duration = builder.duration;
+        maxBuyers = builder.maxBuyers;
+        groupSizes = builder.groupSizes;
+        abandonmentRate = builder.abandonmentRate;
+        conversionRate = builder.conversionRate;
+        thinkTime = builder.thinkTime;
+    }
+
+    /**
+     * Start building a simulation of buyers who arrive on their own schedule.
+     *
+     * @param arrivalRate how many buyers arrive per second over time
+     * @return the builder
+     */
+    public static Builder openLoop(final ArrivalRate arrivalRate) {
+        return new Builder(checkNotNull(arrivalRate, "arrivalRate cannot be null"), 0);
+    }
+
+    /**
+     * Start building a simulation of clients that each send one buyer after another.
+     *
+     * @param numClients number of clients
+     * @return the builder
+     */
+    public static Builder closedLoop(final int numClients) {
+        checkArgument(numClients > 0, "numClients must be > 0");
+        return new Builder(null, numClients);
+    }
+
+    /**
+     * Run the on-sale against a service, until buyers stop arriving and the last of them is done.
+     *
+     * @param service the service
+     * @return how it went
+     */
+    public LoadReport run(final TicketService service) {
+        Run run = new Run(checkNotNull(service, "service cannot be null"));
+        try (ExecutorService buyers = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (arrivalRate == null) {
+                for (int i = 0; i < numClients; i++) {
+                    buyers.execute(() -> client(run));
+                }
+            }
+            else {
+                arrive(run, buyers);
+            }
+        }
+        return run.report();
+    }
+
+    /**
+     * Let buyers arrive at the {@link #arrivalRate}, with exponentially distributed gaps between them like any Poisson
+     * process, each on a virtual thread of its own.
+     *
+     * @param run the run
+     * @param buyers where the buyers run
+     */
+    private void arrive(final Run run, final ExecutorService buyers) {
+        RandomGenerator random = ThreadLocalRandom.current();
+        long endNanos = run.getStartNanos() + duration.toNanos();
+        double elapsed = 0;
+        while (true) {
+            double rate = arrivalRate.perSecond(elapsed);
+            if (rate <= 0) {
+                elapsed += IDLE_TICK;
+            }
+            else {
+                elapsed += -Math.log(1 - random.nextDouble()) / rate;
+            }
+            long arrivalNanos = run.getStartNanos() + (long) (elapsed * NANOS_PER_SECOND);
+            if (arrivalNanos - endNanos >= 0) {
+                // nobody else arrives, but the on-sale lasts as long as it lasts
+                parkUntil(endNanos);
+                return;
+            }
+            if (rate > 0) {
+                if (!run.claimBuyer()) {
+                    return;
+                }
+                parkUntil(arrivalNanos);
+                buyers.execute(() -> buyer(run, arrivalNanos));
+            }
+        }
+    }
+
+    /**
+     * Wait for a point in time.
+     *
+     * @param nanos the point in time, in terms of {@link System#nanoTime()}
+     */
+    private static void parkUntil(final long nanos) {
+        for (long wait = nanos - System.nanoTime(); wait > 0; wait = nanos - System.nanoTime()) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Send one buyer after another, until the on-sale is over.
+     *
+     * @param run the run
+     */
+    private void client(final Run run) {
+        while (!run.isOver(System.nanoTime()) && run.claimBuyer()) {
+            buyer(run, System.nanoTime());
+        }
+    }
+
+    /**
+     * Take a buyer through the funnel.
+     *
+     * @param run the run
+     * @param arrivalNanos when the buyer arrived, or was due to
+     */
+    private void buyer(final Run run, final long arrivalNanos) {
+        RandomGenerator random = ThreadLocalRandom.current();
+        TicketService service = run.getService();
+        int numSeatsAvailable;
+        try {
+            numSeatsAvailable = service.numSeatsAvailable();
+        }
+        catch (RuntimeException e) {
+            run.failed(Operation.AVAILABILITY);
+            return;
+        }
+        run.record(Operation.AVAILABILITY, arrivalNanos);
+        if (numSeatsAvailable == 0) {
+            run.turnedAway();
+            return;
+        }
+        if (random.nextDouble() < abandonmentRate) {
+            run.walkedOff();
+            return;
+        }
+        long holdNanos = System.nanoTime();
+        SeatHold seatHold;
+        try {
+            seatHold = service.findAndHoldSeats(groupSizes.next(random), CUSTOMER_EMAIL);
+        }
+        catch (RuntimeException e) {
+            run.failed(Operation.HOLD);
+            return;
+        }
+        run.record(Operation.HOLD, holdNanos);
+        if (seatHold == null || seatHold.getNumSeatsHeld() == 0) {
+            run.turnedAway();
+            return;
+        }
+        int numSeats = seatHold.getNumSeatsHeld();
+        run.held(numSeats);
+        if (random.nextDouble() >= conversionRate) {
+            run.lost(numSeats);
+            return;
+        }
+        if (thinkTime.isPositive()) {
+            LockSupport.parkNanos(random.nextLong(thinkTime.toNanos() + 1));
+        }
+        long reserveNanos = System.nanoTime();
+        try {
+            var _ = service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+        }
+        catch (RuntimeException e) {
+            // most likely the buyer thought about it for too long, and the hold expired
+            run.failed(Operation.RESERVE);
+            run.lost(numSeats);
+            return;
+        }
+        run.record(Operation.RESERVE, reserveNanos);
+        run.reserved(numSeats);
+    }
+
+    /**
+     * The calls a buyer makes to the service.
+     */
+    public enum Operation {
+        /**
+         * {@link TicketService#numSeatsAvailable()}.
+         */
+        AVAILABILITY,
+        /**
+         * {@link TicketService#findAndHoldSeats(int, String)}.
+         */
+        HOLD,
+        /**
+         * {@link TicketService#reserveSeats(int, String)}.
+         */
+        RESERVE
+    }
+
+    /**
+     * How many buyers arrive per second, over the course of the on-sale.
+     */
+    @FunctionalInterface
+    public interface ArrivalRate {
+        /**
+         * The rate at a point of the on-sale.
+         *
+         * @param elapsedSeconds seconds since the on-sale started
+         * @return buyers per second - nobody arrives while it's 0
+         */
+        double perSecond(double elapsedSeconds);
+
+        /**
+         * The same rate all along.
+         *
+         * @param buyersPerSecond buyers per second
+         * @return the rate
+         */
+        static ArrivalRate constant(final double buyersPerSecond) {
+            checkArgument(buyersPerSecond > 0, "buyersPerSecond must be > 0");
+            return elapsedSeconds -> buyersPerSecond;
+        }
+
+        /**
+         * The rush of an on-sale: everybody shows up at the start, and fewer and fewer later on - the rate halves every
+         * half-life. Over the whole on-sale, {@code peak * halfLife / ln 2} buyers arrive.
+         *
+         * @param peakBuyersPerSecond buyers per second at the start
+         * @param halfLife how long it takes for the rate to halve
+         * @return the rate
+         */
+        static ArrivalRate rush(final double peakBuyersPerSecond, final Duration halfLife) {
+            checkArgument(peakBuyersPerSecond > 0, "peakBuyersPerSecond must be > 0");
+            checkArgument(checkNotNull(halfLife, "halfLife cannot be null").isPositive(), "halfLife must be > 0");
+            double halfLifeSeconds = halfLife.toNanos() / NANOS_PER_SECOND;
+            return elapsedSeconds -> peakBuyersPerSecond * Math.pow(2, -elapsedSeconds / halfLifeSeconds);
+        }
+    }
+
+    /**
+     * How many seats the buyers want.
+     */
+    @FunctionalInterface
+    public interface GroupSizes {
+        /**
+         * The size of the next buyer's group.
+         *
+         * @param random where to get random numbers from
+         * @return number of seats, at least 1
+         */
+        int next(RandomGenerator random);
+
+        /**
+         * Every group the same size.
+         *
+         * @param groupSize number of seats
+         * @return the group sizes
+         */
+        static GroupSizes fixed(final int groupSize) {
+            checkArgument(groupSize > 0, "groupSize must be > 0");
+            return random -> groupSize;
+        }
+
+        /**
+         * Groups of 1, 2, 3... seats in proportion to their weights, e.g. {@code weighted(1, 4, 1, 2)} for mostly couples.
+         *
+         * @param weights weight of groups of 1 seat, of 2 seats and so on
+         * @return the group sizes
+         */
+        static GroupSizes weighted(final double... weights) {
+            checkArgument(weights.length > 0, "There must be at least one weight");
+            double[] cumulative = new double[weights.length];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                checkArgument(weights[i] >= 0, "Weights must be >= 0");
+                total += weights[i];
+                cumulative[i] = total;
+            }
+            checkArgument(total > 0, "At least one weight must be > 0");
+            double sum = total;
+            return random -> {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble(sum));
+                if (index < 0) {
+                    return -index;
+                }
+                // exactly on a boundary, which belongs to the next group size with any weight
+                while (index < cumulative.length - 1 && cumulative[index + 1] == cumulative[index]) {
+                    index++;
+                }
+                return index + 2;
+            };
+        }
+    }
+
+    /**
+     * Configures a {@link LoadSimulator}.
+     */
+    public static final class Builder {
+        /**
+         * How buyers arrive, or {@code null} for closed-loop clients.
+         */
+        private final ArrivalRate arrivalRate;
+        /**
+         * Number of closed-loop clients.
+         */
+        private final int numClients;
+        /**
+         * How long buyers keep arriving.
+         */
+        private Duration duration = DEFAULT_DURATION;
+        /**
+         * Most buyers that arrive.
+         */
+        private long maxBuyers = Long.MAX_VALUE;
+        /**
+         * How large the buyers' groups are.
+         */
+        private GroupSizes groupSizes = GroupSizes.fixed(2);
+        /**
+         * Share of buyers that leave without holding seats.
+         */
+        private double abandonmentRate;
+        /**
+         * Share of holds that get reserved.
+         */
+        private double conversionRate = 1;
+        /**
+         * Longest a buyer thinks before reserving.
+         */
+        private Duration thinkTime = Duration.ZERO;
+
+        /**
+         * Creates a builder.
+         *
+         * @param arrivalRate how buyers arrive, or {@code null} for closed-loop clients
+         * @param numClients number of closed-loop clients
+         */
+        private Builder(final ArrivalRate arrivalRate, final int numClients) {
+            this.arrivalRate = arrivalRate;
+            this.numClients = numClients;
+        }
+
+        /**
+         * How long buyers keep arriving - {@link #DEFAULT_DURATION} unless set.
+         *
+         * @param newDuration the length of the on-sale
+         * @return this builder
+         */
+        public Builder duration(final Duration newDuration) {
+            checkArgument(checkNotNull(newDuration, "duration cannot be null").isPositive(), "duration must be > 0");
+            duration = newDuration;
+            return this;
+        }
+
+        /**
+         * Stop once this many buyers have arrived, even if the on-sale isn't over yet.
+         *
+         * @param newMaxBuyers most buyers that arrive
+         * @return this builder
+         */
+        public Builder maxBuyers(final long newMaxBuyers) {
+            checkArgument(newMaxBuyers > 0, "maxBuyers must be > 0");
+            maxBuyers = newMaxBuyers;
+            return this;
+        }
+
+        /**
+         * How large the buyers' groups are - 2 seats each unless set.
+         *
+         * @param newGroupSizes the group sizes
+         * @return this builder
+         */
+        public Builder groupSizes(final GroupSizes newGroupSizes) {
+            groupSizes = checkNotNull(newGroupSizes, "groupSizes cannot be null");
+            return this;
+        }
+
+        /**
+         * Share of buyers that walk off without holding seats - none unless set.
+         *
+         * @param newAbandonmentRate between 0 and 1
+         * @return this builder
+         */
+        public Builder abandonmentRate(final double newAbandonmentRate) {
+            checkArgument(newAbandonmentRate >= 0 && newAbandonmentRate <= 1, "abandonmentRate must be between 0 and 1");
+            abandonmentRate = newAbandonmentRate;
+            return this;
+        }
+
+        /**
+         * Share of holds that get reserved - the others are left to expire. All of them unless set.
+         *
+         * @param newConversionRate between 0 and 1
+         * @return this builder
+         */
+        public Builder conversionRate(final double newConversionRate) {
+            checkArgument(newConversionRate >= 0 && newConversionRate <= 1, "conversionRate must be between 0 and 1");
+            conversionRate = newConversionRate;
+            return this;
+        }
+
+        /**
+         * Longest a buyer thinks between holding and reserving - each one takes a random time up to it. Longer than the hold
+         * expiration time of the service, and some reservations fail. No time at all unless set.
+         *
+         * @param newThinkTime the longest think time
+         * @return this builder
+         */
+        public Builder thinkTime(final Duration newThinkTime) {
+            checkArgument(!checkNotNull(newThinkTime, "thinkTime cannot be null").isNegative(), "thinkTime must be >= 0");
+            thinkTime = newThinkTime;
+            return this;
+        }
+
+        /**
+         * Create the simulator.
+         *
+         * @return the simulator
+         */
+        public LoadSimulator build() {
+            return new LoadSimulator(this);
+        }
+    }
+
+    /**
+     * What happened in one run of the simulator - updated by all buyers at once.
+     */
+    private final class Run {
+        /**
+         * The service.
+         */
+        private final TicketService service;
+        /**
+         * When the run started.
+         */
+        private final long startNanos = System.nanoTime();
+        /**
+         * Number of buyers so far.
+         */
+        private final AtomicLong buyers = new AtomicLong();
+        /**
+         * Number of buyers that found no seats.
+         */
+        private final LongAdder turnedAway = new LongAdder();
+        /**
+         * Number of buyers that walked off.
+         */
+        private final LongAdder abandoned = new LongAdder();
+        /**
+         * Number of seats held.
+         */
+        private final LongAdder seatsHeld = new LongAdder();
+        /**
+         * Number of seats reserved.
+         */
+        private final LongAdder seatsReserved = new LongAdder();
+        /**
+         * Number of seats held but never reserved.
+         */
+        private final LongAdder seatsLost = new LongAdder();
+        /**
+         * When the first buyer found no seats, relative to the start, or -1.
+         */
+        private final AtomicLong soldOutNanos = new AtomicLong(-1);
+        /**
+         * Latencies of the calls that succeeded.
+         */
+        private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        /**
+         * Number of calls that failed.
+         */
+        private final Map<Operation, LongAdder> failures = new EnumMap<>(Operation.class);
+
+        /**
+         * Creates a run.
+         *
+         * @param service the service
+         */
+        Run(final TicketService service) {
+            this.service = service;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LatencyHistogram());
+                failures.put(operation, new LongAdder());
+            }
+        }
+
+        /**
+         * The service.
+         *
+         * @return the service
+         */
+        TicketService getService() {
+            return service;
+        }
+
+        /**
+         * When the run started.
+         *
+         * @return the {@link System#nanoTime()} it started at
+         */
+        long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * Whether buyers stop arriving by a point in time.
+         *
+         * @param nanos the point in time
+         * @return {@code true} if the on-sale is over by then
+         */
+        boolean isOver(final long nanos) {
+            return nanos - startNanos >= duration.toNanos();
+        }
+
+        /**
+         * Count a buyer in, unless {@link #maxBuyers} have arrived already.
+         *
+         * @return {@code true} if the buyer may arrive
+         */
+        boolean claimBuyer() {
+            return buyers.getAndIncrement() < maxBuyers;
+        }
+
+        /**
+         * Record a call that succeeded.
+         *
+         * @param operation the call
+         * @param callNanos when it started
+         */
+        void record(final Operation operation, final long callNanos) {
+            latencies.get(operation).record(System.nanoTime() - callNanos);
+        }
+
+        /**
+         * Count a call that failed.
+         *
+         * @param operation the call
+         */
+        void failed(final Operation operation) {
+            failures.get(operation).increment();
+        }
+
+        /**
+         * Count a buyer that found no seats, and note when the first one did.
+         */
+        void turnedAway() {
+            turnedAway.increment();
+            var _ = soldOutNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Count a buyer that walked off.
+         */
+        void walkedOff() {
+            abandoned.increment();
+        }
+
+        /**
+         * Count seats that were held.
+         *
+         * @param numSeats number of seats
+         */
+        void held(final int numSeats) {
+            seatsHeld.add(numSeats);
+        }
+
+        /**
+         * Count seats that were reserved.
+         *
+         * @param numSeats number of seats
+         */
+        void reserved(final int numSeats) {
+            seatsReserved.add(numSeats);
+        }
+
+        /**
+         * Count held seats that won't be reserved, and are left to expire.
+         *
+         * @param numSeats number of seats
+         */
+        void lost(final int numSeats) {
+            seatsLost.add(numSeats);
+        }
+
+        /**
+         * Put together the report, once all buyers are done.
+         *
+         * @return the report
+         */
+        LoadReport report() {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+            Duration sellOutTime = null;
+            if (soldOutNanos.get() >= 0) {
+                sellOutTime = Duration.ofNanos(soldOutNanos.get());
+            }
+            Map<Operation, Long> numFailures = new EnumMap<>(Operation.class);
+            failures.forEach((operation, count) -> numFailures.put(operation, count.sum()));
+            return new LoadReport(elapsed,
+                    sellOutTime,
+                    Math.min(buyers.get(), maxBuyers),
+                    turnedAway.sum(),
+                    abandoned.sum(),
+                    seatsHeld.sum(),
+                    seatsReserved.sum(),
+                    seatsLost.sum(),
+                    latencies,
+                    numFailures
+            );
+        }
+    }
+}
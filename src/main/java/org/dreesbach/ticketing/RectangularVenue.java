@@ -1,23 +1,61 @@
 package org.dreesbach.ticketing;
 
+import org.dreesbach.ticketing.id.HoldIdAllocator;
 import org.dreesbach.ticketing.id.IdGenerator;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 /**
  * A simple {@link Venue} implementation that provides a rectangular arrangement of seats.
+ * <p>
+ * Seats are numbered in row-major order, i.e. seat index {@code row * seatsPerRow + col}. The venue only stores each seat's
+ * state (packed into a {@link SeatStates}); seat IDs and goodness are computed from the row and column whenever they're
+ * needed, and {@link Seat} instances are lightweight {@link VenueSeat} views created on demand. That takes a seat from
+ * ~100 bytes (a {@link SeatImpl}, its formatted ID string and the references to it in the seat array and list) down to 2
+ * bits. Everything that's the same for every performance in the hall, like the order of the seats from best to worst, is
+ * in a shared {@link VenueLayout}.
+ * <p>
+ * The venue also keeps an {@link AvailableSeatIndex} of the seats that can be picked, so that seats freed by an expired hold
+ * or a cancelled reservation can be handed out again straight away and seat picking strategies don't need any state of
+ * their own. Alongside it a {@link FreeRunIndex} tracks the runs of adjacent available seats in every row, for strategies
+ * that keep groups together. Both indexes are only ever updated under the venue's monitor, so they always agree.
+ * <p>
+ * Once {@link #recover(Journal) recovered} from a {@link Journal}, the venue records every hold, reservation, released hold
+ * and cancelled reservation in it. Records are appended under the venue's monitor, so the journal has them in the order
+ * they happened; waiting for them to become durable happens after the monitor is released, so that one operation's wait
+ * never holds up the others and they can all be committed together.
+ * <p>
+ * A {@link #snapshot()} captures the seats as of a position in the journal, so that a restart only has to
+ * {@link #recover(VenueSnapshot, Journal) replay} the journal from there. Sales only pause while the packed seat states,
+ * holds and reservations are copied into the snapshot's buffer; it is checksummed and written out after they resume.
+ * <p>
+ * Buyers' seat maps get an immutable {@link #getSeatMap() SeatMap} without taking the venue's monitor, and can then follow
+ * the {@link #seatChanges() feed} of changes from the map's version on rather than fetching the whole map again.
+ * <p>
+ * A venue can also be one section of a {@link SectionedVenue}: a band of rows further back in a larger hall. Its seats are
+ * then numbered from its own first row, but named and scored as rows of the whole hall, so that the seats of all the
+ * sections compare with each other.
  */
 final class RectangularVenue implements Venue {
+    /**
+     * The layout of the hall, shared with every other performance in it.
+     */
+    private final VenueLayout layout;
     /**
      * Number of rows in the location.
      */
@@ -27,13 +65,49 @@ final class RectangularVenue implements Venue {
      */
     private final int seatsPerRow;
     /**
-     * Number of seats left available.
+     * Counts the available, held and reserved seats, as whole holds and reservations change state.
+     */
+    private final SeatCounter seatCounter;
+    /**
+     * The state of every seat at the venue.
+     */
+    private final SeatStates seatStates;
+    /**
+     * The seats that are available for picking, best first.
+     */
+    private final AvailableSeatIndex availableSeats;
+    /**
+     * The runs of adjacent available seats in every row.
+     */
+    private final FreeRunIndex freeRuns;
+    /**
+     * Hands out the IDs of the {@link SeatHold}s at this venue. Every venue has its own, so venues never contend on IDs, and
+     * every service selling seats for the venue gets unique IDs. The sections of a {@link SectionedVenue} share one.
      */
-    private int availableNumSeats;
+    private final HoldIdAllocator holdIds;
     /**
-     * A two-dimensional array for the seats at the venue. A simplistic implementation for this simplistic seating setup.
+     * The holds that are live, i.e. neither reserved nor released yet, for {@link #snapshot() snapshots}. Holds brought back
+     * by {@link #recover(VenueSnapshot, Journal)} got their IDs from the allocator of an earlier run, so the {@link #holdIds}
+     * of this one may well hand them out again - IDs are skipped while a hold with the same ID is live.
      */
-    private Seat[][] seats;
+    private final IntRegistry<SeatHold> liveHolds = new IntRegistry<>();
+    /**
+     * Keeps reservations, which don't take the venue's monitor, out of the way while a {@link #snapshot()} is taken: they
+     * share it for reading, the snapshot takes it for writing.
+     */
+    private final StampedLock snapshotLock = new StampedLock();
+    /**
+     * Where every change to the seats is recorded, or {@code null} if they aren't.
+     */
+    private volatile Journal journal;
+    /**
+     * The feed of changes to the seats, once it's been asked for.
+     */
+    private volatile SeatChangeFeed seatChangeFeed;
+    /**
+     * Where the time spent waiting for the venue's monitor and picking seats is recorded.
+     */
+    private volatile TicketMetrics metrics = TicketMetrics.DISABLED;
     /**
      * The seat picking strategy to use.
      */
@@ -44,10 +118,13 @@ final class RectangularVenue implements Venue {
      * however it feels natural to have this available here. It does require some more memory and will slow down reservations a
      * little bit, so if that turns into an issue, we can always remove this again and have some other component be responsible
      * for tracking reservations.
+     * <p>
+     * This is a concurrent registry so that {@link #reserve(SeatHold)} doesn't need to take the venue's monitor, which is held
+     * for the duration of every seat pick. It's keyed on the packed reservation codes, see {@link IdGenerator}.
      */
-    private Map<String, List<Seat>> seatReservations;
+    private final IntRegistry<List<Seat>> seatReservations = new IntRegistry<>();
     /**
-     * A list of all the seats in this venue.
+     * A list view of all the seats in this venue.
      */
     private List<Seat> seatList;
 
@@ -60,32 +137,177 @@ final class RectangularVenue implements Venue {
      */
     RectangularVenue(
             final int numRows, final int seatsPerRow, final SeatPickingStrategy<RectangularVenue> seatPickingStrategy
+    ) {
+        this(VenueLayout.of(numRows, seatsPerRow), seatPickingStrategy);
+    }
+
+    /**
+     * Creates a new performance in a hall with a given layout.
+     *
+     * @param layout the layout of the hall
+     * @param seatPickingStrategy the strategy for picking the best seats
+     */
+    RectangularVenue(final VenueLayout layout, final SeatPickingStrategy<RectangularVenue> seatPickingStrategy) {
+        this(layout, seatPickingStrategy, new HoldIdAllocator(), null);
+    }
+
+    /**
+     * Creates a new performance in a hall with a given layout, possibly as a section of a larger hall, see
+     * {@link SectionedVenue}.
+     *
+     * @param layout the layout of the hall, or of the section's band of rows
+     * @param seatPickingStrategy the strategy for picking the best seats
+     * @param holdIds hands out the IDs of the {@link SeatHold}s, shared by all sections of the hall
+     * @param hallSeats counts the seats of the whole hall, or {@code null} if the venue isn't a section of one
+     */
+    RectangularVenue(
+            final VenueLayout layout,
+            final SeatPickingStrategy<RectangularVenue> seatPickingStrategy,
+            final HoldIdAllocator holdIds,
+            final SeatCounter hallSeats
     ) {
         checkNotNull(seatPickingStrategy, "seatPickingStrategy cannot be null");
-        checkArgument(numRows > 0, "Number of rows must be > 0");
-        checkArgument(seatsPerRow > 0, "Number of seats per row must be > 0");
-        this.numRows = numRows;
-        this.seatsPerRow = seatsPerRow;
-        availableNumSeats = getTotalNumSeats();
-        seats = new Seat[numRows][seatsPerRow];
-        fillSeats(seats);
+        this.layout = checkNotNull(layout, "layout cannot be null");
+        this.holdIds = checkNotNull(holdIds, "holdIds cannot be null");
+        numRows = layout.getNumRows();
+        seatsPerRow = layout.getSeatsPerRow();
+        seatCounter = new SeatCounter(getTotalNumSeats(), hallSeats);
+        seatStates = new SeatStates(getTotalNumSeats(), seatsPerRow);
+        availableSeats = layout.newAvailableSeats();
+        freeRuns = layout.newFreeRuns();
         setSeatPickingStrategy(seatPickingStrategy);
-        seatReservations = new HashMap<>(getTotalNumSeats());
     }
 
     /**
-     * Fill the seats array with default {@link Seat} instances.
+     * The layout of the hall, shared with every other performance in it.
      *
-     * @param seats the seats array
+     * @return the layout
      */
-    private void fillSeats(final Seat[][] seats) {
-        checkNotNull(seats, "seats cannot be null");
-        for (int row = 0; row < seats.length; row++) {
-            for (int col = 0; col < seats[row].length; col++) {
-                // we set seat IDs to be 1-indexed for normal human consumption
-                seats[row][col] = new SeatImpl(String.format("Row %d Seat %d", row + 1, col + 1), getGoodness(row, col));
-            }
+    VenueLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Get a {@link Seat} view of a seat.
+     *
+     * @param seatIndex index of the seat, from 0 to {@code getTotalNumSeats() - 1} (inclusive)
+     * @return a view of the seat
+     */
+    Seat getSeat(final int seatIndex) {
+        checkElementIndex(seatIndex, getTotalNumSeats());
+        return new VenueSeat(this, seatIndex);
+    }
+
+    /**
+     * The ID of a seat, e.g. "Row 3 Seat 12".
+     *
+     * @param seatIndex index of the seat
+     * @return the seat's ID
+     */
+    String getSeatId(final int seatIndex) {
+        return layout.getSeatId(seatIndex);
+    }
+
+    /**
+     * The "goodness" score of a seat, see {@link #getGoodness(int, int)}.
+     *
+     * @param seatIndex index of the seat
+     * @return the "goodness" score - relative to the size of the venue, the lower the better, minimum of 0
+     */
+    double getGoodness(final int seatIndex) {
+        return layout.getGoodness(seatIndex);
+    }
+
+    /**
+     * The state store backing this venue's seats.
+     *
+     * @return the seat states
+     */
+    SeatStates seatStates() {
+        return seatStates;
+    }
+
+    /**
+     * The index of seats available for picking. Seats are taken out of it when they're picked or held, and go back in as soon
+     * as their hold or reservation is cancelled.
+     *
+     * @return the available seats
+     */
+    AvailableSeatIndex availableSeats() {
+        return availableSeats;
+    }
+
+    /**
+     * The runs of adjacent available seats in every row, kept in step with the {@link #availableSeats() available seats}.
+     *
+     * @return the free runs
+     */
+    FreeRunIndex freeRuns() {
+        return freeRuns;
+    }
+
+    /**
+     * Take the best available seats out of the seat indexes, for picking.
+     *
+     * @param numSeats how many seats to take
+     * @return the indexes of the seats taken, best first - fewer than requested if not enough seats are available
+     */
+    synchronized int[] takeBestSeats(final int numSeats) {
+        int[] seatIndexes = availableSeats.acquireBest(numSeats);
+        for (int seatIndex : seatIndexes) {
+            freeRuns.acquire(seatIndex);
         }
+        return seatIndexes;
+    }
+
+    /**
+     * Take a particular seat out of the seat indexes, for picking. Does nothing if the seat isn't available.
+     *
+     * @param seatIndex index of the seat
+     */
+    synchronized void takeSeat(final int seatIndex) {
+        availableSeats.acquire(seatIndex);
+        freeRuns.acquire(seatIndex);
+    }
+
+    /**
+     * Hold a seat, taking it out of the seat indexes if it wasn't picked from there.
+     *
+     * @param seatIndex index of the seat
+     */
+    synchronized void holdSeat(final int seatIndex) {
+        takeSeat(seatIndex);
+        seatStates.hold(seatIndex);
+    }
+
+    /**
+     * Cancel the hold on a seat and make it available for picking again.
+     *
+     * @param seatIndex index of the seat
+     */
+    synchronized void cancelSeatHold(final int seatIndex) {
+        seatStates.cancelHold(seatIndex);
+        releaseSeat(seatIndex);
+    }
+
+    /**
+     * Cancel the reservation of a seat and make it available for picking again.
+     *
+     * @param seatIndex index of the seat
+     */
+    synchronized void cancelSeatReservation(final int seatIndex) {
+        seatStates.cancelReservation(seatIndex);
+        releaseSeat(seatIndex);
+    }
+
+    /**
+     * Put a seat back into the seat indexes.
+     *
+     * @param seatIndex index of the seat
+     */
+    private void releaseSeat(final int seatIndex) {
+        availableSeats.release(seatIndex);
+        freeRuns.release(seatIndex);
     }
 
     /**
@@ -100,19 +322,19 @@ final class RectangularVenue implements Venue {
     double getGoodness(final int row, final int col) {
         checkArgument(row >= 0 && row < numRows, "row must be between %s and %s (inclusive)", 0, numRows - 1);
         checkArgument(col >= 0 && col < seatsPerRow, "col must be between %s and %s (inclusive)", 0, seatsPerRow - 1);
-        return getYPosition(row) * getYPosition(row) + getXPosition(col) * getXPosition(col);
+        return getGoodness(row * seatsPerRow + col);
     }
 
     /**
      * The "goodness" score contribution of the row. Ranges from 0 (best, front row) to {@code numRows - 1} (worst, back
-     * row).
+     * row) - counting from the front of the hall for a section of a {@link SectionedVenue}.
      *
      * @param row row number of the seat, from 0 to {@code numRows - 1} (inclusive)
      * @return the "goodness" score - relative to the size of the venue, the lower the better, minimum of 0
      */
     double getYPosition(final int row) {
         checkArgument(row >= 0 && row < numRows, "row must be between %s and %s (inclusive)", 0, numRows - 1);
-        return (double) row;
+        return (double) (layout.getFirstRow() + row);
     }
 
     /**
@@ -124,7 +346,7 @@ final class RectangularVenue implements Venue {
      */
     double getXPosition(final int col) {
         checkArgument(col >= 0 && col < seatsPerRow, "col must be between %s and %s (inclusive)", 0, seatsPerRow - 1);
-        return ((double) (seatsPerRow - 1) / 2) - col;
+        return layout.getXPosition(col);
     }
 
     /**
@@ -139,32 +361,237 @@ final class RectangularVenue implements Venue {
 
     @Override
     public int getAvailableNumSeats() {
-        return availableNumSeats;
+        return seatCounter.available();
+    }
+
+    @Override
+    public SeatCounts getSeatCounts() {
+        return seatCounter.counts();
+    }
+
+    /**
+     * A consistent map of the seats, without taking the venue's monitor. Only if the seats keep changing while the map is
+     * copied does this wait for the changes to stop, keeping them out like {@link #snapshot()} does.
+     *
+     * @return the map
+     */
+    @Override
+    public SeatMap getSeatMap() {
+        SeatMap seatMap = seatStates.seatMap();
+        if (seatMap != null) {
+            return seatMap;
+        }
+        return whileNoSeatsChange(() -> {
+            SeatMap map;
+            do {
+                map = seatStates.seatMap();
+            }
+            while (map == null);
+            return map;
+        });
+    }
+
+    /**
+     * The feed of every change to the state of a seat, for live seat maps to follow along - see {@link SeatChangeFeed}. It's
+     * started the first time it's asked for, keeping changes out of the way for a moment, and its subscribers are signalled
+     * on the common fork/join pool.
+     *
+     * @return the feed
+     */
+    SeatChangeFeed seatChanges() {
+        SeatChangeFeed feed = seatChangeFeed;
+        if (feed == null) {
+            feed = whileNoSeatsChange(() -> seatStates.feed(this::getSeatMap, ForkJoinPool.commonPool()));
+            seatChangeFeed = feed;
+        }
+        return feed;
+    }
+
+    /**
+     * Do something while holds, releases and cancellations are kept out by the venue's monitor and reservations by the
+     * {@link #snapshotLock}, so that no seat changes.
+     *
+     * @param action what to do
+     * @param <T> the type of the result
+     * @return the result
+     */
+    private <T> T whileNoSeatsChange(final Supplier<T> action) {
+        long stamp = snapshotLock.writeLock();
+        try {
+            synchronized (this) {
+                return action.get();
+            }
+        }
+        finally {
+            snapshotLock.unlockWrite(stamp);
+        }
     }
 
     /**
      * Hold seats in the location.
      * <p>
-     * This method is synchronized to ensure only one thread at a time can hold seats. This may end up being a bottleneck later
-     * on, something to watch out for in a multi-threaded web server environment, for example.
+     * Seats are picked under the venue's monitor to ensure only one thread at a time can hold seats. This may end up being a
+     * bottleneck later on, something to watch out for in a multi-threaded web server environment, for example.
      *
      * @param numSeatsToHold the number of seats to be held
      * @param seatHoldExpirationTime time until the SeatHold expires
      * @return the actual number of seats that could be held - could be less than what was requested, all the way down to 0
      */
     @Override
-    public synchronized SeatHold holdSeats(final int numSeatsToHold, final Duration seatHoldExpirationTime) {
+    public SeatHold holdSeats(final int numSeatsToHold, final Duration seatHoldExpirationTime) {
+        SeatHold seatHold = pickAndHoldSeats(numSeatsToHold, seatHoldExpirationTime, metrics.startNanos());
+        syncJournal();
+        return seatHold;
+    }
+
+    /**
+     * See {@link #holdSeats(int, Duration)}.
+     *
+     * @param numSeatsToHold the number of seats to be held
+     * @param seatHoldExpirationTime time until the SeatHold expires
+     * @param requestedNanos when the venue's monitor was requested, from {@link TicketMetrics#startNanos()}
+     * @return the hold
+     */
+    private synchronized SeatHold pickAndHoldSeats(
+            final int numSeatsToHold, final Duration seatHoldExpirationTime, final long requestedNanos
+    ) {
+        long acquiredNanos = metrics.record(TicketMetrics.Latency.VENUE_LOCK_WAIT, requestedNanos);
         checkArgument(numSeatsToHold > 0, "numSeatsToHold must be > 0");
+        return pickAndHoldSeats(numSeatsToHold, seatHoldExpirationTime, holdIds.next(), acquiredNanos);
+    }
+
+    /**
+     * Hold seats for a whole batch of requests under a single acquisition of the venue's monitor, with the IDs of all the
+     * {@link SeatHold}s allocated at once.
+     *
+     * @param numSeatsToHold the number of seats desired by each request - all > 0
+     * @param seatHoldExpirationTime time until the SeatHolds expire
+     * @return one SeatHold per request, in the same order
+     */
+    @Override
+    public List<SeatHold> holdSeats(final int[] numSeatsToHold, final Duration seatHoldExpirationTime) {
+        List<SeatHold> seatHolds = pickAndHoldSeats(numSeatsToHold, seatHoldExpirationTime, metrics.startNanos());
+        syncJournal();
+        return seatHolds;
+    }
+
+    /**
+     * See {@link #holdSeats(int[], Duration)}.
+     *
+     * @param numSeatsToHold the number of seats desired by each request - all > 0
+     * @param seatHoldExpirationTime time until the SeatHolds expire
+     * @param requestedNanos when the venue's monitor was requested, from {@link TicketMetrics#startNanos()}
+     * @return one SeatHold per request, in the same order
+     */
+    private synchronized List<SeatHold> pickAndHoldSeats(
+            final int[] numSeatsToHold, final Duration seatHoldExpirationTime, final long requestedNanos
+    ) {
+        long startNanos = metrics.record(TicketMetrics.Latency.VENUE_LOCK_WAIT, requestedNanos);
+        for (int numSeats : numSeatsToHold) {
+            checkArgument(numSeats > 0, "numSeatsToHold must be > 0");
+        }
+        int[] seatHoldIds = holdIds.next(numSeatsToHold.length);
+        List<SeatHold> seatHolds = new ArrayList<>(numSeatsToHold.length);
+        for (int i = 0; i < numSeatsToHold.length; i++) {
+            seatHolds.add(pickAndHoldSeats(numSeatsToHold[i], seatHoldExpirationTime, seatHoldIds[i], startNanos));
+            startNanos = metrics.startNanos();
+        }
+        return seatHolds;
+    }
+
+    /**
+     * Pick and hold the best available seats, and record the hold in the journal. Only call this holding the venue's
+     * monitor.
+     *
+     * @param numSeatsToHold the number of seats to be held
+     * @param seatHoldExpirationTime time until the SeatHold expires
+     * @param seatHoldId the ID for the hold, from {@link #holdIds}
+     * @param startNanos when picking the seats started, from {@link TicketMetrics#startNanos()}
+     * @return the hold
+     */
+    private SeatHold pickAndHoldSeats(
+            final int numSeatsToHold, final Duration seatHoldExpirationTime, final int seatHoldId, final long startNanos
+    ) {
+        int id = seatHoldId;
+        while (liveHolds.containsKey(id)) {
+            TicketEvents.idRetried(TicketEvents.SEAT_HOLD_ID, Integer.toString(id));
+            id = holdIds.next();
+        }
+        TicketEvents.HoldCreated event = new TicketEvents.HoldCreated();
+        event.begin();
         List<Seat> bestSeats = seatPickingStrategy.pickBestAvailableSeats(this, numSeatsToHold);
-        SeatHold seatHold = new SeatHold(bestSeats, seatHoldExpirationTime);
-        availableNumSeats -= bestSeats.size();
+        event.end();
+        var _ = metrics.record(TicketMetrics.Latency.PICK_BEST_AVAILABLE_SEATS, startNanos);
+        event.commit(id, numSeatsToHold, bestSeats.size());
+        SeatHold seatHold;
+        // the hold holds the seats, which seat maps should only see all at once
+        seatStates.beginChange();
+        try {
+            seatHold = new SeatHold(bestSeats, seatHoldExpirationTime, id);
+        }
+        finally {
+            seatStates.endChange();
+        }
+        seatCounter.held(bestSeats.size());
+        var _ = liveHolds.putIfAbsent(id, seatHold);
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            int[] seatIndexes = new int[bestSeats.size()];
+            for (int i = 0; i < seatIndexes.length; i++) {
+                seatIndexes[i] = ((VenueSeat) bestSeats.get(i)).getIndex();
+            }
+            currentJournal.held(id, expiresAtMillis(seatHold, System.currentTimeMillis(), System.nanoTime()), seatIndexes);
+        }
         return seatHold;
     }
 
+    /**
+     * When a hold expires, on the wall clock - for the journal and snapshots, which outlive this process and its
+     * {@link System#nanoTime()}.
+     *
+     * @param seatHold the hold
+     * @param nowMillis the current {@link System#currentTimeMillis()}
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return when the hold expires, in milliseconds since the epoch
+     */
+    private static long expiresAtMillis(final SeatHold seatHold, final long nowMillis, final long nowNanos) {
+        return nowMillis + TimeUnit.NANOSECONDS.toMillis(seatHold.getExpirationNanos() - nowNanos);
+    }
+
+    /**
+     * Record the time spent waiting for the venue's monitor and picking seats in some metrics from now on.
+     *
+     * @param venueMetrics the metrics, usually shared with the {@link TicketServiceImpl} selling the venue's seats
+     */
+    void instrument(final TicketMetrics venueMetrics) {
+        metrics = checkNotNull(venueMetrics, "metrics cannot be null");
+    }
+
     @Override
-    public synchronized void removeHold(final SeatHold seatHold) {
-        availableNumSeats += checkNotNull(seatHold).getNumSeatsHeld();
-        seatHold.remove();
+    public void removeHold(final SeatHold seatHold) {
+        releaseHold(seatHold);
+        syncJournal();
+    }
+
+    /**
+     * See {@link #removeHold(SeatHold)}.
+     *
+     * @param seatHold the SeatHold to remove
+     */
+    private synchronized void releaseHold(final SeatHold seatHold) {
+        seatCounter.released(checkNotNull(seatHold).getNumSeatsHeld());
+        seatStates.beginChange();
+        try {
+            seatHold.remove();
+        }
+        finally {
+            seatStates.endChange();
+        }
+        var _ = liveHolds.remove(seatHold.getId(), seatHold);
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.released(seatHold.getId());
+        }
     }
 
     @Override
@@ -173,33 +600,359 @@ final class RectangularVenue implements Venue {
         this.seatPickingStrategy = (SeatPickingStrategy<RectangularVenue>) checkNotNull(seatPickingStrategy);
     }
 
+    /**
+     * Reserve the seats of a {@link SeatHold}.
+     * <p>
+     * Unlike {@link #holdSeats(int, Duration)} this is not synchronized: the caller owns the {@link SeatHold} exclusively at
+     * this point, each {@link Seat} guards its own state, and the reservations are tracked in a concurrent registry. That way
+     * reserving one hold never has to wait behind picking the seats for another. The reservation only counts as made once the
+     * journal, if any, has it, so the code isn't handed out before.
+     *
+     * @param seatHold the {@link SeatHold} to make a reservation for
+     * @return a reservation code
+     */
     @Override
-    public synchronized String reserve(final SeatHold seatHold) {
+    public String reserve(final SeatHold seatHold) {
+        return reserveAndRecord(seatHold, IdGenerator.nextReservationCode());
+    }
+
+    /**
+     * Like {@link #reserve(SeatHold)}, with a reservation code that was generated up front. If the reservation fails the code
+     * simply goes unused. Should the code be in use already, e.g. by a reservation recovered from an earlier run, the
+     * reservation gets a fresh one, see {@link #recordReservation(SeatHold, int)}.
+     *
+     * @param seatHold the {@link SeatHold} to make a reservation for
+     * @param reservationCode the packed reservation code
+     * @return the reservation code
+     */
+    @Override
+    public String reserve(final SeatHold seatHold, final int reservationCode) {
+        return reserveAndRecord(seatHold, reservationCode);
+    }
+
+    /**
+     * Reserve the seats of a {@link SeatHold} and keep track of the reservation, out of the way of {@link #snapshot()}s.
+     *
+     * @param seatHold the {@link SeatHold} to make a reservation for
+     * @param reservationCode the packed reservation code
+     * @return the reservation code
+     */
+    private String reserveAndRecord(final SeatHold seatHold, final int reservationCode) {
+        TicketEvents.Reservation event = new TicketEvents.Reservation();
+        event.begin();
+        String code;
+        long stamp = snapshotLock.readLock();
+        try {
+            seatStates.beginChange();
+            try {
+                reserveSeats(seatHold);
+            }
+            finally {
+                seatStates.endChange();
+            }
+            // counted before it's journaled: the seats are reserved either way once they are, even if the journal fails
+            seatCounter.reserved(seatHold.getNumSeatsHeld());
+            code = recordReservation(seatHold, reservationCode);
+        }
+        finally {
+            snapshotLock.unlockRead(stamp);
+        }
+        syncJournal();
+        event.end();
+        event.commit(seatHold.getId(), code, seatHold.getNumSeatsHeld());
+        return code;
+    }
+
+    /**
+     * Reserve the seats of a {@link SeatHold}.
+     *
+     * @param seatHold the hold
+     */
+    private static void reserveSeats(final SeatHold seatHold) {
         for (Seat seat : checkNotNull(seatHold).getSeatsHeld()) {
             seat.reserve();
         }
-        String reservationCode = IdGenerator.generateReservationCode();
-        seatReservations.put(reservationCode, seatHold.getSeatsHeld());
-        return reservationCode;
+    }
+
+    /**
+     * Keep track of a reservation, and record it in the journal. Codes only come around again after tens of millions of
+     * reservations, but should a reservation from the code's last round still be live, the new one gets a fresh code rather
+     * than replacing it.
+     *
+     * @param seatHold the hold whose seats were reserved
+     * @param reservationCode the packed reservation code
+     * @return the reservation code
+     */
+    private String recordReservation(final SeatHold seatHold, final int reservationCode) {
+        int code = reservationCode;
+        while (seatReservations.putIfAbsent(code, seatHold.getSeatsHeld()) != null) {
+            TicketEvents.idRetried(TicketEvents.RESERVATION_CODE, IdGenerator.encodeReservationCode(code));
+            code = IdGenerator.nextReservationCode();
+        }
+        var _ = liveHolds.remove(seatHold.getId(), seatHold);
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.reserved(seatHold.getId(), code);
+        }
+        return IdGenerator.encodeReservationCode(code);
     }
 
     @Override
-    public synchronized void cancelReservation(final String reservationCode) {
-        checkArgument(reservationCode.length() == IdGenerator.MAX_RESERVATION_CODE_LENGTH,
-                "Expected a %s-character reservation code",
-                IdGenerator.MAX_RESERVATION_CODE_LENGTH
-        );
-        if (seatReservations.containsKey(reservationCode)) {
-            availableNumSeats += seatReservations.get(reservationCode).size();
-            for (Seat seat : seatReservations.get(reservationCode)) {
+    public void cancelReservation(final String reservationCode) {
+        TicketEvents.Cancellation event = new TicketEvents.Cancellation();
+        event.begin();
+        int numSeatsReleased = releaseReservation(IdGenerator.decodeReservationCode(reservationCode));
+        if (numSeatsReleased < 0) {
+            throw new IllegalArgumentException("Reservation code " + reservationCode + " not found");
+        }
+        syncJournal();
+        event.end();
+        event.commit(reservationCode, numSeatsReleased);
+    }
+
+    /**
+     * See {@link #cancelReservation(String)}.
+     *
+     * @param reservationCode the packed reservation code to cancel
+     * @return number of seats made available again, -1 if there was no such reservation
+     */
+    private synchronized int releaseReservation(final int reservationCode) {
+        List<Seat> reservedSeats = seatReservations.remove(reservationCode);
+        if (reservedSeats == null) {
+            return -1;
+        }
+        seatCounter.cancelled(reservedSeats.size());
+        seatStates.beginChange();
+        try {
+            for (Seat seat : reservedSeats) {
                 seat.cancelReservation();
             }
-            seatReservations.remove(reservationCode);
-            IdGenerator.retireReservationId(reservationCode);
         }
-        else {
-            throw new IllegalArgumentException("Reservation code " + reservationCode + " not found");
+        finally {
+            seatStates.endChange();
         }
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.cancelled(reservationCode);
+        }
+        return reservedSeats.size();
+    }
+
+    /**
+     * Whether a hold was made at this venue and is still live, i.e. neither reserved nor released yet.
+     *
+     * @param seatHold the hold
+     * @return {@code true} if it's one of this venue's live holds
+     */
+    boolean isLiveHold(final SeatHold seatHold) {
+        return seatHold.equals(liveHolds.get(seatHold.getId()));
+    }
+
+    /**
+     * Whether there is a reservation with a code at this venue.
+     *
+     * @param reservationCode the packed reservation code
+     * @return {@code true} if there is
+     */
+    boolean hasReservation(final int reservationCode) {
+        return seatReservations.containsKey(reservationCode);
+    }
+
+    /**
+     * Wait until what was just recorded in the journal is as durable as the journal's {@link Journal.Durability} promises.
+     */
+    private void syncJournal() {
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.sync();
+        }
+    }
+
+    /**
+     * Capture the seats as they are now: their states, the live holds and the reservations, along with the position of the
+     * journal (if any) they correspond to. Holds, releases and cancellations happen under the venue's monitor and reservations
+     * under the {@link #snapshotLock}, so taking both leaves nothing changing while the snapshot is captured - for as long as
+     * it takes to copy the packed seat states and the seat indexes of the holds and reservations.
+     *
+     * @return the snapshot
+     */
+    VenueSnapshot snapshot() {
+        VenueSnapshot.Builder builder;
+        long stamp = snapshotLock.writeLock();
+        try {
+            synchronized (this) {
+                long journalPosition = 0;
+                Journal currentJournal = journal;
+                if (currentJournal != null) {
+                    journalPosition = currentJournal.position();
+                }
+                builder = new VenueSnapshot.Builder(numRows, seatsPerRow, journalPosition, seatStates);
+                long nowMillis = System.currentTimeMillis();
+                long nowNanos = System.nanoTime();
+                builder.holds(liveHolds.size());
+                liveHolds.forEach((id, seatHold) ->
+                        builder.hold(id, expiresAtMillis(seatHold, nowMillis, nowNanos), seatHold.getSeatsHeld()));
+                builder.reservations(seatReservations.size());
+                seatReservations.forEach(builder::reservation);
+            }
+        }
+        finally {
+            snapshotLock.unlockWrite(stamp);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Take a {@link #snapshot()} and write it to a file, replacing the previous one atomically. The journal is forced first,
+     * so that the snapshot on disk is never ahead of it.
+     *
+     * @param path the file
+     * @throws IOException if the journal can't be forced or the file can't be written
+     */
+    void writeSnapshot(final Path path) throws IOException {
+        VenueSnapshot venueSnapshot = snapshot();
+        Journal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.force();
+        }
+        venueSnapshot.write(path);
+    }
+
+    /**
+     * See {@link #recover(VenueSnapshot, Journal)}, without a snapshot - the whole journal is replayed.
+     *
+     * @param journalToRecoverFrom the journal, not yet appended to
+     * @return the holds that are still live, for the {@link TicketService} to keep track of (and expire)
+     * @throws IOException if the journal can't be read
+     */
+    List<SeatHold> recover(final Journal journalToRecoverFrom) throws IOException {
+        checkNotNull(journalToRecoverFrom, "journal cannot be null");
+        return recover(null, journalToRecoverFrom);
+    }
+
+    /**
+     * Bring back the seats, holds and reservations from a snapshot and the journal that has been recorded since, then record
+     * every change from now on in the journal. Holds that have expired in the meantime are released, and the release
+     * recorded, so their seats are available again.
+     * <p>
+     * The snapshot's seat states are copied in as they are, and only its holds and reservations turned back into objects.
+     * The journal is then replayed from the snapshot's position, every record applied in order just like the operation that
+     * appended it, only without appending it again.
+     *
+     * @param snapshot the snapshot to start from, or {@code null} to replay the whole journal
+     * @param journalToRecoverFrom the journal, not yet appended to, or {@code null} to only restore the snapshot and not record
+     *         any changes
+     * @return the holds that are still live, for the {@link TicketService} to keep track of (and expire)
+     * @throws IOException if the journal can't be read
+     */
+    synchronized List<SeatHold> recover(final VenueSnapshot snapshot, final Journal journalToRecoverFrom) throws IOException {
+        checkState(journal == null, "The venue already has a journal");
+        checkState(seatCounter.available() == getTotalNumSeats(), "Can only recover into a venue with all seats available");
+        long journalPosition = 0;
+        if (snapshot != null) {
+            restore(snapshot);
+            journalPosition = snapshot.journalPosition();
+        }
+        if (journalToRecoverFrom != null) {
+            JournalEvents replay = new JournalEvents() {
+                @Override
+                public void held(final int holdId, final long expiresAtMillis, final int[] seatIndexes) {
+                    Duration remaining = Duration.ofMillis(expiresAtMillis - System.currentTimeMillis());
+                    SeatHold seatHold = new SeatHold(seatsAt(seatIndexes), remaining, holdId);
+                    seatCounter.held(seatHold.getNumSeatsHeld());
+                    var _ = liveHolds.putIfAbsent(holdId, seatHold);
+                }
+
+                @Override
+                public void reserved(final int holdId, final int reservationCode) {
+                    SeatHold seatHold = liveHolds.get(holdId);
+                    if (seatHold != null) {
+                        reserveSeats(seatHold);
+                        seatCounter.reserved(seatHold.getNumSeatsHeld());
+                        var _ = recordReservation(seatHold, reservationCode);
+                    }
+                }
+
+                @Override
+                public void released(final int holdId) {
+                    SeatHold seatHold = liveHolds.get(holdId);
+                    if (seatHold != null) {
+                        releaseHold(seatHold);
+                    }
+                }
+
+                @Override
+                public void cancelled(final int reservationCode) {
+                    var _ = releaseReservation(reservationCode);
+                }
+            };
+            if (snapshot == null) {
+                journalToRecoverFrom.replay(replay);
+            }
+            else {
+                journalToRecoverFrom.replay(journalPosition, replay);
+            }
+            journal = journalToRecoverFrom;
+        }
+        List<SeatHold> recovered = new ArrayList<>();
+        List<SeatHold> expired = new ArrayList<>();
+        liveHolds.forEach((id, seatHold) -> {
+            if (seatHold.expired()) {
+                expired.add(seatHold);
+            }
+            else {
+                recovered.add(seatHold);
+            }
+        });
+        expired.forEach(this::releaseHold);
+        return recovered;
+    }
+
+    /**
+     * Copy the seats, holds and reservations of a snapshot into the venue.
+     *
+     * @param snapshot the snapshot
+     */
+    private void restore(final VenueSnapshot snapshot) {
+        checkArgument(snapshot.numRows() == numRows && snapshot.seatsPerRow() == seatsPerRow,
+                "Snapshot is of a venue with %s rows of %s seats", snapshot.numRows(), snapshot.seatsPerRow()
+        );
+        int numSeatsTaken = seatStates.copyFrom(snapshot.seatStates());
+        int numSeatsHeld = 0;
+        for (int seatIndex = 0; seatIndex < getTotalNumSeats(); seatIndex++) {
+            int state = seatStates.get(seatIndex);
+            if (state != SeatStates.AVAILABLE) {
+                takeSeat(seatIndex);
+            }
+            if (state == SeatStates.HELD) {
+                numSeatsHeld++;
+            }
+        }
+        seatCounter.restored(numSeatsHeld, numSeatsTaken - numSeatsHeld);
+        long nowMillis = System.currentTimeMillis();
+        snapshot.visit(
+                (id, expiresAtMillis, seatIndexes) -> {
+                    Duration remaining = Duration.ofMillis(expiresAtMillis - nowMillis);
+                    var _ = liveHolds.putIfAbsent(id, SeatHold.restore(seatsAt(seatIndexes), remaining, id));
+                },
+                (reservationCode, seatIndexes) -> {
+                    var _ = seatReservations.putIfAbsent(reservationCode, seatsAt(seatIndexes));
+                }
+        );
+    }
+
+    /**
+     * The seats at some indexes.
+     *
+     * @param seatIndexes the indexes
+     * @return the seats
+     */
+    private List<Seat> seatsAt(final int[] seatIndexes) {
+        List<Seat> seats = new ArrayList<>(seatIndexes.length);
+        for (int seatIndex : seatIndexes) {
+            seats.add(getSeat(seatIndex));
+        }
+        return List.copyOf(seats);
     }
 
     @Override
@@ -212,15 +965,24 @@ final class RectangularVenue implements Venue {
 
     /**
      * Populate the seat list if it hasn't been done before.
+     * <p>
+     * The list doesn't hold on to any seats itself, it hands out a {@link VenueSeat} view for every element that is accessed.
      *
-     * @return a filled list of all the seats in the venue
+     * @return a list of all the seats in the venue
      */
     List<Seat> populateSeatList() {
         checkState(seatList == null, "seatList was already populated");
-        seatList = new ArrayList<>();
-        for (Seat[] row : seats) {
-            seatList.addAll(Arrays.asList(row));
-        }
+        seatList = new AbstractList<>() {
+            @Override
+            public Seat get(final int index) {
+                return getSeat(index);
+            }
+
+            @Override
+            public int size() {
+                return getTotalNumSeats();
+            }
+        };
         return seatList;
     }
 
@@ -233,18 +995,19 @@ final class RectangularVenue implements Venue {
         System.out.println(String.join("", Collections.nCopies(padding, "-")) + " STAGE " + String.join("",
                 Collections.nCopies(padding, "-")
         ));
-        for (Seat[] seatRow : seats) {
-            for (Seat seat : seatRow) {
-                if (seat.isAvailable()) {
-                    System.out.print("A ");
-                    continue;
-                }
-                if (seat.isReserved()) {
-                    System.out.print("R ");
-                    continue;
-                }
-                if (seat.isHeld()) {
-                    System.out.print("H ");
+        printRows();
+    }
+
+    /**
+     * Print the state of every seat, a row per line, without the stage - for the sections of a {@link SectionedVenue}.
+     */
+    void printRows() {
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < seatsPerRow; col++) {
+                switch (seatStates.get(row * seatsPerRow + col)) {
+                    case SeatStates.AVAILABLE -> System.out.print("A ");
+                    case SeatStates.RESERVED -> System.out.print("R ");
+                    default -> System.out.print("H ");
                 }
             }
             System.out.println();
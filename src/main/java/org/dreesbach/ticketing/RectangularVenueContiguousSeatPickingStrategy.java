@@ -0,0 +1,52 @@
+package org.dreesbach.ticketing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A seat picking strategy for a rectangular venue that keeps groups together: it picks the best block of adjacent seats in
+ * a single row, where a block is as good as the sum of the goodness of its seats.
+ * <p>
+ * The venue's {@link FreeRunIndex} finds that block without looking at every seat - usually only at a handful of rows - and
+ * is kept up to date as seats are held and released, whichever strategy picked them.
+ * <p>
+ * If no row has enough adjacent seats left, the group is split as little as possible: the longest run in the venue is filled
+ * first, by the best block of that length, then the next longest for the rest of the group, and so on.
+ * <p>
+ * Like {@link RectangularVenueSimpleSeatPickingStrategy} this strategy doesn't keep any state of its own.
+ */
+public class RectangularVenueContiguousSeatPickingStrategy implements SeatPickingStrategy<RectangularVenue> {
+    /**
+     * Pick the best block of adjacent seats, or as few blocks as possible if there isn't a long enough run anywhere.
+     *
+     * @param numSeatsToPick number of seats to pick for reservation
+     * @return the picked {@link Seat}s, block by block and from left to right within a block - fewer than requested if not
+     *         enough seats are available
+     */
+    @Override
+    public final List<Seat> pickBestAvailableSeats(
+            final RectangularVenue venue, final int numSeatsToPick
+    ) {
+        checkArgument(numSeatsToPick >= 0, "Number of seats to pick must be greater than 0");
+        checkNotNull(venue, "venue should not be null");
+        List<Seat> pickedSeats = new ArrayList<>(numSeatsToPick);
+        // finding a block and taking its seats must not interleave with another pick - holdSeats() already holds the venue's
+        // monitor, this is for callers that pick directly
+        synchronized (venue) {
+            int remaining = numSeatsToPick;
+            while (remaining > 0 && venue.freeRuns().longestRun() > 0) {
+                int blockLength = Math.min(remaining, venue.freeRuns().longestRun());
+                int firstSeat = venue.freeRuns().bestBlock(blockLength);
+                for (int seatIndex = firstSeat; seatIndex < firstSeat + blockLength; seatIndex++) {
+                    venue.takeSeat(seatIndex);
+                    pickedSeats.add(venue.getSeat(seatIndex));
+                }
+                remaining -= blockLength;
+            }
+        }
+        return pickedSeats;
+    }
+}
@@ -0,0 +1,9 @@
+package org.dreesbach.ticketing;
+
+/**
+ * One request in a batch passed to {@link TicketService#reserveSeats(java.util.List)}.
+ *
+ * @param seatHoldId the seat hold identifier
+ * @param customerEmail the email address of the customer to which the seat hold is assigned
+ */
+public record ReservationRequest(int seatHoldId, String customerEmail) { }
@@ -0,0 +1,184 @@
+package org.dreesbach.ticketing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A bounded queue of preallocated, reusable slots with many producers and a single consumer.
+ * <p>
+ * A producer {@link #claim()}s the next sequence number, fills in that sequence's {@link #slot(long) slot} and then
+ * {@link #publish(long)}es it. The consumer {@link #drain(Consumer, int) drains} published slots strictly in sequence order,
+ * and a slot is only handed out again once the consumer is done with it - so a slot is only ever touched by one thread at a
+ * time, and its fields need no synchronization of their own. Claiming is a single atomic increment; a producer only ever
+ * waits when the buffer is full, and then it spins (or parks very briefly) rather than blocking.
+ * <p>
+ * The consumer {@link #await(long) parks} when there is nothing to drain, and publishing unparks it.
+ *
+ * @param <E> the type of the slots
+ */
+final class RingBuffer<E> {
+    /**
+     * How often a producer waiting for a free slot spins before it starts parking in between checks.
+     */
+    private static final int SPINS_BEFORE_PARKING = 100;
+    /**
+     * The slots.
+     */
+    private final Object[] slots;
+    /**
+     * For turning a sequence number into a slot index.
+     */
+    private final int mask;
+    /**
+     * The sequence number last published in each slot - {@code -1} before the first one.
+     */
+    private final AtomicLongArray published;
+    /**
+     * The next sequence number to hand out to a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * The next sequence number the consumer is going to read - every slot before it is free. Only written by the consumer.
+     */
+    private volatile long consumed;
+    /**
+     * The consumer, while it's parked waiting for a slot to be published.
+     */
+    private volatile Thread waitingConsumer;
+    /**
+     * Whether the consumer has stopped for good.
+     */
+    private volatile boolean halted;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity number of slots, a power of 2
+     * @param slotFactory creates the slots
+     */
+    RingBuffer(final int capacity, final Supplier<? extends E> slotFactory) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of 2");
+        checkNotNull(slotFactory, "slotFactory cannot be null");
+        slots = new Object[capacity];
+        mask = capacity - 1;
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = slotFactory.get();
+            published.set(i, -1L);
+        }
+    }
+
+    /**
+     * The number of slots.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claim the next sequence number, waiting for its slot to be free if the buffer is full.
+     *
+     * @return the sequence number, to fill in the {@link #slot(long) slot} of and then {@link #publish(long)} - or {@code -1}
+     *         if the buffer is full and the consumer has {@link #halt() halted}, so that the slot will never be free
+     */
+    long claim() {
+        long sequence = claimed.getAndIncrement();
+        for (int spins = 0; sequence - consumed >= slots.length; spins++) {
+            if (halted) {
+                return -1L;
+            }
+            else if (spins < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+            }
+            else {
+                // as briefly as the OS allows - this is only ever a backstop for when the consumer falls far behind
+                LockSupport.parkNanos(1L);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * The slot of a sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the slot
+     */
+    @SuppressWarnings("unchecked")
+    E slot(final long sequence) {
+        return (E) slots[index(sequence)];
+    }
+
+    /**
+     * Hand a claimed slot over to the consumer. Everything written to the slot before is visible to the consumer once it reads
+     * the slot.
+     *
+     * @param sequence the sequence number
+     */
+    void publish(final long sequence) {
+        published.set(index(sequence), sequence);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Hand published slots, in sequence order, to the consumer. Only to be called by the consumer.
+     *
+     * @param handler handles each slot - the slot is handed out again as soon as the whole batch is done
+     * @param maxBatchSize how many slots to handle at most
+     * @return how many slots were handled
+     */
+    int drain(final Consumer<? super E> handler, final int maxBatchSize) {
+        long next = consumed;
+        int batchSize = 0;
+        while (batchSize < maxBatchSize && published.get(index(next)) == next) {
+            handler.accept(slot(next));
+            next++;
+            batchSize++;
+        }
+        consumed = next;
+        return batchSize;
+    }
+
+    /**
+     * Park until the next slot is published, or a deadline passes. Only to be called by the consumer. May return early.
+     *
+     * @param deadlineNanos the deadline, in terms of {@link System#nanoTime()}
+     */
+    void await(final long deadlineNanos) {
+        waitingConsumer = Thread.currentThread();
+        // Checked only after announcing ourselves, so that a producer that publishes in between is sure to see us and unpark
+        if (published.get(index(consumed)) != consumed) {
+            LockSupport.parkNanos(this, deadlineNanos - System.nanoTime());
+        }
+        waitingConsumer = null;
+    }
+
+    /**
+     * Stop consuming for good, so that producers stop waiting for slots to be free - claiming one fails instead if the buffer
+     * is full. The consumer may still drain what's been published. Only to be called by the consumer.
+     */
+    void halt() {
+        halted = true;
+    }
+
+    /**
+     * The index of a sequence number's slot.
+     *
+     * @param sequence the sequence number
+     * @return the index
+     */
+    private int index(final long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,11 @@
+package org.dreesbach.ticketing;
+
+/**
+ * A change to the state of one seat, as published by a venue's {@link SeatChangeFeed}.
+ *
+ * @param sequence the sequence number of the change - of the last one, if several changes to the seat were coalesced
+ * @param seat index of the seat, in row-major order
+ * @param from the state the seat was in before
+ * @param to the state the seat is in now
+ */
+public record SeatChange(long sequence, int seat, SeatState from, SeatState to) { }
@@ -0,0 +1,408 @@
+package org.dreesbach.ticketing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Publishes every change to the state of a seat of a {@link RectangularVenue}, in order, so that live seat maps can follow
+ * along with the changes instead of polling the whole venue. See {@link RectangularVenue#seatChanges()}.
+ * <p>
+ * Every change has a sequence number, handed out by the venue's {@link SeatStates} - the same number its {@link SeatMap}s
+ * use as their version. The feed keeps the most recent {@link #CAPACITY} changes in a ring of packed {@code long}s, which
+ * the seat's transition writes before it finishes; recording a change never waits for anyone. A subscriber that starts from
+ * a map subscribes {@link #subscribe(Flow.Subscriber, long) from the map's version} and gets exactly the changes since.
+ * <p>
+ * Subscribers get {@link SeatChanges} batches, one per unit of demand, each with everything that happened since their
+ * previous one - so a slow subscriber gets fewer, larger batches rather than falling behind, and changes to the same seat
+ * within a batch are coalesced. A subscriber that falls behind by more than the ring holds gets a fresh {@link SeatMap} to
+ * carry on from instead. Batches are delivered on an {@link Executor}: a burst of changes schedules one round of deliveries,
+ * and every subscriber is only ever signalled by one thread at a time.
+ */
+final class SeatChangeFeed implements Flow.Publisher<SeatChanges> {
+    /**
+     * Number of changes kept for subscribers that are behind, a power of 2.
+     */
+    static final int CAPACITY = 4_096;
+    /**
+     * Stands in for a change in the ring that replaced all seats at once, e.g. restoring a snapshot.
+     */
+    private static final long ALL_SEATS_REPLACED = -1L;
+    /**
+     * Number of bits the seat index is shifted by in a packed change, above the two states.
+     */
+    private static final int SEAT_SHIFT = Integer.SIZE;
+    /**
+     * Number of bits the state a seat was in is shifted by in a packed change, above the state it is in now.
+     */
+    private static final int FROM_SHIFT = Short.SIZE;
+    /**
+     * Mask for a state in a packed change.
+     */
+    private static final int STATE_MASK = 0b11;
+    /**
+     * The sequence number of the change in each slot of the ring, {@code -1} while the slot is being written.
+     */
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    /**
+     * The packed change in each slot of the ring: seat index in the upper half, then the state before, then the state after.
+     */
+    private final AtomicLongArray changes = new AtomicLongArray(CAPACITY);
+    /**
+     * The sequence number after the last change handed out so far, i.e. the next one - which may not be recorded yet.
+     */
+    private final LongSupplier nextSequence;
+    /**
+     * Gets a consistent map of the seats, for subscribers that fell behind.
+     */
+    private final Supplier<SeatMap> seatMaps;
+    /**
+     * Where subscribers are signalled.
+     */
+    private final Executor executor;
+    /**
+     * The current subscriptions.
+     */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Whether a round of deliveries has been scheduled and not started yet.
+     */
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    /**
+     * The sequence number of the first change recorded, once the feed has {@link #start(long) started}.
+     */
+    private volatile long firstSequence;
+
+    /**
+     * Creates a new feed, which needs to be {@link #start(long) started} before anybody can subscribe.
+     *
+     * @param nextSequence the sequence number the next change is going to get
+     * @param seatMaps gets a consistent map of the seats
+     * @param executor where subscribers are signalled
+     */
+    SeatChangeFeed(final LongSupplier nextSequence, final Supplier<SeatMap> seatMaps, final Executor executor) {
+        this.nextSequence = checkNotNull(nextSequence, "nextSequence cannot be null");
+        this.seatMaps = checkNotNull(seatMaps, "seatMaps cannot be null");
+        this.executor = checkNotNull(executor, "executor cannot be null");
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            sequences.set(slot, -1L);
+        }
+    }
+
+    /**
+     * Start publishing, from the first change that's sure to be recorded on: every change from then on has to be
+     * {@link #changed(long, int, int, int) recorded}.
+     *
+     * @param sequence the sequence number of that change
+     */
+    void start(final long sequence) {
+        firstSequence = sequence;
+    }
+
+    /**
+     * Record a change to a seat, which may also have failed to change it.
+     *
+     * @param sequence the sequence number of the change
+     * @param seat index of the seat
+     * @param from the packed state the seat was in
+     * @param to the packed state the seat is in now - the same as {@code from} if it didn't change
+     */
+    void changed(final long sequence, final int seat, final int from, final int to) {
+        record(sequence, ((long) seat << SEAT_SHIFT) | ((long) from << FROM_SHIFT) | to);
+    }
+
+    /**
+     * Record that all seats were replaced at once, e.g. by restoring a snapshot - subscribers need a fresh map.
+     *
+     * @param sequence the sequence number of the change
+     */
+    void replacedAll(final long sequence) {
+        record(sequence, ALL_SEATS_REPLACED);
+    }
+
+    /**
+     * Put a packed change into the ring - marking the slot as being written first, so that a subscriber reading it at the
+     * same time notices - and have it delivered.
+     *
+     * @param sequence the sequence number of the change
+     * @param change the packed change
+     */
+    private void record(final long sequence, final long change) {
+        int slot = (int) (sequence & (CAPACITY - 1));
+        sequences.set(slot, -1L);
+        changes.set(slot, change);
+        sequences.set(slot, sequence);
+        if (!subscriptions.isEmpty() && !deliveryScheduled.get() && !deliveryScheduled.getAndSet(true)) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    /**
+     * Deliver the changes recorded so far to every subscriber that has asked for more.
+     */
+    private void deliver() {
+        deliveryScheduled.set(false);
+        for (Subscription subscription : subscriptions) {
+            subscription.drain();
+        }
+    }
+
+    /**
+     * Subscribe to the changes from now on.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super SeatChanges> subscriber) {
+        subscribe(subscriber, nextSequence.getAsLong());
+    }
+
+    /**
+     * Subscribe to the changes from a sequence number on, e.g. the {@link SeatMap#getVersion() version} of a map, or the
+     * {@link SeatChanges#toSequence()} of the last batch a subscriber got before it went away.
+     *
+     * @param subscriber the subscriber
+     * @param fromSequence the sequence number of the first change to get
+     */
+    void subscribe(final Flow.Subscriber<? super SeatChanges> subscriber, final long fromSequence) {
+        checkNotNull(subscriber, "subscriber cannot be null");
+        checkArgument(fromSequence >= 0 && fromSequence <= nextSequence.getAsLong(),
+                "fromSequence must be between 0 and the next sequence number"
+        );
+        Subscription subscription = new Subscription(subscriber, fromSequence);
+        subscriptions.add(subscription);
+        executor.execute(subscription::start);
+    }
+
+    /**
+     * Number of current subscriptions.
+     *
+     * @return number of subscriptions
+     */
+    int numSubscriptions() {
+        return subscriptions.size();
+    }
+
+    /**
+     * The changes recorded since a sequence number, coalesced.
+     *
+     * @param sequence the sequence number of the first change to get
+     * @return the changes, {@code null} if there aren't any yet
+     */
+    private SeatChanges changesSince(final long sequence) {
+        if (sequence < firstSequence || nextSequence.getAsLong() - sequence > CAPACITY) {
+            return fellBehind(sequence);
+        }
+        Map<Integer, Integer> seatPositions = new HashMap<>();
+        List<SeatChange> seatChanges = new ArrayList<>();
+        long next = sequence;
+        while (next < nextSequence.getAsLong()) {
+            int slot = (int) (next & (CAPACITY - 1));
+            long recorded = sequences.get(slot);
+            long change = changes.get(slot);
+            if (recorded != next || sequences.get(slot) != next) {
+                if (recorded > next || nextSequence.getAsLong() - next > CAPACITY) {
+                    return fellBehind(sequence);
+                }
+                // not recorded yet, the rest will be delivered once it is
+                break;
+            }
+            if (change == ALL_SEATS_REPLACED) {
+                if (next == sequence) {
+                    return fellBehind(sequence);
+                }
+                break;
+            }
+            int from = (int) (change >> FROM_SHIFT) & STATE_MASK;
+            int to = (int) change & STATE_MASK;
+            if (from != to) {
+                coalesce(seatPositions, seatChanges, new SeatChange(next, (int) (change >> SEAT_SHIFT), SeatState.of(from),
+                        SeatState.of(to)
+                ));
+            }
+            next++;
+        }
+        if (next == sequence) {
+            return null;
+        }
+        List<SeatChange> coalesced = new ArrayList<>(seatChanges.size());
+        for (SeatChange seatChange : seatChanges) {
+            if (seatChange.from() != seatChange.to()) {
+                coalesced.add(seatChange);
+            }
+        }
+        coalesced.sort(Comparator.comparingLong(SeatChange::sequence));
+        return new SeatChanges(sequence, next, List.copyOf(coalesced), null);
+    }
+
+    /**
+     * Add a change to a batch, merging it with an earlier change to the same seat.
+     *
+     * @param seatPositions where each seat's change is in the batch
+     * @param seatChanges the batch
+     * @param seatChange the change
+     */
+    private static void coalesce(
+            final Map<Integer, Integer> seatPositions, final List<SeatChange> seatChanges, final SeatChange seatChange
+    ) {
+        Integer position = seatPositions.putIfAbsent(seatChange.seat(), seatChanges.size());
+        if (position == null) {
+            seatChanges.add(seatChange);
+        }
+        else {
+            SeatChange earlier = seatChanges.get(position);
+            seatChanges.set(position, new SeatChange(seatChange.sequence(), seatChange.seat(), earlier.from(), seatChange.to()));
+        }
+    }
+
+    /**
+     * A fresh map for a subscriber that fell behind.
+     *
+     * @param sequence the sequence number of the first change the subscriber missed
+     * @return the batch with the map
+     */
+    private SeatChanges fellBehind(final long sequence) {
+        SeatMap seatMap = seatMaps.get();
+        return new SeatChanges(sequence, seatMap.getVersion(), List.of(), seatMap);
+    }
+
+    /**
+     * A subscription to the feed. Signals are serialized by a work-in-progress counter: whoever takes it from 0 schedules a
+     * drain on the executor, which keeps going until nobody asked for another one meanwhile.
+     */
+    private final class Subscription implements Flow.Subscription {
+        /**
+         * The subscriber.
+         */
+        private final Flow.Subscriber<? super SeatChanges> subscriber;
+        /**
+         * Number of batches the subscriber has asked for and not got yet.
+         */
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * Number of times a drain was asked for since the current one started - 1 until the subscriber has been told about
+         * the subscription.
+         */
+        private final AtomicInteger work = new AtomicInteger(1);
+        /**
+         * The sequence number of the next change to deliver. Only touched while draining.
+         */
+        private long position;
+        /**
+         * What was wrong with the subscriber's last request, if anything.
+         */
+        private volatile IllegalArgumentException invalidRequest;
+        /**
+         * Whether the subscription was cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Creates a new subscription.
+         *
+         * @param subscriber the subscriber
+         * @param fromSequence the sequence number of the first change to deliver
+         */
+        Subscription(final Flow.Subscriber<? super SeatChanges> subscriber, final long fromSequence) {
+            this.subscriber = subscriber;
+            position = fromSequence;
+        }
+
+        /**
+         * Tell the subscriber about the subscription, and deliver what it asked for meanwhile.
+         */
+        void start() {
+            subscriber.onSubscribe(this);
+            run();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Number of batches requested must be > 0");
+            }
+            else {
+                var _ = demand.accumulateAndGet(n, (current, more) -> {
+                    long sum = current + more;
+                    if (sum < 0) {
+                        return Long.MAX_VALUE;
+                    }
+                    return sum;
+                });
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            var _ = subscriptions.remove(this);
+        }
+
+        /**
+         * Deliver whatever there is to deliver, on the executor unless a delivery is in progress already - which then takes
+         * care of it.
+         */
+        void drain() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this::run);
+            }
+        }
+
+        /**
+         * Deliver until nobody asks for another drain.
+         */
+        private void run() {
+            int missed = 1;
+            do {
+                emit();
+                missed = work.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        /**
+         * Deliver as many batches as there are changes and demand for.
+         */
+        private void emit() {
+            if (cancelled) {
+                return;
+            }
+            IllegalArgumentException failure = invalidRequest;
+            if (failure != null) {
+                cancel();
+                subscriber.onError(failure);
+                return;
+            }
+            while (demand.get() > 0 && !cancelled) {
+                SeatChanges batch = changesSince(position);
+                if (batch == null) {
+                    return;
+                }
+                position = batch.toSequence();
+                var _ = demand.decrementAndGet();
+                try {
+                    subscriber.onNext(batch);
+                }
+                catch (RuntimeException e) {
+                    // a subscriber mustn't throw, one that does is done
+                    cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.dreesbach.ticketing;
+
+import java.util.List;
+
+/**
+ * The changes to the seats of a venue between two sequence numbers, as published by its {@link SeatChangeFeed}: everything
+ * that happened since the subscriber's previous batch, with all changes to the same seat coalesced into one, in sequence
+ * order.
+ * <p>
+ * A subscriber that fell so far behind that the feed no longer has the changes it missed gets a fresh {@link SeatMap}
+ * instead, and no changes; so does one that was behind when the seats were restored from a snapshot. Either way, applying the
+ * batch to the seats as of {@code fromSequence} gives the seats as of {@code toSequence}.
+ *
+ * @param fromSequence the sequence number of the first change covered
+ * @param toSequence the sequence number after the last change covered - where the next batch starts
+ * @param changes the changes, at most one per seat
+ * @param seatMap all seats as of {@code toSequence}, or {@code null} if the changes are all there is
+ */
+public record SeatChanges(long fromSequence, long toSequence, List<SeatChange> changes, SeatMap seatMap) { }
@@ -0,0 +1,159 @@
+package org.dreesbach.ticketing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Counts the available, held and reserved seats of a venue, updated by the venue as seats change state, so that they can be
+ * read in constant time without any of its locks.
+ * <p>
+ * The held and reserved counts are packed into the two halves of a single {@code long}, and the available seats are what's
+ * left of the total. Every change - a whole hold or reservation at a time - is one atomic add of the differences of both
+ * halves, so a reader always gets counts that belong together: no hold shows up as reserved before it's no longer held,
+ * and the three counts always add up to the total. Neither half ever goes negative, so adding a negative difference to the
+ * lower half never borrows from the upper one.
+ * <p>
+ * The counter of a section of a {@link SectionedVenue} passes every change on to the counter of the whole hall, so that the
+ * hall's counts are just as consistent, and as cheap to read, as those of each section.
+ */
+final class SeatCounter {
+    /**
+     * Mask of the lower half, the number of seats held.
+     */
+    private static final long HELD_MASK = 0xFFFF_FFFFL;
+    /**
+     * Total number of seats.
+     */
+    private final int numSeats;
+    /**
+     * The number of seats reserved in the upper half, held in the lower half.
+     */
+    private final AtomicLong counts = new AtomicLong();
+    /**
+     * The counter every change is passed on to, or {@code null} if there is none.
+     */
+    private final SeatCounter parent;
+
+    /**
+     * Creates a counter with all seats available.
+     *
+     * @param numSeats total number of seats
+     */
+    SeatCounter(final int numSeats) {
+        this(numSeats, null);
+    }
+
+    /**
+     * Creates a counter with all seats available, for a part of a larger venue.
+     *
+     * @param numSeats total number of seats of the part
+     * @param parent the counter of the larger venue, which every change is passed on to, or {@code null}
+     */
+    SeatCounter(final int numSeats, final SeatCounter parent) {
+        checkArgument(numSeats >= 0, "numSeats must be >= 0");
+        this.numSeats = numSeats;
+        this.parent = parent;
+    }
+
+    /**
+     * Available seats were held.
+     *
+     * @param numSeatsHeld number of seats
+     */
+    void held(final int numSeatsHeld) {
+        add(numSeatsHeld, 0);
+    }
+
+    /**
+     * Held seats were released, and are available again.
+     *
+     * @param numSeatsReleased number of seats
+     */
+    void released(final int numSeatsReleased) {
+        add(-numSeatsReleased, 0);
+    }
+
+    /**
+     * Held seats were reserved.
+     *
+     * @param numSeatsReserved number of seats
+     */
+    void reserved(final int numSeatsReserved) {
+        add(-numSeatsReserved, numSeatsReserved);
+    }
+
+    /**
+     * A reservation was cancelled, and its seats are available again.
+     *
+     * @param numSeatsCancelled number of seats
+     */
+    void cancelled(final int numSeatsCancelled) {
+        add(0, -numSeatsCancelled);
+    }
+
+    /**
+     * Available seats were restored to a state, e.g. from a {@link VenueSnapshot}.
+     *
+     * @param numSeatsHeld number of seats that are held now
+     * @param numSeatsReserved number of seats that are reserved now
+     */
+    void restored(final int numSeatsHeld, final int numSeatsReserved) {
+        add(numSeatsHeld, numSeatsReserved);
+    }
+
+    /**
+     * Apply a change to the counts, and pass it on to the {@link #parent}.
+     *
+     * @param heldDelta difference of the number of seats held
+     * @param reservedDelta difference of the number of seats reserved
+     */
+    private void add(final int heldDelta, final int reservedDelta) {
+        var _ = counts.getAndAdd(((long) reservedDelta << Integer.SIZE) + heldDelta);
+        if (parent != null) {
+            parent.add(heldDelta, reservedDelta);
+        }
+    }
+
+    /**
+     * Number of seats available.
+     *
+     * @return number of seats
+     */
+    int available() {
+        long current = counts.get();
+        return numSeats - held(current) - reserved(current);
+    }
+
+    /**
+     * All three counts, as of the same moment.
+     *
+     * @return the counts
+     */
+    SeatCounts counts() {
+        long current = counts.get();
+        int held = held(current);
+        int reserved = reserved(current);
+        return new SeatCounts(numSeats - held - reserved, held, reserved);
+    }
+
+    /**
+     * Number of seats held, from packed counts.
+     *
+     * @param packed the packed counts
+     * @return number of seats
+     */
+    private static int held(final long packed) {
+        return (int) (packed & HELD_MASK);
+    }
+
+    /**
+     * Number of seats reserved, from packed counts.
+     *
+     * @param packed the packed counts
+     * @return number of seats
+     */
+    private static int reserved(final long packed) {
+        return (int) (packed >>> Integer.SIZE);
+    }
+}
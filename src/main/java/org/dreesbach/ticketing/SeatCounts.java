@@ -0,0 +1,11 @@
+package org.dreesbach.ticketing;
+
+/**
+ * How many seats of a {@link Venue} are available, held and reserved, all as of the same moment - they always add up to the
+ * venue's total number of seats.
+ *
+ * @param available the number of seats available
+ * @param held the number of seats held
+ * @param reserved the number of seats reserved
+ */
+public record SeatCounts(int available, int held, int reserved) { }
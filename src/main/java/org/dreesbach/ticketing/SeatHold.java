@@ -1,28 +1,39 @@
 package org.dreesbach.ticketing;
 
 import com.google.common.collect.ImmutableList;
-import org.dreesbach.ticketing.id.IdGenerator;
 
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Class to coordinate holding of seats prior to actually reserving.
  */
 class SeatHold {
-    /** The expiration time of this {@code SeatHold}. */
-    private Instant expirationTime;
+    /**
+     * Cap on how far out an expiration can be, so that adding it to {@link System#nanoTime()} can't overflow. That's still
+     * well over a hundred years.
+     */
+    private static final long MAX_EXPIRATION_NANOS = Long.MAX_VALUE / 2;
+    /**
+     * The expiration time of this {@code SeatHold}, as a {@link System#nanoTime()}. We use the monotonic clock rather than an
+     * {@link java.time.Instant} so that checking for expiration is a single cheap clock read, and so that wall-clock
+     * adjustments can't make holds expire early or late.
+     */
+    private volatile long expirationNanos;
     /** Number of seats to hold for reservation. */
     private int numSeatsRequested;
     /** Unique ID of the seat hold. */
     private int id;
     /** List of seats held. */
     private List<Seat> seatsHeld = new ArrayList<>();
+    /** The handle for this hold's scheduled expiration, if the owning service schedules one. */
+    private volatile ExpirationWheel.Entry<?> expirationEntry;
 
     /**
      * Create a new SeatHold with the specified expiration time.
@@ -33,17 +44,57 @@ class SeatHold {
      *
      * @param seatsToHold list of seats to hold
      * @param seatHoldExpirationTime duration until the {@code SeatHold} expires
+     * @param id unique ID of the seat hold, from the venue's {@link org.dreesbach.ticketing.id.HoldIdAllocator}
+     */
+    SeatHold(final List<Seat> seatsToHold, final Duration seatHoldExpirationTime, final int id) {
+        this(seatsToHold, seatHoldExpirationTime, id, true);
+    }
+
+    /**
+     * Create a new SeatHold, holding its seats only if asked to.
+     *
+     * @param seatsToHold list of seats to hold
+     * @param seatHoldExpirationTime duration until the {@code SeatHold} expires
+     * @param id unique ID of the seat hold
+     * @param holdSeats whether to hold the seats, rather than take them as they are
+     */
+    private SeatHold(final List<Seat> seatsToHold, final Duration seatHoldExpirationTime, final int id, final boolean holdSeats) {
+        checkArgument(id > 0, "id must be > 0");
+        holdSeats(seatsToHold, seatHoldExpirationTime, holdSeats);
+        this.id = id;
+    }
+
+    /**
+     * Bring back a SeatHold whose seats are already held, e.g. from a {@link VenueSnapshot}.
+     *
+     * @param seatsHeld list of seats held
+     * @param seatHoldExpirationTime duration until the {@code SeatHold} expires
+     * @param id unique ID of the seat hold
+     * @return the hold
      */
-    SeatHold(final List<Seat> seatsToHold, final Duration seatHoldExpirationTime) {
+    static SeatHold restore(final List<Seat> seatsHeld, final Duration seatHoldExpirationTime, final int id) {
+        return new SeatHold(seatsHeld, seatHoldExpirationTime, id, false);
+    }
+
+    /**
+     * Hold the seats and set the expiration time.
+     *
+     * @param seatsToHold list of seats to hold
+     * @param seatHoldExpirationTime duration until the {@code SeatHold} expires
+     * @param holdSeats whether to hold the seats, rather than take them as they are
+     */
+    private void holdSeats(final List<Seat> seatsToHold, final Duration seatHoldExpirationTime, final boolean holdSeats) {
         checkNotNull(seatsToHold, "seatsToHold cannot be null");
         checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null");
         numSeatsRequested = seatsToHold.size();
         for (Seat seat : seatsToHold) {
-            seat.hold();
+            if (holdSeats) {
+                seat.hold();
+            }
             seatsHeld.add(seat);
         }
-        id = IdGenerator.generateUniqueIntId();
-        expirationTime = Instant.now().plus(seatHoldExpirationTime);
+        long expirationTimeNanos = Math.min(TimeUnit.NANOSECONDS.convert(seatHoldExpirationTime), MAX_EXPIRATION_NANOS);
+        expirationNanos = System.nanoTime() + Math.max(expirationTimeNanos, 0L);
     }
 
     /**
@@ -93,16 +144,43 @@ class SeatHold {
      * @return true if it is after the expiration time
      */
     public boolean expired() {
-        return Instant.now().isAfter(expirationTime) || Instant.now().equals(expirationTime);
+        return System.nanoTime() - expirationNanos >= 0;
+    }
+
+    /**
+     * When this {@code SeatHold} expires.
+     *
+     * @return the expiration time as a {@link System#nanoTime()}
+     */
+    long getExpirationNanos() {
+        return expirationNanos;
+    }
+
+    /**
+     * The handle for this hold's scheduled expiration.
+     *
+     * @return the handle, or {@code null} if none was scheduled
+     */
+    ExpirationWheel.Entry<?> getExpirationEntry() {
+        return expirationEntry;
+    }
+
+    /**
+     * Remember the handle for this hold's scheduled expiration, so that it can be cancelled when the hold is consumed.
+     *
+     * @param expirationEntry the handle
+     */
+    void setExpirationEntry(final ExpirationWheel.Entry<?> expirationEntry) {
+        this.expirationEntry = expirationEntry;
     }
 
     /**
      * Remove this {@code SeatHold}.
      */
     public void remove() {
-        IdGenerator.retireId(getId());
-        if (expirationTime.isAfter(Instant.now())) {
-            expirationTime = Instant.now();
+        long now = System.nanoTime();
+        if (expirationNanos - now > 0) {
+            expirationNanos = now;
         }
         seatsHeld.stream().forEach(Seat::cancelHold);
         seatsHeld = Collections.emptyList();
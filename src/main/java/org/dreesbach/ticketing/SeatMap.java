@@ -0,0 +1,259 @@
+package org.dreesbach.ticketing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * An immutable, consistent picture of the states of all seats of a {@link Venue}, for showing buyers a seat map - every hold,
+ * reservation, release and cancellation is either in it completely or not at all. See {@link Venue#getSeatMap()}.
+ * <p>
+ * Every map has a version, which goes up with every change to the seats: as long as a venue hands out a map with the same
+ * version as the last one, nothing has changed, and a client can skip rendering it again. Maps are cached until the next
+ * change, so any number of readers share one. The version is also the sequence number of the next change, so a client can
+ * follow the changes from there on with the venue's {@link SeatChangeFeed} rather than fetching whole maps.
+ * <p>
+ * Seats are numbered in row-major order, like {@link Venue#getSeats()}. The states are kept in the packed form of the venue,
+ * 2 bits per seat, one array per section of a {@link SectionedVenue}. To hand a map to a client, write it out in the compact
+ * form of {@link SeatMapFormat}, which run-length encodes every row.
+ */
+public final class SeatMap {
+    /**
+     * The version of the seats this map shows.
+     */
+    private final long version;
+    /**
+     * Number of seats in each row.
+     */
+    private final int seatsPerRow;
+    /**
+     * Number of seats.
+     */
+    private final int numSeats;
+    /**
+     * Number of seats of every part but the last.
+     */
+    private final int seatsPerPart;
+    /**
+     * The packed seat states of every part, see {@link SeatStates}. Never changed.
+     */
+    private final long[][] parts;
+
+    /**
+     * Creates a map of the seats of a {@link RectangularVenue}.
+     *
+     * @param version the version of the seats
+     * @param seatsPerRow number of seats in each row
+     * @param numSeats number of seats
+     * @param words the packed seat states, which the map takes over
+     */
+    SeatMap(final long version, final int seatsPerRow, final int numSeats, final long[] words) {
+        this(version, seatsPerRow, numSeats, numSeats, new long[][] {words});
+    }
+
+    /**
+     * Creates a map of seats in sections of whole rows.
+     *
+     * @param version the version of the seats
+     * @param seatsPerRow number of seats in each row
+     * @param numSeats number of seats
+     * @param seatsPerPart number of seats of every section but the last
+     * @param parts the packed seat states of every section, which the map takes over
+     */
+    SeatMap(final long version, final int seatsPerRow, final int numSeats, final int seatsPerPart, final long[][] parts) {
+        this.version = version;
+        this.seatsPerRow = seatsPerRow;
+        this.numSeats = numSeats;
+        this.seatsPerPart = seatsPerPart;
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a map of the seats of a {@link SectionedVenue} from the maps of its sections. The version is the sum of the
+     * sections' versions, so it changes whenever one of theirs does.
+     *
+     * @param sections the maps of the sections, all but the last the same size
+     */
+    SeatMap(final List<SeatMap> sections) {
+        checkArgument(!sections.isEmpty(), "There must be at least one section");
+        seatsPerPart = sections.getFirst().numSeats;
+        seatsPerRow = sections.getFirst().seatsPerRow;
+        parts = new long[sections.size()][];
+        long versions = 0;
+        int seats = 0;
+        for (int i = 0; i < parts.length; i++) {
+            SeatMap section = sections.get(i);
+            checkArgument(section.parts.length == 1, "Sections can't be split further");
+            checkArgument(section.seatsPerRow == seatsPerRow, "Rows of all sections must be the same length");
+            checkArgument(section.numSeats == seatsPerPart || (i == parts.length - 1 && section.numSeats < seatsPerPart),
+                    "Only the last section may be smaller"
+            );
+            parts[i] = section.parts[0];
+            versions += section.version;
+            seats += section.numSeats;
+        }
+        version = versions;
+        numSeats = seats;
+    }
+
+    /**
+     * The version of the seats this map shows - if it's the same as that of an earlier map of the same venue, so are the
+     * seats.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Number of seats in the map.
+     *
+     * @return number of seats
+     */
+    public int size() {
+        return numSeats;
+    }
+
+    /**
+     * Number of seats in each row.
+     *
+     * @return number of seats per row
+     */
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * Number of rows in the map.
+     *
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numSeats / seatsPerRow;
+    }
+
+    /**
+     * Number of sections, each a band of whole rows - one for a {@link RectangularVenue}.
+     *
+     * @return number of sections
+     */
+    public int getNumSections() {
+        return parts.length;
+    }
+
+    /**
+     * Number of rows of every section but the last, which may have fewer.
+     *
+     * @return number of rows per section
+     */
+    int getRowsPerSection() {
+        return seatsPerPart / seatsPerRow;
+    }
+
+    /**
+     * How many seats of a section were in each state - counted from the packed states a word at a time.
+     *
+     * @param section number of the section, from 0 (front) to {@code getNumSections() - 1} (back)
+     * @return the counts
+     */
+    public SeatCounts getSectionCounts(final int section) {
+        checkElementIndex(section, parts.length);
+        return SeatStates.count(parts[section], Math.min(seatsPerPart, numSeats - section * seatsPerPart));
+    }
+
+    /**
+     * Write this map into a buffer in the compact form of {@link SeatMapFormat}.
+     *
+     * @param buffer where to write the map, from its position on - big-endian
+     * @param withSectionSummaries whether to start with the {@link #getSectionCounts(int) counts} of every section
+     * @return number of bytes written
+     * @throws java.nio.BufferOverflowException if the map doesn't fit into the buffer; what did fit was written
+     */
+    public int writeTo(final ByteBuffer buffer, final boolean withSectionSummaries) {
+        return SeatMapFormat.write(this, withSectionSummaries, buffer);
+    }
+
+    /**
+     * Write this map to a channel in the compact form of {@link SeatMapFormat}, through a buffer of
+     * {@value SeatMapFormat#CHANNEL_BUFFER_SIZE} bytes.
+     *
+     * @param channel where to write the map - in blocking mode
+     * @param withSectionSummaries whether to start with the {@link #getSectionCounts(int) counts} of every section
+     * @return number of bytes written
+     * @throws IOException if the channel can't be written to
+     */
+    public long writeTo(final WritableByteChannel channel, final boolean withSectionSummaries) throws IOException {
+        return SeatMapFormat.write(this, withSectionSummaries, channel);
+    }
+
+    /**
+     * Read a map written by {@link #writeTo(ByteBuffer, boolean)}.
+     *
+     * @param buffer the map, from its position on - big-endian
+     * @return the map
+     * @throws IllegalArgumentException if the buffer doesn't hold an intact map
+     * @throws java.nio.BufferUnderflowException if the map is cut short
+     */
+    public static SeatMap readFrom(final ByteBuffer buffer) {
+        return SeatMapFormat.read(buffer);
+    }
+
+    /**
+     * Number of seats from one on, up to the end of its row at most, that are in the same state as it.
+     *
+     * @param seat index of the first seat of the run, in row-major order
+     * @param rowEnd index of the first seat of the next row
+     * @return length of the run, at least 1
+     */
+    int runLength(final int seat, final int rowEnd) {
+        int seatInPart = seat % seatsPerPart;
+        return SeatStates.runLength(parts[seat / seatsPerPart], seatInPart, seatInPart + rowEnd - seat);
+    }
+
+    /**
+     * Whether a seat was available.
+     *
+     * @param seat index of the seat, in row-major order
+     * @return {@code true} if the seat could be held
+     */
+    public boolean isAvailable(final int seat) {
+        return state(seat) == SeatStates.AVAILABLE;
+    }
+
+    /**
+     * Whether a seat was held, and not reserved yet.
+     *
+     * @param seat index of the seat, in row-major order
+     * @return {@code true} if the seat was part of a live {@link SeatHold}
+     */
+    public boolean isHeld(final int seat) {
+        return state(seat) == SeatStates.HELD;
+    }
+
+    /**
+     * Whether a seat was reserved.
+     *
+     * @param seat index of the seat, in row-major order
+     * @return {@code true} if the seat was reserved
+     */
+    public boolean isReserved(final int seat) {
+        return state(seat) == SeatStates.RESERVED;
+    }
+
+    /**
+     * The state of a seat.
+     *
+     * @param seat index of the seat, in row-major order
+     * @return one of {@link SeatStates#AVAILABLE}, {@link SeatStates#HELD} or {@link SeatStates#RESERVED}
+     */
+    int state(final int seat) {
+        checkElementIndex(seat, numSeats);
+        int seatInPart = seat % seatsPerPart;
+        return SeatStates.stateIn(parts[seat / seatsPerPart][seatInPart / SeatStates.SEATS_PER_WORD], seatInPart);
+    }
+}
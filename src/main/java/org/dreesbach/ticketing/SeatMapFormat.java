@@ -0,0 +1,324 @@
+package org.dreesbach.ticketing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The compact binary form of a {@link SeatMap}, for serving it to every visitor of an on-sale - see
+ * {@link SeatMap#writeTo(ByteBuffer, boolean)} and {@link SeatMap#readFrom(ByteBuffer)}.
+ * <p>
+ * Rows tend to be uniform - all available before the on-sale, all reserved after it, with a few runs of held and reserved
+ * seats in between - so every row is run-length encoded: a run is its length shifted left by 2 bits, with its
+ * {@link SeatStates state} in the low 2 bits, written as an unsigned LEB128 varint. A row of up to 31 seats that are all in
+ * the same state takes a single byte, one of up to 4095 seats two. The runs are found a word of packed states at a time,
+ * and written straight into the caller's buffer, so there's no allocation per seat or per run. In order, big-endian:
+ * <ul>
+ *     <li>magic number and version</li>
+ *     <li>{@link SeatMap#getVersion() version of the map}</li>
+ *     <li>number of rows, seats per row, and rows per section - the last section gets the rows that are left over</li>
+ *     <li>flags: {@value #SECTION_SUMMARIES} if the section summaries follow</li>
+ *     <li>optionally, for every section the number of available, held and reserved seats, as varints - enough for a
+ *     client to show an overview without decoding the rows</li>
+ *     <li>for every row, its runs, which add up to the seats per row</li>
+ * </ul>
+ */
+final class SeatMapFormat {
+    /**
+     * Marks a seat map - "TKSM" in ASCII.
+     */
+    private static final int MAGIC = 0x544B534D;
+    /**
+     * Version of the format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Flag for maps that start with the number of seats in each state of every section.
+     */
+    static final int SECTION_SUMMARIES = 1;
+    /**
+     * Number of bytes before the section summaries.
+     */
+    static final int HEADER_BYTES = 5 * Integer.BYTES + Long.BYTES + Byte.BYTES;
+    /**
+     * Number of bits of a run that hold the state of its seats.
+     */
+    private static final int STATE_BITS = 2;
+    /**
+     * Mask of the bits of a run that hold the state of its seats.
+     */
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    /**
+     * Number of bits of a value in every byte of a varint.
+     */
+    private static final int VARINT_BITS = 7;
+    /**
+     * The bit of a byte of a varint that says more bytes follow.
+     */
+    private static final int VARINT_MORE = 1 << VARINT_BITS;
+    /**
+     * Most bytes a varint of a run or of a count takes - enough for 35 bits.
+     */
+    static final int MAX_VARINT_BYTES = 5;
+    /**
+     * Most bytes the summary of a section takes.
+     */
+    private static final int MAX_SUMMARY_BYTES = 3 * MAX_VARINT_BYTES;
+    /**
+     * Size of the buffer a map is written to a channel through.
+     */
+    static final int CHANNEL_BUFFER_SIZE = 8_192;
+
+    /**
+     * Make utility class non-instantiable.
+     */
+    private SeatMapFormat() { }
+
+    /**
+     * Write a map into a buffer.
+     *
+     * @param seatMap the map
+     * @param withSectionSummaries whether to start with the counts of every section
+     * @param buffer where to write the map, from its position on
+     * @return number of bytes written
+     */
+    static int write(final SeatMap seatMap, final boolean withSectionSummaries, final ByteBuffer buffer) {
+        checkBigEndian(buffer);
+        int start = buffer.position();
+        write(seatMap, withSectionSummaries, new Output(buffer, null));
+        return buffer.position() - start;
+    }
+
+    /**
+     * Write a map to a channel, through a buffer of {@value #CHANNEL_BUFFER_SIZE} bytes.
+     *
+     * @param seatMap the map
+     * @param withSectionSummaries whether to start with the counts of every section
+     * @param channel where to write the map
+     * @return number of bytes written
+     * @throws IOException if the channel can't be written to
+     */
+    static long write(final SeatMap seatMap, final boolean withSectionSummaries, final WritableByteChannel channel)
+            throws IOException {
+        Output output = new Output(ByteBuffer.allocate(CHANNEL_BUFFER_SIZE), checkNotNull(channel, "channel cannot be null"));
+        try {
+            write(seatMap, withSectionSummaries, output);
+            output.drain();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return output.written;
+    }
+
+    /**
+     * Write a map.
+     *
+     * @param seatMap the map
+     * @param withSectionSummaries whether to start with the counts of every section
+     * @param output where to write the map
+     */
+    private static void write(final SeatMap seatMap, final boolean withSectionSummaries, final Output output) {
+        int flags = 0;
+        if (withSectionSummaries) {
+            flags |= SECTION_SUMMARIES;
+        }
+        output.room(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(seatMap.getVersion())
+                .putInt(seatMap.getNumRows())
+                .putInt(seatMap.getSeatsPerRow())
+                .putInt(seatMap.getRowsPerSection())
+                .put((byte) flags);
+        if (withSectionSummaries) {
+            for (int section = 0; section < seatMap.getNumSections(); section++) {
+                SeatCounts counts = seatMap.getSectionCounts(section);
+                ByteBuffer buffer = output.room(MAX_SUMMARY_BYTES);
+                putVarint(buffer, counts.available());
+                putVarint(buffer, counts.held());
+                putVarint(buffer, counts.reserved());
+            }
+        }
+        int seat = 0;
+        while (seat < seatMap.size()) {
+            int rowEnd = seat + seatMap.getSeatsPerRow();
+            while (seat < rowEnd) {
+                int length = seatMap.runLength(seat, rowEnd);
+                putVarint(output.room(MAX_VARINT_BYTES), ((long) length << STATE_BITS) | seatMap.state(seat));
+                seat += length;
+            }
+        }
+    }
+
+    /**
+     * Read a map.
+     *
+     * @param buffer the map, from its position on
+     * @return the map
+     */
+    static SeatMap read(final ByteBuffer buffer) {
+        checkBigEndian(buffer);
+        checkArgument(buffer.getInt() == MAGIC, "Not a seat map");
+        int version = buffer.getInt();
+        checkArgument(version == VERSION, "Unsupported seat map version %s", version);
+        long mapVersion = buffer.getLong();
+        int numRows = buffer.getInt();
+        int seatsPerRow = buffer.getInt();
+        int rowsPerSection = buffer.getInt();
+        int flags = buffer.get();
+        checkArgument(numRows > 0 && seatsPerRow > 0 && rowsPerSection > 0 && rowsPerSection <= numRows
+                && (long) numRows * seatsPerRow <= Integer.MAX_VALUE, "Seat map has an impossible shape");
+        int numSections = (numRows + rowsPerSection - 1) / rowsPerSection;
+        SeatCounts[] summaries = null;
+        if ((flags & SECTION_SUMMARIES) != 0) {
+            summaries = new SeatCounts[numSections];
+            for (int section = 0; section < numSections; section++) {
+                summaries[section] = new SeatCounts(getCount(buffer), getCount(buffer), getCount(buffer));
+            }
+        }
+        long[][] parts = new long[numSections][];
+        for (int section = 0; section < numSections; section++) {
+            int numSeats = Math.min(rowsPerSection, numRows - section * rowsPerSection) * seatsPerRow;
+            long[] words = new long[(numSeats + SeatStates.SEATS_PER_WORD - 1) / SeatStates.SEATS_PER_WORD];
+            int seat = 0;
+            while (seat < numSeats) {
+                int rowEnd = seat + seatsPerRow;
+                while (seat < rowEnd) {
+                    long run = getVarint(buffer);
+                    long length = run >>> STATE_BITS;
+                    checkArgument(length > 0 && length <= rowEnd - seat, "Run of %s seats doesn't fit the row", length);
+                    int state = (int) (run & STATE_MASK);
+                    var _ = SeatState.of(state);
+                    SeatStates.fill(words, seat, seat + (int) length, state);
+                    seat += (int) length;
+                }
+            }
+            checkArgument(summaries == null || summaries[section].equals(SeatStates.count(words, numSeats)),
+                    "Summary of section %s doesn't match its seats", section
+            );
+            parts[section] = words;
+        }
+        return new SeatMap(mapVersion, seatsPerRow, numRows * seatsPerRow, rowsPerSection * seatsPerRow, parts);
+    }
+
+    /**
+     * Make sure a buffer is big-endian, like the format.
+     *
+     * @param buffer the buffer
+     */
+    private static void checkBigEndian(final ByteBuffer buffer) {
+        checkArgument(buffer.order() == ByteOrder.BIG_ENDIAN, "buffer must be big-endian");
+    }
+
+    /**
+     * Write an unsigned LEB128 varint: 7 bits at a time, lowest first, with the top bit set on all bytes but the last.
+     *
+     * @param buffer where to write it
+     * @param value the value, not negative
+     */
+    private static void putVarint(final ByteBuffer buffer, final long value) {
+        long rest = value;
+        while (rest >= VARINT_MORE) {
+            var _ = buffer.put((byte) (rest | VARINT_MORE));
+            rest >>>= VARINT_BITS;
+        }
+        var _ = buffer.put((byte) rest);
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most {@value #MAX_VARINT_BYTES} bytes.
+     *
+     * @param buffer where to read it from
+     * @return the value
+     */
+    private static long getVarint(final ByteBuffer buffer) {
+        long value = 0;
+        for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+            int b = buffer.get();
+            value |= (long) (b & (VARINT_MORE - 1)) << (i * VARINT_BITS);
+            if ((b & VARINT_MORE) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint of more than " + MAX_VARINT_BYTES + " bytes");
+    }
+
+    /**
+     * Read a count of seats.
+     *
+     * @param buffer where to read it from
+     * @return the count
+     */
+    private static int getCount(final ByteBuffer buffer) {
+        long count = getVarint(buffer);
+        checkArgument(count <= Integer.MAX_VALUE, "Count of %s seats is too large", count);
+        return (int) count;
+    }
+
+    /**
+     * Where a map is written to: straight into a buffer, or through it to a channel whenever it fills up.
+     */
+    private static final class Output {
+        /**
+         * The buffer.
+         */
+        private final ByteBuffer buffer;
+        /**
+         * The channel, or {@code null} to write into the buffer only.
+         */
+        private final WritableByteChannel channel;
+        /**
+         * Number of bytes written to the channel so far.
+         */
+        private long written;
+
+        /**
+         * Creates a new output.
+         *
+         * @param buffer the buffer
+         * @param channel the channel, or {@code null} to write into the buffer only
+         */
+        Output(final ByteBuffer buffer, final WritableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        /**
+         * The buffer, with room for a number of bytes if the map goes to a channel. If it goes into the buffer only, writing
+         * beyond its limit overflows it.
+         *
+         * @param numBytes number of bytes about to be written
+         * @return the buffer
+         */
+        ByteBuffer room(final int numBytes) {
+            if (channel != null && buffer.remaining() < numBytes) {
+                try {
+                    drain();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * Write everything in the buffer to the channel, and empty it.
+         *
+         * @throws IOException if the channel can't be written to
+         */
+        void drain() throws IOException {
+            var _ = buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            var _ = buffer.clear();
+        }
+    }
+}
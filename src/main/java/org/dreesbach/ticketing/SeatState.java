@@ -0,0 +1,34 @@
+package org.dreesbach.ticketing;
+
+/**
+ * The state of a seat, as published in {@link SeatChange}s.
+ */
+public enum SeatState {
+    /**
+     * The seat can be held.
+     */
+    AVAILABLE,
+    /**
+     * The seat is part of a live {@link SeatHold}.
+     */
+    HELD,
+    /**
+     * The seat has been reserved.
+     */
+    RESERVED;
+
+    /**
+     * The state of a seat from its packed form.
+     *
+     * @param packedState one of {@link SeatStates#AVAILABLE}, {@link SeatStates#HELD} or {@link SeatStates#RESERVED}
+     * @return the state
+     */
+    static SeatState of(final int packedState) {
+        return switch (packedState) {
+            case SeatStates.AVAILABLE -> AVAILABLE;
+            case SeatStates.HELD -> HELD;
+            case SeatStates.RESERVED -> RESERVED;
+            default -> throw new IllegalArgumentException("Unknown seat state " + packedState);
+        };
+    }
+}
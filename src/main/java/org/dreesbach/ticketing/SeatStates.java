@@ -0,0 +1,507 @@
+package org.dreesbach.ticketing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.LongBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Compact store for the state of every seat in a venue.
+ * <p>
+ * Rather than one object per seat, each seat's state is packed into 2 bits of a {@code long[]}, 32 seats to a word. The
+ * encoding is chosen so the per-state bitmaps fall out of a word with a couple of bit operations: the low bit of each pair is
+ * the "held" bitmap, the high bit the "reserved" bitmap, and a pair of zero bits means the seat is available. Keeping all
+ * three bitmaps interleaved in one word (rather than in three separate arrays) means every state transition is a single
+ * compare-and-set, so transitions on different seats never need a lock and a reader can never observe a seat that is e.g.
+ * both held and reserved.
+ * <p>
+ * For {@link SeatMap}s and the {@link SeatChangeFeed} the store also numbers its changes, and counts the changes in
+ * progress: every transition counts itself as in progress and then takes the next sequence number, before it changes the
+ * seat, and stops counting once it's done - and so does every operation on several seats that should only be seen as a
+ * whole, see {@link #beginChange()}, just without a sequence number of its own. A reader copies the words while nothing is
+ * in progress and checks that the sequence number hasn't moved meanwhile, like a seqlock with any number of writers;
+ * writers never wait for readers. The sequence number of the next change is the version of the seats, so a map of them is
+ * followed seamlessly by the changes from its version on. The changes in progress are counted in stripes, by thread, so
+ * that the sequence number is the only counter all writers contend on - and only once per seat.
+ */
+final class SeatStates {
+    /**
+     * State of a seat that can be held.
+     */
+    static final int AVAILABLE = 0b00;
+    /**
+     * State of a seat that is part of a {@link SeatHold}.
+     */
+    static final int HELD = 0b01;
+    /**
+     * State of a seat that has been reserved.
+     */
+    static final int RESERVED = 0b10;
+    /**
+     * Number of bits used per seat.
+     */
+    private static final int BITS_PER_SEAT = 2;
+    /**
+     * Number of seats packed into each {@code long}.
+     */
+    static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+    /**
+     * Mask for the state of a single seat.
+     */
+    private static final long STATE_MASK = 0b11L;
+    /**
+     * The low bit of every seat's pair of bits.
+     */
+    private static final long LOW_BITS = 0x5555555555555555L;
+    /**
+     * Gives us volatile and compare-and-set access to the elements of {@link #words}.
+     */
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    /**
+     * Number of stripes of {@link #inProgress}, a power of two with at least one stripe per processor.
+     */
+    private static final int NUM_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1;
+    /**
+     * Distance between the stripes of {@link #inProgress}, a cache line's worth of {@code long}s, so that threads counting on
+     * different stripes don't contend on the same cache line.
+     */
+    private static final int STRIPE_SPACING = 64 / Long.BYTES;
+    /**
+     * How often {@link #seatMap()} tries to copy the seats before it gives up to writers.
+     */
+    private static final int MAX_OPTIMISTIC_READS = 3;
+    /**
+     * Number of seats in this store.
+     */
+    private final int numSeats;
+    /**
+     * Number of seats in each row, for the {@link SeatMap}s.
+     */
+    private final int seatsPerRow;
+    /**
+     * The packed seat states.
+     */
+    private final long[] words;
+    /**
+     * The sequence number of the next change, the version.
+     */
+    private final AtomicLong changes = new AtomicLong();
+    /**
+     * The number of changes in progress, counted in {@link #NUM_STRIPES} stripes that are {@link #STRIPE_SPACING} apart - each
+     * change in the stripe of the thread that makes it.
+     */
+    private final AtomicLongArray inProgress = new AtomicLongArray(NUM_STRIPES * STRIPE_SPACING);
+    /**
+     * Where changes are published, once somebody {@link #feed(Supplier, Executor) asked} for them.
+     */
+    private volatile SeatChangeFeed feed;
+    /**
+     * The most recent map of the seats handed out, to hand out again until the seats change.
+     */
+    private volatile SeatMap latestMap;
+
+    /**
+     * Creates a new store with all seats available, all in one row.
+     *
+     * @param numSeats number of seats to track
+     */
+    SeatStates(final int numSeats) {
+        this(numSeats, numSeats);
+    }
+
+    /**
+     * Creates a new store with all seats available.
+     *
+     * @param numSeats number of seats to track
+     * @param seatsPerRow number of seats in each row - the seats must make up whole rows
+     */
+    SeatStates(final int numSeats, final int seatsPerRow) {
+        checkArgument(numSeats > 0, "numSeats must be > 0");
+        checkArgument(seatsPerRow > 0 && numSeats % seatsPerRow == 0, "numSeats must be a multiple of seatsPerRow");
+        this.numSeats = numSeats;
+        this.seatsPerRow = seatsPerRow;
+        words = new long[(numSeats + SEATS_PER_WORD - 1) / SEATS_PER_WORD];
+    }
+
+    /**
+     * Number of seats tracked.
+     *
+     * @return number of seats
+     */
+    int size() {
+        return numSeats;
+    }
+
+    /**
+     * Number of words the states are packed into, {@value SEATS_PER_WORD} seats to a word.
+     *
+     * @return number of words
+     */
+    int numWords() {
+        return words.length;
+    }
+
+    /**
+     * Copy the packed states of all seats, e.g. for a {@link VenueSnapshot}. The copy is only consistent if no seat changes
+     * state meanwhile.
+     *
+     * @param destination where to copy the {@link #numWords()} words to
+     */
+    void copyTo(final LongBuffer destination) {
+        for (int i = 0; i < words.length; i++) {
+            destination.put((long) WORDS.getVolatile(words, i));
+        }
+    }
+
+    /**
+     * Overwrite the states of all seats with packed ones, e.g. from a {@link VenueSnapshot}. No seat may change state
+     * meanwhile.
+     *
+     * @param source where to copy the {@link #numWords()} words from
+     * @return the number of seats that aren't {@link #AVAILABLE}
+     */
+    int copyFrom(final LongBuffer source) {
+        checkArgument(source.remaining() >= words.length, "Expected %s words of seat states", words.length);
+        int numTaken = 0;
+        beginChange();
+        long sequence = changes.getAndIncrement();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                long word = source.get();
+                checkArgument(i < words.length - 1 || (word & ~lastWordMask()) == 0, "Seat states beyond the last seat");
+                WORDS.setVolatile(words, i, word);
+                numTaken += Long.bitCount((word | (word >>> 1)) & LOW_BITS);
+            }
+        }
+        finally {
+            SeatChangeFeed currentFeed = feed;
+            if (currentFeed != null) {
+                currentFeed.replacedAll(sequence);
+            }
+            endChange();
+        }
+        return numTaken;
+    }
+
+    /**
+     * Start a change that readers of {@link #seatMap()} should see either completely or not at all, e.g. holding all seats of
+     * a {@link SeatHold}. Must be followed by {@link #endChange()}, in a {@code finally} block. Changes may be nested and may
+     * overlap with other changes; each transition is a change of its own anyway, with its own sequence number.
+     */
+    void beginChange() {
+        var _ = inProgress.getAndIncrement(stripe());
+    }
+
+    /**
+     * Finish a change started with {@link #beginChange()}, on the same thread.
+     */
+    void endChange() {
+        var _ = inProgress.getAndDecrement(stripe());
+    }
+
+    /**
+     * The stripe of {@link #inProgress} the current thread counts its changes in.
+     *
+     * @return the index of the stripe
+     */
+    private static int stripe() {
+        return ((int) Thread.currentThread().threadId() & (NUM_STRIPES - 1)) * STRIPE_SPACING;
+    }
+
+    /**
+     * Whether any change is in progress. The stripes are read one after the other, which is enough for a reader: a change
+     * that's counted in a stripe after it was read takes its sequence number after that, too.
+     *
+     * @return {@code true} if a change was found in progress
+     */
+    private boolean changing() {
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            if (inProgress.get(i * STRIPE_SPACING) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The version of the seats: the sequence number of the next change, which is also the number of changes so far - the
+     * ones in progress included.
+     *
+     * @return the version
+     */
+    long version() {
+        return changes.get();
+    }
+
+    /**
+     * The feed of changes to the seats, started on first use. The caller needs to keep writers out of the way meanwhile, like
+     * for {@link #seatMap()}, so that no change slips past the feed - nothing can be in progress while it starts.
+     *
+     * @param seatMaps gets a consistent map of the seats, for subscribers that fell behind
+     * @param executor where subscribers are signalled
+     * @return the feed
+     */
+    synchronized SeatChangeFeed feed(final Supplier<SeatMap> seatMaps, final Executor executor) {
+        SeatChangeFeed currentFeed = feed;
+        if (currentFeed == null) {
+            currentFeed = new SeatChangeFeed(this::version, seatMaps, executor);
+            feed = currentFeed;
+            // a transition that started before the feed was there may not record its change, so wait for those to finish
+            while (changing()) {
+                Thread.onSpinWait();
+            }
+            currentFeed.start(changes.get());
+        }
+        return currentFeed;
+    }
+
+    /**
+     * A consistent map of the seats, without waiting for or holding up any writer. The map is shared until the seats change,
+     * and otherwise copied while no change is in progress - which may not happen if the seats keep changing while the words
+     * are copied. After a few attempts this gives up, and the caller needs to keep writers out of the way and try again.
+     *
+     * @return the map, or {@code null} if changes kept getting in the way
+     */
+    SeatMap seatMap() {
+        SeatMap map = latestMap;
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            long before = changes.get();
+            if (map != null && map.getVersion() == before) {
+                return map;
+            }
+            if (changing()) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long[] copy = new long[words.length];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = (long) WORDS.getVolatile(words, i);
+            }
+            if (changes.get() == before) {
+                map = new SeatMap(before, seatsPerRow, numSeats, copy);
+                latestMap = map;
+                return map;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mask of the bits of the last word that belong to seats.
+     *
+     * @return the mask
+     */
+    private long lastWordMask() {
+        int seatsInLastWord = numSeats - (words.length - 1) * SEATS_PER_WORD;
+        if (seatsInLastWord == SEATS_PER_WORD) {
+            return -1L;
+        }
+        return (1L << (seatsInLastWord * BITS_PER_SEAT)) - 1;
+    }
+
+    /**
+     * Current state of a seat.
+     *
+     * @param seat index of the seat
+     * @return one of {@link #AVAILABLE}, {@link #HELD} or {@link #RESERVED}
+     */
+    int get(final int seat) {
+        checkElementIndex(seat, numSeats);
+        return stateIn((long) WORDS.getVolatile(words, seat / SEATS_PER_WORD), seat);
+    }
+
+    /**
+     * Hold an available seat.
+     *
+     * @param seat index of the seat
+     */
+    void hold(final int seat) {
+        int previous = transition(seat, AVAILABLE, HELD);
+        if (previous != AVAILABLE) {
+            throw new IllegalStateException("Cannot hold an unavailable seat");
+        }
+    }
+
+    /**
+     * Release a held seat.
+     *
+     * @param seat index of the seat
+     */
+    void cancelHold(final int seat) {
+        int previous = transition(seat, HELD, AVAILABLE);
+        if (previous == AVAILABLE) {
+            throw new IllegalStateException("Seat was already available");
+        }
+        if (previous == RESERVED) {
+            throw new IllegalStateException("Cannot cancel a hold on an already-reserved seat");
+        }
+    }
+
+    /**
+     * Reserve a held seat.
+     *
+     * @param seat index of the seat
+     */
+    void reserve(final int seat) {
+        int previous = transition(seat, HELD, RESERVED);
+        if (previous == AVAILABLE) {
+            throw new IllegalStateException("Seat was still marked as available");
+        }
+        if (previous == RESERVED) {
+            throw new IllegalStateException("Seat was already reserved");
+        }
+    }
+
+    /**
+     * Cancel the reservation of a seat, making it available again.
+     *
+     * @param seat index of the seat
+     */
+    void cancelReservation(final int seat) {
+        int previous = transition(seat, RESERVED, AVAILABLE);
+        if (previous == AVAILABLE) {
+            throw new IllegalStateException("Seat was still marked as available");
+        }
+        if (previous == HELD) {
+            throw new IllegalStateException("Seat was not reserved");
+        }
+    }
+
+    /**
+     * Atomically move a seat from one state to another.
+     *
+     * @param seat index of the seat
+     * @param from the state the seat is expected to be in
+     * @param to the state to move the seat to
+     * @return the state the seat was in - if that is not {@code from}, nothing was changed
+     */
+    private int transition(final int seat, final int from, final int to) {
+        checkElementIndex(seat, numSeats);
+        int wordIndex = seat / SEATS_PER_WORD;
+        int shift = shift(seat);
+        long word;
+        int current;
+        beginChange();
+        long sequence = changes.getAndIncrement();
+        try {
+            do {
+                word = (long) WORDS.getVolatile(words, wordIndex);
+                current = (int) ((word >>> shift) & STATE_MASK);
+                if (current != from) {
+                    // the sequence number is taken, so the feed gets a change that didn't change anything
+                    publish(sequence, seat, current, current);
+                    return current;
+                }
+            } while (!WORDS.compareAndSet(words, wordIndex, word, (word & ~(STATE_MASK << shift)) | ((long) to << shift)));
+            publish(sequence, seat, from, to);
+        }
+        finally {
+            endChange();
+        }
+        return current;
+    }
+
+    /**
+     * Record a change in the feed, if there is one.
+     *
+     * @param sequence the sequence number of the change
+     * @param seat index of the seat
+     * @param from the state the seat was in
+     * @param to the state the seat is in now
+     */
+    private void publish(final long sequence, final int seat, final int from, final int to) {
+        SeatChangeFeed currentFeed = feed;
+        if (currentFeed != null) {
+            currentFeed.changed(sequence, seat, from, to);
+        }
+    }
+
+    /**
+     * The state of a seat in its word of packed states.
+     *
+     * @param word the word
+     * @param seat index of the seat
+     * @return one of {@link #AVAILABLE}, {@link #HELD} or {@link #RESERVED}
+     */
+    static int stateIn(final long word, final int seat) {
+        return (int) ((word >>> shift(seat)) & STATE_MASK);
+    }
+
+    /**
+     * Number of seats from one on that are in the same state as it, a word at a time: the word is compared with the seat's
+     * state repeated for every seat, and the first pair of bits that differs ends the run.
+     *
+     * @param words packed seat states
+     * @param from index of the first seat of the run
+     * @param to index of the seat after the last one the run may reach
+     * @return length of the run, at least 1
+     */
+    static int runLength(final long[] words, final int from, final int to) {
+        long repeated = LOW_BITS * stateIn(words[from / SEATS_PER_WORD], from);
+        int seat = from;
+        while (seat < to) {
+            long different = (words[seat / SEATS_PER_WORD] ^ repeated) >>> shift(seat);
+            if (different != 0) {
+                return Math.min(seat + Long.numberOfTrailingZeros(different) / BITS_PER_SEAT, to) - from;
+            }
+            seat += SEATS_PER_WORD - seat % SEATS_PER_WORD;
+        }
+        return to - from;
+    }
+
+    /**
+     * Put a run of seats into one state, a word at a time.
+     *
+     * @param words packed seat states
+     * @param from index of the first seat of the run
+     * @param to index of the seat after the last one of the run
+     * @param state one of {@link #AVAILABLE}, {@link #HELD} or {@link #RESERVED}
+     */
+    static void fill(final long[] words, final int from, final int to, final int state) {
+        long repeated = LOW_BITS * state;
+        int seat = from;
+        while (seat < to) {
+            int word = seat / SEATS_PER_WORD;
+            int end = Math.min(to, (word + 1) * SEATS_PER_WORD);
+            long mask = -1L;
+            if (end - seat < SEATS_PER_WORD) {
+                mask = ((1L << ((end - seat) * BITS_PER_SEAT)) - 1) << shift(seat);
+            }
+            words[word] = (words[word] & ~mask) | (repeated & mask);
+            seat = end;
+        }
+    }
+
+    /**
+     * Count the seats in each state - the held and the reserved seats are the set low and high bits of their pairs.
+     *
+     * @param words packed seat states
+     * @param numSeats number of seats packed into the words
+     * @return the counts
+     */
+    static SeatCounts count(final long[] words, final int numSeats) {
+        int held = 0;
+        int reserved = 0;
+        for (long word : words) {
+            held += Long.bitCount(word & LOW_BITS);
+            reserved += Long.bitCount((word >>> 1) & LOW_BITS);
+        }
+        return new SeatCounts(numSeats - held - reserved, held, reserved);
+    }
+
+    /**
+     * Bit offset of a seat within its word.
+     *
+     * @param seat index of the seat
+     * @return the shift
+     */
+    private static int shift(final int seat) {
+        return (seat % SEATS_PER_WORD) * BITS_PER_SEAT;
+    }
+}
@@ -0,0 +1,419 @@
+package org.dreesbach.ticketing;
+
+import org.dreesbach.ticketing.id.HoldIdAllocator;
+import org.dreesbach.ticketing.id.IdGenerator;
+
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A rectangular hall split into sections - bands of consecutive rows - that sell their seats independently, so that holds in
+ * different sections don't wait for each other.
+ * <p>
+ * Every section is a {@link RectangularVenue} of its own, with its own seat states, indexes of available seats and monitor.
+ * Its seats are numbered and scored as seats of the whole hall, so the best seat of every section can be compared with the
+ * best seats of all the others. A hold is picked by a coordinator that doesn't take any section's monitor: of the sections
+ * with enough seats available, it finds the one whose best available seat is best, and considers all sections whose best
+ * seat is within {@link #getTolerance() tolerance} seats of that one as good enough. It then takes the best of those that no
+ * other hold is being picked in at the moment, or the best one if they're all busy, and only locks that section to pick and
+ * hold the seats. A tolerance of 0 keeps the seats in the strict global best-first order, larger ones trade a little of
+ * that order for holds that go ahead in parallel.
+ * <p>
+ * A hold never spans sections: if no section has enough seats left, it gets what the section with the most available seats
+ * has, even if the hall as a whole would have more. Holds for a whole batch are picked with all sections locked, in order,
+ * so that no other hold can get in between. Reservations, released holds and cancelled reservations go to the section the
+ * seats belong to.
+ * <p>
+ * Unlike a single {@link RectangularVenue} a sectioned one doesn't record its changes in a {@link Journal}, can't be
+ * snapshotted, and doesn't record its lock waits in {@link TicketMetrics}.
+ */
+final class SectionedVenue implements Venue {
+    /**
+     * Default tolerance, in seats, see {@link #getTolerance()}.
+     */
+    static final double DEFAULT_TOLERANCE = 1.0;
+    /**
+     * The sections, front to back.
+     */
+    private final RectangularVenue[] sections;
+    /**
+     * Counts the seats of the whole hall - every section passes its changes on to it.
+     */
+    private final SeatCounter seatCounter;
+    /**
+     * Number of holds being picked in each section right now.
+     */
+    private final AtomicIntegerArray holdsInFlight;
+    /**
+     * Number of seats in each section but the last, which may have fewer rows.
+     */
+    private final int seatsPerSection;
+    /**
+     * How much further from the stage a section's best seat may be than the best seat of all, see {@link #getTolerance()}.
+     */
+    private final double tolerance;
+    /**
+     * A list view of all the seats in this venue, section by section.
+     */
+    private final List<Seat> seatList;
+
+    /**
+     * Creates a new instance with the {@link #DEFAULT_TOLERANCE default tolerance}.
+     *
+     * @param numRows number of seat rows in the hall
+     * @param seatsPerRow number of seats per row
+     * @param rowsPerSection number of rows of each section - the last one gets the rows that are left over
+     * @param seatPickingStrategy the strategy for picking the best seats within a section
+     */
+    SectionedVenue(
+            final int numRows,
+            final int seatsPerRow,
+            final int rowsPerSection,
+            final SeatPickingStrategy<RectangularVenue> seatPickingStrategy
+    ) {
+        this(numRows, seatsPerRow, rowsPerSection, DEFAULT_TOLERANCE, seatPickingStrategy);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param numRows number of seat rows in the hall
+     * @param seatsPerRow number of seats per row
+     * @param rowsPerSection number of rows of each section - the last one gets the rows that are left over
+     * @param tolerance how many seats further from the stage a section's best seat may be than the best seat of all for the
+     *         section to be picked, see {@link #getTolerance()}
+     * @param seatPickingStrategy the strategy for picking the best seats within a section
+     */
+    SectionedVenue(
+            final int numRows,
+            final int seatsPerRow,
+            final int rowsPerSection,
+            final double tolerance,
+            final SeatPickingStrategy<RectangularVenue> seatPickingStrategy
+    ) {
+        checkNotNull(seatPickingStrategy, "seatPickingStrategy cannot be null");
+        checkArgument(numRows > 0, "Number of rows must be > 0");
+        checkArgument(seatsPerRow > 0, "Number of seats per row must be > 0");
+        checkArgument(rowsPerSection > 0, "Number of rows per section must be > 0");
+        checkArgument(tolerance >= 0, "tolerance must be >= 0");
+        this.tolerance = tolerance;
+        HoldIdAllocator holdIds = new HoldIdAllocator();
+        seatCounter = new SeatCounter(numRows * seatsPerRow);
+        sections = new RectangularVenue[(numRows + rowsPerSection - 1) / rowsPerSection];
+        // the sections have layouts of their own, so build all that aren't ready yet at the same time
+        List<CompletableFuture<VenueLayout>> layouts = new ArrayList<>(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            int firstRow = i * rowsPerSection;
+            layouts.add(VenueLayout.prepare(firstRow, Math.min(rowsPerSection, numRows - firstRow), seatsPerRow));
+        }
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new RectangularVenue(layouts.get(i).join(),
+                    seatPickingStrategy,
+                    holdIds,
+                    seatCounter
+            );
+        }
+        holdsInFlight = new AtomicIntegerArray(sections.length);
+        seatsPerSection = rowsPerSection * seatsPerRow;
+        seatList = new AbstractList<>() {
+            @Override
+            public Seat get(final int index) {
+                return sections[index / seatsPerSection].getSeat(index % seatsPerSection);
+            }
+
+            @Override
+            public int size() {
+                return getTotalNumSeats();
+            }
+        };
+    }
+
+    /**
+     * How many seats further from the stage than the best available seat of the whole hall a section's best available seat
+     * may be for a hold to be picked there rather than wait for the section with the best seat. Distances are measured from
+     * the front row's center seat, i.e. they are the square roots of the seats' goodness scores.
+     *
+     * @return the tolerance, in seats
+     */
+    double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Number of sections.
+     *
+     * @return number of sections
+     */
+    int getNumSections() {
+        return sections.length;
+    }
+
+    /**
+     * A section of the hall.
+     *
+     * @param section number of the section, from 0 (front) to {@code getNumSections() - 1} (back)
+     * @return the section
+     */
+    RectangularVenue getSection(final int section) {
+        return sections[section];
+    }
+
+    @Override
+    public int getTotalNumSeats() {
+        int totalNumSeats = 0;
+        for (RectangularVenue section : sections) {
+            totalNumSeats += section.getTotalNumSeats();
+        }
+        return totalNumSeats;
+    }
+
+    @Override
+    public int getAvailableNumSeats() {
+        return seatCounter.available();
+    }
+
+    @Override
+    public SeatCounts getSeatCounts() {
+        return seatCounter.counts();
+    }
+
+    /**
+     * A map of the seats put together from the maps of the sections, see {@link RectangularVenue#getSeatMap()}. Every section
+     * is consistent in itself, and so is every hold, which only ever has seats in one section - but a batch of holds that
+     * spans several sections may show up in some of them before the others.
+     *
+     * @return the map
+     */
+    @Override
+    public SeatMap getSeatMap() {
+        List<SeatMap> sectionMaps = new ArrayList<>(sections.length);
+        for (RectangularVenue section : sections) {
+            sectionMaps.add(section.getSeatMap());
+        }
+        return new SeatMap(sectionMaps);
+    }
+
+    /**
+     * Hold seats in the section the coordinator picks, see {@link SectionedVenue}. Only that section's monitor is taken. Should
+     * a hold in that section have taken the seats in the meantime, the coordinator picks again.
+     *
+     * @param numSeatsToHold the number of seats to be held
+     * @param seatHoldExpirationTime time until the SeatHold expires
+     * @return the hold - with fewer seats than requested if no section had that many left, all the way down to 0
+     */
+    @Override
+    public SeatHold holdSeats(final int numSeatsToHold, final Duration seatHoldExpirationTime) {
+        checkArgument(numSeatsToHold > 0, "numSeatsToHold must be > 0");
+        SeatHold seatHold = null;
+        while (seatHold == null) {
+            int section = pickSection(numSeatsToHold, true);
+            holdsInFlight.incrementAndGet(section);
+            try {
+                synchronized (sections[section]) {
+                    if (sections[section].getAvailableNumSeats() >= numSeatsToHold || !fitsAnySection(numSeatsToHold)) {
+                        seatHold = sections[section].holdSeats(numSeatsToHold, seatHoldExpirationTime);
+                    }
+                }
+            }
+            finally {
+                holdsInFlight.decrementAndGet(section);
+            }
+        }
+        return seatHold;
+    }
+
+    /**
+     * Hold seats for a whole batch of requests with all sections locked, front to back, so that no other hold gets in
+     * between. Each request goes to the section with the best seat, as there's no other hold to make room for.
+     *
+     * @param numSeatsToHold the number of seats desired by each request - all > 0
+     * @param seatHoldExpirationTime time until the SeatHolds expire
+     * @return one SeatHold per request, in the same order
+     */
+    @Override
+    public List<SeatHold> holdSeats(final int[] numSeatsToHold, final Duration seatHoldExpirationTime) {
+        for (int numSeats : numSeatsToHold) {
+            checkArgument(numSeats > 0, "numSeatsToHold must be > 0");
+        }
+        return holdSeatsLocked(0, numSeatsToHold, seatHoldExpirationTime);
+    }
+
+    /**
+     * See {@link #holdSeats(int[], Duration)}: takes the monitor of the next section, and holds the seats once all are taken.
+     *
+     * @param numLocked number of sections whose monitors have been taken already
+     * @param numSeatsToHold the number of seats desired by each request
+     * @param seatHoldExpirationTime time until the SeatHolds expire
+     * @return one SeatHold per request, in the same order
+     */
+    private List<SeatHold> holdSeatsLocked(
+            final int numLocked, final int[] numSeatsToHold, final Duration seatHoldExpirationTime
+    ) {
+        if (numLocked < sections.length) {
+            synchronized (sections[numLocked]) {
+                return holdSeatsLocked(numLocked + 1, numSeatsToHold, seatHoldExpirationTime);
+            }
+        }
+        List<SeatHold> seatHolds = new ArrayList<>(numSeatsToHold.length);
+        for (int numSeats : numSeatsToHold) {
+            seatHolds.add(sections[pickSection(numSeats, false)].holdSeats(numSeats, seatHoldExpirationTime));
+        }
+        return seatHolds;
+    }
+
+    /**
+     * The coordinator: pick the section to hold seats in, without taking any section's monitor.
+     *
+     * @param numSeats the number of seats to hold
+     * @param preferIdle whether to prefer a section no other hold is being picked in, within the {@link #tolerance}
+     * @return the number of the section
+     */
+    private int pickSection(final int numSeats, final boolean preferIdle) {
+        double[] distances = new double[sections.length];
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int best = -1;
+        int mostAvailable = 0;
+        for (int i = 0; i < sections.length; i++) {
+            distances[i] = Double.POSITIVE_INFINITY;
+            int availableNumSeats = sections[i].getAvailableNumSeats();
+            if (availableNumSeats > sections[mostAvailable].getAvailableNumSeats()) {
+                mostAvailable = i;
+            }
+            int bestSeat = sections[i].availableSeats().best();
+            if (availableNumSeats >= numSeats && bestSeat >= 0) {
+                distances[i] = Math.sqrt(sections[i].getGoodness(bestSeat));
+                if (distances[i] < bestDistance) {
+                    bestDistance = distances[i];
+                    best = i;
+                }
+            }
+        }
+        if (best < 0) {
+            return mostAvailable;
+        }
+        if (preferIdle) {
+            int bestIdle = -1;
+            for (int i = 0; i < sections.length; i++) {
+                if (distances[i] <= bestDistance + tolerance && holdsInFlight.get(i) == 0
+                        && (bestIdle < 0 || distances[i] < distances[bestIdle])) {
+                    bestIdle = i;
+                }
+            }
+            if (bestIdle >= 0) {
+                return bestIdle;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether any section has enough seats left for a hold.
+     *
+     * @param numSeats the number of seats to hold
+     * @return {@code true} if one does
+     */
+    private boolean fitsAnySection(final int numSeats) {
+        for (RectangularVenue section : sections) {
+            if (section.getAvailableNumSeats() >= numSeats) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The section a hold was made in: the section its seats belong to, or for a hold without seats, the one that has it
+     * among its live holds.
+     *
+     * @param seatHold the hold
+     * @return the section
+     */
+    private RectangularVenue sectionOf(final SeatHold seatHold) {
+        List<Seat> seatsHeld = checkNotNull(seatHold).getSeatsHeld();
+        if (!seatsHeld.isEmpty()) {
+            return ((VenueSeat) seatsHeld.getFirst()).getVenue();
+        }
+        for (RectangularVenue section : sections) {
+            if (section.isLiveHold(seatHold)) {
+                return section;
+            }
+        }
+        // a hold without seats that is no longer live - there's nothing left to release or reserve in any section
+        return sections[0];
+    }
+
+    @Override
+    public void removeHold(final SeatHold seatHold) {
+        sectionOf(seatHold).removeHold(seatHold);
+    }
+
+    @Override
+    public void setSeatPickingStrategy(final SeatPickingStrategy<? extends Venue> seatPickingStrategy) {
+        for (RectangularVenue section : sections) {
+            section.setSeatPickingStrategy(seatPickingStrategy);
+        }
+    }
+
+    @Override
+    public String reserve(final SeatHold seatHold) {
+        return sectionOf(seatHold).reserve(seatHold);
+    }
+
+    @Override
+    public String reserve(final SeatHold seatHold, final int reservationCode) {
+        int code = reservationCode;
+        while (hasReservation(code)) {
+            TicketEvents.idRetried(TicketEvents.RESERVATION_CODE, IdGenerator.encodeReservationCode(code));
+            code = IdGenerator.nextReservationCode();
+        }
+        return sectionOf(seatHold).reserve(seatHold, code);
+    }
+
+    /**
+     * Whether there is a reservation with a code in any of the sections. Each section only makes sure its own codes are
+     * unique.
+     *
+     * @param reservationCode the packed reservation code
+     * @return {@code true} if there is
+     */
+    private boolean hasReservation(final int reservationCode) {
+        for (RectangularVenue section : sections) {
+            if (section.hasReservation(reservationCode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void cancelReservation(final String reservationCode) {
+        int code = IdGenerator.decodeReservationCode(reservationCode);
+        for (RectangularVenue section : sections) {
+            if (section.hasReservation(code)) {
+                section.cancelReservation(reservationCode);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Reservation code " + reservationCode + " not found");
+    }
+
+    @Override
+    public List<Seat> getSeats() {
+        return seatList;
+    }
+
+    @Override
+    public void printSeats() {
+        sections[0].printSeats();
+        for (int i = 1; i < sections.length; i++) {
+            sections[i].printRows();
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link TicketService} implementation where a single thread owns the venue and all the holds, and every other thread just
+ * sends it commands.
+ * <p>
+ * Request threads publish their holds, reservations and cancellations into a {@link RingBuffer} of preallocated commands and
+ * wait for them to complete. The owner thread drains the commands in batches and also advances the expiration wheel itself
+ * between batches, so there is no separate sweeper. Since nothing but the owner thread ever touches the holds, the locks of
+ * their {@link IntRegistry} and the venue's monitors are never contended - the only cross-thread handoff left is the ring
+ * buffer, where producers don't block each other either.
+ * <p>
+ * Arguments are still checked on the calling thread, so that invalid requests never take up space in the ring buffer. Any
+ * other exception is thrown on the calling thread as it was thrown by the owner thread, with the owner thread's stack trace.
+ */
+public final class SingleWriterTicketServiceImpl implements TicketService {
+    /**
+     * Default number of commands the ring buffer holds.
+     */
+    static final int DEFAULT_RING_BUFFER_CAPACITY = 1_024;
+    /**
+     * How many commands the owner thread handles at most before checking for expired holds.
+     */
+    private static final int MAX_COMMAND_BATCH_SIZE = 256;
+    /**
+     * How long it takes for seat holds to expire.
+     */
+    private final Duration seatHoldExpirationTime;
+    /**
+     * How often to check for expired holds, in nanoseconds.
+     */
+    private final long seatHoldCheckExpirationNanos;
+    /**
+     * The venue to sell seats for. Only touched by the owner thread.
+     */
+    private final Venue venue;
+    /**
+     * All live seat holds, keyed by their ID. Only touched by the owner thread.
+     */
+    private final IntRegistry<SeatHold> seatHolds = new IntRegistry<>();
+    /**
+     * Keeps track of when each {@link SeatHold} expires. Only touched by the owner thread.
+     */
+    private final ExpirationWheel<SeatHold> expirationWheel;
+    /**
+     * Commands for the owner thread.
+     */
+    private final RingBuffer<Command> commands;
+    /**
+     * The thread that owns all the state.
+     */
+    private final Thread owner;
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private final AtomicBoolean closing = new AtomicBoolean();
+    /**
+     * Whether the owner thread has handled the close command, and won't handle any more.
+     */
+    private volatile boolean terminated;
+
+    /**
+     * What a {@link Command} asks for.
+     */
+    private enum Kind {
+        /**
+         * {@link #numSeatsAvailable()}.
+         */
+        AVAILABLE,
+        /**
+         * {@link #findAndHoldSeats(int, String)}.
+         */
+        HOLD,
+        /**
+         * {@link #findAndHoldSeats(List)}.
+         */
+        HOLD_BATCH,
+        /**
+         * {@link #reserveSeats(int, String)}.
+         */
+        RESERVE,
+        /**
+         * {@link #reserveSeats(List)}.
+         */
+        RESERVE_BATCH,
+        /**
+         * {@link #cancelReservation(String)}.
+         */
+        CANCEL,
+        /**
+         * {@link #close()}.
+         */
+        CLOSE
+    }
+
+    /**
+     * A slot of the ring buffer. Only ever accessed by one thread at a time: the producer that claimed it until it publishes
+     * it, then the owner thread.
+     */
+    private static final class Command {
+        /**
+         * What is asked for.
+         */
+        private Kind kind;
+        /**
+         * The number of seats or the seat hold ID, for commands that take one.
+         */
+        private int number;
+        /**
+         * The reservation code, for commands that take one.
+         */
+        private String text;
+        /**
+         * The requests, for batch commands.
+         */
+        private List<?> requests;
+        /**
+         * Where to deliver the result to.
+         */
+        private CompletableFuture<Object> completion;
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param venue an implementation of {@link Venue}, not to be used by anything else from now on
+     */
+    SingleWriterTicketServiceImpl(final Venue venue) {
+        this(venue,
+                TicketServiceImpl.CHECK_SEAT_HOLD_EXPIRATION_DURATION,
+                TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME,
+                DEFAULT_RING_BUFFER_CAPACITY
+        );
+    }
+
+    /**
+     * Constructor allowing specification of seat hold expiration time and of the size of the ring buffer.
+     *
+     * @param venue an implementation of {@link Venue}, not to be used by anything else from now on
+     * @param seatHoldCheckExpiration how often we should check for seat hold expiration
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     * @param ringBufferCapacity how many commands can be waiting at most, a power of 2
+     */
+    SingleWriterTicketServiceImpl(
+            final Venue venue,
+            final Duration seatHoldCheckExpiration,
+            final Duration seatHoldExpirationTime,
+            final int ringBufferCapacity
+    ) {
+        checkNotNull(seatHoldCheckExpiration, "seatHoldCheckExpiration must not be null");
+        checkArgument(
+                !(seatHoldCheckExpiration.isNegative() || seatHoldCheckExpiration.isZero()),
+                "seatHoldCheckExpiration must be > 0"
+        );
+        this.venue = checkNotNull(venue, "venue cannot be null");
+        this.seatHoldExpirationTime = checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null");
+        seatHoldCheckExpirationNanos = seatHoldCheckExpiration.toNanos();
+        expirationWheel =
+                new ExpirationWheel<>(seatHoldCheckExpiration, ExpirationWheel.DEFAULT_NUM_BUCKETS, System.nanoTime());
+        commands = new RingBuffer<>(ringBufferCapacity, Command::new);
+        owner = Thread.ofPlatform().name("ticketing-single-writer").daemon().start(this::run);
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return (Integer) call(Kind.AVAILABLE, 0, null, null);
+    }
+
+    /**
+     * Never returns {@code null} - when no seats are available the returned {@link SeatHold} simply holds no seats.
+     * <p>
+     * The returned SeatHold may have fewer seats than were requested if that many were not available.
+     *
+     * @param numSeatsToHold the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @return a {@link SeatHold}
+     */
+    @Override
+    public SeatHold findAndHoldSeats(final int numSeatsToHold, final String customerEmail) {
+        TicketServiceImpl.checkHoldParams(numSeatsToHold, customerEmail);
+        return (SeatHold) call(Kind.HOLD, numSeatsToHold, null, null);
+    }
+
+    /**
+     * The whole batch is a single command, so the owner thread handles it in one go.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<BatchResult<SeatHold>> findAndHoldSeats(final List<HoldRequest> requests) {
+        checkNotNull(requests, "requests cannot be null");
+        return (List<BatchResult<SeatHold>>) call(Kind.HOLD_BATCH, 0, null, requests);
+    }
+
+    /**
+     * Commit seats held for a specific customer.
+     *
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    @Override
+    public String reserveSeats(final int seatHoldId, final String customerEmail) {
+        checkArgument(seatHoldId > 0, "seatHoldId must be > 0");
+        TicketServiceImpl.checkEmailParam(customerEmail);
+        return (String) call(Kind.RESERVE, seatHoldId, null, null);
+    }
+
+    /**
+     * The whole batch is a single command, so the owner thread handles it in one go.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<BatchResult<String>> reserveSeats(final List<ReservationRequest> requests) {
+        checkNotNull(requests, "requests cannot be null");
+        return (List<BatchResult<String>>) call(Kind.RESERVE_BATCH, 0, null, requests);
+    }
+
+    /**
+     * Cancel a reservation, making its seats available again.
+     *
+     * @param reservationCode the reservation confirmation code
+     * @throws IllegalArgumentException when the reservation is not found
+     */
+    public void cancelReservation(final String reservationCode) {
+        checkNotNull(reservationCode, "reservationCode cannot be null");
+        var _ = call(Kind.CANCEL, 0, reservationCode, null);
+    }
+
+    /**
+     * Releases any holds that are still outstanding and stops the owner thread, waiting for it to finish the commands that
+     * came before. Commands sent afterwards fail with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        if (closing.compareAndSet(false, true)) {
+            var _ = call(Kind.CLOSE, 0, null, null);
+        }
+        boolean interrupted = false;
+        while (owner.isAlive()) {
+            try {
+                owner.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether the owner thread has stopped.
+     *
+     * @return {@code true} once {@link #close()} has returned
+     */
+    boolean isClosed() {
+        return !owner.isAlive();
+    }
+
+    /**
+     * Send a command to the owner thread and wait for its result.
+     *
+     * @param kind what is asked for
+     * @param number the number of seats or the seat hold ID
+     * @param text the reservation code
+     * @param requests the requests of a batch
+     * @return the result
+     */
+    private Object call(final Kind kind, final int number, final String text, final List<?> requests) {
+        CompletableFuture<Object> completion = new CompletableFuture<>();
+        long sequence = commands.claim();
+        if (sequence >= 0) {
+            Command command = commands.slot(sequence);
+            command.kind = kind;
+            command.number = number;
+            command.text = text;
+            command.requests = requests;
+            command.completion = completion;
+            commands.publish(sequence);
+        }
+        // Checked only after publishing: either the owner thread's last look at the ring buffer sees the command, or we see
+        // that it has stopped looking
+        if (terminated) {
+            completion.completeExceptionally(closedException());
+        }
+        try {
+            return completion.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The owner thread's loop: handle commands as they come in, and expire holds as they become due.
+     */
+    private void run() {
+        long nextExpirationCheck = System.nanoTime() + seatHoldCheckExpirationNanos;
+        while (!terminated) {
+            int numHandled = commands.drain(this::handle, MAX_COMMAND_BATCH_SIZE);
+            long now = System.nanoTime();
+            if (now - nextExpirationCheck >= 0) {
+                var _ = TicketEvents.sweep(expirationWheel, now, this::expireSeatHold);
+                nextExpirationCheck = now + seatHoldCheckExpirationNanos;
+            }
+            if (numHandled == 0 && !terminated) {
+                commands.await(nextExpirationCheck);
+            }
+        }
+        commands.halt();
+        // Whatever got published after the close command - any later ones fail on their own, see call()
+        var _ = commands.drain(this::handle, commands.capacity());
+    }
+
+    /**
+     * Handle a command on the owner thread.
+     *
+     * @param command the command
+     */
+    @SuppressWarnings("unchecked")
+    private void handle(final Command command) {
+        CompletableFuture<Object> completion = command.completion;
+        try {
+            if (terminated) {
+                throw closedException();
+            }
+            Object result = switch (command.kind) {
+                case AVAILABLE -> venue.getAvailableNumSeats();
+                case HOLD -> trackSeatHold(venue.holdSeats(command.number, seatHoldExpirationTime));
+                case HOLD_BATCH -> holdBatch((List<HoldRequest>) command.requests);
+                case RESERVE -> reserve(command.number);
+                case RESERVE_BATCH -> reserveBatch((List<ReservationRequest>) command.requests);
+                case CANCEL -> cancel(command.text);
+                case CLOSE -> shutDown();
+            };
+            completion.complete(result);
+        }
+        catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        }
+        finally {
+            // Don't keep the requests and results reachable until the slot is reused
+            command.text = null;
+            command.requests = null;
+            command.completion = null;
+        }
+    }
+
+    /**
+     * Start tracking a new {@link SeatHold} and schedule its expiration.
+     *
+     * @param seatHold the hold
+     * @return the hold
+     */
+    private SeatHold trackSeatHold(final SeatHold seatHold) {
+        if (seatHolds.putIfAbsent(seatHold.getId(), seatHold) != null) {
+            throw new IllegalStateException("Tried to allocate the same SeatHold ID [" + seatHold.getId() + "] more than once");
+        }
+        seatHold.setExpirationEntry(expirationWheel.schedule(seatHold, seatHold.getExpirationNanos()));
+        return seatHold;
+    }
+
+    /**
+     * Hold the seats for a batch of requests.
+     *
+     * @param requests the requests
+     * @return one result per request
+     */
+    private List<BatchResult<SeatHold>> holdBatch(final List<HoldRequest> requests) {
+        List<BatchResult<SeatHold>> results = new ArrayList<>(requests.size());
+        int[] numSeatsToHold = TicketServiceImpl.checkHoldRequests(requests, results);
+        List<SeatHold> newSeatHolds = venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+        newSeatHolds.forEach(this::trackSeatHold);
+        TicketServiceImpl.fillInResults(results, newSeatHolds);
+        return results;
+    }
+
+    /**
+     * Reserve a hold.
+     *
+     * @param seatHoldId the seat hold identifier
+     * @return the reservation code
+     */
+    private String reserve(final int seatHoldId) {
+        return TicketServiceImpl.reserveClaimedSeatHold(venue, claimSeatHold(seatHoldId));
+    }
+
+    /**
+     * Reserve the holds of a batch of requests.
+     *
+     * @param requests the requests
+     * @return one result per request
+     */
+    private List<BatchResult<String>> reserveBatch(final List<ReservationRequest> requests) {
+        List<BatchResult<String>> results = new ArrayList<>(requests.size());
+        List<SeatHold> claimed = new ArrayList<>(requests.size());
+        for (ReservationRequest request : requests) {
+            try {
+                checkNotNull(request, "request cannot be null");
+                checkArgument(request.seatHoldId() > 0, "seatHoldId must be > 0");
+                TicketServiceImpl.checkEmailParam(request.customerEmail());
+                claimed.add(claimSeatHold(request.seatHoldId()));
+                results.add(null);
+            }
+            catch (IllegalArgumentException | NullPointerException | IllegalStateException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        var _ = TicketServiceImpl.reserveClaimedSeatHolds(venue, claimed, results);
+        return results;
+    }
+
+    /**
+     * Claim a {@link SeatHold} for a reservation by removing it from {@link #seatHolds}, releasing it if it has expired.
+     *
+     * @param seatHoldId the seat hold identifier
+     * @return the hold
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    private SeatHold claimSeatHold(final int seatHoldId) {
+        SeatHold seatHold = seatHolds.remove(seatHoldId);
+        if (seatHold == null) {
+            throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] not found");
+        }
+        expirationWheel.cancel(seatHold.getExpirationEntry());
+        if (seatHold.expired()) {
+            venue.removeHold(seatHold);
+            throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] is expired");
+        }
+        return seatHold;
+    }
+
+    /**
+     * Cancel a reservation.
+     *
+     * @param reservationCode the reservation confirmation code
+     * @return nothing
+     */
+    private Object cancel(final String reservationCode) {
+        venue.cancelReservation(reservationCode);
+        return null;
+    }
+
+    /**
+     * Release all outstanding holds, since nothing would ever expire them anymore, and stop handling commands.
+     *
+     * @return nothing
+     */
+    private Object shutDown() {
+        seatHolds.values().forEach(venue::removeHold);
+        seatHolds.clear();
+        terminated = true;
+        return null;
+    }
+
+    /**
+     * Release an expired {@link SeatHold}, unless it has been reserved in the meantime.
+     *
+     * @param seatHold the expired hold
+     * @return whether it was released
+     */
+    private boolean expireSeatHold(final SeatHold seatHold) {
+        if (seatHolds.remove(seatHold.getId(), seatHold)) {
+            venue.removeHold(seatHold);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The exception for commands sent after {@link #close()}.
+     *
+     * @return the exception
+     */
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("SingleWriterTicketServiceImpl is closed");
+    }
+}
@@ -0,0 +1,275 @@
+package org.dreesbach.ticketing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.function.Predicate;
+
+/**
+ * Java Flight Recorder events of the ticketing system, so that slow holds, reservations and sweeps show up in a recording
+ * next to the GC pauses, safepoints and monitor waits that may have caused them.
+ * <p>
+ * The events are created where they happen, following JFR's idiom: {@code begin()} and {@code end()} around the work, and
+ * the fields filled in and the event committed by its {@code commit(...)} only if {@code shouldCommit()} - i.e. it's
+ * enabled and took at least its threshold. While no recording is running JFR leaves the methods empty and the JIT removes
+ * the event altogether, so they cost nothing in production until someone starts recording. The per-request events only
+ * keep the slow ones by default; lower their thresholds to get them all, e.g.
+ * {@code jfr configure org.dreesbach.ticketing.HoldCreated#threshold=0ms}. None of them take a stack trace, which would
+ * cost more than the operation itself.
+ */
+final class TicketEvents {
+    /**
+     * The kind of ID of a {@link IdRetried} event for a {@link SeatHold} ID.
+     */
+    static final String SEAT_HOLD_ID = "seat hold ID";
+    /**
+     * The kind of ID of a {@link IdRetried} event for a reservation code.
+     */
+    static final String RESERVATION_CODE = "reservation code";
+
+    /**
+     * Make utility class non-instantiable.
+     */
+    private TicketEvents() { }
+
+    /**
+     * Run a sweep for expired {@link SeatHold}s as an {@link ExpirationSweep} event.
+     *
+     * @param expirationWheel the wheel to advance
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @param expire releases a hold that is due, and tells whether it did - it doesn't if a reservation got there first
+     * @param <T> the type of item in the wheel, a {@link SeatHold} or a reference to one
+     * @return number of holds that were due
+     */
+    static <T> int sweep(final ExpirationWheel<T> expirationWheel, final long nowNanos, final Predicate<? super T> expire) {
+        ExpirationSweep event = new ExpirationSweep();
+        event.begin();
+        int numDue = expirationWheel.advance(nowNanos, item -> {
+            if (expire.test(item)) {
+                event.holdExpired();
+            }
+        });
+        event.end();
+        event.commit(numDue);
+        return numDue;
+    }
+
+    /**
+     * Record that a freshly generated ID was still in use, and another one had to be generated.
+     *
+     * @param kind the kind of ID, {@link #SEAT_HOLD_ID} or {@link #RESERVATION_CODE}
+     * @param id the ID that was in use
+     */
+    static void idRetried(final String kind, final String id) {
+        new IdRetried().commit(kind, id);
+    }
+
+    /**
+     * Seats were picked and held. Its duration is the time it took to pick them.
+     */
+    @Name("org.dreesbach.ticketing.HoldCreated")
+    @Label("Seat Hold Created")
+    @Category("Ticketing")
+    @Description("Seats picked and held for a customer")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    @SuppressWarnings("UnusedVariable") // the fields are read by JFR
+    static final class HoldCreated extends Event {
+        /**
+         * ID of the {@link SeatHold}.
+         */
+        @Label("Seat Hold ID")
+        private int seatHoldId;
+        /**
+         * Number of seats requested.
+         */
+        @Label("Seats Requested")
+        private int seatsRequested;
+        /**
+         * Number of seats held - fewer than requested if not enough were available.
+         */
+        @Label("Seats Granted")
+        private int seatsGranted;
+
+        /**
+         * Fill the event in and commit it, if it's enabled and took at least its threshold.
+         *
+         * @param id ID of the {@link SeatHold}
+         * @param numSeatsRequested number of seats requested
+         * @param numSeatsGranted number of seats held
+         */
+        void commit(final int id, final int numSeatsRequested, final int numSeatsGranted) {
+            if (shouldCommit()) {
+                seatHoldId = id;
+                seatsRequested = numSeatsRequested;
+                seatsGranted = numSeatsGranted;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * The seats of a hold were reserved, including waiting for the journal, if any, to have it.
+     */
+    @Name("org.dreesbach.ticketing.Reservation")
+    @Label("Reservation")
+    @Category("Ticketing")
+    @Description("Held seats reserved for a customer")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    @SuppressWarnings("UnusedVariable") // the fields are read by JFR
+    static final class Reservation extends Event {
+        /**
+         * ID of the {@link SeatHold}.
+         */
+        @Label("Seat Hold ID")
+        private int seatHoldId;
+        /**
+         * The reservation code.
+         */
+        @Label("Reservation Code")
+        private String reservationCode;
+        /**
+         * Number of seats reserved.
+         */
+        @Label("Seats Reserved")
+        private int seatsReserved;
+
+        /**
+         * Fill the event in and commit it, if it's enabled and took at least its threshold.
+         *
+         * @param id ID of the {@link SeatHold}
+         * @param code the reservation code
+         * @param numSeatsReserved number of seats reserved
+         */
+        void commit(final int id, final String code, final int numSeatsReserved) {
+            if (shouldCommit()) {
+                seatHoldId = id;
+                reservationCode = code;
+                seatsReserved = numSeatsReserved;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A reservation was cancelled, including waiting for the journal, if any, to have it.
+     */
+    @Name("org.dreesbach.ticketing.Cancellation")
+    @Label("Reservation Cancelled")
+    @Category("Ticketing")
+    @Description("Reserved seats made available again")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    @SuppressWarnings("UnusedVariable") // the fields are read by JFR
+    static final class Cancellation extends Event {
+        /**
+         * The reservation code.
+         */
+        @Label("Reservation Code")
+        private String reservationCode;
+        /**
+         * Number of seats made available again.
+         */
+        @Label("Seats Released")
+        private int seatsReleased;
+
+        /**
+         * Fill the event in and commit it, if it's enabled and took at least its threshold.
+         *
+         * @param code the reservation code
+         * @param numSeatsReleased number of seats made available again
+         */
+        void commit(final String code, final int numSeatsReleased) {
+            if (shouldCommit()) {
+                reservationCode = code;
+                seatsReleased = numSeatsReleased;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A sweep for expired {@link SeatHold}s. There's one per check interval, so all of them are recorded by default.
+     */
+    @Name("org.dreesbach.ticketing.ExpirationSweep")
+    @Label("Expiration Sweep")
+    @Category("Ticketing")
+    @Description("Sweep releasing the seat holds that have expired")
+    @Threshold("0 ms")
+    @StackTrace(false)
+    @SuppressWarnings("UnusedVariable") // the fields are read by JFR
+    static final class ExpirationSweep extends Event {
+        /**
+         * Number of holds that were due.
+         */
+        @Label("Holds Scanned")
+        private int holdsScanned;
+        /**
+         * Number of holds released - the others were reserved just before.
+         */
+        @Label("Holds Expired")
+        private int holdsExpired;
+
+        /**
+         * Count a hold that was released.
+         */
+        void holdExpired() {
+            holdsExpired++;
+        }
+
+        /**
+         * Fill the event in and commit it, if it's enabled.
+         *
+         * @param numHoldsScanned number of holds that were due
+         */
+        void commit(final int numHoldsScanned) {
+            if (shouldCommit()) {
+                holdsScanned = numHoldsScanned;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A freshly generated ID was still in use. IDs come out of bijections, so this only happens once they have come around
+     * again while an ID of the last round is still live.
+     */
+    @Name("org.dreesbach.ticketing.IdRetried")
+    @Label("ID Retried")
+    @Category("Ticketing")
+    @Description("Generated ID still in use, so another one was generated")
+    @StackTrace(false)
+    @SuppressWarnings("UnusedVariable") // the fields are read by JFR
+    static final class IdRetried extends Event {
+        /**
+         * The kind of ID.
+         */
+        @Label("Kind")
+        private String kind;
+        /**
+         * The ID that was in use.
+         */
+        @Label("ID")
+        private String id;
+
+        /**
+         * Fill the event in and commit it, if it's enabled.
+         *
+         * @param idKind the kind of ID
+         * @param idInUse the ID that was in use
+         */
+        void commit(final String idKind, final String idInUse) {
+            if (shouldCommit()) {
+                kind = idKind;
+                id = idInUse;
+                commit();
+            }
+        }
+    }
+}
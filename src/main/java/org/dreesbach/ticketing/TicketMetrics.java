@@ -0,0 +1,233 @@
+package org.dreesbach.ticketing;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * What a {@link TicketServiceImpl} and its {@link RectangularVenue} have been doing: a {@link LatencyHistogram} per
+ * {@link Latency} and a count per {@link Counter}. Recording allocates nothing, so it can stay on for a whole on-sale; reading
+ * is a pull, whenever and as often as the monitoring wants.
+ * <p>
+ * The counts are exact. The latencies are sampled: only one in {@link #DEFAULT_SAMPLING_INTERVAL} operations (picked at
+ * random) is timed by default, since reading the clock costs about as much as everything else recording does - and
+ * timing a checkout in full, with its waits for the monitors and its seat pick, takes nine reads. A sample that size still
+ * gives the percentiles of a busy on-sale in no time.
+ * <p>
+ * Services and venues that aren't instrumented record into {@link #DISABLED}, which doesn't even read the clock.
+ */
+public final class TicketMetrics {
+    /**
+     * How many operations there are for every one that is timed, by default.
+     */
+    static final int DEFAULT_SAMPLING_INTERVAL = 16;
+    /**
+     * What {@link #startNanos()} returns for an operation that isn't timed.
+     */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+    /**
+     * Metrics that aren't recorded, for services and venues that aren't instrumented. Reads as all zeros.
+     */
+    static final TicketMetrics DISABLED = new TicketMetrics(false, 1);
+    /**
+     * Whether anything is recorded.
+     */
+    private final boolean enabled;
+    /**
+     * An operation is timed if the low bits of a random number that this masks are all 0.
+     */
+    private final int samplingMask;
+    /**
+     * The histograms of the latencies.
+     */
+    private final Map<Latency, LatencyHistogram> latencies = new EnumMap<>(Latency.class);
+    /**
+     * The counts of the events.
+     */
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    /**
+     * Creates metrics that are recorded, timing one in {@link #DEFAULT_SAMPLING_INTERVAL} operations.
+     */
+    TicketMetrics() {
+        this(DEFAULT_SAMPLING_INTERVAL);
+    }
+
+    /**
+     * Creates metrics that are recorded.
+     *
+     * @param samplingInterval time one in this many operations - a power of two, 1 to time them all
+     */
+    TicketMetrics(final int samplingInterval) {
+        this(true, samplingInterval);
+        checkArgument(Integer.bitCount(samplingInterval) == 1, "samplingInterval must be a power of two");
+    }
+
+    /**
+     * Creates new metrics.
+     *
+     * @param enabled whether anything is recorded
+     * @param samplingInterval time one in this many operations
+     */
+    private TicketMetrics(final boolean enabled, final int samplingInterval) {
+        this.enabled = enabled;
+        samplingMask = samplingInterval - 1;
+        for (Latency latency : Latency.values()) {
+            latencies.put(latency, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    /**
+     * The histogram of a latency.
+     *
+     * @param latency the latency
+     * @return its histogram
+     */
+    public LatencyHistogram latency(final Latency latency) {
+        return latencies.get(checkNotNull(latency, "latency cannot be null"));
+    }
+
+    /**
+     * The count of an event.
+     *
+     * @param counter the event
+     * @return how often it happened
+     */
+    public long count(final Counter counter) {
+        return counters.get(checkNotNull(counter, "counter cannot be null")).sum();
+    }
+
+    /**
+     * The point in time a latency starts at, if the operation is to be timed.
+     *
+     * @return the current {@link System#nanoTime()}, or {@link #NOT_TIMED} if the operation isn't sampled (or this is
+     *         disabled)
+     */
+    long startNanos() {
+        if (!enabled || (ThreadLocalRandom.current().nextInt() & samplingMask) != 0) {
+            return NOT_TIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a latency that ends now, if the operation is timed.
+     *
+     * @param latency the latency
+     * @param startNanos when it started, from {@link #startNanos()} or an earlier {@code record}
+     * @return the current {@link System#nanoTime()}, e.g. for a latency that starts where this one ends - or
+     *         {@link #NOT_TIMED} if the operation isn't
+     */
+    long record(final Latency latency, final long startNanos) {
+        if (startNanos == NOT_TIMED) {
+            return NOT_TIMED;
+        }
+        long nowNanos = System.nanoTime();
+        latencies.get(latency).record(nowNanos - startNanos);
+        return nowNanos;
+    }
+
+    /**
+     * Count an event.
+     *
+     * @param counter the event
+     */
+    void increment(final Counter counter) {
+        if (enabled) {
+            counters.get(counter).increment();
+        }
+    }
+
+    /**
+     * Count an event that happened a number of times.
+     *
+     * @param counter the event
+     * @param times how many times it happened
+     */
+    void add(final Counter counter, final int times) {
+        if (enabled) {
+            counters.get(counter).add(times);
+        }
+    }
+
+    /**
+     * Count a new {@link SeatHold}, and whether it has fewer seats than requested or none at all.
+     *
+     * @param numSeatsRequested the number of seats requested
+     * @param seatHold the hold
+     */
+    void holdCreated(final int numSeatsRequested, final SeatHold seatHold) {
+        if (enabled) {
+            counters.get(Counter.HOLDS_CREATED).increment();
+            if (seatHold.getNumSeatsHeld() == 0) {
+                counters.get(Counter.EMPTY_HOLDS).increment();
+            }
+            else if (seatHold.getNumSeatsHeld() < numSeatsRequested) {
+                counters.get(Counter.PARTIAL_HOLDS).increment();
+            }
+        }
+    }
+
+    /**
+     * The latencies measured.
+     */
+    public enum Latency {
+        /**
+         * A {@link TicketService#findAndHoldSeats} call, from start to finish - a whole batch for the batch version.
+         */
+        FIND_AND_HOLD_SEATS,
+        /**
+         * A {@link TicketService#reserveSeats} call, from start to finish - a whole batch for the batch version.
+         */
+        RESERVE_SEATS,
+        /**
+         * A sweep for expired {@link SeatHold}s.
+         */
+        EXPIRE_SEAT_HOLDS,
+        /**
+         * A {@link SeatPickingStrategy#pickBestAvailableSeats} call, for a single hold.
+         */
+        PICK_BEST_AVAILABLE_SEATS,
+        /**
+         * Waiting for the service's monitor to hold or reserve seats.
+         */
+        SERVICE_LOCK_WAIT,
+        /**
+         * Waiting for the venue's monitor to hold seats.
+         */
+        VENUE_LOCK_WAIT
+    }
+
+    /**
+     * The events counted.
+     */
+    public enum Counter {
+        /**
+         * {@link SeatHold}s created, including partial and empty ones.
+         */
+        HOLDS_CREATED,
+        /**
+         * {@link SeatHold}s reserved.
+         */
+        HOLDS_RESERVED,
+        /**
+         * {@link SeatHold}s released because they expired, or were still live when the service was closed.
+         */
+        HOLDS_EXPIRED,
+        /**
+         * {@link SeatHold}s created with fewer seats than requested, but not none.
+         */
+        PARTIAL_HOLDS,
+        /**
+         * {@link SeatHold}s created without any seats, because none were available.
+         */
+        EMPTY_HOLDS
+    }
+}
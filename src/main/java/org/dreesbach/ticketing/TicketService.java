@@ -1,5 +1,10 @@
 package org.dreesbach.ticketing;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Provides an interface for reserving tickets in high-demand performance locations.
  */
@@ -29,6 +34,55 @@ public interface TicketService extends AutoCloseable {
      */
     String reserveSeats(int seatHoldId, String customerEmail);
 
+    /**
+     * Find and hold the best available seats for a batch of requests, in order.
+     * <p>
+     * This default implementation simply makes one {@link #findAndHoldSeats(int, String)} call per request. Implementations
+     * should override it to handle the whole batch at once, e.g. taking their locks once rather than once per request.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order - a request that fails doesn't fail the others
+     */
+    default List<BatchResult<SeatHold>> findAndHoldSeats(final List<HoldRequest> requests) {
+        checkNotNull(requests, "requests cannot be null");
+        List<BatchResult<SeatHold>> results = new ArrayList<>(requests.size());
+        for (HoldRequest request : requests) {
+            try {
+                checkNotNull(request, "request cannot be null");
+                results.add(BatchResult.success(findAndHoldSeats(request.numSeats(), request.customerEmail())));
+            }
+            catch (RuntimeException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Commit the seats held for a batch of requests, in order.
+     * <p>
+     * This default implementation simply makes one {@link #reserveSeats(int, String)} call per request. Implementations should
+     * override it to handle the whole batch at once, e.g. taking their locks once rather than once per request.
+     *
+     * @param requests the requests
+     * @return one result per request, with its reservation confirmation code if it succeeded, in the same order - a request
+     *         that fails doesn't fail the others
+     */
+    default List<BatchResult<String>> reserveSeats(final List<ReservationRequest> requests) {
+        checkNotNull(requests, "requests cannot be null");
+        List<BatchResult<String>> results = new ArrayList<>(requests.size());
+        for (ReservationRequest request : requests) {
+            try {
+                checkNotNull(request, "request cannot be null");
+                results.add(BatchResult.success(reserveSeats(request.seatHoldId(), request.customerEmail())));
+            }
+            catch (RuntimeException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        return results;
+    }
+
     /**
      * Releases any resources held by this service (e.g. background threads used to expire seat holds). Once closed, a
      * {@link TicketService} should no longer be used.
@@ -2,14 +2,14 @@ package org.dreesbach.ticketing;
 
 import org.dreesbach.ticketing.id.IdGenerator;
 
+import java.io.IOException;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -22,11 +22,11 @@ public final class TicketServiceImpl implements TicketService {
      * How often (in seconds) to check {@link SeatHold} expiration. This can be tuned a bit if there are lots of seat holds and
      * we don't care if the holds aren't removed immediately, but want to prioritize throughput of new holds.
      */
-    private static final Duration CHECK_SEAT_HOLD_EXPIRATION_DURATION = Duration.ofSeconds(1);
+    static final Duration CHECK_SEAT_HOLD_EXPIRATION_DURATION = Duration.ofSeconds(1);
     /**
      * Default seat hold expiration time.
      */
-    private static final Duration DEFAULT_SEAT_HOLD_EXPIRATION_TIME = Duration.ofMinutes(5);
+    static final Duration DEFAULT_SEAT_HOLD_EXPIRATION_TIME = Duration.ofMinutes(5);
     /**
      * Minimum acceptable length for an email string.
      */
@@ -42,14 +42,31 @@ public final class TicketServiceImpl implements TicketService {
      */
     private final Venue venue;
     /**
-     * List of all the seat holds.
+     * All live seat holds, keyed by their ID.
      */
-    private final Map<Integer, SeatHold> seatHolds;
+    private final IntRegistry<SeatHold> seatHolds = new IntRegistry<>();
     /**
-     * An executor service to periodically go through existing {@link SeatHold}s and expire them if they have exceeded their
-     * maximum lifetime.
+     * Number of seats of the holds in {@link #seatHolds}, kept in step with it so that it can be read without going through
+     * the registry.
      */
-    private final ScheduledExecutorService seatHoldExpiration = new ScheduledThreadPoolExecutor(1);
+    private final AtomicInteger numSeatsHeld = new AtomicInteger();
+    /**
+     * Expires {@link SeatHold}s that have exceeded their maximum lifetime - of this service alone, or shared with the other
+     * performances of a {@link TicketingHost}.
+     */
+    private final ExpirationScheduler expirations;
+    /**
+     * Whether {@link #expirations} is this service's own, to be closed along with it.
+     */
+    private final boolean ownsExpirations;
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private volatile boolean closed;
+    /**
+     * Where latencies and counts are recorded, {@link TicketMetrics#DISABLED} if they aren't.
+     */
+    private final TicketMetrics metrics;
 
     /**
      * Default constructor.
@@ -70,23 +87,125 @@ public final class TicketServiceImpl implements TicketService {
     TicketServiceImpl(
             final Venue venue, final Duration seatHoldCheckExpiration, final Duration seatHoldExpirationTime
     ) {
-        checkNotNull(seatHoldCheckExpiration, "seatHoldCheckExpiration must not be null");
-        checkArgument(
-                !(seatHoldCheckExpiration.isNegative() || seatHoldCheckExpiration.isZero()),
-                "seatHoldCheckExpiration must be > 0"
+        this(venue, seatHoldCheckExpiration, seatHoldExpirationTime, TicketMetrics.DISABLED);
+    }
+
+    /**
+     * Constructor for an instrumented service: it records the latencies of its operations and counts its holds in
+     * {@link TicketMetrics}, and so does the venue for its part.
+     *
+     * @param venue the venue
+     * @param metrics where to record the metrics, see {@link #metrics()}
+     */
+    TicketServiceImpl(final RectangularVenue venue, final TicketMetrics metrics) {
+        this(venue, CHECK_SEAT_HOLD_EXPIRATION_DURATION, DEFAULT_SEAT_HOLD_EXPIRATION_TIME, metrics);
+        venue.instrument(metrics);
+    }
+
+    /**
+     * Constructor for a service whose {@link SeatHold}s are expired by a scheduler shared with other services, e.g. the
+     * other performances of a {@link TicketingHost}. The scheduler isn't closed along with this service.
+     *
+     * @param venue an implementation of {@link Venue}
+     * @param expirations the scheduler
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     */
+    TicketServiceImpl(final Venue venue, final ExpirationScheduler expirations, final Duration seatHoldExpirationTime) {
+        this(venue,
+                seatHoldExpirationTime,
+                TicketMetrics.DISABLED,
+                checkNotNull(expirations, "expirations cannot be null"),
+                false
         );
+    }
+
+    /**
+     * Constructor for a service with a scheduler of its own.
+     *
+     * @param venue an implementation of {@link Venue}
+     * @param seatHoldCheckExpiration how often we should check for seat hold expiration
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     * @param metrics where to record the metrics
+     */
+    private TicketServiceImpl(
+            final Venue venue,
+            final Duration seatHoldCheckExpiration,
+            final Duration seatHoldExpirationTime,
+            final TicketMetrics metrics
+    ) {
+        // everything else is checked before the scheduler starts its thread, which would be left running otherwise
+        this(checkNotNull(venue, "venue cannot be null"),
+                checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null"),
+                checkNotNull(metrics, "metrics cannot be null"),
+                new ExpirationScheduler(seatHoldCheckExpiration, metrics),
+                true
+        );
+    }
+
+    /**
+     * Constructor allowing specification of everything.
+     *
+     * @param venue an implementation of {@link Venue}
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     * @param metrics where to record the metrics
+     * @param expirations the scheduler that expires the {@link SeatHold}s
+     * @param ownsExpirations whether to close the scheduler along with this service
+     */
+    private TicketServiceImpl(
+            final Venue venue,
+            final Duration seatHoldExpirationTime,
+            final TicketMetrics metrics,
+            final ExpirationScheduler expirations,
+            final boolean ownsExpirations
+    ) {
         this.venue = checkNotNull(venue, "venue cannot be null");
         this.seatHoldExpirationTime = checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null");
-        // We assign a map sized as per the total capacity of the venue, meaning we can support SeatHolds of size 1 for
-        // every seat there. This is probably overkill, however it should ensure that the map never needs to grow, keeping
-        // throughput constant.
-        seatHolds = Collections.synchronizedMap(new LinkedHashMap<>(venue.getTotalNumSeats()));
-        // We don't want executions to pile up, so we use scheduleWithFixedDelay rather than scheduleAtFixedRate
-        var _ = seatHoldExpiration.scheduleWithFixedDelay(this::expireSeatHolds,
-                0L,
-                seatHoldCheckExpiration.toMillis(),
-                TimeUnit.MILLISECONDS
-        );
+        this.metrics = metrics;
+        this.expirations = expirations;
+        this.ownsExpirations = ownsExpirations;
+    }
+
+    /**
+     * Constructor for a service whose venue records every change to its seats in a {@link Journal}: the holds and
+     * reservations recorded in the journal are brought back first, and the holds that are still live are tracked (and
+     * expired) by this service just like new ones.
+     *
+     * @param venue the venue, with all seats available
+     * @param journal the journal, not yet appended to
+     * @throws IOException if the journal can't be read
+     */
+    TicketServiceImpl(final RectangularVenue venue, final Journal journal) throws IOException {
+        this(venue);
+        try {
+            venue.recover(journal).forEach(this::trackSeatHold);
+        }
+        catch (IOException | RuntimeException e) {
+            // don't leave the scheduler's thread running, but don't release the recovered holds either, as close() would
+            expirations.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #TicketServiceImpl(RectangularVenue, Journal)}, starting from a {@link VenueSnapshot} so that only what the
+     * journal recorded after it has to be replayed.
+     *
+     * @param venue the venue, with all seats available
+     * @param snapshot the snapshot, taken of this venue's journal
+     * @param journal the journal, not yet appended to
+     * @throws IOException if the journal can't be read
+     */
+    TicketServiceImpl(final RectangularVenue venue, final VenueSnapshot snapshot, final Journal journal) throws IOException {
+        this(venue);
+        try {
+            venue.recover(checkNotNull(snapshot, "snapshot cannot be null"), checkNotNull(journal, "journal cannot be null"))
+                    .forEach(this::trackSeatHold);
+        }
+        catch (IOException | RuntimeException e) {
+            // see TicketServiceImpl(RectangularVenue, Journal)
+            expirations.close();
+            throw e;
+        }
     }
 
     @Override
@@ -105,53 +224,286 @@ public final class TicketServiceImpl implements TicketService {
      * @return either a {@link SeatHold} or {@code null} when no seats are available
      */
     @Override
-    public synchronized SeatHold findAndHoldSeats(final int numSeatsToHold, final String customerEmail) {
-        checkArgument(numSeatsToHold > 0, "numSeatsToHold must be > 0");
-        checkNotNull(customerEmail, "customerEmail cannot be null");
-        checkEmailParam(customerEmail);
-        SeatHold seatHold = venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
-        if (seatHolds.containsKey(seatHold.getId())) {
+    public SeatHold findAndHoldSeats(final int numSeatsToHold, final String customerEmail) {
+        return findAndHoldSeats(numSeatsToHold, customerEmail, seatHoldExpirationTime);
+    }
+
+    /**
+     * Like {@link #findAndHoldSeats(int, String)}, but with an expiration time for this particular {@link SeatHold} rather
+     * than the service-wide default.
+     *
+     * @param numSeatsToHold the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     * @param holdExpirationTime how long until the {@link SeatHold} expires
+     * @return either a {@link SeatHold} or {@code null} when no seats are available
+     */
+    public SeatHold findAndHoldSeats(
+            final int numSeatsToHold, final String customerEmail, final Duration holdExpirationTime
+    ) {
+        long requestedNanos = metrics.startNanos();
+        SeatHold seatHold;
+        synchronized (this) {
+            var _ = metrics.record(TicketMetrics.Latency.SERVICE_LOCK_WAIT, requestedNanos);
+            checkHoldParams(numSeatsToHold, customerEmail);
+            checkNotNull(holdExpirationTime, "holdExpirationTime cannot be null");
+            seatHold = venue.holdSeats(numSeatsToHold, holdExpirationTime);
+            trackSeatHold(seatHold);
+        }
+        metrics.holdCreated(numSeatsToHold, seatHold);
+        var _ = metrics.record(TicketMetrics.Latency.FIND_AND_HOLD_SEATS, requestedNanos);
+        return seatHold;
+    }
+
+    /**
+     * Handles the whole batch under a single acquisition of this service's monitor and the venue's monitor, and generates the
+     * IDs of all the {@link SeatHold}s at once.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
+     */
+    @Override
+    public List<BatchResult<SeatHold>> findAndHoldSeats(final List<HoldRequest> requests) {
+        long requestedNanos = metrics.startNanos();
+        List<BatchResult<SeatHold>> results;
+        int[] numSeatsToHold;
+        List<SeatHold> newSeatHolds;
+        synchronized (this) {
+            var _ = metrics.record(TicketMetrics.Latency.SERVICE_LOCK_WAIT, requestedNanos);
+            results = new ArrayList<>(checkNotNull(requests, "requests cannot be null").size());
+            numSeatsToHold = checkHoldRequests(requests, results);
+            newSeatHolds = venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+            newSeatHolds.forEach(this::trackSeatHold);
+        }
+        fillInResults(results, newSeatHolds);
+        for (int i = 0; i < numSeatsToHold.length; i++) {
+            metrics.holdCreated(numSeatsToHold[i], newSeatHolds.get(i));
+        }
+        var _ = metrics.record(TicketMetrics.Latency.FIND_AND_HOLD_SEATS, requestedNanos);
+        return results;
+    }
+
+    /**
+     * Start tracking a new {@link SeatHold} and schedule its expiration.
+     *
+     * @param seatHold the hold
+     */
+    private void trackSeatHold(final SeatHold seatHold) {
+        if (seatHolds.putIfAbsent(seatHold.getId(), seatHold) != null) {
             throw new IllegalStateException("Tried to allocate the same SeatHold ID [" + seatHold.getId() + "] more than once");
         }
-        else {
-            seatHolds.put(seatHold.getId(), seatHold);
+        var _ = numSeatsHeld.addAndGet(seatHold.getNumSeatsHeld());
+        seatHold.setExpirationEntry(expirations.schedule(this, seatHold));
+    }
+
+    /**
+     * Removing the {@link SeatHold} from {@link #seatHolds} is what claims it for this reservation: the expiration sweep
+     * doesn't take this service's lock, and it will only release holds it manages to remove from the registry itself.
+     *
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    @Override
+    public String reserveSeats(final int seatHoldId, final String customerEmail) {
+        long requestedNanos = metrics.startNanos();
+        String reservationCode;
+        synchronized (this) {
+            var _ = metrics.record(TicketMetrics.Latency.SERVICE_LOCK_WAIT, requestedNanos);
+            // We must not call seatHold.remove() here, since that would try to cancel the hold on seats that are now reserved
+            // rather than held.
+            reservationCode = reserveClaimedSeatHold(venue, claimSeatHold(seatHoldId, customerEmail));
         }
-        return seatHold;
+        metrics.increment(TicketMetrics.Counter.HOLDS_RESERVED);
+        var _ = metrics.record(TicketMetrics.Latency.RESERVE_SEATS, requestedNanos);
+        return reservationCode;
     }
 
     /**
-     * @throws IllegalStateException when a SeatHold is not found
+     * Handles the whole batch under a single acquisition of this service's monitor, and generates all the reservation codes
+     * at once.
+     *
+     * @param requests the requests
+     * @return one result per request, in the same order
      */
     @Override
-    public synchronized String reserveSeats(final int seatHoldId, final String customerEmail) {
+    public List<BatchResult<String>> reserveSeats(final List<ReservationRequest> requests) {
+        long requestedNanos = metrics.startNanos();
+        checkNotNull(requests, "requests cannot be null");
+        List<BatchResult<String>> results = new ArrayList<>(requests.size());
+        List<SeatHold> claimed = new ArrayList<>(requests.size());
+        int numReserved;
+        synchronized (this) {
+            var _ = metrics.record(TicketMetrics.Latency.SERVICE_LOCK_WAIT, requestedNanos);
+            for (ReservationRequest request : requests) {
+                try {
+                    checkNotNull(request, "request cannot be null");
+                    claimed.add(claimSeatHold(request.seatHoldId(), request.customerEmail()));
+                    results.add(null);
+                }
+                catch (IllegalArgumentException | NullPointerException | IllegalStateException e) {
+                    results.add(BatchResult.failure(e));
+                }
+            }
+            numReserved = reserveClaimedSeatHolds(venue, claimed, results);
+        }
+        metrics.add(TicketMetrics.Counter.HOLDS_RESERVED, numReserved);
+        var _ = metrics.record(TicketMetrics.Latency.RESERVE_SEATS, requestedNanos);
+        return results;
+    }
+
+    /**
+     * Claim a {@link SeatHold} for a reservation by removing it from {@link #seatHolds}, releasing it if it has expired.
+     *
+     * @param seatHoldId the seat hold identifier
+     * @param customerEmail the email address of the customer to which the seat hold is assigned
+     * @return the hold
+     * @throws IllegalStateException when a SeatHold is not found or has expired
+     */
+    private SeatHold claimSeatHold(final int seatHoldId, final String customerEmail) {
         checkArgument(seatHoldId > 0, "seatHoldId must be > 0");
         checkEmailParam(customerEmail);
-        SeatHold seatHold;
-        if (!seatHolds.containsKey(seatHoldId)) {
+        SeatHold seatHold = seatHolds.remove(seatHoldId);
+        if (seatHold == null) {
             throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] not found");
         }
-        else {
-            seatHold = seatHolds.get(seatHoldId);
-            if (seatHold.expired()) {
-                throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] is expired");
+        var _ = numSeatsHeld.addAndGet(-seatHold.getNumSeatsHeld());
+        expirations.cancel(seatHold.getExpirationEntry());
+        if (seatHold.expired()) {
+            // We own the hold now, so the sweep won't release it anymore - do that here instead.
+            venue.removeHold(seatHold);
+            metrics.increment(TicketMetrics.Counter.HOLDS_EXPIRED);
+            throw new IllegalStateException("SeatHold ID [" + seatHoldId + "] is expired");
+        }
+        return seatHold;
+    }
+
+    /**
+     * Check the parameters of a hold. Shared with {@link ConcurrentTicketServiceImpl} so that both implementations validate
+     * the same way.
+     *
+     * @param numSeatsToHold the number of seats to find and hold
+     * @param customerEmail unique identifier for the customer
+     */
+    static void checkHoldParams(final int numSeatsToHold, final String customerEmail) {
+        checkArgument(numSeatsToHold > 0, "numSeatsToHold must be > 0");
+        checkNotNull(customerEmail, "customerEmail cannot be null");
+        checkEmailParam(customerEmail);
+    }
+
+    /**
+     * Check a batch of hold requests, recording a failure for every invalid one and a {@code null} placeholder for every
+     * valid one. Shared with {@link ConcurrentTicketServiceImpl}.
+     *
+     * @param requests the requests
+     * @param results where to record the outcome of the checks, one entry per request
+     * @return the number of seats to hold for each valid request
+     */
+    static int[] checkHoldRequests(final List<HoldRequest> requests, final List<BatchResult<SeatHold>> results) {
+        int[] numSeatsToHold = new int[requests.size()];
+        int numValid = 0;
+        for (HoldRequest request : requests) {
+            try {
+                checkNotNull(request, "request cannot be null");
+                checkHoldParams(request.numSeats(), request.customerEmail());
+                numSeatsToHold[numValid++] = request.numSeats();
+                results.add(null);
+            }
+            catch (IllegalArgumentException | NullPointerException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        return Arrays.copyOf(numSeatsToHold, numValid);
+    }
+
+    /**
+     * Reserve a claimed {@link SeatHold}. Shared with {@link ConcurrentTicketServiceImpl} and
+     * {@link SingleWriterTicketServiceImpl}.
+     * <p>
+     * A hold that can't be reserved is released again, unless its seats got reserved before the failure (e.g. when only the
+     * journal failed), since nobody else will ever release it once it has been claimed.
+     *
+     * @param venue the venue
+     * @param seatHold the hold, exclusively owned by the caller
+     * @return the reservation code
+     */
+    static String reserveClaimedSeatHold(final Venue venue, final SeatHold seatHold) {
+        try {
+            return venue.reserve(seatHold);
+        }
+        catch (RuntimeException e) {
+            releaseUnlessReserved(venue, seatHold);
+            throw e;
+        }
+    }
+
+    /**
+     * Reserve claimed {@link SeatHold}s, generating all their reservation codes at once. Shared with
+     * {@link ConcurrentTicketServiceImpl} and {@link SingleWriterTicketServiceImpl}.
+     * <p>
+     * Each hold succeeds or fails on its own, a hold that can't be reserved being released just like by
+     * {@link #reserveClaimedSeatHold(Venue, SeatHold)}.
+     *
+     * @param venue the venue
+     * @param claimed the holds, exclusively owned by the caller
+     * @param results the results of the batch, with a {@code null} for every claimed hold, in the same order, to be replaced
+     * by the outcome of its reservation
+     * @return the number of holds reserved
+     */
+    static int reserveClaimedSeatHolds(final Venue venue, final List<SeatHold> claimed, final List<BatchResult<String>> results) {
+        int[] reservationCodes = IdGenerator.nextReservationCodes(claimed.size());
+        int numReserved = 0;
+        int i = 0;
+        for (ListIterator<BatchResult<String>> resultIterator = results.listIterator(); resultIterator.hasNext(); ) {
+            if (resultIterator.next() != null) {
+                continue;
+            }
+            SeatHold seatHold = claimed.get(i);
+            try {
+                resultIterator.set(BatchResult.success(venue.reserve(seatHold, reservationCodes[i])));
+                numReserved++;
+            }
+            catch (RuntimeException e) {
+                releaseUnlessReserved(venue, seatHold);
+                resultIterator.set(BatchResult.failure(e));
+            }
+            i++;
+        }
+        return numReserved;
+    }
+
+    /**
+     * Release a claimed {@link SeatHold} whose reservation failed, unless its seats got reserved before the failure.
+     *
+     * @param venue the venue
+     * @param seatHold the hold, exclusively owned by the caller
+     */
+    private static void releaseUnlessReserved(final Venue venue, final SeatHold seatHold) {
+        if (seatHold.getSeatsHeld().stream().noneMatch(Seat::isReserved)) {
+            venue.removeHold(seatHold);
+        }
+    }
+
+    /**
+     * Replace the {@code null} placeholders of a batch's results, in order, with successful results.
+     *
+     * @param results the results, with a {@code null} for every request that passed the checks
+     * @param values the values of those requests, in order
+     * @param <T> the type of the values
+     */
+    static <T> void fillInResults(final List<BatchResult<T>> results, final List<T> values) {
+        Iterator<T> valueIterator = values.iterator();
+        for (ListIterator<BatchResult<T>> resultIterator = results.listIterator(); resultIterator.hasNext(); ) {
+            if (resultIterator.next() == null) {
+                resultIterator.set(BatchResult.success(valueIterator.next()));
             }
         }
-        String reservationCode = venue.reserve(seatHold);
-        // The SeatHold has now been consumed by a completed reservation - stop tracking it and retire its ID so we don't
-        // leak map entries / IDs for every successful reservation. We must not call seatHold.remove() here, since that
-        // would try to cancel the hold on seats that are now reserved rather than held.
-        seatHolds.remove(seatHoldId);
-        IdGenerator.retireId(seatHoldId);
-        return reservationCode;
     }
 
     /**
      * Convenience method to check emails are "valid". Only checks minimal length requirement right now, but could be expanded
-     * to do more.
+     * to do more. Shared with {@link ConcurrentTicketServiceImpl} so that both implementations validate the same way.
      *
      * @param customerEmail email address to check
      */
-    private void checkEmailParam(final String customerEmail) {
+    static void checkEmailParam(final String customerEmail) {
         checkArgument(customerEmail.length() > MIN_EMAIL_STRING_LENGTH,
                 "C'mon, you think [%s] is an email address!? ;]",
                 customerEmail
@@ -159,56 +511,88 @@ public final class TicketServiceImpl implements TicketService {
     }
 
     /**
-     * How many seat holds are currently in effect.
+     * The latencies and counts this service has recorded - all zeros unless it was created with {@link TicketMetrics}.
+     *
+     * @return the metrics
+     */
+    public TicketMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * How many seats the holds of this service that are currently in effect hold. A counter, updated whenever a hold is
+     * tracked or claimed, so this is constant time and never waits for the registry.
      *
      * @return number of seats held
      */
     public int numSeatsHeld() {
-        // Traversing the map every time may get slow, however other than in tests this method isn't being used yet, so
-        // rather than prematurely optimizing this and possibly having complications from tracking a separate "numSeatsHeld"
-        // count that could easily get out of sync, we'll leave this as-is for now and come back to optimizing it later if it
-        // is determined to be an issue.
-        int seatsHeld = 0;
-        for (SeatHold seatHold : seatHolds.values()) {
-            seatsHeld += seatHold.getNumSeatsHeld();
-        }
-        return seatsHeld;
+        return numSeatsHeld.get();
     }
 
     /**
-     * Shuts down the background thread that expires {@link SeatHold}s. Once closed, this instance should no longer be used.
+     * How many seats of the venue are available, held and reserved, as of the same moment - across all services selling
+     * its seats.
+     *
+     * @return the venue's seat counts
+     */
+    public SeatCounts seatCounts() {
+        return venue.getSeatCounts();
+    }
+
+    /**
+     * Shuts down the background thread that expires {@link SeatHold}s, unless it's shared with other services, and releases
+     * any holds that are still outstanding, since nothing would ever expire those anymore. Once closed, this instance should no
+     * longer be used.
      */
     @Override
     public void close() {
-        seatHoldExpiration.shutdown();
+        closed = true;
+        if (ownsExpirations) {
+            expirations.close();
+        }
+        for (SeatHold seatHold : seatHolds.values()) {
+            expirations.cancel(seatHold.getExpirationEntry());
+            var _ = expireSeatHold(seatHold);
+        }
     }
 
     /**
-     * Whether the background seat hold expiration thread has been shut down.
+     * Whether this service has been closed, and with it the background seat hold expiration thread, if it has its own.
      *
      * @return {@code true} if {@link close()} has been called
      */
     boolean isClosed() {
-        return seatHoldExpiration.isShutdown();
+        return closed;
     }
 
     /**
-     * Removes expired {@link SeatHold}s.
+     * Removes the {@link SeatHold}s that have expired as of a given point in time - of all the services that share this
+     * one's {@link ExpirationScheduler}. Package-private so that the sweep can be exercised (and benchmarked) without waiting
+     * for the background thread.
+     * <p>
+     * Only the ticks of the scheduler's wheel for the time elapsed since the last run are visited, rather than all live holds,
+     * and this deliberately doesn't synchronize on the service so that it never blocks new holds or reservations.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return number of holds that were due
      */
-    private synchronized void expireSeatHolds() {
-        // This is easy, but will iterate over the entire map every time:
-        //   seatHolds.entrySet().removeIf(e -> e.getValue().expired());
-        // so instead we're doing this the old-fashioned way so that we can stop once we hit the first non-expired entry
-        for (Iterator<Map.Entry<Integer, SeatHold>> it = seatHolds.entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry<Integer, SeatHold> entry = it.next();
-            if (entry.getValue().expired()) {
-                venue.removeHold(entry.getValue());
-                it.remove();
-            }
-            else {
-                // we've gotten to the end of the expired entries, since they're sorted by insertion order, so quit here
-                return;
-            }
+    int expireSeatHolds(final long nowNanos) {
+        return expirations.expireSeatHolds(nowNanos);
+    }
+
+    /**
+     * Release an expired {@link SeatHold}, unless it was claimed by a reservation in the meantime.
+     *
+     * @param seatHold the expired hold
+     * @return whether it was released
+     */
+    boolean expireSeatHold(final SeatHold seatHold) {
+        if (seatHolds.remove(seatHold.getId(), seatHold)) {
+            var _ = numSeatsHeld.addAndGet(-seatHold.getNumSeatsHeld());
+            venue.removeHold(seatHold);
+            metrics.increment(TicketMetrics.Counter.HOLDS_EXPIRED);
+            return true;
         }
+        return false;
     }
 }
@@ -0,0 +1,226 @@
+package org.dreesbach.ticketing;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sells the seats of many performances at once, each in a venue of its own, on a fixed number of threads.
+ * <p>
+ * Every performance is pinned to one of a fixed number of shards by its ID, and each shard is a single worker thread that
+ * handles the requests for its performances in order - so the requests for one performance never contend with each other,
+ * and the requests for different performances only do if they hash to the same shard. All performances share a single
+ * {@link ExpirationScheduler}, which keeps their {@link SeatHold}s in one wheel in order of their deadlines. Adding a
+ * performance therefore costs the memory of its venue and holds, but no thread, whether it's selling or idle.
+ * <p>
+ * Each performance is an {@link AsyncTicketService} of its own, see {@link #addPerformance(String, Venue)}.
+ */
+public final class TicketingHost implements AutoCloseable {
+    /**
+     * Default number of shards: one per processor.
+     */
+    static final int DEFAULT_NUM_SHARDS = Runtime.getRuntime().availableProcessors();
+    /**
+     * Expires the {@link SeatHold}s of all performances.
+     */
+    private final ExpirationScheduler expirations;
+    /**
+     * The shards, each a single worker thread.
+     */
+    private final ExecutorService[] shards;
+    /**
+     * How long until a {@link SeatHold} expires.
+     */
+    private final Duration seatHoldExpirationTime;
+    /**
+     * The performances, keyed by their ID.
+     */
+    private final Map<String, Performance> performances = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor, with {@link #DEFAULT_NUM_SHARDS} shards.
+     */
+    TicketingHost() {
+        this(DEFAULT_NUM_SHARDS,
+                TicketServiceImpl.CHECK_SEAT_HOLD_EXPIRATION_DURATION,
+                TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME
+        );
+    }
+
+    /**
+     * Constructor allowing specification of everything.
+     *
+     * @param numShards number of shards, i.e. of worker threads
+     * @param seatHoldCheckExpiration how often we should check for seat hold expiration
+     * @param seatHoldExpirationTime how long until a {@link SeatHold} expires
+     */
+    TicketingHost(final int numShards, final Duration seatHoldCheckExpiration, final Duration seatHoldExpirationTime) {
+        checkArgument(numShards > 0, "numShards must be > 0");
+        this.seatHoldExpirationTime = checkNotNull(seatHoldExpirationTime, "seatHoldExpirationTime cannot be null");
+        expirations = new ExpirationScheduler(seatHoldCheckExpiration, TicketMetrics.DISABLED);
+        ThreadFactory threadFactory = Thread.ofPlatform().name("ticketing-shard-", 0).factory();
+        shards = new ExecutorService[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    /**
+     * Start selling the seats of a performance.
+     *
+     * @param performanceId the performance's ID, unique within this host
+     * @param venue the venue the performance takes place in, with all seats available
+     * @return the service selling the performance's seats - closing it removes the performance from this host
+     * @throws IllegalArgumentException if there is a performance with that ID already
+     */
+    public AsyncTicketService addPerformance(final String performanceId, final Venue venue) {
+        checkNotNull(performanceId, "performanceId cannot be null");
+        checkNotNull(venue, "venue cannot be null");
+        Performance performance = new Performance(performanceId,
+                new TicketServiceImpl(venue, expirations, seatHoldExpirationTime),
+                shards[Math.floorMod(performanceId.hashCode(), shards.length)]
+        );
+        if (performances.putIfAbsent(performanceId, performance) != null) {
+            // nothing was ever submitted to it, so it can be closed right here rather than on its shard
+            performance.ticketService.close();
+            throw new IllegalArgumentException("Performance [" + performanceId + "] already exists");
+        }
+        return performance;
+    }
+
+    /**
+     * The service selling the seats of a performance.
+     *
+     * @param performanceId the performance's ID
+     * @return the service
+     * @throws IllegalArgumentException if there is no performance with that ID
+     */
+    public AsyncTicketService performance(final String performanceId) {
+        Performance performance = performances.get(checkNotNull(performanceId, "performanceId cannot be null"));
+        if (performance == null) {
+            throw new IllegalArgumentException("Performance [" + performanceId + "] not found");
+        }
+        return performance;
+    }
+
+    /**
+     * Number of performances whose seats are being sold.
+     *
+     * @return the number of performances
+     */
+    public int numPerformances() {
+        return performances.size();
+    }
+
+    /**
+     * Waits for the requests that have been taken on to finish, then stops the shards and the expiration scheduler and
+     * releases all outstanding holds. Requests made after this has been called are rejected.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService shard : shards) {
+            shard.close();
+        }
+        expirations.close();
+        performances.values().forEach(Performance::close);
+    }
+
+    /**
+     * A performance: its service, and the shard that runs all requests for it.
+     */
+    private final class Performance implements AsyncTicketService {
+        /**
+         * The performance's ID.
+         */
+        private final String performanceId;
+        /**
+         * The service that actually handles the requests, only ever on {@link #shard}'s thread (or by {@link #close()} once the
+         * shard is done). The expiration scheduler's thread releases its expired holds concurrently, which it allows for.
+         */
+        private final TicketServiceImpl ticketService;
+        /**
+         * The shard the performance is pinned to.
+         */
+        private final ExecutorService shard;
+
+        /**
+         * Creates a new performance.
+         *
+         * @param performanceId the performance's ID
+         * @param ticketService the service to handle the requests
+         * @param shard the shard to run the requests on
+         */
+        private Performance(final String performanceId, final TicketServiceImpl ticketService, final ExecutorService shard) {
+            this.performanceId = performanceId;
+            this.ticketService = ticketService;
+            this.shard = shard;
+        }
+
+        @Override
+        public CompletableFuture<Integer> numSeatsAvailable() {
+            return submit(ticketService::numSeatsAvailable);
+        }
+
+        @Override
+        public CompletableFuture<SeatHold> findAndHoldSeats(final int numSeats, final String customerEmail) {
+            return submit(() -> ticketService.findAndHoldSeats(numSeats, customerEmail));
+        }
+
+        @Override
+        public CompletableFuture<String> reserveSeats(final int seatHoldId, final String customerEmail) {
+            return submit(() -> ticketService.reserveSeats(seatHoldId, customerEmail));
+        }
+
+        @Override
+        public CompletableFuture<List<BatchResult<SeatHold>>> findAndHoldSeats(final List<HoldRequest> requests) {
+            return submit(() -> ticketService.findAndHoldSeats(requests));
+        }
+
+        @Override
+        public CompletableFuture<List<BatchResult<String>>> reserveSeats(final List<ReservationRequest> requests) {
+            return submit(() -> ticketService.reserveSeats(requests));
+        }
+
+        /**
+         * Removes the performance from the host, and releases its outstanding holds once the requests for it that have been
+         * taken on are done. Must not be called from a request of the same shard, which would wait for itself.
+         */
+        @Override
+        public void close() {
+            var _ = performances.remove(performanceId, this);
+            try {
+                CompletableFuture.runAsync(ticketService::close, shard).join();
+            }
+            catch (RejectedExecutionException e) {
+                // the host has been closed, so the shard is done
+                ticketService.close();
+            }
+        }
+
+        /**
+         * Run a request on the performance's shard.
+         *
+         * @param request the request
+         * @param <T> the type of the request's result
+         * @return the request's future, failed with a {@link RejectedExecutionException} if the host has been closed
+         */
+        private <T> CompletableFuture<T> submit(final Supplier<T> request) {
+            try {
+                return CompletableFuture.supplyAsync(request, shard);
+            }
+            catch (RejectedExecutionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+}
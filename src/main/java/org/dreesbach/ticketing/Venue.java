@@ -22,6 +22,22 @@ public interface Venue {
      */
     int getAvailableNumSeats();
 
+    /**
+     * Return how many seats are available, held and reserved, all as of the same moment. Cheap enough to poll.
+     *
+     * @return the seat counts
+     */
+    SeatCounts getSeatCounts();
+
+    /**
+     * Return a consistent, immutable map of the states of all seats - unlike {@link #getSeats()}, whose seats change under the
+     * caller. Getting it doesn't hold up holds and reservations, and as long as its {@link SeatMap#getVersion() version} stays
+     * the same, so does the map.
+     *
+     * @return the seat map
+     */
+    SeatMap getSeatMap();
+
     /**
      * Hold a desired number of seats. Returns best available selection.
      *
@@ -31,6 +47,16 @@ public interface Venue {
      */
     SeatHold holdSeats(int numSeatsToHold, Duration seatHoldExpirationTime);
 
+    /**
+     * Hold seats for several requests at once, in order - as if by one {@link #holdSeats(int, Duration)} call per request, but
+     * without letting any other hold in between.
+     *
+     * @param numSeatsToHold the number of seats desired by each request - all > 0
+     * @param seatHoldExpirationTime time until the SeatHolds expire
+     * @return one SeatHold per request, in the same order
+     */
+    List<SeatHold> holdSeats(int[] numSeatsToHold, Duration seatHoldExpirationTime);
+
     /**
      * Remove a prior SeatHold (e.g. when it expires).
      *
@@ -53,6 +79,16 @@ public interface Venue {
      */
     String reserve(SeatHold seatHold);
 
+    /**
+     * Reserve previously-held seat(s) under a reservation code that was generated up front, e.g. as part of a batch. If the
+     * code is in use for another reservation already, a fresh one is generated instead.
+     *
+     * @param seatHold the {@link SeatHold} to make a reservation for
+     * @param reservationCode the packed reservation code
+     * @return the reservation code actually used
+     */
+    String reserve(SeatHold seatHold, int reservationCode);
+
     /**
      * Cancels a reservation.
      *
@@ -69,7 +105,8 @@ public interface Venue {
 
     /**
      * Print out the current status of all seats. Simply a convenience method to be able to quickly see what the venue looks
-     * like at this time.
+     * like at this time - to hand the seats to a client, write the {@link #getSeatMap() seat map} out in its compact form
+     * instead, see {@link SeatMap#writeTo(java.nio.ByteBuffer, boolean)}.
      */
     void printSeats();
 }
@@ -0,0 +1,269 @@
+package org.dreesbach.ticketing;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The static layout of a rectangular hall: its rows and seats, their IDs and goodness, and the order of the seats from best
+ * to worst. It's the same for every performance in the hall, so it's worked out once and shared by all
+ * {@link RectangularVenue}s of that shape.
+ * <p>
+ * The costly part of setting up a venue is ranking its seats; the layout does that once and keeps an
+ * {@link AvailableSeatIndex} and a {@link FreeRunIndex} with all seats available, which it never changes. A performance
+ * starts out with copies of their bitmaps and trees, which share the ranking, plus its own packed {@link SeatStates} - a
+ * few array copies, and around 4 bits per seat. Seat IDs and goodness are computed from the row and column whenever they're
+ * needed, so the layout doesn't store them either.
+ * <p>
+ * Layouts are obtained through {@link #of(int, int, int)}, which caches them - a box office only sells seats in a handful of
+ * halls, and every performance there uses the same layout. The cache holds on to a layout that's being built, but only
+ * softly to one that's built: every performance references its layout, so it stays cached for as long as any performance
+ * of that shape is alive, while one that's no longer used is given up when memory runs short, and merely built again should
+ * another performance of that shape come along - a process that goes through many shapes doesn't pin all their rankings for
+ * good. A layout that failed to build isn't cached at all, so the next attempt starts afresh.
+ * <p>
+ * Ranking the seats of a large hall takes a while even though it's done in parallel, so rather than having the first
+ * performance wait for it, the layout can be warmed up ahead of the on-sale with {@link #prepare(int, int, int)}, whose
+ * future reports when it's ready. Either way, everything a hold needs is built before the first performance of the layout
+ * exists, so the first hold costs the same as any other.
+ */
+final class VenueLayout {
+    /**
+     * The layouts prepared so far, by their shape - see {@link Slot}.
+     */
+    private static final ConcurrentMap<Shape, Slot> LAYOUTS = new ConcurrentHashMap<>();
+    /**
+     * Number of rows of the hall in front of the first row of this layout, if it's a section of a larger hall.
+     */
+    private final int firstRow;
+    /**
+     * Number of rows.
+     */
+    private final int numRows;
+    /**
+     * Number of seats per row.
+     */
+    private final int seatsPerRow;
+    /**
+     * An index with all seats available, for every performance to copy. Never changed.
+     */
+    private final AvailableSeatIndex availableSeats;
+    /**
+     * An index with all seats available, for every performance to copy. Never changed.
+     */
+    private final FreeRunIndex freeRuns;
+
+    /**
+     * Creates a new layout, ranking its seats.
+     *
+     * @param shape the shape of the layout
+     */
+    private VenueLayout(final Shape shape) {
+        firstRow = shape.firstRow();
+        numRows = shape.numRows();
+        seatsPerRow = shape.seatsPerRow();
+        availableSeats = new AvailableSeatIndex(getNumSeats(), this::getGoodness);
+        freeRuns = new FreeRunIndex(firstRow, numRows, seatsPerRow);
+    }
+
+    /**
+     * The layout of a hall, waiting for it to be built if it hasn't been prepared yet.
+     *
+     * @param numRows number of seat rows
+     * @param seatsPerRow number of seats per row
+     * @return the layout, the same instance for every hall of that shape
+     */
+    static VenueLayout of(final int numRows, final int seatsPerRow) {
+        return of(0, numRows, seatsPerRow);
+    }
+
+    /**
+     * The layout of a band of rows of a larger hall, e.g. a section of a {@link SectionedVenue}, waiting for it to be built if
+     * it hasn't been prepared yet.
+     *
+     * @param firstRow number of rows of the hall in front of the band
+     * @param numRows number of seat rows of the band
+     * @param seatsPerRow number of seats per row
+     * @return the layout, the same instance for every band of that shape
+     */
+    static VenueLayout of(final int firstRow, final int numRows, final int seatsPerRow) {
+        return prepare(firstRow, numRows, seatsPerRow).join();
+    }
+
+    /**
+     * Start building the layout of a hall in the background, unless it's already built or being built.
+     *
+     * @param numRows number of seat rows
+     * @param seatsPerRow number of seats per row
+     * @return the layout, once it's ready - the same instance for every hall of that shape
+     */
+    static CompletableFuture<VenueLayout> prepare(final int numRows, final int seatsPerRow) {
+        return prepare(0, numRows, seatsPerRow);
+    }
+
+    /**
+     * Start building the layout of a band of rows of a larger hall in the background, unless it's already built or being
+     * built.
+     *
+     * @param firstRow number of rows of the hall in front of the band
+     * @param numRows number of seat rows of the band
+     * @param seatsPerRow number of seats per row
+     * @return the layout, once it's ready - the same instance for every band of that shape
+     */
+    static CompletableFuture<VenueLayout> prepare(final int firstRow, final int numRows, final int seatsPerRow) {
+        checkArgument(firstRow >= 0, "First row must be >= 0");
+        checkArgument(numRows > 0, "Number of rows must be > 0");
+        checkArgument(seatsPerRow > 0, "Number of seats per row must be > 0");
+        Shape shape = new Shape(firstRow, numRows, seatsPerRow);
+        while (true) {
+            Slot slot = LAYOUTS.get(shape);
+            if (slot == null) {
+                CompletableFuture<VenueLayout> layout = new CompletableFuture<>();
+                Slot building = new Slot(layout, null);
+                if (LAYOUTS.putIfAbsent(shape, building) == null) {
+                    build(shape, building);
+                    return layout;
+                }
+                continue;
+            }
+            if (slot.building() != null) {
+                return slot.building();
+            }
+            VenueLayout layout = slot.built().get();
+            if (layout != null) {
+                return CompletableFuture.completedFuture(layout);
+            }
+            // the layout was collected, so make way for a new one
+            var _ = LAYOUTS.remove(shape, slot);
+        }
+    }
+
+    /**
+     * Build a layout in the background. Once it's built, the cache only references it softly; if it fails, it's dropped from
+     * the cache again. Either happens before the future is completed, so that whoever sees the failure can try again.
+     *
+     * @param shape the shape of the layout
+     * @param building the cache's slot for the layout while it's being built
+     */
+    private static void build(final Shape shape, final Slot building) {
+        var _ = CompletableFuture.supplyAsync(() -> new VenueLayout(shape)).whenComplete((built, failure) -> {
+            if (failure != null) {
+                var _ = LAYOUTS.remove(shape, building);
+                var _ = building.building().completeExceptionally(failure);
+            }
+            else {
+                var _ = LAYOUTS.replace(shape, building, new Slot(null, new SoftReference<>(built)));
+                var _ = building.building().complete(built);
+            }
+        });
+    }
+
+    /**
+     * Number of rows of the hall in front of the first row of this layout.
+     *
+     * @return number of rows, 0 unless this is a band of a larger hall
+     */
+    int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Number of rows.
+     *
+     * @return number of rows
+     */
+    int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Number of seats per row.
+     *
+     * @return number of seats per row
+     */
+    int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * Total number of seats.
+     *
+     * @return number of seats
+     */
+    int getNumSeats() {
+        return numRows * seatsPerRow;
+    }
+
+    /**
+     * The ID of a seat, e.g. "Row 3 Seat 12", with rows counted from the front of the hall.
+     *
+     * @param seatIndex index of the seat, in row-major order
+     * @return the seat's ID
+     */
+    String getSeatId(final int seatIndex) {
+        // we set seat IDs to be 1-indexed for normal human consumption
+        return "Row " + (firstRow + seatIndex / seatsPerRow + 1) + " Seat " + (seatIndex % seatsPerRow + 1);
+    }
+
+    /**
+     * The "goodness" score of a seat, see {@link RectangularVenue#getGoodness(int, int)}.
+     *
+     * @param seatIndex index of the seat, in row-major order
+     * @return the "goodness" score - relative to the size of the hall, the lower the better, minimum of 0
+     */
+    double getGoodness(final int seatIndex) {
+        int row = firstRow + seatIndex / seatsPerRow;
+        double x = getXPosition(seatIndex % seatsPerRow);
+        return (double) row * row + x * x;
+    }
+
+    /**
+     * The "goodness" score contribution of a column, see {@link RectangularVenue#getXPosition(int)}.
+     *
+     * @param col column number of the seat, from 0 to {@code seatsPerRow - 1} (inclusive)
+     * @return the "goodness" score - relative to the size of the hall, the closer to 0 the better
+     */
+    double getXPosition(final int col) {
+        return ((double) (seatsPerRow - 1) / 2) - col;
+    }
+
+    /**
+     * A fresh index of the available seats of a performance, with all seats available.
+     *
+     * @return the index
+     */
+    AvailableSeatIndex newAvailableSeats() {
+        return new AvailableSeatIndex(availableSeats);
+    }
+
+    /**
+     * A fresh index of the runs of available seats of a performance, with all seats available.
+     *
+     * @return the index
+     */
+    FreeRunIndex newFreeRuns() {
+        return new FreeRunIndex(freeRuns);
+    }
+
+    /**
+     * The shape of a layout, which identifies it.
+     *
+     * @param firstRow number of rows of the hall in front of the layout
+     * @param numRows number of rows
+     * @param seatsPerRow number of seats per row
+     */
+    private record Shape(int firstRow, int numRows, int seatsPerRow) { }
+
+    /**
+     * The cache's entry for a layout: the future of a layout that's still being built, held on to strongly so it can't get
+     * lost before it's done, or a soft reference to a layout that's built, so that it can be collected once no performance
+     * uses it any longer.
+     *
+     * @param building the layout being built, or null once it's built
+     * @param built the layout, or null while it's being built
+     */
+    private record Slot(CompletableFuture<VenueLayout> building, SoftReference<VenueLayout> built) { }
+}
@@ -0,0 +1,111 @@
+package org.dreesbach.ticketing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A lightweight {@link Seat} view onto one seat of a {@link RectangularVenue}.
+ * <p>
+ * The venue keeps its seat states in a compact {@link SeatStates} store and computes seat IDs and goodness from the seat's
+ * row and column, so instances of this class carry nothing but the venue and the seat's index. They are created on demand
+ * whenever a caller asks for a {@link Seat}, and two views of the same seat are equal. State changes go through the venue,
+ * which keeps its index of available seats in sync with them.
+ */
+final class VenueSeat implements Seat {
+    /**
+     * The venue this seat belongs to.
+     */
+    private final RectangularVenue venue;
+    /**
+     * Index of the seat within the venue, in row-major order.
+     */
+    private final int index;
+
+    /**
+     * Creates a view of a seat.
+     *
+     * @param venue the venue the seat belongs to
+     * @param index index of the seat within the venue
+     */
+    VenueSeat(final RectangularVenue venue, final int index) {
+        this.venue = checkNotNull(venue, "venue should not be null");
+        this.index = index;
+    }
+
+    /**
+     * The venue the seat belongs to.
+     *
+     * @return the venue
+     */
+    RectangularVenue getVenue() {
+        return venue;
+    }
+
+    /**
+     * Index of the seat within its venue.
+     *
+     * @return the seat index
+     */
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String getId() {
+        return venue.getSeatId(index);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return venue.seatStates().get(index) == SeatStates.AVAILABLE;
+    }
+
+    @Override
+    public boolean isReserved() {
+        return venue.seatStates().get(index) == SeatStates.RESERVED;
+    }
+
+    @Override
+    public void hold() {
+        venue.holdSeat(index);
+    }
+
+    @Override
+    public boolean isHeld() {
+        return !isAvailable();
+    }
+
+    @Override
+    public void cancelHold() {
+        venue.cancelSeatHold(index);
+    }
+
+    @Override
+    public void reserve() {
+        venue.seatStates().reserve(index);
+    }
+
+    @Override
+    public void cancelReservation() {
+        venue.cancelSeatReservation(index);
+    }
+
+    @Override
+    public double seatGoodness() {
+        return venue.getGoodness(index);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof VenueSeat seat && seat.venue == venue && seat.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(venue) ^ index;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+}
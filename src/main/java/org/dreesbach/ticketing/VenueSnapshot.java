@@ -0,0 +1,379 @@
+package org.dreesbach.ticketing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A compact binary image of the seats of a {@link RectangularVenue} at one point in time - the seat states, the live
+ * {@link SeatHold}s and the reservations - so that a restart doesn't have to replay the whole {@link Journal}, only what
+ * was appended after the snapshot was taken. See {@link RectangularVenue#snapshot()} and
+ * {@link RectangularVenue#recover(VenueSnapshot, Journal)}.
+ * <p>
+ * The format is the in-memory one as far as possible: the seat states are the words of {@link SeatStates}, 2 bits per
+ * seat, and the holds and reservations are runs of {@code int}s, so a snapshot is read straight from a memory mapping of
+ * its file, without parsing it into objects first. In order:
+ * <ul>
+ *     <li>magic number and version</li>
+ *     <li>number of rows, seats per row, and the {@link Journal#position()} the snapshot was taken at</li>
+ *     <li>number of words of seat states, and the words</li>
+ *     <li>number of holds, and for each: its ID, when it expires (milliseconds since the epoch), number of seats and their
+ *     indexes</li>
+ *     <li>number of reservations, and for each: the packed reservation code, number of seats and their indexes</li>
+ *     <li>CRC32C checksum of all of the above</li>
+ * </ul>
+ */
+final class VenueSnapshot {
+    /**
+     * Marks a file as a snapshot - "TKTS" in ASCII.
+     */
+    private static final int MAGIC = 0x544B5453;
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Position of the number of rows.
+     */
+    private static final int NUM_ROWS_POSITION = 2 * Integer.BYTES;
+    /**
+     * Position of the number of seats per row.
+     */
+    private static final int SEATS_PER_ROW_POSITION = NUM_ROWS_POSITION + Integer.BYTES;
+    /**
+     * Position of the journal position.
+     */
+    private static final int JOURNAL_POSITION_POSITION = SEATS_PER_ROW_POSITION + Integer.BYTES;
+    /**
+     * Position of the number of words of seat states, followed by the words.
+     */
+    private static final int SEAT_STATES_POSITION = JOURNAL_POSITION_POSITION + Long.BYTES;
+    /**
+     * The snapshot, from its magic number to its checksum.
+     */
+    private final ByteBuffer contents;
+
+    /**
+     * Creates a snapshot from its contents, which must have been checked already.
+     *
+     * @param contents the contents
+     */
+    private VenueSnapshot(final ByteBuffer contents) {
+        this.contents = contents;
+    }
+
+    /**
+     * Read a snapshot from a file, through a memory mapping.
+     *
+     * @param path the file
+     * @return the snapshot
+     * @throws IOException if the file can't be read, or isn't an intact snapshot
+     */
+    static VenueSnapshot read(final Path path) throws IOException {
+        ByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot of " + size + " bytes is too large");
+            }
+            contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (contents.limit() < SEAT_STATES_POSITION + Integer.BYTES || contents.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        if (contents.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + contents.getInt(Integer.BYTES));
+        }
+        int checksumPosition = contents.limit() - Integer.BYTES;
+        if (checksum(contents, checksumPosition) != contents.getInt(checksumPosition)) {
+            throw new IOException("Snapshot is corrupt");
+        }
+        return new VenueSnapshot(contents);
+    }
+
+    /**
+     * The CRC32C checksum of the start of a snapshot.
+     *
+     * @param contents the snapshot
+     * @param length how much of it to checksum
+     * @return the checksum
+     */
+    private static int checksum(final ByteBuffer contents, final int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(contents.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write this snapshot to a file and force it to the device. The file is replaced atomically, so it always holds either
+     * the previous snapshot or this one, even if the process dies while writing.
+     *
+     * @param path the file
+     * @throws IOException if the file can't be written
+     */
+    void write(final Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            ByteBuffer remaining = contents.duplicate();
+            while (remaining.hasRemaining()) {
+                channel.write(remaining);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Number of rows of the venue.
+     *
+     * @return number of rows
+     */
+    int numRows() {
+        return contents.getInt(NUM_ROWS_POSITION);
+    }
+
+    /**
+     * Number of seats per row of the venue.
+     *
+     * @return number of seats per row
+     */
+    int seatsPerRow() {
+        return contents.getInt(SEATS_PER_ROW_POSITION);
+    }
+
+    /**
+     * The {@link Journal#position()} the snapshot was taken at, i.e. where to replay the journal from on top of it - 0 if the
+     * venue didn't have a journal.
+     *
+     * @return the position
+     */
+    long journalPosition() {
+        return contents.getLong(JOURNAL_POSITION_POSITION);
+    }
+
+    /**
+     * The packed seat states, as {@link SeatStates#copyFrom(LongBuffer)} takes them.
+     *
+     * @return the seat states
+     */
+    LongBuffer seatStates() {
+        int numWords = contents.getInt(SEAT_STATES_POSITION);
+        return contents.slice(SEAT_STATES_POSITION + Integer.BYTES, numWords * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Hand every hold and then every reservation to a visitor.
+     *
+     * @param holds the visitor of the holds
+     * @param reservations the visitor of the reservations
+     */
+    void visit(final HoldVisitor holds, final ReservationVisitor reservations) {
+        ByteBuffer entries = contents.duplicate();
+        entries.position(SEAT_STATES_POSITION + Integer.BYTES + contents.getInt(SEAT_STATES_POSITION) * Long.BYTES);
+        for (int numHolds = entries.getInt(); numHolds > 0; numHolds--) {
+            int id = entries.getInt();
+            long expiresAtMillis = entries.getLong();
+            holds.visit(id, expiresAtMillis, seatIndexes(entries));
+        }
+        for (int numReservations = entries.getInt(); numReservations > 0; numReservations--) {
+            int reservationCode = entries.getInt();
+            reservations.visit(reservationCode, seatIndexes(entries));
+        }
+    }
+
+    /**
+     * Read a number of seats and their indexes.
+     *
+     * @param entries where to read them from
+     * @return the indexes
+     */
+    private static int[] seatIndexes(final ByteBuffer entries) {
+        int[] seatIndexes = new int[entries.getInt()];
+        entries.asIntBuffer().get(seatIndexes);
+        entries.position(entries.position() + seatIndexes.length * Integer.BYTES);
+        return seatIndexes;
+    }
+
+    /**
+     * Visits the holds of a snapshot.
+     */
+    @FunctionalInterface
+    interface HoldVisitor {
+        /**
+         * Visit a hold.
+         *
+         * @param id ID of the {@link SeatHold}
+         * @param expiresAtMillis when the hold expires, in milliseconds since the epoch
+         * @param seatIndexes indexes of the seats held
+         */
+        void visit(int id, long expiresAtMillis, int[] seatIndexes);
+    }
+
+    /**
+     * Visits the reservations of a snapshot.
+     */
+    @FunctionalInterface
+    interface ReservationVisitor {
+        /**
+         * Visit a reservation.
+         *
+         * @param reservationCode the packed reservation code
+         * @param seatIndexes indexes of the seats reserved
+         */
+        void visit(int reservationCode, int[] seatIndexes);
+    }
+
+    /**
+     * Puts a snapshot together: first the header and seat states, then {@link #holds(int)} and a {@link #hold} for each,
+     * then {@link #reservations(int)} and a {@link #reservation} for each.
+     */
+    static final class Builder {
+        /**
+         * The snapshot so far.
+         */
+        private ByteBuffer contents;
+        /**
+         * Number of holds or reservations announced but not added yet.
+         */
+        private int remaining;
+
+        /**
+         * Start a snapshot with its header and seat states.
+         *
+         * @param numRows number of rows of the venue
+         * @param seatsPerRow number of seats per row of the venue
+         * @param journalPosition the {@link Journal#position()} the snapshot is taken at, or 0 if there's no journal
+         * @param seatStates the seat states, which must not change meanwhile
+         */
+        Builder(final int numRows, final int seatsPerRow, final long journalPosition, final SeatStates seatStates) {
+            int seatStatesBytes = seatStates.numWords() * Long.BYTES;
+            contents = ByteBuffer.allocate(SEAT_STATES_POSITION + Integer.BYTES + seatStatesBytes + Integer.BYTES);
+            contents.putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(seatsPerRow).putLong(journalPosition);
+            contents.putInt(seatStates.numWords());
+            seatStates.copyTo(contents.asLongBuffer());
+            contents.position(contents.position() + seatStatesBytes);
+        }
+
+        /**
+         * Start the holds.
+         *
+         * @param count how many there are
+         * @return this builder
+         */
+        Builder holds(final int count) {
+            return startSection(count, Integer.BYTES + Long.BYTES + Integer.BYTES);
+        }
+
+        /**
+         * Add a hold.
+         *
+         * @param id ID of the {@link SeatHold}
+         * @param expiresAtMillis when the hold expires, in milliseconds since the epoch
+         * @param seats the seats held
+         * @return this builder
+         */
+        Builder hold(final int id, final long expiresAtMillis, final List<Seat> seats) {
+            checkState(remaining > 0, "More holds than announced");
+            ensureCapacity(Integer.BYTES + Long.BYTES + Integer.BYTES + seats.size() * Integer.BYTES);
+            contents.putInt(id).putLong(expiresAtMillis);
+            putSeatIndexes(seats);
+            remaining--;
+            return this;
+        }
+
+        /**
+         * Start the reservations, once all holds have been added.
+         *
+         * @param count how many there are
+         * @return this builder
+         */
+        Builder reservations(final int count) {
+            return startSection(count, Integer.BYTES + Integer.BYTES);
+        }
+
+        /**
+         * Add a reservation.
+         *
+         * @param reservationCode the packed reservation code
+         * @param seats the seats reserved
+         * @return this builder
+         */
+        Builder reservation(final int reservationCode, final List<Seat> seats) {
+            checkState(remaining > 0, "More reservations than announced");
+            ensureCapacity(Integer.BYTES + Integer.BYTES + seats.size() * Integer.BYTES);
+            contents.putInt(reservationCode);
+            putSeatIndexes(seats);
+            remaining--;
+            return this;
+        }
+
+        /**
+         * Finish the snapshot, once all reservations have been added.
+         *
+         * @return the snapshot
+         */
+        VenueSnapshot build() {
+            checkState(remaining == 0, "%s announced entries are missing", remaining);
+            ensureCapacity(Integer.BYTES);
+            contents.putInt(checksum(contents, contents.position()));
+            return new VenueSnapshot(contents.flip());
+        }
+
+        /**
+         * Start a section of holds or reservations, making room for the entries without their seats.
+         *
+         * @param count how many entries there are
+         * @param entryBytes size of an entry without its seats
+         * @return this builder
+         */
+        private Builder startSection(final int count, final int entryBytes) {
+            checkState(remaining == 0, "%s announced entries are missing", remaining);
+            checkArgument(count >= 0, "count must be >= 0");
+            ensureCapacity(Integer.BYTES + (int) Math.min((long) count * entryBytes, Integer.MAX_VALUE / 2));
+            contents.putInt(count);
+            remaining = count;
+            return this;
+        }
+
+        /**
+         * Add a number of seats and their indexes.
+         *
+         * @param seats the seats of the venue, i.e. {@link VenueSeat}s
+         */
+        private void putSeatIndexes(final List<Seat> seats) {
+            contents.putInt(seats.size());
+            for (int i = 0; i < seats.size(); i++) {
+                contents.putInt(((VenueSeat) seats.get(i)).getIndex());
+            }
+        }
+
+        /**
+         * Make sure there's room for some more bytes, doubling the buffer if there isn't.
+         *
+         * @param numBytes number of bytes
+         */
+        private void ensureCapacity(final int numBytes) {
+            if (contents.remaining() < numBytes) {
+                int capacity = contents.capacity();
+                while (capacity - contents.position() < numBytes) {
+                    capacity *= 2;
+                }
+                contents = ByteBuffer.allocate(capacity).put(contents.flip());
+            }
+        }
+    }
+}
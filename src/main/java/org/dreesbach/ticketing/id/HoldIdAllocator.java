@@ -0,0 +1,70 @@
+package org.dreesbach.ticketing.id;
+
+import java.security.SecureRandom;
+
+/**
+ * Hands out seat hold IDs without keeping track of the ones in use.
+ * <p>
+ * An ID is a keyed permutation of a counter value (see {@link PermutedCounter}): no two counter values map to the same ID,
+ * so an ID only comes up again once a counter stripe has gone through its 2<sup>27</sup> (~134 million) values - long after
+ * the hold that had it is gone. The keys are drawn at random for each allocator, so IDs don't look sequential.
+ * <p>
+ * Drawing an ID is a single atomic increment on a counter stripe picked by the thread ID plus a few arithmetic operations -
+ * there's no lock, no retry loop and no set of IDs in use.
+ */
+public final class HoldIdAllocator {
+    /**
+     * IDs are 31-bit, i.e. positive ints.
+     */
+    private static final int ID_BITS = Integer.SIZE - 1;
+    /**
+     * The counter the IDs are drawn from.
+     */
+    private final PermutedCounter ids;
+
+    /**
+     * Creates an allocator with random keys.
+     */
+    public HoldIdAllocator() {
+        this(new SecureRandom().nextInt(), new SecureRandom().nextInt());
+    }
+
+    /**
+     * Creates an allocator with the given keys, e.g. to get the same IDs every time in a test.
+     *
+     * @param firstKey key of the permutation's first round
+     * @param secondKey key of the permutation's second round
+     */
+    HoldIdAllocator(final int firstKey, final int secondKey) {
+        ids = new PermutedCounter(ID_BITS, firstKey, secondKey);
+    }
+
+    /**
+     * Allocate an ID.
+     *
+     * @return an ID > 0
+     */
+    public int next() {
+        return ids.next();
+    }
+
+    /**
+     * Allocate several IDs at once, with a single atomic operation.
+     *
+     * @param count how many IDs to allocate
+     * @return the IDs, all > 0
+     */
+    public int[] next(final int count) {
+        return ids.next(count);
+    }
+
+    /**
+     * The permutation IDs are drawn through.
+     *
+     * @param value the value, between 0 and {@link Integer#MAX_VALUE}
+     * @return the permuted value, between 0 and {@link Integer#MAX_VALUE}
+     */
+    int permute(final int value) {
+        return ids.permute(value);
+    }
+}
@@ -1,185 +1,149 @@
 package org.dreesbach.ticketing.id;
 
-import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.time.Instant;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Set;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
- * Implementation of the IdGenerator interface.
+ * Generates reservation codes. Seat hold IDs come from a {@link HoldIdAllocator} per venue instead.
+ * <p>
+ * Internally a reservation code is a packed {@code int}: {@value MAX_RESERVATION_CODE_LENGTH} symbols of
+ * {@value BITS_PER_SYMBOL} bits each, from an alphabet of digits and uppercase letters that leaves out the easily confused
+ * I, L, O and U (Crockford's base 32). Only at the API boundary is it turned into a {@link String}, and both directions
+ * work without allocating anything but that string.
+ * <p>
+ * Codes are unique because they come out of a {@link PermutedCounter} - a bijection - rather than being checked against a
+ * set of codes in use, so there's nothing to look up, lock or retire.
  */
 public final class IdGenerator {
 
     /**
-     * Maximum length of reservation codes to generate. At 6 characters we get ~2.1 billion unique codes, which should
-     * suffice for this implementation. For a more complete production implementation we'd want to keep track of these in
-     * maybe a key-value store like Redis, Cassandra, or Couchbase (with possibly an IMDG like Hazelcast or a simple
-     * cache like memcached wrapping one of these to improve speed).
+     * Length of reservation codes. At 6 characters we get ~1.07 billion unique codes, and each thread has to hand out ~67
+     * million of them (a counter stripe's share) before its codes come around again, which should suffice for this
+     * implementation. For a more complete production implementation we'd want to keep track of these in maybe a key-value
+     * store like Redis, Cassandra, or Couchbase (with possibly an IMDG like Hazelcast or a simple cache like memcached
+     * wrapping one of these to improve speed).
      */
     public static final int MAX_RESERVATION_CODE_LENGTH = 6;
     /**
-     * Max number of calls to the {@link rng} to allow before re-seeding it. Package-private (rather than private) so tests
-     * can verify {@link callCounter} cycles correctly without duplicating this value.
+     * Number of bits each symbol of a reservation code stands for.
      */
-    static final int MAX_CALL_COUNT_BEFORE_RESET = 10_000;
+    private static final int BITS_PER_SYMBOL = 5;
     /**
-     * Random number generator for this class.
+     * Mask of a symbol's bits.
      */
-    private static SecureRandom rng = new SecureRandom();
+    private static final int SYMBOL_MASK = (1 << BITS_PER_SYMBOL) - 1;
     /**
-     * Keeps track of the number of times the {@link rng} was called.
-     */
-    private static int callCounter = 0;
-
-    /**
-     * Make utility class non-instantiable.
+     * Number of bits of a packed reservation code.
      */
-    private IdGenerator() { }
-
+    private static final int RESERVATION_CODE_BITS = BITS_PER_SYMBOL * MAX_RESERVATION_CODE_LENGTH;
     /**
-     * Tune this to match the expected workloads. The more seat reservation requests that are expected, the more you may want
-     * to increase this value.
+     * The symbols, in order of their value.
      */
-    private static final int INITIAL_CAPACITY = 100_000;
-
+    private static final char[] SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
     /**
-     * Keps track of the IDs currently in use to ensure uniqueness. Note that this is NOT intended to be iterated over,
-     * instead we optimize for add/remove performance given the large initial capacity.
-     *
-     * This is a synchronized set to ensure multiple threads accessing this work correctly.
+     * The value of each ASCII character as a symbol, or -1 if it isn't one. Lowercase letters are read like uppercase ones,
+     * and O, I and L like the digits they are easily mistaken for.
      */
-    private static final Set<Integer> IDS_IN_USE = Collections.synchronizedSet(new HashSet<>(INITIAL_CAPACITY));
+    private static final byte[] SYMBOL_VALUES = new byte[Byte.MAX_VALUE + 1];
     /**
-     * Same as IDS_IN_USE, but to track reservation IDs.
+     * Where the packed reservation codes come from.
      */
-    private static final Set<String> RESERVATION_IDS_IN_USE = Collections.synchronizedSet(new HashSet<>(INITIAL_CAPACITY));
+    private static final PermutedCounter RESERVATION_CODES;
 
-    /**
-     * Generates a unique, random ID.
-     *
-     * @return a unique integer ID
-     */
-    public static int generateUniqueIntId() {
-        reseedRng();
-        int randomNum = rng.nextInt(Integer.MAX_VALUE);
-        synchronized (IDS_IN_USE) {
-            do {
-                randomNum = rng.nextInt(Integer.MAX_VALUE);
-            } while (randomNum == 0 || !IDS_IN_USE.add(randomNum));
+    static {
+        Arrays.fill(SYMBOL_VALUES, (byte) -1);
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            SYMBOL_VALUES[SYMBOLS[i]] = (byte) i;
+            SYMBOL_VALUES[Character.toLowerCase(SYMBOLS[i])] = (byte) i;
         }
-        return randomNum;
+        SYMBOL_VALUES['O'] = 0;
+        SYMBOL_VALUES['o'] = 0;
+        SYMBOL_VALUES['I'] = 1;
+        SYMBOL_VALUES['i'] = 1;
+        SYMBOL_VALUES['L'] = 1;
+        SYMBOL_VALUES['l'] = 1;
+        SecureRandom rng = new SecureRandom();
+        RESERVATION_CODES = new PermutedCounter(RESERVATION_CODE_BITS, rng.nextInt(), rng.nextInt());
     }
 
     /**
-     * Generate a unique reservation code.
-     *
-     * @return a {@value MAX_RESERVATION_CODE_LENGTH} character string for the reservation code
+     * Make utility class non-instantiable.
      */
-    public static String generateReservationCode() {
-        reseedRng();
-        String reservationCode = internalGenerateReservationCode();
-        synchronized (RESERVATION_IDS_IN_USE) {
-            while (!RESERVATION_IDS_IN_USE.add(reservationCode)) {
-                reservationCode = internalGenerateReservationCode();
-            }
-        }
-        return reservationCode;
-    }
+    private IdGenerator() { }
 
     /**
-     * Internal method for generating a reservation code.
-     *
-     * This could be improved by excluding potentially confusing characters like 1 and I, 0 and O, etc., but we won't worry
-     * about that for this simple implementation for now.
-     *
-     * There are a fair number of short-lived objects created by this that may create some GC pressure, but I will leave that
-     * worry out of scope for now.
+     * Generate a unique packed reservation code.
      *
-     * @return a {@value MAX_RESERVATION_CODE_LENGTH} character unique string
+     * @return the packed code, > 0
      */
-    private static String internalGenerateReservationCode() {
-        byte[] bytes = new byte[MAX_RESERVATION_CODE_LENGTH + 1];
-        rng.nextBytes(bytes);
-        BigInteger bigInteger = new BigInteger(bytes).abs();
-        return bigInteger
-                .toString(Character.MAX_RADIX)
-                .toUpperCase(Locale.getDefault())
-                .substring(0, MAX_RESERVATION_CODE_LENGTH);
+    public static int nextReservationCode() {
+        return RESERVATION_CODES.next();
     }
 
     /**
-     * See how many unique IDs are currently in use.
+     * Generate several unique packed reservation codes at once, with a single atomic operation.
      *
-     * @return number of unique IDs in use
+     * @param count how many codes to generate
+     * @return the packed codes, all > 0
      */
-    public static int numUniqueIds() {
-        synchronized (IDS_IN_USE) {
-            return IDS_IN_USE.size();
-        }
+    public static int[] nextReservationCodes(final int count) {
+        return RESERVATION_CODES.next(count);
     }
 
     /**
-     * See how many unique reservation IDs are currently in use.
+     * Generate a unique reservation code.
      *
-     * @return number of unique reservation IDs in use
+     * @return a {@value MAX_RESERVATION_CODE_LENGTH} character string for the reservation code
      */
-    public static int numUniqueReservationIds() {
-        synchronized (RESERVATION_IDS_IN_USE) {
-            return RESERVATION_IDS_IN_USE.size();
-        }
+    public static String generateReservationCode() {
+        return encodeReservationCode(nextReservationCode());
     }
 
     /**
-     * Retire an ID from use. Should be called in order to keep set size to a minimum.
+     * Turn a packed reservation code into its {@value MAX_RESERVATION_CODE_LENGTH} character string.
      *
-     * Initial naive implementation - should be automatic, ideally.
-     *
-     * @param id int ID to be removed
-     * @return {@code true} if ID was in use, {@code false} otherwise
+     * @param reservationCode the packed code
+     * @return the string
      */
-    public static boolean retireId(final int id) {
-        synchronized (IDS_IN_USE) {
-            return IDS_IN_USE.remove(id);
-        }
+    public static String encodeReservationCode(final int reservationCode) {
+        char[] symbols = new char[MAX_RESERVATION_CODE_LENGTH];
+        encodeReservationCode(reservationCode, symbols, 0);
+        return new String(symbols);
     }
 
     /**
-     * Retire a reservation ID from use. Should be called in order to keep set size to a minimum.
+     * Write the {@value MAX_RESERVATION_CODE_LENGTH} symbols of a packed reservation code into a buffer.
      *
-     * Initial naive implementation - should be automatic, ideally.
-     *
-     * @param id String ID to be removed
-     * @return {@code true} if ID was in use, {@code false} otherwise
-     */
-    public static boolean retireReservationId(final String id) {
-        synchronized (RESERVATION_IDS_IN_USE) {
-            return RESERVATION_IDS_IN_USE.remove(id);
+     * @param reservationCode the packed code
+     * @param destination the buffer
+     * @param offset where in the buffer to write the first symbol
+     */
+    public static void encodeReservationCode(final int reservationCode, final char[] destination, final int offset) {
+        checkArgument(reservationCode >>> RESERVATION_CODE_BITS == 0, "Invalid packed reservation code %s", reservationCode);
+        for (int i = MAX_RESERVATION_CODE_LENGTH - 1, bits = reservationCode; i >= 0; i--, bits >>>= BITS_PER_SYMBOL) {
+            destination[offset + i] = SYMBOLS[bits & SYMBOL_MASK];
         }
     }
 
     /**
-     * Utility method to re-seed the {@link rng} every {@value MAX_CALL_COUNT_BEFORE_RESET} calls.
-     * <p>
-     * Synchronized so that concurrent callers can't race on incrementing {@link callCounter}, which would otherwise let the
-     * threshold check pass multiple times (or not fire at all) under load.
-     */
-    private static synchronized void reseedRng() {
-        callCounter++;
-        if (callCounter >= MAX_CALL_COUNT_BEFORE_RESET) {
-            rng.setSeed(Instant.now().getEpochSecond());
-            callCounter = 0;
-        }
-    }
-
-    /**
-     * Test-only accessor for the current {@link callCounter} value.
+     * Turn a reservation code back into its packed form.
      *
-     * @return the number of calls since the {@link rng} was last re-seeded
-     */
-    static synchronized int getCallCounter() {
-        return callCounter;
+     * @param reservationCode the {@value MAX_RESERVATION_CODE_LENGTH} character reservation code
+     * @return the packed code
+     */
+    public static int decodeReservationCode(final CharSequence reservationCode) {
+        checkArgument(reservationCode.length() == MAX_RESERVATION_CODE_LENGTH,
+                "Expected a %s-character reservation code",
+                MAX_RESERVATION_CODE_LENGTH
+        );
+        int packed = 0;
+        for (int i = 0; i < MAX_RESERVATION_CODE_LENGTH; i++) {
+            char c = reservationCode.charAt(i);
+            checkArgument(c < SYMBOL_VALUES.length && SYMBOL_VALUES[c] >= 0, "Invalid reservation code %s", reservationCode);
+            packed = packed << BITS_PER_SYMBOL | SYMBOL_VALUES[c];
+        }
+        return packed;
     }
 }
@@ -0,0 +1,146 @@
+package org.dreesbach.ticketing.id;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A counter whose values come out through a keyed permutation of the {@code bits}-bit values: no two counter values map to
+ * the same output, so an output only comes up again once the counter comes around. The keys decide the order, so with
+ * random keys the outputs don't look sequential and the next one can't be told from the last at a glance. This is no
+ * cipher though - don't rely on it to keep outputs secret from a determined guesser.
+ * <p>
+ * The counter is split into stripes, and each thread draws from the stripe picked by its thread ID: stripe {@code s} only
+ * hands out counter values {@code k * NUM_STRIPES + s}, so the stripes never overlap, and threads on different stripes
+ * don't contend at all. Each stripe comes around on its own, after 2<sup>bits</sup> / {@value NUM_STRIPES} values.
+ * Drawing a value is a single atomic increment plus a few arithmetic operations - there's no lock, no retry loop and no
+ * set of values in use.
+ * <p>
+ * The output 0 is never handed out, so that callers can use it as "none".
+ */
+final class PermutedCounter {
+    /**
+     * Number of counter stripes, a power of 2.
+     */
+    private static final int NUM_STRIPES = 16;
+    /**
+     * Distance between two stripes' counters in {@link #counters}, so that each counter has a cache line to itself (two, in
+     * fact, as CPUs tend to prefetch lines in pairs).
+     */
+    private static final int STRIPE_PADDING = 16;
+    /**
+     * Multiplier of the permutation's first round - odd, so multiplying by it is invertible.
+     */
+    private static final int FIRST_MULTIPLIER = 0x85EBCA6B;
+    /**
+     * Multiplier of the permutation's second round - odd, so multiplying by it is invertible.
+     */
+    private static final int SECOND_MULTIPLIER = 0xC2B2AE35;
+    /**
+     * Shift of the permutation's first round.
+     */
+    private static final int FIRST_SHIFT = 16;
+    /**
+     * Shift of the permutation's second round.
+     */
+    private static final int SECOND_SHIFT = 13;
+    /**
+     * The stripes' counters, {@link #STRIPE_PADDING} apart.
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(NUM_STRIPES * STRIPE_PADDING);
+    /**
+     * Mask of the low {@code bits} bits that make up a value.
+     */
+    private final int mask;
+    /**
+     * Key of the permutation's first round.
+     */
+    private final int firstKey;
+    /**
+     * Key of the permutation's second round.
+     */
+    private final int secondKey;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bits number of bits of the values, between 1 and 31
+     * @param firstKey key of the permutation's first round
+     * @param secondKey key of the permutation's second round
+     */
+    PermutedCounter(final int bits, final int firstKey, final int secondKey) {
+        checkArgument(bits > 0 && bits < Integer.SIZE, "bits must be between 1 and 31");
+        this.mask = (int) ((1L << bits) - 1);
+        this.firstKey = firstKey;
+        this.secondKey = secondKey;
+    }
+
+    /**
+     * Draw a value.
+     *
+     * @return a value > 0
+     */
+    int next() {
+        int stripe = stripe();
+        int value;
+        do {
+            value = valueOf(counters.getAndIncrement(stripe * STRIPE_PADDING), stripe);
+        } while (value == 0);
+        return value;
+    }
+
+    /**
+     * Draw several values at once, with a single atomic operation.
+     *
+     * @param count how many values to draw
+     * @return the values, all > 0
+     */
+    int[] next(final int count) {
+        checkArgument(count >= 0, "count must be >= 0");
+        int stripe = stripe();
+        long first = counters.getAndAdd(stripe * STRIPE_PADDING, count);
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = valueOf(first + i, stripe);
+            if (values[i] == 0) {
+                values[i] = next();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The stripe of the current thread.
+     *
+     * @return the stripe
+     */
+    private static int stripe() {
+        return (int) Thread.currentThread().threadId() & (NUM_STRIPES - 1);
+    }
+
+    /**
+     * The output for a value of a stripe's counter. Only one counter value in 2<sup>bits</sup> maps to the invalid output 0.
+     *
+     * @param count the counter value
+     * @param stripe the stripe
+     * @return the output, or 0
+     */
+    private int valueOf(final long count, final int stripe) {
+        return permute((int) (count * NUM_STRIPES + stripe) & mask);
+    }
+
+    /**
+     * A bijection on the {@code bits}-bit values, made up of steps that can each be undone: adding a key, multiplying by an
+     * odd number and xor-ing with a right shift, all modulo 2<sup>bits</sup>.
+     *
+     * @param value the value, between 0 and 2<sup>bits</sup> - 1
+     * @return the permuted value, between 0 and 2<sup>bits</sup> - 1
+     */
+    int permute(final int value) {
+        int x = ((value + firstKey) * FIRST_MULTIPLIER) & mask;
+        x ^= x >>> FIRST_SHIFT;
+        x = ((x + secondKey) * SECOND_MULTIPLIER) & mask;
+        x ^= x >>> SECOND_SHIFT;
+        return x;
+    }
+}
@@ -0,0 +1,198 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTicketServiceImplTest {
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+    private static final int NUM_ROWS = 3;
+    private static final int NUM_COLS = 3;
+    private Venue defaultVenue;
+    private AsyncTicketServiceImpl ticketService;
+
+    @BeforeEach
+    public void setup() {
+        defaultVenue = new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+        ticketService = new AsyncTicketServiceImpl(new ConcurrentTicketServiceImpl(defaultVenue));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ticketService.close();
+    }
+
+    @Test
+    void invalidConstructorArgumentsThrowExceptions() {
+        TicketService delegate = new ConcurrentTicketServiceImpl(defaultVenue);
+        assertAll("argument checking",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new AsyncTicketServiceImpl(null),
+                        "ticketService cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new AsyncTicketServiceImpl(delegate, null, 1),
+                        "executor cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new AsyncTicketServiceImpl(delegate, Executors.newVirtualThreadPerTaskExecutor(), 0),
+                        "maxInFlight must be > 0"
+                )
+        );
+        delegate.close();
+    }
+
+    @Test
+    void holdAndReserveSeats() throws Exception {
+        SeatHold seatHold = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL).get();
+        assertAll("check hold",
+                () -> assertEquals(2, seatHold.getNumSeatsHeld(), "Should have held 2 seats"),
+                () -> assertEquals(defaultVenue.getTotalNumSeats() - 2,
+                        ticketService.numSeatsAvailable().get(),
+                        "Seat holds should reduce number of available seats"
+                )
+        );
+        assertThat("Reservation code should match expected",
+                ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL).get(),
+                matchesPattern("[A-Z0-9]{6}")
+        );
+    }
+
+    @Test
+    void batchesAreHandledAsOneRequest() throws Exception {
+        List<BatchResult<SeatHold>> holds = ticketService.findAndHoldSeats(List.of(
+                new HoldRequest(2, CUSTOMER_EMAIL),
+                new HoldRequest(0, CUSTOMER_EMAIL)
+        )).get();
+        List<BatchResult<String>> reservations = ticketService.reserveSeats(List.of(
+                new ReservationRequest(holds.get(0).get().getId(), CUSTOMER_EMAIL)
+        )).get();
+        assertAll("check results",
+                () -> assertFalse(holds.get(1).isSuccess(), "Zero seats should fail"),
+                () -> assertThat("Reservation code", reservations.get(0).get(), matchesPattern("[A-Z0-9]{6}"))
+        );
+    }
+
+    @Test
+    void failedRequestsCompleteExceptionally() {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> ticketService.findAndHoldSeats(0, CUSTOMER_EMAIL).get(),
+                "Holding zero seats should fail"
+        );
+        assertAll("check failure",
+                () -> assertEquals(IllegalArgumentException.class, e.getCause().getClass(), "Should fail like the sync call"),
+                () -> assertEquals("numSeatsToHold must be > 0", e.getCause().getMessage(), "Should keep the message"),
+                () -> assertEquals(AsyncTicketServiceImpl.DEFAULT_MAX_IN_FLIGHT,
+                        ticketService.availableSlots(),
+                        "Failed request should free its slot"
+                )
+        );
+    }
+
+    @Test
+    void requestsRunOnVirtualThreadsByDefault() throws Exception {
+        CompletableFuture<Boolean> isVirtual = new CompletableFuture<>();
+        try (AsyncTicketServiceImpl probe = new AsyncTicketServiceImpl(new DelegatingTicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                isVirtual.complete(Thread.currentThread().isVirtual());
+                return super.numSeatsAvailable();
+            }
+        })) {
+            probe.numSeatsAvailable().get();
+            assertTrue(isVirtual.get(), "Request should have run on a virtual thread");
+        }
+    }
+
+    @Test
+    void requestsOverTheLimitAreRejectedRightAway() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (AsyncTicketServiceImpl limited = new AsyncTicketServiceImpl(new DelegatingTicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                started.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.numSeatsAvailable();
+            }
+        }, Executors.newVirtualThreadPerTaskExecutor(), 1)) {
+            CompletableFuture<Integer> blocked = limited.numSeatsAvailable();
+            started.await();
+            CompletableFuture<SeatHold> rejected = limited.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            assertAll("check rejection",
+                    () -> assertTrue(rejected.isCompletedExceptionally(), "Request over the limit should fail at once"),
+                    () -> assertEquals(RejectedExecutionException.class,
+                            assertThrows(ExecutionException.class, rejected::get).getCause().getClass(),
+                            "Request over the limit should be rejected"
+                    ),
+                    () -> assertEquals(0, limited.availableSlots(), "The only slot should be taken")
+            );
+            release.countDown();
+            assertEquals(defaultVenue.getTotalNumSeats(), blocked.get(), "Blocked request should finish once let go");
+            assertEquals(2, limited.findAndHoldSeats(2, CUSTOMER_EMAIL).get().getNumSeatsHeld(), "Slot should be free again");
+        }
+    }
+
+    @Test
+    void requestsAfterCloseAreRejected() {
+        AsyncTicketServiceImpl closed = new AsyncTicketServiceImpl(new ConcurrentTicketServiceImpl(defaultVenue));
+        closed.close();
+        assertAll("check rejection",
+                () -> assertEquals(RejectedExecutionException.class,
+                        assertThrows(ExecutionException.class, () -> closed.numSeatsAvailable().get()).getCause().getClass(),
+                        "Closed service should reject requests"
+                ),
+                () -> assertEquals(AsyncTicketServiceImpl.DEFAULT_MAX_IN_FLIGHT,
+                        closed.availableSlots(),
+                        "Rejected request should free its slot"
+                )
+        );
+    }
+
+    /**
+     * A {@link TicketService} that passes everything on to a {@link ConcurrentTicketServiceImpl}, to override single calls of.
+     */
+    private class DelegatingTicketService implements TicketService {
+        private final TicketService delegate = new ConcurrentTicketServiceImpl(defaultVenue);
+
+        @Override
+        public int numSeatsAvailable() {
+            return delegate.numSeatsAvailable();
+        }
+
+        @Override
+        public SeatHold findAndHoldSeats(final int numSeats, final String customerEmail) {
+            return delegate.findAndHoldSeats(numSeats, customerEmail);
+        }
+
+        @Override
+        public String reserveSeats(final int seatHoldId, final String customerEmail) {
+            return delegate.reserveSeats(seatHoldId, customerEmail);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
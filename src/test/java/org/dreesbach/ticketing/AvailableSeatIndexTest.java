@@ -0,0 +1,165 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AvailableSeatIndexTest {
+    /**
+     * Goodness of the seats in {@link #index}: seat 3 is best, seats 1 and 4 tie for second place.
+     */
+    private static final double[] GOODNESS = { 5.0, 2.0, 7.0, 1.0, 2.0 };
+    private AvailableSeatIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new AvailableSeatIndex(GOODNESS.length, seat -> GOODNESS[seat]);
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new AvailableSeatIndex(0, seat -> 0.0),
+                        "numSeats must be > 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new AvailableSeatIndex(1, null),
+                        "goodness cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> index.acquireBest(-1),
+                        "numSeats must be >= 0"
+                ),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> index.release(GOODNESS.length), "Too high a seat"),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> index.acquire(-1), "Negative seat")
+        );
+    }
+
+    @Test
+    void seatsAreHandedOutBestFirstWithTiesBrokenBySeatIndex() {
+        assertArrayEquals(new int[] { 3, 1, 4, 0, 2 }, index.acquireBest(GOODNESS.length), "Seats should be ordered by goodness");
+    }
+
+    @Test
+    void scoresAreOrderedExactly() {
+        // the first two scores are equal when rounded to a float, and negative scores must sort before positive ones
+        double[] goodness = { 1e10 + 1, 1e10, -3.0, -1.0, 0.0 };
+        index = new AvailableSeatIndex(goodness.length, seat -> goodness[seat]);
+        assertArrayEquals(new int[] { 2, 3, 4, 1, 0 }, index.acquireBest(goodness.length), "Seats should be ordered by goodness");
+    }
+
+    @Test
+    void noMoreSeatsThanAvailableAreHandedOut() {
+        index.acquireBest(3);
+        assertAll("check postconditions",
+                () -> assertEquals(0, index.best(), "Seat 0 should be the best one left"),
+                () -> assertArrayEquals(new int[] { 0, 2 }, index.acquireBest(3), "Only the remaining seats should be handed out"),
+                () -> assertArrayEquals(new int[0], index.acquireBest(1), "Nothing should be left"),
+                () -> assertEquals(0, index.size(), "Nothing should be available"),
+                () -> assertEquals(-1, index.best(), "No seat should be best")
+        );
+    }
+
+    @Test
+    void releasedSeatsCanBePickedAgainInOrder() {
+        index.acquireBest(GOODNESS.length);
+        index.release(0);
+        index.release(1);
+        assertAll("check postconditions",
+                () -> assertEquals(2, index.size(), "Released seats should be available"),
+                () -> assertArrayEquals(new int[] { 1, 0 }, index.acquireBest(GOODNESS.length), "Best released seat comes first")
+        );
+    }
+
+    @Test
+    void acquireAndReleaseAreIdempotent() {
+        index.acquire(3);
+        index.acquire(3);
+        index.release(1);
+        assertEquals(GOODNESS.length - 1, index.size(), "Seat 3 should only have been taken once");
+        index.release(3);
+        index.release(3);
+        assertEquals(GOODNESS.length, index.size(), "Seat 3 should only have been put back once");
+    }
+
+    @Test
+    void copiesShareTheRankingButNotTheAvailableSeats() {
+        index.acquire(3);
+        AvailableSeatIndex copy = new AvailableSeatIndex(index);
+        copy.acquire(1);
+        index.release(3);
+        assertAll("check copies",
+                () -> assertArrayEquals(new int[] { 4, 0, 2 }, copy.acquireBest(GOODNESS.length), "Copy lost seats 3 and 1"),
+                () -> assertArrayEquals(new int[] { 3, 1, 4, 0, 2 }, index.acquireBest(GOODNESS.length), "Original has all")
+        );
+    }
+
+    @Test
+    void seatsFarApartAreFoundThroughSeveralLevels() {
+        final int numSeats = 300_000;
+        index = new AvailableSeatIndex(numSeats, seat -> seat);
+        assertEquals(numSeats - 1, index.acquireBest(numSeats)[numSeats - 1], "Worst seat comes last");
+        index.release(numSeats - 1);
+        index.release(70_000);
+        index.release(5);
+        assertAll("check postconditions",
+                () -> assertArrayEquals(new int[] { 5, 70_000, numSeats - 1 }, index.acquireBest(numSeats), "Released seats"),
+                () -> assertEquals(-1, index.best(), "Nothing should be left")
+        );
+    }
+
+    @Test
+    void largeIndexesAreRankedInParallelLikeSmallOnes() {
+        final int numSeats = 100_000;
+        Random random = new Random(7);
+        // ties, and scores that only differ past the precision of a float
+        double[] goodness = random.ints(numSeats, -100, 100).mapToDouble(score -> score + (score % 2) * 1e-9).toArray();
+        index = new AvailableSeatIndex(numSeats, seat -> goodness[seat]);
+        int[] expected = IntStream.range(0, numSeats)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingDouble(seat -> goodness[seat]).thenComparingInt(seat -> seat))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        assertArrayEquals(expected, index.acquireBest(numSeats), "Seats should be ranked like a sequential sort ranks them");
+    }
+
+    @Test
+    void matchesAnOrderedSetUnderRandomChurn() {
+        final int numSeats = 1_000;
+        final int numOperations = 20_000;
+        final int maxGroupSize = 8;
+        Random random = new Random(42);
+        // lots of ties, to make sure they're broken consistently
+        double[] goodness = random.doubles(numSeats, 0, 50).map(Math::floor).toArray();
+        index = new AvailableSeatIndex(numSeats, seat -> goodness[seat]);
+        TreeSet<Integer> expected =
+                new TreeSet<>(Comparator.<Integer>comparingDouble(seat -> goodness[seat]).thenComparingInt(seat -> seat));
+        for (int seat = 0; seat < numSeats; seat++) {
+            expected.add(seat);
+        }
+        for (int i = 0; i < numOperations; i++) {
+            if (random.nextBoolean()) {
+                int[] picked = index.acquireBest(random.nextInt(maxGroupSize) + 1);
+                for (int seat : picked) {
+                    assertEquals(expected.pollFirst(), seat, "Picked seat should be the best available one");
+                }
+            }
+            else {
+                int seat = random.nextInt(numSeats);
+                index.release(seat);
+                expected.add(seat);
+            }
+            assertEquals(expected.size(), index.size(), "Number of available seats should match");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentTicketServiceImplTest {
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+    private static final int NUM_ROWS = 3;
+    private static final int NUM_COLS = 3;
+    private static final long WAIT_FOR_EXPIRATION_IN_MS = 100L;
+    private static final Duration DEFAULT_SEAT_HOLD_CHECK_DURATION = Duration.ofMillis(1);
+    /**
+     * Number of rows of the venue in {@link #noSeatsLostOrDoubleBookedUnderContention(int)}.
+     */
+    private static final int NUM_CONTENTION_ROWS = 20;
+    /**
+     * Number of seats per row of the venue in {@link #noSeatsLostOrDoubleBookedUnderContention(int)}.
+     */
+    private static final int NUM_CONTENTION_COLS = 100;
+    /**
+     * Total number of hold + reserve round trips performed per implementation in
+     * {@link #noSeatsLostOrDoubleBookedUnderContention(int)}, split evenly across the threads - fewer than there are seats.
+     */
+    private static final int NUM_CONTENTION_ROUND_TRIPS = 1_600;
+    private Venue defaultVenue;
+    private ConcurrentTicketServiceImpl ticketService;
+
+    @BeforeEach
+    public void setup() {
+        defaultVenue = new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+        ticketService = new ConcurrentTicketServiceImpl(defaultVenue);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ticketService.close();
+    }
+
+    @Test
+    void tooShortEmail() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> ticketService.findAndHoldSeats(2, "a"),
+                "C'mon, you think [a] is an email address!? ;]"
+        );
+    }
+
+    @Test
+    void holdZeroSeatsThrowsException() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> ticketService.findAndHoldSeats(0, CUSTOMER_EMAIL),
+                "numSeatsToHold must be > 0"
+        );
+    }
+
+    @Test
+    void negativeSeatHoldExpirationTimeThrowsException() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> new ConcurrentTicketServiceImpl(defaultVenue, Duration.ofSeconds(-1), Duration.ZERO),
+                "seatHoldCheckExpiration must be > 0"
+        );
+    }
+
+    @Test
+    void seatHoldReducesAvailableSeatCount() {
+        int numSeatsToHold = 2;
+        SeatHold seatHold = ticketService.findAndHoldSeats(numSeatsToHold, CUSTOMER_EMAIL);
+        assertAll("check postconditions",
+                () -> assertEquals(numSeatsToHold, seatHold.getNumSeatsHeld(), "Should have held the requested seats"),
+                () -> assertEquals(numSeatsToHold, ticketService.numSeatsHeld(), "Held seats should be tracked"),
+                () -> assertEquals(defaultVenue.getTotalNumSeats() - numSeatsToHold,
+                        ticketService.numSeatsAvailable(),
+                        "Seat holds should reduce number of available seats"
+                )
+        );
+    }
+
+    @Test
+    void reserveSeatsStopsTrackingTheSeatHold() {
+        SeatHold seatHold = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        String reservationCode = ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+        assertThat("Reservation code should match expected", reservationCode, matchesPattern("[A-Z0-9]{6}"));
+        assertEquals(0, ticketService.numSeatsHeld(), "Reserved seats should no longer be tracked as held once reserved");
+        TestUtil.testException(
+                IllegalStateException.class,
+                () -> ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL),
+                "SeatHold ID [" + seatHold.getId() + "] not found"
+        );
+    }
+
+    @Test
+    void reserveZeroSeatHoldIdThrowsException() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> ticketService.reserveSeats(0, "test"),
+                "seatHoldId must be > 0"
+        );
+    }
+
+    @Test
+    void reserveExpiredButNotYetSweptSeatHoldReleasesSeats() {
+        try (ConcurrentTicketServiceImpl slowSweeper =
+                new ConcurrentTicketServiceImpl(defaultVenue, Duration.ofDays(1), Duration.ZERO)) {
+            SeatHold seatHold = slowSweeper.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            TestUtil.testException(
+                    IllegalStateException.class,
+                    () -> slowSweeper.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL),
+                    "SeatHold ID [" + seatHold.getId() + "] is expired"
+            );
+            assertAll("check postconditions",
+                    () -> assertEquals(0, slowSweeper.numSeatsHeld(), "Expired hold should no longer be tracked"),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats(),
+                            slowSweeper.numSeatsAvailable(),
+                            "Expired hold's seats should be available again"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void batchOfHoldsAndReservations() {
+        List<BatchResult<SeatHold>> holds = ticketService.findAndHoldSeats(List.of(
+                new HoldRequest(2, CUSTOMER_EMAIL),
+                new HoldRequest(0, CUSTOMER_EMAIL),
+                new HoldRequest(3, CUSTOMER_EMAIL)
+        ));
+        assertAll("check holds",
+                () -> assertEquals("numSeatsToHold must be > 0", holds.get(1).getFailure().getMessage(), "Zero seats"),
+                () -> assertEquals(5, ticketService.numSeatsHeld(), "Successful holds should be tracked"),
+                () -> assertEquals(defaultVenue.getTotalNumSeats() - 5,
+                        ticketService.numSeatsAvailable(),
+                        "Holds should reduce number of available seats"
+                )
+        );
+        int firstId = holds.get(0).get().getId();
+        List<BatchResult<String>> reservations = ticketService.reserveSeats(List.of(
+                new ReservationRequest(firstId, CUSTOMER_EMAIL),
+                new ReservationRequest(firstId, CUSTOMER_EMAIL),
+                new ReservationRequest(holds.get(2).get().getId(), "a")
+        ));
+        assertAll("check reservations",
+                () -> assertThat("Reservation code", reservations.get(0).get(), matchesPattern("[A-Z0-9]{6}")),
+                () -> assertEquals("SeatHold ID [" + firstId + "] not found",
+                        reservations.get(1).getFailure().getMessage(),
+                        "Same hold can only be reserved once"
+                ),
+                () -> assertEquals(IllegalArgumentException.class, reservations.get(2).getFailure().getClass(), "Bad email"),
+                () -> assertEquals(3, ticketService.numSeatsHeld(), "Hold with the bad email should still be tracked")
+        );
+    }
+
+    @Test
+    void batchReservationOfExpiredButNotYetSweptSeatHoldReleasesSeats() {
+        try (ConcurrentTicketServiceImpl slowSweeper =
+                new ConcurrentTicketServiceImpl(defaultVenue, Duration.ofDays(1), Duration.ZERO)) {
+            SeatHold seatHold = slowSweeper.findAndHoldSeats(List.of(new HoldRequest(2, CUSTOMER_EMAIL))).get(0).get();
+            List<BatchResult<String>> results = slowSweeper.reserveSeats(List.of(
+                    new ReservationRequest(seatHold.getId(), CUSTOMER_EMAIL)
+            ));
+            assertAll("check postconditions",
+                    () -> assertEquals("SeatHold ID [" + seatHold.getId() + "] is expired",
+                            results.get(0).getFailure().getMessage(),
+                            "Expired hold"
+                    ),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats(),
+                            slowSweeper.numSeatsAvailable(),
+                            "Expired hold's seats should be available again"
+                    ),
+                    () -> TestUtil.testException(NullPointerException.class,
+                            () -> slowSweeper.findAndHoldSeats((List<HoldRequest>) null),
+                            "requests cannot be null"
+                    ),
+                    () -> TestUtil.testException(NullPointerException.class,
+                            () -> slowSweeper.reserveSeats((List<ReservationRequest>) null),
+                            "requests cannot be null"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void ensureSeatHoldsExpire() throws InterruptedException {
+        try (ConcurrentTicketServiceImpl immediateExpiration =
+                new ConcurrentTicketServiceImpl(defaultVenue, DEFAULT_SEAT_HOLD_CHECK_DURATION, Duration.ZERO)) {
+            immediateExpiration.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            Thread.sleep(WAIT_FOR_EXPIRATION_IN_MS); // Ensure that the #expireSeatHolds method has had time to run
+            assertEquals(0, immediateExpiration.numSeatsHeld(), "No seats should be held anymore");
+        }
+    }
+
+    @Test
+    void ensureSeatHoldsDoNotExpireTooSoon() throws InterruptedException {
+        try (ConcurrentTicketServiceImpl slowExpiration =
+                new ConcurrentTicketServiceImpl(defaultVenue, DEFAULT_SEAT_HOLD_CHECK_DURATION, Duration.ofDays(1))) {
+            slowExpiration.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            Thread.sleep(WAIT_FOR_EXPIRATION_IN_MS); // Ensure that the #expireSeatHolds method has had time to run
+            assertEquals(2, slowExpiration.numSeatsHeld(), "Seats should still be held");
+        }
+    }
+
+    @Test
+    void closeShutsDownSeatHoldExpirationThread() {
+        assertFalse(ticketService.isClosed(), "Should not be closed until close() is called");
+        ticketService.close();
+        assertTrue(ticketService.isClosed(), "Should be closed after close() is called");
+    }
+
+    @Test
+    void closeReleasesOutstandingSeatHolds() {
+        ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        ticketService.close();
+        assertAll("check postconditions",
+                () -> assertEquals(NUM_ROWS * NUM_COLS, ticketService.numSeatsAvailable(), "Held seats should be released"),
+                () -> assertEquals(0, ticketService.numSeatsHeld(), "No seats should be held anymore")
+        );
+    }
+
+    @Test
+    void concurrentReservationsOfTheSameSeatHoldOnlySucceedOnce() throws Exception {
+        final int numThreads = 8;
+        SeatHold seatHold = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        AtomicInteger successes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                tasks.add(() -> {
+                    try {
+                        ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+                        successes.incrementAndGet();
+                    }
+                    catch (IllegalStateException ise) {
+                        // expected for all but one of the threads
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(1, successes.get(), "Exactly one reservation of the SeatHold should have succeeded");
+    }
+
+    /**
+     * Runs a mixed hold + reserve workload against {@link TicketServiceImpl} and {@link ConcurrentTicketServiceImpl} from
+     * several threads at once, and checks that neither loses or double-books seats under contention. How fast they are at it
+     * is measured by {@code TicketServiceContentionBenchmark} in the {@code jmh} profile.
+     *
+     * @param numThreads number of concurrent request threads
+     */
+    @DisplayName("No seats lost or double-booked under contention")
+    @ParameterizedTest(name = "[{0}] thread(s)")
+    @ValueSource(ints = { 1, 8 })
+    void noSeatsLostOrDoubleBookedUnderContention(int numThreads) throws Exception {
+        handOutSeatsConcurrently(numThreads, venue -> new TicketServiceImpl(venue));
+        handOutSeatsConcurrently(numThreads, venue -> new ConcurrentTicketServiceImpl(venue));
+    }
+
+    private void handOutSeatsConcurrently(int numThreads, Function<Venue, TicketService> serviceFactory) throws Exception {
+        Venue venue = new RectangularVenue(NUM_CONTENTION_ROWS,
+                NUM_CONTENTION_COLS,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        );
+        int roundTripsPerThread = NUM_CONTENTION_ROUND_TRIPS / numThreads;
+        Set<String> seatsHandedOut = ConcurrentHashMap.newKeySet();
+        AtomicInteger doubleBookings = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (TicketService service = serviceFactory.apply(venue)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < roundTripsPerThread; j++) {
+                        SeatHold seatHold = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+                        if (ThreadLocalRandom.current().nextBoolean()) {
+                            service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+                        }
+                        for (Seat seat : seatHold.getSeatsHeld()) {
+                            if (!seatsHandedOut.add(seat.getId())) {
+                                doubleBookings.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            assertAll("check seats",
+                    () -> assertEquals(0, doubleBookings.get(), "No seat should be handed out twice"),
+                    () -> assertEquals(venue.getTotalNumSeats() - seatsHandedOut.size(),
+                            venue.getAvailableNumSeats(),
+                            "Every seat handed out should be accounted for"
+                    )
+            );
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
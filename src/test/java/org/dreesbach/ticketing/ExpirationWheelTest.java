@@ -0,0 +1,122 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpirationWheelTest {
+    private static final long TICK_NANOS = Duration.ofMillis(10).toNanos();
+    private static final int NUM_BUCKETS = 8;
+    /**
+     * Deliberately not 0, to make sure nothing assumes the wheel starts at the beginning of time.
+     */
+    private static final long START_NANOS = -12_345L;
+    private ExpirationWheel<String> wheel;
+    private List<String> expired;
+
+    @BeforeEach
+    void setup() {
+        wheel = new ExpirationWheel<>(Duration.ofNanos(TICK_NANOS), NUM_BUCKETS, START_NANOS);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new ExpirationWheel<String>(Duration.ZERO, NUM_BUCKETS, 0L),
+                        "tickDuration must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new ExpirationWheel<String>(Duration.ofSeconds(-1), NUM_BUCKETS, 0L),
+                        "tickDuration must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new ExpirationWheel<String>(Duration.ofSeconds(1), 0, 0L),
+                        "numBuckets must be a power of two"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new ExpirationWheel<String>(Duration.ofSeconds(1), 3, 0L),
+                        "numBuckets must be a power of two"
+                )
+        );
+    }
+
+    @Test
+    void entriesExpireOnceTheirDeadlineHasPassed() {
+        wheel.schedule("early", START_NANOS + 2 * TICK_NANOS + 1);
+        wheel.schedule("late", START_NANOS + 5 * TICK_NANOS);
+        assertEquals(0, wheel.advance(START_NANOS + 2 * TICK_NANOS, expired::add), "Nothing should be due yet");
+        assertEquals(1, wheel.advance(START_NANOS + 3 * TICK_NANOS, expired::add), "The early entry should be due");
+        assertEquals(List.of("early"), expired, "Only the early entry should have expired");
+        assertEquals(1, wheel.advance(START_NANOS + 5 * TICK_NANOS, expired::add), "The late entry should be due");
+        assertAll("check postconditions",
+                () -> assertEquals(List.of("early", "late"), expired, "Entries should expire in deadline order"),
+                () -> assertEquals(0, wheel.size(), "Nothing should be left in the wheel")
+        );
+    }
+
+    @Test
+    void entriesInTheSameBucketExpireAsABatch() {
+        for (int i = 0; i < 5; i++) {
+            wheel.schedule("entry" + i, START_NANOS + TICK_NANOS);
+        }
+        assertEquals(5, wheel.advance(START_NANOS + TICK_NANOS, expired::add), "All entries should expire together");
+    }
+
+    @Test
+    void overdueEntriesExpireOnTheNextTick() {
+        wheel.advance(START_NANOS + 3 * TICK_NANOS, expired::add);
+        wheel.schedule("overdue", START_NANOS);
+        assertEquals(1, wheel.advance(START_NANOS + 4 * TICK_NANOS, expired::add), "Overdue entry should expire right away");
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionAreHonoured() {
+        long deadline = START_NANOS + (NUM_BUCKETS * 3 + 1) * TICK_NANOS;
+        wheel.schedule("far", deadline);
+        for (long now = START_NANOS; now < deadline; now += TICK_NANOS) {
+            wheel.advance(now, expired::add);
+        }
+        assertTrue(expired.isEmpty(), "Entry should not expire before its deadline, even though its bucket was visited");
+        wheel.advance(deadline, expired::add);
+        assertEquals(List.of("far"), expired, "Entry should expire once its deadline is reached");
+    }
+
+    @Test
+    void longPauseVisitsEveryBucketOnce() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            wheel.schedule("entry" + i, START_NANOS + (i + 1) * TICK_NANOS);
+        }
+        assertEquals(NUM_BUCKETS,
+                wheel.advance(START_NANOS + NUM_BUCKETS * 100 * TICK_NANOS, expired::add),
+                "Everything should expire after a long pause"
+        );
+    }
+
+    @Test
+    void cancelledEntriesDoNotExpire() {
+        ExpirationWheel.Entry<String> first = wheel.schedule("first", START_NANOS + TICK_NANOS);
+        ExpirationWheel.Entry<String> middle = wheel.schedule("middle", START_NANOS + TICK_NANOS);
+        ExpirationWheel.Entry<String> last = wheel.schedule("last", START_NANOS + TICK_NANOS);
+        assertAll("cancel",
+                () -> assertTrue(wheel.cancel(middle), "Scheduled entry should be cancellable"),
+                () -> assertTrue(wheel.cancel(last), "Scheduled entry at the head of the bucket should be cancellable"),
+                () -> assertFalse(wheel.cancel(middle), "Entry can only be cancelled once"),
+                () -> assertFalse(wheel.cancel(null), "Cancelling null should be a no-op")
+        );
+        wheel.advance(START_NANOS + TICK_NANOS, expired::add);
+        assertAll("check postconditions",
+                () -> assertEquals(List.of("first"), expired, "Only the entry that wasn't cancelled should expire"),
+                () -> assertFalse(wheel.cancel(first), "Expired entries can't be cancelled")
+        );
+    }
+}
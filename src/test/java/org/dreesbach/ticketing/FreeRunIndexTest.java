@@ -0,0 +1,212 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FreeRunIndexTest {
+    private static final int NUM_ROWS = 5;
+    /**
+     * Wider than a word, so that runs cross word boundaries.
+     */
+    private static final int SEATS_PER_ROW = 100;
+    private FreeRunIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new FreeRunIndex(NUM_ROWS, SEATS_PER_ROW);
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new FreeRunIndex(0, 1),
+                        "numRows must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new FreeRunIndex(1, 0),
+                        "seatsPerRow must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new FreeRunIndex(-1, 1, 1),
+                        "firstRow must be >= 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> index.bestBlock(0),
+                        "length must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> index.mostCentralStart(0, 0),
+                        "length must be > 0"
+                ),
+                () -> assertThrows(IndexOutOfBoundsException.class,
+                        () -> index.acquire(NUM_ROWS * SEATS_PER_ROW),
+                        "Too high a seat"
+                ),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> index.release(-1), "Negative seat"),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> index.longestRun(NUM_ROWS), "Too high a row"),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> index.mostCentralStart(-1, 1), "Negative row")
+        );
+    }
+
+    @Test
+    void allSeatsStartOutAvailable() {
+        assertAll("check initial state",
+                () -> assertEquals(SEATS_PER_ROW, index.longestRun(), "Whole rows should be free"),
+                () -> assertEquals(SEATS_PER_ROW, index.longestRun(NUM_ROWS - 1), "Last row should be free"),
+                () -> assertEquals(0, index.bestBlock(SEATS_PER_ROW), "First row should fit a full row"),
+                () -> assertEquals(-1, index.bestBlock(SEATS_PER_ROW + 1), "No row is longer than a row"),
+                () -> assertEquals(45, index.bestBlock(10), "Block should be centered in the front row"),
+                () -> assertEquals(45, index.mostCentralStart(0, 10), "Block should be centered")
+        );
+    }
+
+    @Test
+    void takingSeatsSplitsRuns() {
+        // split row 0 into runs of 63, 1 and 34 seats around the first word boundary
+        index.acquire(63);
+        index.acquire(65);
+        assertAll("check runs",
+                () -> assertEquals(63, index.longestRun(0), "Longest run should end right before the first word boundary"),
+                () -> assertEquals(SEATS_PER_ROW + 18, index.bestBlock(64), "Row 0 can't fit 64 seats any more"),
+                () -> assertEquals(49, index.mostCentralStart(0, 1), "Center seat should still be free"),
+                () -> assertEquals(29, index.mostCentralStart(0, 34), "Run on the left should get closer to the center"),
+                () -> assertEquals(23, index.mostCentralStart(0, 40), "Only the run on the left fits 40 seats"),
+                () -> assertEquals(-1, index.mostCentralStart(0, 64), "No run fits 64 seats")
+        );
+        index.release(63);
+        index.release(63);
+        assertEquals(65, index.longestRun(0), "Released seat should join the run on its left");
+    }
+
+    @Test
+    void equallyCentralBlocksPickTheLeftmost() {
+        FreeRunIndex oddRow = new FreeRunIndex(1, 5);
+        oddRow.acquire(2);
+        assertAll("check ties",
+                () -> assertEquals(1, oddRow.mostCentralStart(0, 1), "Seats 1 and 3 are equally central"),
+                () -> assertEquals(0, oddRow.mostCentralStart(0, 2), "Seats 0-1 and 3-4 are equally central")
+        );
+        FreeRunIndex evenRow = new FreeRunIndex(1, 6);
+        evenRow.acquire(3);
+        evenRow.acquire(1);
+        // the center of the row is between seats 2 and 3, so seat 4 is closer to it than seat 0
+        assertEquals(2, evenRow.mostCentralStart(0, 1), "Seat 2 is closest to the center");
+        evenRow.acquire(2);
+        assertEquals(4, evenRow.mostCentralStart(0, 1), "Seat 4 is closer to the center than seat 0");
+    }
+
+    @Test
+    void fullRowsAreSkipped() {
+        for (int seat = 0; seat < 3 * SEATS_PER_ROW; seat++) {
+            index.acquire(seat);
+        }
+        index.release(SEATS_PER_ROW + 7);
+        assertAll("check rows with an edge seat in front",
+                () -> assertEquals(3 * SEATS_PER_ROW + 49, index.bestBlock(1), "Center of row 3 beats the edge of row 1"),
+                () -> assertEquals(3 * SEATS_PER_ROW + 49, index.bestBlock(2), "Row 3 is the first one that fits two seats"),
+                () -> assertEquals(7, index.mostCentralStart(1, 1), "Only seat 7 is left in row 1"),
+                () -> assertEquals(0, index.longestRun(2), "Row 2 is full"),
+                () -> assertEquals(SEATS_PER_ROW, index.longestRun(), "Back rows are still free")
+        );
+        index.release(SEATS_PER_ROW + 50);
+        assertEquals(SEATS_PER_ROW + 50, index.bestBlock(1), "Center seat of row 1 beats anything further back");
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        index.acquire(SEATS_PER_ROW / 2);
+        FreeRunIndex copy = new FreeRunIndex(index);
+        copy.acquire(SEATS_PER_ROW / 2 - 1);
+        index.release(SEATS_PER_ROW / 2);
+        assertAll("check copies",
+                () -> assertEquals(SEATS_PER_ROW / 2 - 2, copy.mostCentralStart(0, 1), "Copy lost the two center seats"),
+                () -> assertEquals(SEATS_PER_ROW / 2 - 1, index.mostCentralStart(0, 1), "Original has all its seats back")
+        );
+    }
+
+    @Test
+    void rowsFurtherBackInTheHallWeighLessAgainstTheCenter() {
+        FreeRunIndex front = new FreeRunIndex(2, 10);
+        FreeRunIndex back = new FreeRunIndex(10, 2, 10);
+        for (int seat = 4; seat < 10; seat++) {
+            front.acquire(seat);
+            back.acquire(seat);
+        }
+        assertAll("check an edge seat in front against the center seat of the next row",
+                () -> assertEquals(14, front.bestBlock(1), "Next row is much further back than the front row"),
+                () -> assertEquals(3, back.bestBlock(1), "Rows 11 and 12 are about as far from the stage")
+        );
+    }
+
+    @Test
+    void matchesABitSetUnderRandomChurn() {
+        final int numRows = 7;
+        final int seatsPerRow = 130;
+        final int numOperations = 5_000;
+        final int maxLength = 10;
+        Random random = new Random(42);
+        index = new FreeRunIndex(numRows, seatsPerRow);
+        BitSet taken = new BitSet(numRows * seatsPerRow);
+        for (int i = 0; i < numOperations; i++) {
+            int seat = random.nextInt(numRows * seatsPerRow);
+            if (random.nextBoolean()) {
+                index.acquire(seat);
+                taken.set(seat);
+            }
+            else {
+                index.release(seat);
+                taken.clear(seat);
+            }
+            int row = seat / seatsPerRow;
+            int longest = 0;
+            for (int col = 0; col < seatsPerRow; ) {
+                int runStart = Math.min(taken.nextClearBit(row * seatsPerRow + col), (row + 1) * seatsPerRow);
+                int runEnd = Math.min(taken.nextSetBit(runStart) & Integer.MAX_VALUE, (row + 1) * seatsPerRow);
+                longest = Math.max(longest, runEnd - runStart);
+                col = runEnd - row * seatsPerRow + 1;
+            }
+            assertEquals(longest, index.longestRun(row), "Longest run should match");
+            int length = random.nextInt(maxLength) + 1;
+            assertEquals(bestBlock(taken, numRows, seatsPerRow, length), index.bestBlock(length), "Best block should match");
+        }
+    }
+
+    /**
+     * Brute force the best block: the one with the lowest sum of {@code row * row + x * x}, first in row-major order on ties.
+     *
+     * @param taken the unavailable seats
+     * @param numRows number of rows
+     * @param seatsPerRow number of seats per row
+     * @param length number of seats in the block
+     * @return the block's first seat, or -1 if no block fits
+     */
+    private static int bestBlock(final BitSet taken, final int numRows, final int seatsPerRow, final int length) {
+        int bestSeat = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int seat = 0; seat < numRows * seatsPerRow; seat++) {
+            int row = seat / seatsPerRow;
+            int col = seat % seatsPerRow;
+            int nextTaken = taken.nextSetBit(seat);
+            if (col + length <= seatsPerRow && (nextTaken < 0 || nextTaken - seat >= length)) {
+                double cost = 0;
+                for (int c = col; c < col + length; c++) {
+                    double x = (seatsPerRow - 1) / 2.0 - c;
+                    cost += (double) row * row + x * x;
+                }
+                if (cost < bestCost) {
+                    bestSeat = seat;
+                    bestCost = cost;
+                }
+            }
+        }
+        return bestSeat;
+    }
+}
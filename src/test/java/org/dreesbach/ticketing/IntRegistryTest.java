@@ -0,0 +1,145 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntRegistryTest {
+    @Test
+    void putGetAndRemove() {
+        IntRegistry<String> registry = new IntRegistry<>();
+        assertAll("check operations",
+                () -> assertNull(registry.putIfAbsent(42, "a"), "Nothing there yet"),
+                () -> assertEquals("a", registry.putIfAbsent(42, "b"), "Existing value should be kept"),
+                () -> assertEquals("a", registry.get(42), "Stored value"),
+                () -> assertTrue(registry.containsKey(42), "Key should be there"),
+                () -> assertFalse(registry.containsKey(43), "Key should not be there"),
+                () -> assertNull(registry.get(0), "0 is never there"),
+                () -> assertEquals(1, registry.size(), "One value"),
+                () -> assertFalse(registry.remove(42, "b"), "Only an equal value should be removed"),
+                () -> assertTrue(registry.remove(42, "a"), "Equal value"),
+                () -> assertNull(registry.remove(42), "Already removed"),
+                () -> assertFalse(registry.remove(42, "a"), "Already removed"),
+                () -> assertEquals(0, registry.size(), "No values")
+        );
+    }
+
+    @Test
+    void invalidArguments() {
+        IntRegistry<String> registry = new IntRegistry<>();
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> registry.putIfAbsent(0, "a"),
+                        "key cannot be 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> registry.putIfAbsent(1, null),
+                        "value cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> registry.remove(1, null),
+                        "value cannot be null"
+                )
+        );
+    }
+
+    @Test
+    void behavesLikeAMapUnderRandomChurn() {
+        final int numOperations = 500_000;
+        // a small key range makes for long probe sequences and lots of shifting on removal
+        final int keyRange = 20_000;
+        IntRegistry<Integer> registry = new IntRegistry<>();
+        Map<Integer, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < numOperations; i++) {
+            int key = random.nextInt(keyRange) + 1;
+            if (random.nextBoolean()) {
+                assertEquals(reference.putIfAbsent(key, i), registry.putIfAbsent(key, i), "putIfAbsent(" + key + ")");
+            }
+            else {
+                assertEquals(reference.remove(key), registry.remove(key), "remove(" + key + ")");
+            }
+        }
+        for (int key = 1; key <= keyRange; key++) {
+            assertEquals(reference.get(key), registry.get(key), "get(" + key + ")");
+        }
+        Map<Integer, Integer> visited = new HashMap<>();
+        registry.forEach(visited::put);
+        assertAll("check contents",
+                () -> assertEquals(reference.size(), registry.size(), "Size"),
+                () -> assertThat("Values", registry.values(), containsInAnyOrder(reference.values().toArray())),
+                () -> assertEquals(reference, visited, "Entries visited")
+        );
+    }
+
+    @Test
+    void valuesCanBeRemovedWhileIteratingAndClearEmptiesTheRegistry() {
+        IntRegistry<Integer> registry = new IntRegistry<>();
+        for (int key = 1; key <= 1_000; key++) {
+            registry.putIfAbsent(key, key);
+        }
+        for (Integer value : registry.values()) {
+            if (value % 2 == 0) {
+                assertTrue(registry.remove(value, value), "Every even value should be removed");
+            }
+        }
+        assertEquals(500, registry.size(), "Only odd values left");
+        registry.clear();
+        assertAll("check cleared registry",
+                () -> assertEquals(0, registry.size(), "No values"),
+                () -> assertTrue(registry.values().isEmpty(), "No values"),
+                () -> assertNull(registry.get(1), "No values"),
+                () -> assertNull(registry.putIfAbsent(1, 1), "Can be reused")
+        );
+    }
+
+    @Test
+    void concurrentThreadsSeeEachOthersChanges() throws Exception {
+        final int numThreads = 8;
+        final int numKeysPerThread = 20_000;
+        IntRegistry<Integer> registry = new IntRegistry<>();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int firstKey = t * numKeysPerThread + 1;
+                tasks.add(() -> {
+                    for (int key = firstKey; key < firstKey + numKeysPerThread; key++) {
+                        assertNull(registry.putIfAbsent(key, key), "Every key is only put once");
+                    }
+                    // remove every other key again, interleaved with the other threads still putting theirs
+                    for (int key = firstKey; key < firstKey + numKeysPerThread; key += 2) {
+                        assertEquals(key, registry.remove(key), "Own keys should still be there");
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(numThreads * numKeysPerThread / 2, registry.size(), "Half of the keys should be left");
+        for (int key = 2; key <= numThreads * numKeysPerThread; key += 2) {
+            assertEquals(key, registry.get(key), "Key " + key + " should be there");
+        }
+    }
+}
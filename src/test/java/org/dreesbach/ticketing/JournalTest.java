@@ -0,0 +1,371 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+    private static final long EXPIRES_AT_MILLIS = 1_234_567_890_123L;
+    private static final Duration SHORT_COMMIT_INTERVAL = Duration.ofMillis(1);
+    private static final long WAIT_FOR_COMMIT_IN_MS = 5_000L;
+    private static final List<String> EVENTS = List.of(
+            "held 1 1234567890123 [0, 1, 2]",
+            "reserved 1 42",
+            "held 2 1234567890123 []",
+            "released 2",
+            "cancelled 42"
+    );
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void eventsAreReplayedInOrder() throws IOException {
+        Path path = tempDir.resolve("journal");
+        try (Journal journal = new Journal(path, Journal.Durability.PER_OP)) {
+            appendEvents(journal);
+            journal.sync();
+        }
+        assertEquals(EVENTS, replay(path), "Replayed events");
+    }
+
+    @ParameterizedTest(name = "[{0}] durability")
+    @EnumSource(Journal.Durability.class)
+    void recordsReachTheFileAccordingToTheDurability(final Journal.Durability durability) throws Exception {
+        Path path = tempDir.resolve("journal");
+        try (Journal journal = new Journal(path, durability, SHORT_COMMIT_INTERVAL)) {
+            long emptySize = Files.size(path);
+            appendEvents(journal);
+            journal.sync();
+            if (durability == Journal.Durability.PER_OP) {
+                assertTrue(Files.size(path) > emptySize, "Records should be written before sync() returns");
+            }
+            long deadline = System.currentTimeMillis() + WAIT_FOR_COMMIT_IN_MS;
+            while (Files.size(path) == emptySize && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(Files.size(path) > emptySize, "Records should be written in the background");
+        }
+        assertEquals(EVENTS, replay(path), "Replayed events");
+    }
+
+    @Test
+    void concurrentOperationsAreCommittedTogether() throws Exception {
+        final int numThreads = 8;
+        final int numRecordsPerThread = 500;
+        Path path = tempDir.resolve("journal");
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (Journal journal = new Journal(path, Journal.Durability.PER_OP)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int firstHoldId = t * numRecordsPerThread + 1;
+                tasks.add(() -> {
+                    for (int holdId = firstHoldId; holdId < firstHoldId + numRecordsPerThread; holdId++) {
+                        journal.released(holdId);
+                        journal.sync();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        List<String> replayed = replay(path);
+        List<String> expected =
+                IntStream.rangeClosed(1, numThreads * numRecordsPerThread).mapToObj(holdId -> "released " + holdId).toList();
+        Collections.sort(replayed);
+        List<String> sortedExpected = new ArrayList<>(expected);
+        Collections.sort(sortedExpected);
+        assertEquals(sortedExpected, replayed, "Every record should be there exactly once");
+    }
+
+    @Test
+    void recordsLargerThanTheBufferAreAppended() throws IOException {
+        final int numSeats = 100_000;
+        Path path = tempDir.resolve("journal");
+        int[] seatIndexes = IntStream.range(0, numSeats).toArray();
+        try (Journal journal = new Journal(path, Journal.Durability.BATCHED)) {
+            journal.held(1, EXPIRES_AT_MILLIS, seatIndexes);
+            journal.released(1);
+        }
+        assertEquals(List.of("held 1 " + EXPIRES_AT_MILLIS + " " + Arrays.toString(seatIndexes), "released 1"),
+                replay(path),
+                "Replayed events"
+        );
+    }
+
+    @Test
+    void incompleteLastRecordIsCutOff() throws IOException {
+        Path path = tempDir.resolve("journal");
+        try (Journal journal = new Journal(path, Journal.Durability.NONE)) {
+            appendEvents(journal);
+        }
+        long intactSize = Files.size(path);
+        // a record header announcing more payload than there is, as if the process died while writing it
+        Files.write(path, ByteBuffer.allocate(2 * Integer.BYTES + 1).putInt(Integer.BYTES + 1).array(),
+                StandardOpenOption.APPEND
+        );
+        try (Journal journal = new Journal(path, Journal.Durability.NONE)) {
+            assertEquals(intactSize, Files.size(path), "Incomplete record should be cut off");
+            journal.released(2);
+        }
+        List<String> expected = new ArrayList<>(EVENTS);
+        expected.add("released 2");
+        assertEquals(expected, replay(path), "Replayed events");
+    }
+
+    @Test
+    void corruptLastRecordIsCutOff() throws IOException {
+        Path path = tempDir.resolve("journal");
+        try (Journal journal = new Journal(path, Journal.Durability.NONE)) {
+            appendEvents(journal);
+        }
+        byte[] contents = Files.readAllBytes(path);
+        contents[contents.length - 1] ^= 1;
+        Files.write(path, contents);
+        assertEquals(EVENTS.subList(0, EVENTS.size() - 1), replay(path), "Corrupt record should be left out");
+    }
+
+    @Test
+    void unknownRecordTypeFailsReplay() throws IOException {
+        final byte unknownType = 42;
+        Path path = tempDir.resolve("journal");
+        new Journal(path, Journal.Durability.NONE).close();
+        CRC32C crc = new CRC32C();
+        crc.update(unknownType);
+        Files.write(path, ByteBuffer.allocate(2 * Integer.BYTES + 1).putInt(1).putInt((int) crc.getValue()).put(unknownType)
+                .array(), StandardOpenOption.APPEND);
+        TestUtil.testException(IllegalStateException.class, () -> replay(path), "Unknown journal record type 42");
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path tooShort = Files.write(tempDir.resolve("short"), new byte[] { 1 });
+        Path notAJournal = Files.write(tempDir.resolve("other"), "Hello, world!".getBytes(StandardCharsets.US_ASCII));
+        Path newerVersion = Files.write(tempDir.resolve("newer"),
+                ByteBuffer.allocate(2 * Integer.BYTES).putInt(0x544B544A).putInt(2).array()
+        );
+        assertAll("check rejected files",
+                () -> TestUtil.testException(IOException.class,
+                        () -> new Journal(tooShort, Journal.Durability.NONE),
+                        "Not a journal"
+                ),
+                () -> TestUtil.testException(IOException.class,
+                        () -> new Journal(notAJournal, Journal.Durability.NONE),
+                        "Not a journal"
+                ),
+                () -> TestUtil.testException(IOException.class,
+                        () -> new Journal(newerVersion, Journal.Durability.NONE),
+                        "Unsupported journal version 2"
+                )
+        );
+    }
+
+    @Test
+    void invalidArguments() {
+        Path path = tempDir.resolve("journal");
+        assertAll("argument checking",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new Journal(null, Journal.Durability.NONE),
+                        "path cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new Journal(path, null),
+                        "durability cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new Journal(path, Journal.Durability.NONE, null),
+                        "commitInterval cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new Journal(path, Journal.Durability.NONE, Duration.ZERO),
+                        "commitInterval must be > 0"
+                ),
+                () -> assertFalse(Files.exists(path), "No file should be created for invalid arguments")
+        );
+    }
+
+    @Test
+    void replayOnlyBeforeAppendingAndNothingAfterClosing() throws IOException {
+        Path path = tempDir.resolve("journal");
+        Journal journal = new Journal(path, Journal.Durability.NONE);
+        journal.released(1);
+        TestUtil.testException(IllegalStateException.class,
+                () -> journal.replay(new Recorder()),
+                "The journal must be replayed before anything is appended to it"
+        );
+        journal.close();
+        journal.close();
+        TestUtil.testException(IllegalStateException.class, () -> journal.released(2), "Journal is closed");
+    }
+
+    @Test
+    void serviceRecoversHoldsAndReservations() throws Exception {
+        final int numRows = 4;
+        final int numCols = 5;
+        Path path = tempDir.resolve("journal");
+        Path crashed = tempDir.resolve("crashed");
+        RectangularVenue venue = newVenue(numRows, numCols);
+        String reservationCode;
+        List<String> reservedSeatIds;
+        SeatHold liveHold;
+        List<String> heldSeatIds;
+        try (Journal journal = new Journal(path, Journal.Durability.PER_OP);
+                TicketServiceImpl service = new TicketServiceImpl(venue, journal)) {
+            SeatHold reserved = service.findAndHoldSeats(3, CUSTOMER_EMAIL);
+            reservedSeatIds = TestUtil.sortedSeatIds(reserved.getSeatsHeld());
+            reservationCode = service.reserveSeats(reserved.getId(), CUSTOMER_EMAIL);
+            liveHold = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            heldSeatIds = TestUtil.sortedSeatIds(liveHold.getSeatsHeld());
+            var _ = service.findAndHoldSeats(1, CUSTOMER_EMAIL, Duration.ofMillis(1));
+            SeatHold cancelled = service.findAndHoldSeats(List.of(new HoldRequest(4, CUSTOMER_EMAIL))).get(0).get();
+            venue.cancelReservation(service.reserveSeats(cancelled.getId(), CUSTOMER_EMAIL));
+            SeatHold expired = service.findAndHoldSeats(1, CUSTOMER_EMAIL, Duration.ZERO);
+            assertThrows(IllegalStateException.class, () -> service.reserveSeats(expired.getId(), CUSTOMER_EMAIL));
+            // what the journal looks like if the process dies right now
+            Files.copy(path, crashed);
+        }
+
+        RectangularVenue recoveredVenue = newVenue(numRows, numCols);
+        try (Journal journal = new Journal(crashed, Journal.Durability.PER_OP);
+                TicketServiceImpl service = new TicketServiceImpl(recoveredVenue, journal)) {
+            assertAll("check recovered state",
+                    () -> assertEquals(numRows * numCols - 3 - 2, service.numSeatsAvailable(), "Seats available"),
+                    () -> assertEquals(2, service.numSeatsHeld(), "Only the live hold should be back"),
+                    () -> assertEquals(reservedSeatIds,
+                            TestUtil.sortedSeatIds(recoveredVenue.getSeats().stream().filter(Seat::isReserved).toList()),
+                            "Reserved seats"
+                    ),
+                    () -> assertEquals(heldSeatIds,
+                            TestUtil.sortedSeatIds(
+                                    recoveredVenue.getSeats().stream().filter(s -> s.isHeld() && !s.isReserved()).toList()
+                            ),
+                            "Held seats"
+                    )
+            );
+            var _ = service.reserveSeats(liveHold.getId(), CUSTOMER_EMAIL);
+            recoveredVenue.cancelReservation(reservationCode);
+            var _ = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+        }
+
+        try (Journal journal = new Journal(crashed, Journal.Durability.PER_OP);
+                TicketServiceImpl service = new TicketServiceImpl(newVenue(numRows, numCols), journal)) {
+            assertAll("check state recovered a second time",
+                    () -> assertEquals(numRows * numCols - 2, service.numSeatsAvailable(), "Seats available"),
+                    () -> assertEquals(0, service.numSeatsHeld(), "Holds released on close should stay released")
+            );
+        }
+    }
+
+    @Test
+    void seatsReservedBeforeTheJournalFailsAreCounted() throws IOException {
+        Path path = tempDir.resolve("journal");
+        RectangularVenue venue = newVenue(2, 2);
+        Journal journal = new Journal(path, Journal.Durability.NONE);
+        var _ = venue.recover(journal);
+        SeatHold seatHold = venue.holdSeats(2, Duration.ofMinutes(1));
+        journal.close();
+        TestUtil.testException(IllegalStateException.class, () -> venue.reserve(seatHold), "Journal is closed");
+        assertAll("check counts",
+                () -> assertTrue(seatHold.getSeatsHeld().stream().allMatch(Seat::isReserved), "Seats reserved"),
+                () -> assertEquals(new SeatCounts(2, 0, 2), venue.getSeatCounts(), "Counts should match the seats")
+        );
+    }
+
+    @Test
+    void recoveryNeedsAFreshVenue() throws IOException {
+        Path path = tempDir.resolve("journal");
+        RectangularVenue venue = newVenue(2, 2);
+        try (Journal journal = new Journal(path, Journal.Durability.NONE)) {
+            assertTrue(venue.recover(journal).isEmpty(), "Nothing to recover");
+            TestUtil.testException(IllegalStateException.class, () -> venue.recover(journal), "The venue already has a journal");
+            RectangularVenue usedVenue = newVenue(2, 2);
+            var _ = usedVenue.holdSeats(1, Duration.ofMinutes(1));
+            TestUtil.testException(IllegalStateException.class,
+                    () -> usedVenue.recover(journal),
+                    "Can only recover into a venue with all seats available"
+            );
+            TestUtil.testException(IllegalStateException.class,
+                    () -> new TicketServiceImpl(usedVenue, journal),
+                    "Can only recover into a venue with all seats available"
+            );
+        }
+    }
+
+    private static RectangularVenue newVenue(final int numRows, final int numCols) {
+        return new RectangularVenue(numRows, numCols, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+
+    private static void appendEvents(final Journal journal) {
+        journal.held(1, EXPIRES_AT_MILLIS, new int[] { 0, 1, 2 });
+        journal.reserved(1, 42);
+        journal.held(2, EXPIRES_AT_MILLIS, new int[0]);
+        journal.released(2);
+        journal.cancelled(42);
+    }
+
+    private static List<String> replay(final Path path) throws IOException {
+        Recorder recorder = new Recorder();
+        try (Journal journal = new Journal(path, Journal.Durability.NONE)) {
+            journal.replay(recorder);
+        }
+        return recorder.events;
+    }
+
+    /**
+     * Writes down the events replayed.
+     */
+    private static final class Recorder implements JournalEvents {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void held(final int holdId, final long expiresAtMillis, final int[] seatIndexes) {
+            events.add("held " + holdId + " " + expiresAtMillis + " " + Arrays.toString(seatIndexes));
+        }
+
+        @Override
+        public void reserved(final int holdId, final int reservationCode) {
+            events.add("reserved " + holdId + " " + reservationCode);
+        }
+
+        @Override
+        public void released(final int holdId) {
+            events.add("released " + holdId);
+        }
+
+        @Override
+        public void cancelled(final int reservationCode) {
+            events.add("cancelled " + reservationCode);
+        }
+    }
+}
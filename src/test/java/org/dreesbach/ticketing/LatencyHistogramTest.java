@@ -0,0 +1,110 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    /**
+     * Relative error of a bucket's highest value.
+     */
+    private static final double PRECISION = 1.0 / 64;
+
+    @Test
+    void bucketsCoverEveryValueWithoutGaps() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket < 3712; bucket++) {
+            long lowest = LatencyHistogram.lowestValue(bucket);
+            assertEquals(previousHighest + 1, lowest, "Bucket " + bucket + " should start where the previous one ends");
+            long highest = LatencyHistogram.highestValue(bucket);
+            final int b = bucket;
+            assertAll("bucket " + bucket,
+                    () -> assertEquals(b, LatencyHistogram.bucket(lowest), "Lowest value"),
+                    () -> assertEquals(b, LatencyHistogram.bucket(highest), "Highest value"),
+                    () -> assertTrue(highest - lowest <= Math.max(0, lowest * PRECISION), "Width")
+            );
+            previousHighest = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previousHighest, "The last bucket should end at the largest value");
+    }
+
+    @Test
+    void percentilesAreWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+        assertAll("check statistics",
+                () -> assertEquals(100_000, histogram.count(), "Count"),
+                () -> assertEquals(50_000_500, histogram.meanNanos(), 50_000_500 * PRECISION, "Mean"),
+                () -> assertEquals(100_000_000, histogram.maxNanos(), "Max"),
+                () -> assertEquals(50_000_000, (double) histogram.valueAtPercentile(50), 50_000_000 * PRECISION, "Median"),
+                () -> assertEquals(99_000_000, (double) histogram.valueAtPercentile(99), 99_000_000 * PRECISION, "p99"),
+                () -> assertEquals(100_000_000, (double) histogram.valueAtPercentile(100), "100th percentile"),
+                () -> assertEquals(1_000, (double) histogram.valueAtPercentile(0), 1_000 * PRECISION, "0th percentile")
+        );
+    }
+
+    @Test
+    void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertAll("check empty histogram",
+                () -> assertEquals(0, histogram.count(), "Count"),
+                () -> assertEquals(0, histogram.meanNanos(), "Mean"),
+                () -> assertEquals(0, histogram.maxNanos(), "Max"),
+                () -> assertEquals(0, histogram.valueAtPercentile(99), "99th percentile")
+        );
+        histogram.record(-5);
+        assertAll("check negative latency",
+                () -> assertEquals(1, histogram.count(), "Count"),
+                () -> assertEquals(0, histogram.valueAtPercentile(50), "Median"),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> histogram.valueAtPercentile(100.5),
+                        "percentile must be between 0 and 100 (inclusive)"
+                )
+        );
+    }
+
+    @Test
+    void concurrentRecordingIsNotLost() throws Exception {
+        final int numThreads = 8;
+        final int numValuesPerThread = 100_000;
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final long seed = t;
+                tasks.add(() -> {
+                    Random random = new Random(seed);
+                    long max = 0;
+                    for (int i = 0; i < numValuesPerThread; i++) {
+                        long nanos = random.nextInt(1_000_000);
+                        max = Math.max(max, nanos);
+                        histogram.record(nanos);
+                    }
+                    return max;
+                });
+            }
+            long max = 0;
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                max = Math.max(max, future.get());
+            }
+            assertEquals((long) numThreads * numValuesPerThread, histogram.count(), "Count");
+            assertEquals(max, histogram.maxNanos(), "Max");
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadSimulatorTest {
+    private static final int NUM_ROWS = 10;
+    private static final int SEATS_PER_ROW = 10;
+    private static final int NUM_SEATS = NUM_ROWS * SEATS_PER_ROW;
+    private static final int NUM_CLIENTS = 4;
+    private static final Duration DURATION = Duration.ofMillis(300);
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        LoadSimulator.Builder builder = LoadSimulator.closedLoop(1);
+        assertAll("argument checking",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> LoadSimulator.openLoop(null),
+                        "arrivalRate cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.closedLoop(0),
+                        "numClients must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.duration(Duration.ZERO),
+                        "duration must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class, () -> builder.maxBuyers(0), "maxBuyers must be > 0"),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> builder.groupSizes(null),
+                        "groupSizes cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.abandonmentRate(-1),
+                        "abandonmentRate must be between 0 and 1"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.abandonmentRate(2),
+                        "abandonmentRate must be between 0 and 1"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.conversionRate(-1),
+                        "conversionRate must be between 0 and 1"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.conversionRate(2),
+                        "conversionRate must be between 0 and 1"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> builder.thinkTime(Duration.ofMillis(-1)),
+                        "thinkTime must be >= 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> builder.build().run(null),
+                        "service cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.ArrivalRate.constant(0),
+                        "buyersPerSecond must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.ArrivalRate.rush(0, Duration.ofSeconds(1)),
+                        "peakBuyersPerSecond must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.ArrivalRate.rush(1, Duration.ZERO),
+                        "halfLife must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.GroupSizes.fixed(0),
+                        "groupSize must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.GroupSizes.weighted(),
+                        "There must be at least one weight"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.GroupSizes.weighted(1, -1),
+                        "Weights must be >= 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> LoadSimulator.GroupSizes.weighted(0, 0),
+                        "At least one weight must be > 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new LoadReport(null, null, 0, 0, 0, 0, 0, 0, Map.of(), Map.of()),
+                        "elapsed cannot be null"
+                )
+        );
+    }
+
+    @Test
+    void arrivalRatesFollowTheirCurve() {
+        LoadSimulator.ArrivalRate rush = LoadSimulator.ArrivalRate.rush(100, Duration.ofSeconds(2));
+        assertAll("check rates",
+                () -> assertEquals(100, rush.perSecond(0), "Peak"),
+                () -> assertEquals(50, rush.perSecond(2), "One half-life later"),
+                () -> assertEquals(25, rush.perSecond(4), "Two half-lives later"),
+                () -> assertEquals(7, LoadSimulator.ArrivalRate.constant(7).perSecond(3), "Constant")
+        );
+    }
+
+    @Test
+    void groupSizesFollowTheirWeights() {
+        final int numGroups = 1_000;
+        Random random = new Random(numGroups);
+        LoadSimulator.GroupSizes couplesAndFours = LoadSimulator.GroupSizes.weighted(0, 3, 0, 1);
+        Set<Integer> sizes = new HashSet<>();
+        int numCouples = 0;
+        for (int i = 0; i < numGroups; i++) {
+            int size = couplesAndFours.next(random);
+            var _ = sizes.add(size);
+            numCouples += size == 2 ? 1 : 0;
+        }
+        int couples = numCouples;
+        assertAll("check groups",
+                () -> assertEquals(Set.of(2, 4), sizes, "Only the sizes with weight"),
+                () -> assertTrue(couples > numGroups / 2 && couples < numGroups * 0.9, "About three quarters couples"),
+                () -> assertEquals(3, LoadSimulator.GroupSizes.fixed(3).next(random), "Fixed size"),
+                () -> assertEquals(2, LoadSimulator.GroupSizes.weighted(0, 1).next(new FixedRandom(0)), "On the lower edge"),
+                () -> assertEquals(3, LoadSimulator.GroupSizes.weighted(1, 0, 1).next(new FixedRandom(0.5)), "On a boundary"),
+                () -> assertEquals(2, LoadSimulator.GroupSizes.weighted(1, 1).next(new FixedRandom(0.5)), "Last boundary")
+        );
+    }
+
+    @Test
+    void openLoopBuyersSellTheVenueOut() {
+        final double buyersPerSecond = 2_000;
+        TicketService service = new TicketServiceImpl(new RectangularVenue(NUM_ROWS, SEATS_PER_ROW,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        ));
+        LoadReport report = LoadSimulator.openLoop(LoadSimulator.ArrivalRate.constant(buyersPerSecond))
+                .duration(DURATION)
+                .build()
+                .run(service);
+        service.close();
+        assertAll("check report",
+                () -> assertEquals(NUM_SEATS, report.seatsReserved(), "Sold out"),
+                () -> assertEquals(NUM_SEATS / 2, report.count(LoadSimulator.Operation.RESERVE), "In pairs"),
+                () -> assertEquals(0, report.seatsLost(), "Nothing lost"),
+                () -> assertNotNull(report.sellOutTime(), "Sold out"),
+                () -> assertTrue(report.turnedAway() > 0, "Latecomers were turned away"),
+                () -> assertEquals(report.buyers(), report.count(LoadSimulator.Operation.AVAILABILITY), "Everybody looked"),
+                () -> assertTrue(report.elapsed().compareTo(DURATION) >= 0, "Buyers arrived all along"),
+                () -> assertTrue(report.reservationsPerSecond() > report.count(LoadSimulator.Operation.RESERVE),
+                        "The seats sold out in less than a second"
+                ),
+                () -> assertTrue(report.operationsPerSecond() > 0, "Calls per second"),
+                () -> assertTrue(report.toString().contains("sold out after"), "Sell-out time in the report"),
+                () -> assertTrue(report.toString().contains("p99.9"), "Tail latency in the report")
+        );
+    }
+
+    @Test
+    void abandonedHoldsAreLostToExpiry() {
+        final int numBuyers = 20;
+        TicketService service = new TicketServiceImpl(new RectangularVenue(NUM_ROWS, SEATS_PER_ROW,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        ));
+        LoadReport report = LoadSimulator.closedLoop(NUM_CLIENTS)
+                .maxBuyers(numBuyers)
+                .groupSizes(LoadSimulator.GroupSizes.fixed(2))
+                .conversionRate(0)
+                .thinkTime(Duration.ofMillis(1))
+                .build()
+                .run(service);
+        LoadReport walkedOff = LoadSimulator.closedLoop(NUM_CLIENTS)
+                .maxBuyers(numBuyers)
+                .abandonmentRate(1)
+                .build()
+                .run(service);
+        assertAll("check reports",
+                () -> assertEquals(numBuyers, report.buyers(), "Number of buyers"),
+                () -> assertEquals(2 * numBuyers, report.seatsHeld(), "Every buyer held seats"),
+                () -> assertEquals(2 * numBuyers, report.seatsLost(), "None reserved"),
+                () -> assertEquals(NUM_SEATS - 2 * numBuyers, service.numSeatsAvailable(), "Still held"),
+                () -> assertNull(report.sellOutTime(), "Not sold out"),
+                () -> assertEquals(0, report.reservationsPerSecond(), "No reservations"),
+                () -> assertEquals(numBuyers, walkedOff.abandoned(), "Everybody walked off"),
+                () -> assertEquals(0, walkedOff.count(LoadSimulator.Operation.HOLD), "No holds"),
+                () -> assertTrue(walkedOff.toString().startsWith(numBuyers + " buyers in "), "Report")
+        );
+        service.close();
+    }
+
+    @Test
+    void failedCallsAreCounted() {
+        final int numBuyers = 10;
+        Flaky flaky = new Flaky(false);
+        LoadReport report = LoadSimulator.closedLoop(1).maxBuyers(numBuyers).build().run(flaky);
+        Flaky closed = new Flaky(true);
+        LoadReport closedReport = LoadSimulator.closedLoop(1).maxBuyers(numBuyers).build().run(closed);
+        LoadReport nobody = LoadSimulator.openLoop(elapsedSeconds -> 0).duration(Duration.ofMillis(1)).build().run(closed);
+        flaky.close();
+        closed.close();
+        assertAll("check reports",
+                () -> assertEquals(numBuyers / 2, report.failures().get(LoadSimulator.Operation.AVAILABILITY), "Every other"),
+                () -> assertEquals(numBuyers / 2, report.failures().get(LoadSimulator.Operation.RESERVE), "Reservations"),
+                () -> assertEquals(numBuyers, report.seatsLost(), "Lost"),
+                () -> assertEquals(numBuyers, closedReport.failures().get(LoadSimulator.Operation.HOLD), "Holds"),
+                () -> assertEquals(0, nobody.buyers(), "Nobody arrived"),
+                () -> assertEquals(0, nobody.operationsPerSecond(), "Nothing happened")
+        );
+    }
+
+    /**
+     * A service whose every other availability check and every reservation fails, and every hold too if it's closed.
+     */
+    private static final class Flaky implements TicketService {
+        private final TicketService service = new TicketServiceImpl(new RectangularVenue(NUM_ROWS, SEATS_PER_ROW,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        ));
+        private final boolean closed;
+        private int numCalls;
+
+        Flaky(final boolean closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public synchronized int numSeatsAvailable() {
+            if (!closed && numCalls++ % 2 == 0) {
+                throw new IllegalStateException("Not now");
+            }
+            return service.numSeatsAvailable();
+        }
+
+        @Override
+        public SeatHold findAndHoldSeats(final int numSeats, final String customerEmail) {
+            if (closed) {
+                throw new IllegalStateException("Closed");
+            }
+            return service.findAndHoldSeats(numSeats, customerEmail);
+        }
+
+        @Override
+        public String reserveSeats(final int seatHoldId, final String customerEmail) {
+            throw new IllegalStateException("Expired");
+        }
+
+        @Override
+        public void close() {
+            service.close();
+        }
+    }
+
+    /**
+     * Always comes up with the same number, to hit the edges of the weights.
+     */
+    private static final class FixedRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        private final double value;
+
+        FixedRandom(final double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RectangularVenueContiguousSeatPickingStrategyTest {
+
+    private SeatPickingStrategy<RectangularVenue> seatPickingStrategy;
+    private RectangularVenue venue;
+
+    @BeforeEach
+    void setup() {
+        seatPickingStrategy = new RectangularVenueContiguousSeatPickingStrategy();
+        venue = new RectangularVenue(5, 10, seatPickingStrategy);
+    }
+
+    @Test
+    void pickNegativeNumberOfSeatsThrowsException() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> seatPickingStrategy.pickBestAvailableSeats(venue, -1),
+                "Number of seats to pick must be greater than 0"
+        );
+    }
+
+    @Test
+    void pickingFromNullVenueThrowsException() {
+        TestUtil.testException(
+                NullPointerException.class,
+                () -> seatPickingStrategy.pickBestAvailableSeats(null, 1),
+                "venue should not be null"
+        );
+    }
+
+    @Test
+    void pickingNoSeatsPicksNothing() {
+        assertTrue(seatPickingStrategy.pickBestAvailableSeats(venue, 0).isEmpty(), "No seats should be picked");
+    }
+
+    @Test
+    void groupIsSeatedTogetherInTheCenterOfTheFrontRow() {
+        assertEquals(List.of("Row 1 Seat 4", "Row 1 Seat 5", "Row 1 Seat 6", "Row 1 Seat 7"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(venue, 4)),
+                "Group should get the centered block of the front row"
+        );
+    }
+
+    @Test
+    void singleSeatIsTheBestSeat() {
+        RectangularVenue smallVenue = new RectangularVenue(3, 3, seatPickingStrategy);
+        assertEquals(List.of("Row 1 Seat 2"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(smallVenue, 1)),
+                "A single seat should be the best seat"
+        );
+    }
+
+    @Test
+    void rowsWithoutALongEnoughRunAreSkipped() {
+        venue.getSeat(4).hold();
+        assertEquals(List.of("Row 2 Seat 3", "Row 2 Seat 4", "Row 2 Seat 5", "Row 2 Seat 6", "Row 2 Seat 7", "Row 2 Seat 8"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(venue, 6)),
+                "Front row only has runs of 4 and 5 seats left"
+        );
+    }
+
+    @Test
+    void blockIsPushedAwayFromTheCenterIfItHasTo() {
+        venue.getSeat(3).hold();
+        assertEquals(List.of("Row 1 Seat 5", "Row 1 Seat 6", "Row 1 Seat 7", "Row 1 Seat 8"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(venue, 4)),
+                "Block should move just far enough to fit"
+        );
+    }
+
+    @Test
+    void centeredBlockFurtherBackBeatsAnEdgeBlockFurtherForward() {
+        for (int col = 2; col < 10; col++) {
+            venue.getSeat(col).hold();
+        }
+        assertEquals(List.of("Row 2 Seat 5", "Row 2 Seat 6"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(venue, 2)),
+                "The two seats left at the end of the front row are worse than the center of the second row"
+        );
+    }
+
+    @Test
+    void groupIsSplitAsLittleAsPossibleIfNoRowFitsIt() {
+        RectangularVenue splitVenue = new RectangularVenue(2, 5, seatPickingStrategy);
+        splitVenue.getSeat(2).hold();
+        splitVenue.getSeat(7).hold();
+        assertAll("check picks",
+                () -> assertEquals(List.of("Row 1 Seat 1", "Row 1 Seat 2", "Row 1 Seat 4"),
+                        TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(splitVenue, 3)),
+                        "Two seats should be together, and the third as close as possible"
+                ),
+                () -> assertEquals(List.of("Row 2 Seat 1", "Row 2 Seat 2", "Row 2 Seat 4", "Row 2 Seat 5", "Row 1 Seat 5"),
+                        TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(splitVenue, 6)),
+                        "Only five seats are left, in runs of 2, 2 and 1"
+                )
+        );
+    }
+
+    @Test
+    void seatsFreedByAnExpiredHoldArePickedAgain() {
+        SeatHold seatHold = venue.holdSeats(4, Duration.ZERO);
+        venue.holdSeats(2, Duration.ZERO);
+        venue.removeHold(seatHold);
+        assertEquals(List.of("Row 1 Seat 4", "Row 1 Seat 5", "Row 1 Seat 6", "Row 1 Seat 7"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(venue, 4)),
+                "Freed block should be picked again"
+        );
+    }
+
+    @Test
+    void seatsFreedByACancelledReservationArePickedAgain() {
+        final int numSeatsInVenue = 50;
+        String reservationCode = venue.reserve(venue.holdSeats(numSeatsInVenue, Duration.ZERO));
+        assertTrue(seatPickingStrategy.pickBestAvailableSeats(venue, 1).isEmpty(), "Venue should be sold out");
+        venue.cancelReservation(reservationCode);
+        assertEquals(numSeatsInVenue,
+                seatPickingStrategy.pickBestAvailableSeats(venue, numSeatsInVenue).size(),
+                "All seats should be available for picking again"
+        );
+    }
+
+    @Test
+    void seatsPickedByAnotherStrategyAreNotPickedAgain() {
+        RectangularVenue smallVenue = new RectangularVenue(3, 3, new RectangularVenueSimpleSeatPickingStrategy());
+        smallVenue.holdSeats(1, Duration.ZERO);
+        assertEquals(List.of("Row 2 Seat 1", "Row 2 Seat 2", "Row 2 Seat 3"),
+                TestUtil.seatIds(seatPickingStrategy.pickBestAvailableSeats(smallVenue, 3)),
+                "Front row is no longer free"
+        );
+    }
+
+    @Test
+    void picksTheBestBlockOfARandomlyFilledVenue() {
+        final int numRows = 20;
+        final int seatsPerRow = 70;
+        final int numTrials = 100;
+        final int maxGroupSize = 8;
+        Random random = new Random(42);
+        for (int trial = 0; trial < numTrials; trial++) {
+            venue = new RectangularVenue(numRows, seatsPerRow, seatPickingStrategy);
+            double fillRate = random.nextDouble();
+            int numAvailable = 0;
+            for (int seat = 0; seat < numRows * seatsPerRow; seat++) {
+                if (random.nextDouble() < fillRate) {
+                    venue.getSeat(seat).hold();
+                }
+                else {
+                    numAvailable++;
+                }
+            }
+            int groupSize = random.nextInt(maxGroupSize) + 1;
+            double expected = bestBlockGoodness(venue, numRows, seatsPerRow, groupSize);
+            List<Seat> picked = seatPickingStrategy.pickBestAvailableSeats(venue, groupSize);
+            if (Double.isFinite(expected)) {
+                assertThat("Block should be as good as the best one",
+                        picked.stream().mapToDouble(Seat::seatGoodness).sum(),
+                        closeTo(expected, 1e-9)
+                );
+            }
+            else {
+                assertEquals(Math.min(groupSize, numAvailable), picked.size(), "Group should be split over what's left");
+            }
+        }
+    }
+
+    /**
+     * Brute force the goodness of the best block of available seats.
+     *
+     * @param venue the venue
+     * @param numRows number of rows
+     * @param seatsPerRow number of seats per row
+     * @param groupSize number of seats in the block
+     * @return the goodness, or infinity if no block fits
+     */
+    private static double bestBlockGoodness(
+            final RectangularVenue venue, final int numRows, final int seatsPerRow, final int groupSize
+    ) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int row = 0; row < numRows; row++) {
+            for (int start = 0; start + groupSize <= seatsPerRow; start++) {
+                double goodness = 0;
+                for (int col = start; col < start + groupSize; col++) {
+                    Seat seat = venue.getSeat(row * seatsPerRow + col);
+                    goodness += seat.isAvailable() ? seat.seatGoodness() : Double.POSITIVE_INFINITY;
+                }
+                best = Math.min(best, goodness);
+            }
+        }
+        return best;
+    }
+}
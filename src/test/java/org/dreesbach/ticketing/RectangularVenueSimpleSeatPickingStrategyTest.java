@@ -86,6 +86,37 @@ class RectangularVenueSimpleSeatPickingStrategyTest {
         assertEquals(numSeatsToPick, seatsPicked.size(), "Expected all 9 seats to get picked");
     }
 
+    @Test
+    void seatsFreedByAnExpiredHoldArePickedAgain() {
+        SeatHold seatHold = venue.holdSeats(2, Duration.ZERO);
+        venue.holdSeats(1, Duration.ZERO);
+        venue.removeHold(seatHold);
+        List<Seat> seatsPicked = seatPickingStrategy.pickBestAvailableSeats(venue, 2);
+        assertAll("check correct seats got picked",
+                () -> assertEquals("Row 1 Seat 2", seatsPicked.get(0).getId(), "Best seat should be picked again"),
+                () -> assertEquals("Row 1 Seat 1", seatsPicked.get(1).getId(), "Second best seat should be picked again")
+        );
+    }
+
+    @Test
+    void seatsFreedByACancelledReservationArePickedAgain() {
+        String reservationCode = venue.reserve(venue.holdSeats(numSeatsInVenue(), Duration.ZERO));
+        assertTrue(seatPickingStrategy.pickBestAvailableSeats(venue, 1).isEmpty(), "Venue should be sold out");
+        venue.cancelReservation(reservationCode);
+        assertEquals(numSeatsInVenue(),
+                seatPickingStrategy.pickBestAvailableSeats(venue, numSeatsInVenue()).size(),
+                "All seats should be available for picking again"
+        );
+    }
+
+    @Test
+    void oneStrategyServesManyVenues() {
+        RectangularVenue otherVenue = new RectangularVenue(3, 3, seatPickingStrategy);
+        venue.holdSeats(numSeatsInVenue(), Duration.ZERO);
+        List<Seat> seatsPicked = seatPickingStrategy.pickBestAvailableSeats(otherVenue, 1);
+        assertEquals(otherVenue.getSeat(1), seatsPicked.get(0), "Other venue's best seat should still be available");
+    }
+
     @Test
     void pickNegativeNumberOfSeatsThrowsException() {
         TestUtil.testException(
@@ -316,6 +347,10 @@ class RectangularVenueSimpleSeatPickingStrategyTest {
         assertTrue(seatHold.getSeatsHeld().stream().allMatch(Seat::isAvailable), "Not all seats are available");
     }
 
+    private int numSeatsInVenue() {
+        return venue.getTotalNumSeats();
+    }
+
     @Test
     void seatListOnlyPopulatedOnce() {
         venue.populateSeatList();
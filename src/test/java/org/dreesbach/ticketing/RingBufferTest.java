@@ -0,0 +1,113 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RingBufferTest {
+    private static final int CAPACITY = 4;
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new RingBuffer<>(0, AtomicLong::new),
+                        "capacity must be a power of 2"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new RingBuffer<>(CAPACITY + 2, AtomicLong::new),
+                        "capacity must be a power of 2"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new RingBuffer<>(CAPACITY, null),
+                        "slotFactory cannot be null"
+                ),
+                () -> assertEquals(CAPACITY, new RingBuffer<>(CAPACITY, AtomicLong::new).capacity(), "Capacity")
+        );
+    }
+
+    @Test
+    void slotsAreDrainedInSequenceOrderAndReused() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(CAPACITY, AtomicLong::new);
+        List<Long> drained = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < CAPACITY; i++) {
+                long sequence = ringBuffer.claim();
+                ringBuffer.slot(sequence).set(sequence);
+                ringBuffer.publish(sequence);
+            }
+            assertEquals(2, ringBuffer.drain(slot -> drained.add(slot.get()), 2), "Batch size should be capped");
+            assertEquals(2, ringBuffer.drain(slot -> drained.add(slot.get()), CAPACITY), "Rest of the published slots");
+            assertEquals(0, ringBuffer.drain(slot -> drained.add(slot.get()), CAPACITY), "Nothing published");
+        }
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L), drained, "Slots should come out in order");
+    }
+
+    @Test
+    void unpublishedSlotHoldsUpTheOnesAfterIt() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(CAPACITY, AtomicLong::new);
+        long first = ringBuffer.claim();
+        ringBuffer.publish(ringBuffer.claim());
+        assertEquals(0, ringBuffer.drain(slot -> { }, CAPACITY), "Second slot can't overtake the first");
+        ringBuffer.publish(first);
+        assertEquals(2, ringBuffer.drain(slot -> { }, CAPACITY), "Both slots once the first is published");
+    }
+
+    @Test
+    void claimingFromAFullHaltedBufferFails() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(CAPACITY, AtomicLong::new);
+        for (int i = 0; i < CAPACITY; i++) {
+            ringBuffer.publish(ringBuffer.claim());
+        }
+        ringBuffer.halt();
+        assertAll("check halted buffer",
+                () -> assertEquals(-1L, ringBuffer.claim(), "Full buffer will never have a free slot"),
+                () -> assertEquals(CAPACITY, ringBuffer.drain(slot -> { }, CAPACITY), "Published slots can still be drained")
+        );
+    }
+
+    @Test
+    void manyProducersAndAParkingConsumer() throws Exception {
+        final int numProducers = 4;
+        final int numPerProducer = 10_000;
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(CAPACITY, AtomicLong::new);
+        AtomicLong sum = new AtomicLong();
+        AtomicInteger count = new AtomicInteger();
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            while (count.get() < numProducers * numPerProducer) {
+                if (ringBuffer.drain(slot -> {
+                    sum.addAndGet(slot.get());
+                    count.incrementAndGet();
+                }, CAPACITY) == 0) {
+                    ringBuffer.await(System.nanoTime() + 1_000_000_000L);
+                }
+            }
+        });
+        ExecutorService producers = Executors.newFixedThreadPool(numProducers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            futures.add(producers.submit(() -> {
+                for (int i = 1; i <= numPerProducer; i++) {
+                    long sequence = ringBuffer.claim();
+                    ringBuffer.slot(sequence).set(i);
+                    ringBuffer.publish(sequence);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        producers.shutdown();
+        consumer.join();
+        assertEquals((long) numProducers * numPerProducer * (numPerProducer + 1) / 2, sum.get(), "Every value exactly once");
+    }
+}
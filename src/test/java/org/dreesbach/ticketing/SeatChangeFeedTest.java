@@ -0,0 +1,254 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatChangeFeedTest {
+    private static final int NUM_ROWS = 10;
+    private static final int SEATS_PER_ROW = 10;
+    private static final Duration EXPIRATION = Duration.ofMinutes(1);
+    /**
+     * How long to wait for a signal that should arrive, in seconds.
+     */
+    private static final long TIMEOUT = 10;
+    private RectangularVenue venue;
+
+    @BeforeEach
+    void setup() {
+        venue = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        SeatChangeFeed feed = venue.seatChanges();
+        Recorder recorder = new Recorder(1);
+        assertAll("argument checking",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> feed.subscribe(null),
+                        "subscriber cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> feed.subscribe(recorder, -1),
+                        "fromSequence must be between 0 and the next sequence number"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> feed.subscribe(recorder, venue.seatStates().version() + 1),
+                        "fromSequence must be between 0 and the next sequence number"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatState.of(SeatStates.HELD | SeatStates.RESERVED),
+                        "Unknown seat state 3"
+                )
+        );
+    }
+
+    @Test
+    void changesFollowOnFromASeatMap() throws Exception {
+        SeatChangeFeed feed = venue.seatChanges();
+        assertSame(feed, venue.seatChanges(), "There's one feed per venue");
+        SeatMap seatMap = venue.getSeatMap();
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(recorder, seatMap.getVersion());
+        SeatHold seatHold = venue.holdSeats(2, EXPIRATION);
+        List<SeatChange> changes = recorder.changes(2);
+        int seat = ((VenueSeat) seatHold.getSeatsHeld().getFirst()).getIndex();
+        var _ = venue.reserve(seatHold);
+        List<SeatChange> reservations = recorder.changes(2);
+        assertAll("check changes",
+                () -> assertEquals(new SeatChange(seatMap.getVersion(), seat, SeatState.AVAILABLE, SeatState.HELD),
+                        changes.getFirst(),
+                        "The first change after the map"
+                ),
+                () -> assertTrue(seatMap.isAvailable(seat), "The map is from before"),
+                () -> assertEquals(SeatState.RESERVED, reservations.getLast().to(), "Reserved"),
+                () -> assertEquals(venue.getSeatMap().getVersion(), reservations.getLast().sequence() + 1, "Up to date")
+        );
+    }
+
+    @Test
+    void burstsAreCoalescedForSlowSubscribers() throws Exception {
+        SeatChangeFeed feed = venue.seatChanges();
+        Recorder recorder = new Recorder(0);
+        feed.subscribe(recorder);
+        SeatHold released = venue.holdSeats(1, EXPIRATION);
+        venue.removeHold(released);
+        SeatHold reserved = venue.holdSeats(1, EXPIRATION);
+        var _ = venue.reserve(reserved);
+        int seat = ((VenueSeat) reserved.getSeatsHeld().getFirst()).getIndex();
+        var _ = assertThrows(IllegalStateException.class, () -> venue.seatStates().reserve(seat), "Already reserved");
+        recorder.awaitSubscription().request(1);
+        SeatChanges batch = recorder.next();
+        assertAll("check batch",
+                () -> assertEquals(5, batch.toSequence() - batch.fromSequence(), "All changes are covered"),
+                () -> assertEquals(List.of(new SeatChange(batch.toSequence() - 2, seat, SeatState.AVAILABLE, SeatState.RESERVED)),
+                        batch.changes(),
+                        "Only the net change of the one seat that changed is left"
+                ),
+                () -> assertNull(batch.seatMap(), "No map needed")
+        );
+    }
+
+    @Test
+    void subscribersThatFallBehindGetAFreshSeatMap() throws Exception {
+        SeatChangeFeed feed = venue.seatChanges();
+        Recorder recorder = new Recorder(0);
+        feed.subscribe(recorder);
+        for (int i = 0; i < SeatChangeFeed.CAPACITY; i++) {
+            venue.removeHold(venue.holdSeats(1, EXPIRATION));
+        }
+        var _ = venue.holdSeats(1, EXPIRATION);
+        recorder.awaitSubscription().request(1);
+        SeatChanges batch = recorder.next();
+        assertAll("check batch",
+                () -> assertNotNull(batch.seatMap(), "A map instead of the changes"),
+                () -> assertTrue(batch.changes().isEmpty(), "No changes"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 1, TestUtil.countAvailable(batch.seatMap()), "The map is up to date"),
+                () -> assertEquals(batch.seatMap().getVersion(), batch.toSequence(), "Changes carry on from the map")
+        );
+    }
+
+    @Test
+    void subscribersCanResumeWhereTheyLeftOff() throws Exception {
+        SeatChangeFeed feed = venue.seatChanges();
+        Recorder first = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(first);
+        var _ = venue.holdSeats(1, EXPIRATION);
+        SeatChanges seen = first.next();
+        first.awaitSubscription().cancel();
+        assertEquals(0, feed.numSubscriptions(), "Cancelled");
+        var _ = venue.holdSeats(1, EXPIRATION);
+        Recorder resumed = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(resumed, seen.toSequence());
+        assertEquals(seen.toSequence(), resumed.next().fromSequence(), "Resumed right after the last change seen");
+    }
+
+    @Test
+    void restoringASnapshotCallsForAFreshSeatMap() throws Exception {
+        var _ = venue.holdSeats(3, EXPIRATION);
+        VenueSnapshot snapshot = venue.snapshot();
+        RectangularVenue restored = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        Recorder recorder = new Recorder(0);
+        restored.seatChanges().subscribe(recorder);
+        restored.removeHold(restored.holdSeats(1, EXPIRATION));
+        var _ = restored.recover(snapshot, null);
+        recorder.awaitSubscription().request(2);
+        SeatChanges before = recorder.next();
+        SeatChanges after = recorder.next();
+        assertAll("check batches",
+                () -> assertEquals(2, before.toSequence() - before.fromSequence(), "The hold from before the snapshot was restored"),
+                () -> assertNull(before.seatMap(), "Up to the snapshot the changes do"),
+                () -> assertEquals(before.toSequence(), after.fromSequence(), "In order"),
+                () -> assertNotNull(after.seatMap(), "A map for the restored seats"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 3, TestUtil.countAvailable(after.seatMap()), "Restored seats")
+        );
+    }
+
+    @Test
+    void misbehavingSubscribersAreDropped() throws Exception {
+        SeatChangeFeed feed = venue.seatChanges();
+        Recorder invalid = new Recorder(0);
+        feed.subscribe(invalid);
+        invalid.awaitSubscription().request(0);
+        Recorder throwing = new Recorder(Long.MAX_VALUE) {
+            @Override
+            public void onNext(final SeatChanges item) {
+                super.onNext(item);
+                throw new IllegalStateException("Subscriber failed");
+            }
+        };
+        feed.subscribe(throwing);
+        throwing.awaitSubscription();
+        var _ = venue.holdSeats(1, EXPIRATION);
+        var _ = throwing.next();
+        var _ = venue.holdSeats(1, EXPIRATION);
+        assertAll("check subscribers",
+                () -> assertInstanceOf(IllegalArgumentException.class, invalid.errors.poll(TIMEOUT, TimeUnit.SECONDS), "Error"),
+                () -> assertNull(throwing.batches.poll(TIMEOUT, TimeUnit.MILLISECONDS), "No more batches"),
+                () -> assertEquals(0, feed.numSubscriptions(), "Both are gone")
+        );
+    }
+
+    @Test
+    void theFeedStartsOnceNoChangeIsInProgress() throws Exception {
+        venue.seatStates().beginChange();
+        CompletableFuture<SeatChangeFeed> feed = CompletableFuture.supplyAsync(venue::seatChanges);
+        TimeUnit.MILLISECONDS.sleep(TIMEOUT);
+        assertFalse(feed.isDone(), "A change is still in progress");
+        venue.seatStates().endChange();
+        assertSame(venue.seatChanges(), feed.get(TIMEOUT, TimeUnit.SECONDS), "Started");
+    }
+
+    /**
+     * Keeps what it gets, for the test to look at.
+     */
+    private static class Recorder implements Flow.Subscriber<SeatChanges> {
+        final BlockingQueue<SeatChanges> batches = new LinkedBlockingQueue<>();
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        private final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+        private final long initialDemand;
+
+        Recorder(final long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        Flow.Subscription awaitSubscription() throws Exception {
+            return subscription.get(TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        SeatChanges next() throws InterruptedException {
+            SeatChanges batch = batches.poll(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(batch, "Expected a batch");
+            return batch;
+        }
+
+        List<SeatChange> changes(final int numChanges) throws InterruptedException {
+            List<SeatChange> changes = new ArrayList<>();
+            while (changes.size() < numChanges) {
+                changes.addAll(next().changes());
+            }
+            return changes;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription newSubscription) {
+            if (initialDemand > 0) {
+                newSubscription.request(initialDemand);
+            }
+            var _ = subscription.complete(newSubscription);
+        }
+
+        @Override
+        public void onNext(final SeatChanges item) {
+            batches.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            throw new AssertionError("The feed never completes");
+        }
+    }
+}
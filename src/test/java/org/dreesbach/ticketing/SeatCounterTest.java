@@ -0,0 +1,91 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatCounterTest {
+    private static final int NUM_SEATS = 100;
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        TestUtil.testException(IllegalArgumentException.class, () -> new SeatCounter(-1), "numSeats must be >= 0");
+    }
+
+    @Test
+    void everyTransitionMovesSeatsBetweenTheCounts() {
+        SeatCounter counter = new SeatCounter(NUM_SEATS);
+        assertEquals(new SeatCounts(NUM_SEATS, 0, 0), counter.counts(), "All seats start out available");
+        counter.held(10);
+        counter.reserved(4);
+        counter.released(3);
+        counter.cancelled(1);
+        counter.restored(5, 7);
+        assertAll("check counts",
+                () -> assertEquals(new SeatCounts(NUM_SEATS - 8 - 10, 8, 10), counter.counts(), "Counts"),
+                () -> assertEquals(NUM_SEATS - 8 - 10, counter.available(), "Available")
+        );
+    }
+
+    @Test
+    void releasingAllHeldSeatsDoesntTouchTheReservedOnes() {
+        SeatCounter counter = new SeatCounter(NUM_SEATS);
+        counter.held(NUM_SEATS);
+        counter.reserved(NUM_SEATS / 2);
+        counter.released(NUM_SEATS / 2);
+        assertEquals(new SeatCounts(NUM_SEATS / 2, 0, NUM_SEATS / 2), counter.counts(), "Counts");
+    }
+
+    @Test
+    void changesArePassedOnToTheParent() {
+        SeatCounter hall = new SeatCounter(2 * NUM_SEATS);
+        SeatCounter front = new SeatCounter(NUM_SEATS, hall);
+        SeatCounter back = new SeatCounter(NUM_SEATS, hall);
+        front.held(3);
+        back.held(5);
+        back.reserved(2);
+        assertAll("check counts",
+                () -> assertEquals(new SeatCounts(NUM_SEATS - 3, 3, 0), front.counts(), "Front"),
+                () -> assertEquals(new SeatCounts(NUM_SEATS - 5, 3, 2), back.counts(), "Back"),
+                () -> assertEquals(new SeatCounts(2 * NUM_SEATS - 8, 6, 2), hall.counts(), "Hall")
+        );
+    }
+
+    @Test
+    void countsReadTogetherAlwaysBelongTogether() throws Exception {
+        SeatCounter counter = new SeatCounter(NUM_SEATS);
+        AtomicBoolean done = new AtomicBoolean();
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    counter.held(2);
+                    counter.reserved(2);
+                    counter.cancelled(2);
+                }
+            }));
+        }
+        CompletableFuture<Boolean> reader = CompletableFuture.supplyAsync(() -> {
+            boolean consistent = true;
+            while (!done.get()) {
+                SeatCounts counts = counter.counts();
+                consistent &= counts.available() + counts.held() + counts.reserved() == NUM_SEATS
+                        && counts.held() % 2 == 0 && counts.reserved() % 2 == 0 && counts.held() + counts.reserved() <= 4;
+            }
+            return consistent;
+        });
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture<?>[0])).get();
+        done.set(true);
+        assertAll("check counts",
+                () -> assertTrue(reader.get(), "Every read should have added up"),
+                () -> assertEquals(new SeatCounts(NUM_SEATS, 0, 0), counter.counts(), "All seats are available again")
+        );
+    }
+}
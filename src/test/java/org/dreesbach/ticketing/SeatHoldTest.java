@@ -13,7 +13,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.number.OrderingComparison.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SeatHoldTest {
@@ -33,13 +33,13 @@ class SeatHoldTest {
     @Test
     void getNumSeats() {
         int numSeatsToRequest = 2;
-        SeatHold seatHold = new SeatHold(SEATS_TO_HOLD, ARBITRARY_EXPIRATION_TIME);
+        SeatHold seatHold = new SeatHold(SEATS_TO_HOLD, ARBITRARY_EXPIRATION_TIME, 1);
         assertEquals(numSeatsToRequest, seatHold.getNumSeatsHeld(), "Number of seats held should equal requested seats");
     }
 
     @Test
     void testHoldingZeroSeats() {
-        SeatHold seatHold = new SeatHold(Collections.emptyList(), ARBITRARY_EXPIRATION_TIME);
+        SeatHold seatHold = new SeatHold(Collections.emptyList(), ARBITRARY_EXPIRATION_TIME, 1);
         assertEquals(0, seatHold.getNumSeatsRequested(), "Number of seats held should equal requested seats (0)");
     }
 
@@ -54,7 +54,7 @@ class SeatHoldTest {
 
     @Test
     void requestMoreSeatsThanAvailable() {
-        SeatHold seatHold = new SeatHold(venue.getSeats(), ARBITRARY_EXPIRATION_TIME);
+        SeatHold seatHold = new SeatHold(venue.getSeats(), ARBITRARY_EXPIRATION_TIME, 1);
         assertEquals(
                 venue.getTotalNumSeats(),
                 seatHold.getNumSeatsHeld(),
@@ -62,6 +62,30 @@ class SeatHoldTest {
         );
     }
 
+    @Test
+    void explicitIdMustBePositive() {
+        TestUtil.testException(
+                IllegalArgumentException.class,
+                () -> new SeatHold(SEATS_TO_HOLD, ARBITRARY_EXPIRATION_TIME, 0),
+                "id must be > 0"
+        );
+    }
+
+    @Test
+    void reservationCodeCanOnlyBeUsedOnce() {
+        int reservationCode = IdGenerator.nextReservationCode();
+        String encoded = IdGenerator.encodeReservationCode(reservationCode);
+        SeatHold first = venue.holdSeats(2, ARBITRARY_EXPIRATION_TIME);
+        SeatHold second = venue.holdSeats(2, ARBITRARY_EXPIRATION_TIME);
+        String firstCode = venue.reserve(first, reservationCode);
+        String secondCode = venue.reserve(second, reservationCode);
+        assertAll("check reservation codes",
+                () -> assertEquals(encoded, firstCode, "Given code should be used"),
+                () -> assertNotEquals(encoded, secondCode, "Second reservation should get a fresh code"),
+                () -> assertTrue(second.getSeatsHeld().get(0).isReserved(), "Second hold should be reserved")
+        );
+    }
+
     @Test
     void getId() {
         SeatHold seatHold = venue.holdSeats(2, Duration.ZERO);
@@ -78,13 +102,11 @@ class SeatHoldTest {
     @Test
     void remove() {
         SeatHold seatHold = venue.holdSeats(2, Duration.ZERO);
-        int id = seatHold.getId();
         seatHold.remove();
         assertAll(
                 "Check SeatHolds",
                 () -> assertTrue(seatHold.expired(), "Removed SeatHold should be expired immediately"),
-                () -> assertEquals(0, seatHold.getNumSeatsHeld(), "SeatHold should have 0 seats associated"),
-                () -> assertFalse(IdGenerator.retireId(id), "IdGenerator should have the SeatHold's ID retired")
+                () -> assertEquals(0, seatHold.getNumSeatsHeld(), "SeatHold should have 0 seats associated")
         );
     }
 }
@@ -0,0 +1,250 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapFormatTest {
+    private static final int NUM_ROWS = 10;
+    private static final int SEATS_PER_ROW = 10;
+    private static final Duration EXPIRATION = Duration.ofMinutes(1);
+    /**
+     * Position of the number of rows in the header.
+     */
+    private static final int NUM_ROWS_POSITION = 2 * Integer.BYTES + Long.BYTES;
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        ByteBuffer buffer = write(new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy())
+                .getSeatMap(), true);
+        SeatMap seatMap = SeatMap.readFrom(buffer.duplicate());
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> seatMap.writeTo(ByteBuffer.allocate(1).order(ByteOrder.LITTLE_ENDIAN), false),
+                        "buffer must be big-endian"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> seatMap.writeTo((WritableByteChannel) null, false),
+                        "channel cannot be null"
+                ),
+                () -> assertThrows(BufferOverflowException.class,
+                        () -> seatMap.writeTo(ByteBuffer.allocate(SeatMapFormat.HEADER_BYTES), false),
+                        "Too small a buffer"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changed(buffer, 0, 0)),
+                        "Not a seat map"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changed(buffer, Integer.BYTES, 2)),
+                        "Unsupported seat map version 2"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changed(buffer, NUM_ROWS_POSITION, 0)),
+                        "Seat map has an impossible shape"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changed(buffer, NUM_ROWS_POSITION + Integer.BYTES, SEATS_PER_ROW - 1)),
+                        "Run of 10 seats doesn't fit the row"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changedByte(buffer, SeatMapFormat.HEADER_BYTES + 1, 1)),
+                        "Summary of section 0 doesn't match its seats"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(changedByte(buffer, buffer.limit() - 1, (SEATS_PER_ROW << 2) | 3)),
+                        "Unknown seat state 3"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(withTail(buffer, SeatMapFormat.HEADER_BYTES, new byte[] { -1, -1, -1, -1, -1, 0 })),
+                        "Varint of more than 5 bytes"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> SeatMap.readFrom(withTail(buffer, SeatMapFormat.HEADER_BYTES, new byte[] { -1, -1, -1, -1, 15 })),
+                        "Count of 4294967295 seats is too large"
+                )
+        );
+    }
+
+    @Test
+    void mapsSurviveTheRoundTrip() {
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        var _ = venue.reserve(venue.holdSeats(SEATS_PER_ROW + 2, EXPIRATION));
+        var _ = venue.holdSeats(3, EXPIRATION);
+        SeatMap seatMap = venue.getSeatMap();
+        ByteBuffer withSummaries = write(seatMap, true);
+        ByteBuffer withoutSummaries = write(seatMap, false);
+        SeatMap read = SeatMap.readFrom(withSummaries);
+        assertAll("check map",
+                () -> assertSameSeats(seatMap, read),
+                () -> assertSameSeats(seatMap, SeatMap.readFrom(withoutSummaries)),
+                () -> assertEquals(0, withSummaries.remaining(), "Read it all"),
+                () -> assertEquals(seatMap.getSectionCounts(0), read.getSectionCounts(0), "Counts")
+        );
+    }
+
+    @Test
+    void uniformRowsTakeAFewBytesEach() {
+        final int numRows = 300;
+        final int seatsPerRow = 300;
+        SeatMap seatMap = new RectangularVenue(numRows, seatsPerRow, new RectangularVenueSimpleSeatPickingStrategy())
+                .getSeatMap();
+        assertEquals(SeatMapFormat.HEADER_BYTES + numRows * 2, write(seatMap, false).remaining(), "A run of 300 is 2 bytes");
+    }
+
+    @Test
+    void sectionedVenuesAreWrittenWithTheirSections() {
+        final int rowsPerSection = 3;
+        SectionedVenue venue = new SectionedVenue(NUM_ROWS, SEATS_PER_ROW, rowsPerSection, 0,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        );
+        var _ = venue.holdSeats(new int[] { rowsPerSection * SEATS_PER_ROW, 1 }, EXPIRATION);
+        SeatMap seatMap = venue.getSeatMap();
+        SeatMap read = SeatMap.readFrom(write(seatMap, true));
+        assertAll("check map",
+                () -> assertSameSeats(seatMap, read),
+                () -> assertEquals(seatMap.getNumSections(), read.getNumSections(), "Number of sections"),
+                () -> assertEquals(seatMap.getSectionCounts(1), read.getSectionCounts(1), "Counts of the second section"),
+                () -> assertEquals(new SeatCounts(SEATS_PER_ROW, 0, 0),
+                        read.getSectionCounts(read.getNumSections() - 1),
+                        "The last section has the row that was left over"
+                )
+        );
+    }
+
+    @Test
+    void runsAreFoundAcrossWords() {
+        final int numRows = 13;
+        final int seatsPerRow = 37;
+        Random random = new Random(seatsPerRow);
+        long[] words = new long[(numRows * seatsPerRow + SeatStates.SEATS_PER_WORD - 1) / SeatStates.SEATS_PER_WORD];
+        int seat = 0;
+        while (seat < numRows * seatsPerRow) {
+            int length = Math.min(1 + random.nextInt(2 * SeatStates.SEATS_PER_WORD), numRows * seatsPerRow - seat);
+            SeatStates.fill(words, seat, seat + length, random.nextInt(SeatStates.RESERVED + 1));
+            seat += length;
+        }
+        SeatMap seatMap = new SeatMap(1, seatsPerRow, numRows * seatsPerRow, words);
+        assertSameSeats(seatMap, SeatMap.readFrom(write(seatMap, true)));
+    }
+
+    @Test
+    void mapsCanBeWrittenToChannels() throws IOException {
+        final int numRows = 10_000;
+        RectangularVenue venue = new RectangularVenue(numRows, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        var _ = venue.holdSeats(SEATS_PER_ROW, EXPIRATION);
+        SeatMap seatMap = venue.getSeatMap();
+        ByteBuffer buffer = write(seatMap, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = seatMap.writeTo(Channels.newChannel(out), true);
+        byte[] expected = new byte[buffer.remaining()];
+        var _ = buffer.get(expected);
+        assertAll("check channel",
+                () -> assertEquals(expected.length, written, "Number of bytes"),
+                () -> assertTrue(written > SeatMapFormat.CHANNEL_BUFFER_SIZE, "More than one buffer full"),
+                () -> assertArrayEquals(expected, out.toByteArray(), "Same as in a buffer")
+        );
+        WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() { }
+        };
+        TestUtil.testException(IOException.class, () -> seatMap.writeTo(failing, true), "Disk full");
+        TestUtil.testException(IOException.class,
+                () -> new SeatMap(0, 1, 1, new long[1]).writeTo(failing, false),
+                "Disk full"
+        );
+    }
+
+    /**
+     * Write a map into a buffer of its own.
+     *
+     * @param seatMap the map
+     * @param withSectionSummaries whether to write the section summaries
+     * @return the buffer, ready to be read
+     */
+    private static ByteBuffer write(final SeatMap seatMap, final boolean withSectionSummaries) {
+        ByteBuffer buffer = ByteBuffer.allocate(SeatMapFormat.HEADER_BYTES + seatMap.size() * SeatMapFormat.MAX_VARINT_BYTES);
+        int written = seatMap.writeTo(buffer, withSectionSummaries);
+        assertEquals(buffer.position(), written, "Number of bytes");
+        return buffer.flip();
+    }
+
+    /**
+     * A copy of a written map with an {@code int} replaced.
+     *
+     * @param buffer the map
+     * @param position where the {@code int} is
+     * @param value the new value
+     * @return the copy
+     */
+    private static ByteBuffer changed(final ByteBuffer buffer, final int position, final int value) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.limit()).put(buffer.duplicate()).flip();
+        return copy.putInt(position, value);
+    }
+
+    /**
+     * A copy of a written map with a byte replaced.
+     *
+     * @param buffer the map
+     * @param position where the byte is
+     * @param value the new value
+     * @return the copy
+     */
+    private static ByteBuffer changedByte(final ByteBuffer buffer, final int position, final int value) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.limit()).put(buffer.duplicate()).flip();
+        return copy.put(position, (byte) value);
+    }
+
+    /**
+     * A copy of the start of a written map, followed by other bytes.
+     *
+     * @param buffer the map
+     * @param length how much of the map to keep
+     * @param tail what follows
+     * @return the copy
+     */
+    private static ByteBuffer withTail(final ByteBuffer buffer, final int length, final byte[] tail) {
+        return ByteBuffer.allocate(length + tail.length).put(buffer.duplicate().limit(length)).put(tail).flip();
+    }
+
+    /**
+     * Check that two maps show the same seats, in the same shape.
+     *
+     * @param expected the map written
+     * @param actual the map read
+     */
+    private static void assertSameSeats(final SeatMap expected, final SeatMap actual) {
+        assertEquals(List.of(expected.getVersion(), expected.getNumRows(), expected.getSeatsPerRow()),
+                List.of(actual.getVersion(), actual.getNumRows(), actual.getSeatsPerRow()),
+                "Version and shape"
+        );
+        for (int seat = 0; seat < expected.size(); seat++) {
+            assertEquals(expected.state(seat), actual.state(seat), "Seat " + seat);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapTest {
+    private static final int NUM_ROWS = 10;
+    private static final int SEATS_PER_ROW = 10;
+    private static final Duration EXPIRATION = Duration.ofMinutes(1);
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        SeatMap section = new SeatMap(0, 1, SeatStates.SEATS_PER_WORD, new long[1]);
+        SeatMap smallSection = new SeatMap(0, 1, 1, new long[1]);
+        SeatMap sectioned = new SeatMap(List.of(section, section));
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SeatMap(List.of()),
+                        "There must be at least one section"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SeatMap(List.of(smallSection, section)),
+                        "Only the last section may be smaller"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SeatMap(List.of(section, new SeatMap(0, 2, 2, new long[1]))),
+                        "Rows of all sections must be the same length"
+                ),
+                () -> TestUtil.testException(IndexOutOfBoundsException.class,
+                        () -> sectioned.getSectionCounts(2),
+                        "index (2) must be less than size (2)"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SeatMap(List.of(sectioned)),
+                        "Sections can't be split further"
+                ),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> section.isAvailable(-1), "Negative seat index"),
+                () -> assertThrows(IndexOutOfBoundsException.class,
+                        () -> sectioned.isAvailable(2 * SeatStates.SEATS_PER_WORD),
+                        "Too high a seat index"
+                )
+        );
+    }
+
+    @Test
+    void mapsShowTheSeatsAsTheyWere() {
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        SeatMap before = venue.getSeatMap();
+        SeatHold reserved = venue.holdSeats(2, EXPIRATION);
+        var _ = venue.reserve(reserved);
+        SeatHold held = venue.holdSeats(1, EXPIRATION);
+        SeatMap after = venue.getSeatMap();
+        int reservedSeat = ((VenueSeat) reserved.getSeatsHeld().getFirst()).getIndex();
+        int heldSeat = ((VenueSeat) held.getSeatsHeld().getFirst()).getIndex();
+        assertAll("check maps",
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, after.size(), "Number of seats"),
+                () -> assertEquals(NUM_ROWS, after.getNumRows(), "Number of rows"),
+                () -> assertEquals(SEATS_PER_ROW, after.getSeatsPerRow(), "Seats per row"),
+                () -> assertEquals(new SeatCounts(NUM_ROWS * SEATS_PER_ROW - 3, 1, 2), after.getSectionCounts(0), "Counts"),
+                () -> assertTrue(before.isAvailable(reservedSeat), "Earlier map"),
+                () -> assertTrue(after.isReserved(reservedSeat), "Reserved seat"),
+                () -> assertTrue(after.isHeld(heldSeat), "Held seat"),
+                () -> assertFalse(after.isReserved(heldSeat), "Held seat isn't reserved"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 3, TestUtil.countAvailable(after), "Available seats"),
+                () -> assertTrue(after.getVersion() > before.getVersion(), "The version should have gone up"),
+                () -> assertSame(after, venue.getSeatMap(), "Nothing changed since")
+        );
+    }
+
+    @Test
+    void sectionedVenuesAreMappedSectionBySection() {
+        final int rowsPerSection = 3;
+        SectionedVenue venue = new SectionedVenue(NUM_ROWS, SEATS_PER_ROW, rowsPerSection, 0,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        );
+        SeatMap before = venue.getSeatMap();
+        List<SeatHold> seatHolds = venue.holdSeats(new int[] { rowsPerSection * SEATS_PER_ROW, SEATS_PER_ROW }, EXPIRATION);
+        SeatMap after = venue.getSeatMap();
+        assertAll("check maps",
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, after.size(), "Number of seats"),
+                () -> assertEquals((NUM_ROWS - rowsPerSection - 1) * SEATS_PER_ROW,
+                        TestUtil.countAvailable(after),
+                        "Available seats"
+                ),
+                () -> assertEquals(NUM_ROWS / rowsPerSection + 1, after.getNumSections(), "Number of sections"),
+                () -> assertEquals(new SeatCounts(0, rowsPerSection * SEATS_PER_ROW, 0), after.getSectionCounts(0), "Front"),
+                () -> assertEquals(new SeatCounts(SEATS_PER_ROW, 0, 0),
+                        after.getSectionCounts(after.getNumSections() - 1),
+                        "The last section has the row that was left over"
+                ),
+                () -> assertTrue(after.isHeld(0), "Front section is held"),
+                () -> assertTrue(after.isHeld(rowsPerSection * SEATS_PER_ROW - 1), "All of it"),
+                () -> assertTrue(after.isAvailable(NUM_ROWS * SEATS_PER_ROW - 1), "Back row is available"),
+                () -> assertNotEquals(before.getVersion(), after.getVersion(), "The version should have changed"),
+                () -> assertEquals(after.getVersion(), venue.getSeatMap().getVersion(), "Nothing changed since")
+        );
+        venue.removeHold(seatHolds.getFirst());
+        assertEquals(NUM_ROWS * SEATS_PER_ROW - SEATS_PER_ROW, TestUtil.countAvailable(venue.getSeatMap()), "Released");
+    }
+
+    @Test
+    void readersWaitForChangesThatDontStop() throws Exception {
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        venue.seatStates().beginChange();
+        CompletableFuture<SeatMap> seatMap = CompletableFuture.supplyAsync(venue::getSeatMap);
+        TimeUnit.MILLISECONDS.sleep(SEATS_PER_ROW);
+        assertFalse(seatMap.isDone(), "The change is still in progress");
+        venue.seatStates().endChange();
+        assertEquals(NUM_ROWS * SEATS_PER_ROW, TestUtil.countAvailable(seatMap.get()), "Available seats");
+    }
+
+    @Test
+    void readersNeverSeePartOfAHoldOrReservation() throws Exception {
+        final int groupSize = 4;
+        final int numRounds = 2_000;
+        final int numReaders = 3;
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        AtomicBoolean done = new AtomicBoolean();
+        List<CompletableFuture<Integer>> readers = new ArrayList<>();
+        for (int i = 0; i < numReaders; i++) {
+            readers.add(CompletableFuture.supplyAsync(() -> {
+                int numMaps = 0;
+                long version = -1;
+                while (!done.get()) {
+                    SeatMap seatMap = venue.getSeatMap();
+                    int held = 0;
+                    int reserved = 0;
+                    for (int seat = 0; seat < seatMap.size(); seat++) {
+                        held += seatMap.isHeld(seat) ? 1 : 0;
+                        reserved += seatMap.isReserved(seat) ? 1 : 0;
+                    }
+                    if (held % groupSize != 0 || reserved % groupSize != 0 || seatMap.getVersion() < version) {
+                        return -1;
+                    }
+                    version = seatMap.getVersion();
+                    numMaps++;
+                }
+                return numMaps;
+            }));
+        }
+        for (int round = 0; round < numRounds; round++) {
+            SeatHold seatHold = venue.holdSeats(groupSize, EXPIRATION);
+            if (round % 2 == 0) {
+                venue.cancelReservation(venue.reserve(seatHold));
+            }
+            else {
+                venue.removeHold(seatHold);
+            }
+        }
+        done.set(true);
+        for (CompletableFuture<Integer> reader : readers) {
+            assertTrue(reader.get() >= 0, "Every map should have shown whole holds and reservations, in order");
+        }
+    }
+}
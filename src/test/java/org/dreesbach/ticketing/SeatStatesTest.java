@@ -0,0 +1,240 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatStatesTest {
+    /**
+     * Deliberately not a multiple of {@link SeatStates#SEATS_PER_WORD} so the last word is only partially used.
+     */
+    private static final int NUM_SEATS = 100;
+    private SeatStates seatStates;
+
+    @BeforeEach
+    void setup() {
+        seatStates = new SeatStates(NUM_SEATS);
+    }
+
+    @Test
+    void allSeatsStartOutAvailable() {
+        for (int seat = 0; seat < NUM_SEATS; seat++) {
+            assertEquals(SeatStates.AVAILABLE, seatStates.get(seat), "Seat " + seat + " should be available");
+        }
+        assertEquals(NUM_SEATS, seatStates.size(), "Should track the requested number of seats");
+    }
+
+    @Test
+    void zeroSeatsThrowsException() {
+        TestUtil.testException(IllegalArgumentException.class, () -> new SeatStates(0), "numSeats must be > 0");
+        TestUtil.testException(IllegalArgumentException.class,
+                () -> new SeatStates(NUM_SEATS, 3),
+                "numSeats must be a multiple of seatsPerRow"
+        );
+    }
+
+    @Test
+    void runsAreFilledCountedAndFoundAcrossWords() {
+        final int heldFrom = 5;
+        final int reservedFrom = SeatStates.SEATS_PER_WORD + 3;
+        final int reservedTo = 3 * SeatStates.SEATS_PER_WORD + 1;
+        long[] words = new long[seatStates.numWords()];
+        SeatStates.fill(words, heldFrom, reservedFrom, SeatStates.HELD);
+        SeatStates.fill(words, reservedFrom, reservedTo, SeatStates.RESERVED);
+        SeatStates.fill(words, reservedTo - 1, reservedTo, SeatStates.AVAILABLE);
+        assertAll("check runs",
+                () -> assertEquals(heldFrom, SeatStates.runLength(words, 0, NUM_SEATS), "Available up to the hold"),
+                () -> assertEquals(2, SeatStates.runLength(words, 0, 2), "Cut short by the end"),
+                () -> assertEquals(reservedFrom - heldFrom, SeatStates.runLength(words, heldFrom, NUM_SEATS), "Held"),
+                () -> assertEquals(SeatStates.HELD, SeatStates.stateIn(words[0], SeatStates.SEATS_PER_WORD - 1), "Held"),
+                () -> assertEquals(reservedTo - 1 - reservedFrom,
+                        SeatStates.runLength(words, reservedFrom, NUM_SEATS),
+                        "Reserved, across two whole words"
+                ),
+                () -> assertEquals(NUM_SEATS - reservedTo + 1,
+                        SeatStates.runLength(words, reservedTo - 1, NUM_SEATS),
+                        "Available to the end"
+                ),
+                () -> assertEquals(new SeatCounts(NUM_SEATS - (reservedTo - 1 - heldFrom), reservedFrom - heldFrom,
+                        reservedTo - 1 - reservedFrom), SeatStates.count(words, NUM_SEATS), "Counts")
+        );
+    }
+
+    @Test
+    void outOfRangeSeatThrowsException() {
+        assertAll("range checking",
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> seatStates.get(-1), "Negative seat index"),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> seatStates.hold(NUM_SEATS), "Too high a seat index")
+        );
+    }
+
+    @Test
+    void fullLifecycle() {
+        final int seat = 37;
+        seatStates.hold(seat);
+        assertEquals(SeatStates.HELD, seatStates.get(seat), "Seat should be held");
+        seatStates.reserve(seat);
+        assertEquals(SeatStates.RESERVED, seatStates.get(seat), "Seat should be reserved");
+        seatStates.cancelReservation(seat);
+        assertEquals(SeatStates.AVAILABLE, seatStates.get(seat), "Seat should be available again");
+        seatStates.hold(seat);
+        seatStates.cancelHold(seat);
+        assertEquals(SeatStates.AVAILABLE, seatStates.get(seat), "Seat should be available after cancelling the hold");
+    }
+
+    @Test
+    void transitionsDoNotAffectNeighbouringSeats() {
+        seatStates.hold(SeatStates.SEATS_PER_WORD - 1);
+        seatStates.hold(SeatStates.SEATS_PER_WORD);
+        seatStates.reserve(SeatStates.SEATS_PER_WORD);
+        assertAll("check neighbours",
+                () -> assertEquals(SeatStates.AVAILABLE, seatStates.get(SeatStates.SEATS_PER_WORD - 2), "Untouched"),
+                () -> assertEquals(SeatStates.HELD, seatStates.get(SeatStates.SEATS_PER_WORD - 1), "Last seat of word"),
+                () -> assertEquals(SeatStates.RESERVED, seatStates.get(SeatStates.SEATS_PER_WORD), "First seat of next word"),
+                () -> assertEquals(SeatStates.AVAILABLE, seatStates.get(SeatStates.SEATS_PER_WORD + 1), "Untouched")
+        );
+    }
+
+    @Test
+    void invalidTransitionsThrowExceptions() {
+        seatStates.hold(1);
+        seatStates.hold(2);
+        seatStates.reserve(2);
+        assertAll("invalid transitions",
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.hold(1),
+                        "Cannot hold an unavailable seat"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.cancelHold(0),
+                        "Seat was already available"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.cancelHold(2),
+                        "Cannot cancel a hold on an already-reserved seat"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.reserve(0),
+                        "Seat was still marked as available"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.reserve(2),
+                        "Seat was already reserved"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.cancelReservation(0),
+                        "Seat was still marked as available"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> seatStates.cancelReservation(1),
+                        "Seat was not reserved"
+                )
+        );
+    }
+
+    @Test
+    void packedStatesCanBeCopied() {
+        seatStates.hold(1);
+        seatStates.hold(NUM_SEATS - 1);
+        seatStates.reserve(NUM_SEATS - 1);
+        LongBuffer words = LongBuffer.allocate(seatStates.numWords());
+        seatStates.copyTo(words);
+        SeatStates copy = new SeatStates(NUM_SEATS);
+        assertEquals(2, copy.copyFrom(words.flip()), "Seats taken");
+        for (int seat = 0; seat < NUM_SEATS; seat++) {
+            assertEquals(seatStates.get(seat), copy.get(seat), "State of seat " + seat);
+        }
+    }
+
+    @Test
+    void invalidPackedStatesAreRejected() {
+        long[] beyondLastSeat = new long[seatStates.numWords()];
+        beyondLastSeat[beyondLastSeat.length - 1] = -1L;
+        assertAll("check invalid packed states",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> seatStates.copyFrom(LongBuffer.allocate(1)),
+                        "Expected 4 words of seat states"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> seatStates.copyFrom(LongBuffer.wrap(beyondLastSeat)),
+                        "Seat states beyond the last seat"
+                )
+        );
+    }
+
+    @Test
+    void everyChangeBumpsTheVersion() {
+        SeatMap initial = seatStates.seatMap();
+        seatStates.hold(1);
+        seatStates.beginChange();
+        seatStates.hold(2);
+        seatStates.reserve(2);
+        seatStates.endChange();
+        SeatMap seatMap = seatStates.seatMap();
+        assertAll("check versions",
+                () -> assertEquals(0, initial.getVersion(), "No changes yet"),
+                () -> assertEquals(3, seatStates.version(), "One per transition"),
+                () -> assertEquals(seatStates.version(), seatMap.getVersion(), "The map should be up to date"),
+                () -> assertSame(seatMap, seatStates.seatMap(), "An unchanged map should be handed out again"),
+                () -> assertTrue(seatMap.isHeld(1), "Held seat"),
+                () -> assertTrue(seatMap.isReserved(2), "Reserved seat"),
+                () -> assertTrue(initial.isAvailable(1), "Earlier maps shouldn't change")
+        );
+    }
+
+    @Test
+    void seatsAreNotMappedWhileAChangeIsInProgress() {
+        seatStates.beginChange();
+        seatStates.hold(1);
+        assertNull(seatStates.seatMap(), "The change isn't finished yet");
+        seatStates.endChange();
+        SeatMap seatMap = seatStates.seatMap();
+        assertNotNull(seatMap, "The change is finished");
+        assertTrue(seatMap.isHeld(1), "Seat should be held");
+    }
+
+    @Test
+    void concurrentTransitionsInTheSameWordAreNotLost() throws Exception {
+        final int numRounds = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(SeatStates.SEATS_PER_WORD);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < SeatStates.SEATS_PER_WORD; i++) {
+                final int seat = i;
+                tasks.add(() -> {
+                    for (int round = 0; round < numRounds; round++) {
+                        seatStates.hold(seat);
+                        seatStates.reserve(seat);
+                        seatStates.cancelReservation(seat);
+                    }
+                    seatStates.hold(seat);
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        for (int seat = 0; seat < SeatStates.SEATS_PER_WORD; seat++) {
+            assertEquals(SeatStates.HELD, seatStates.get(seat), "Every seat in the word should have ended up held");
+        }
+    }
+}
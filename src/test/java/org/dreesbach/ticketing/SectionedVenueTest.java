@@ -0,0 +1,273 @@
+package org.dreesbach.ticketing;
+
+import org.dreesbach.ticketing.id.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionedVenueTest {
+    private static final int NUM_ROWS = 5;
+    private static final int SEATS_PER_ROW = 4;
+    private static final int ROWS_PER_SECTION = 2;
+    private static final Duration EXPIRATION = Duration.ofMinutes(1);
+    private SectionedVenue venue;
+
+    @BeforeEach
+    void setup() {
+        venue = new SectionedVenue(NUM_ROWS, SEATS_PER_ROW, ROWS_PER_SECTION, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        SeatPickingStrategy<RectangularVenue> strategy = new RectangularVenueSimpleSeatPickingStrategy();
+        assertAll("argument checking",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new SectionedVenue(1, 1, 1, null),
+                        "seatPickingStrategy cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SectionedVenue(0, 1, 1, strategy),
+                        "Number of rows must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SectionedVenue(1, 0, 1, strategy),
+                        "Number of seats per row must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SectionedVenue(1, 1, 0, strategy),
+                        "Number of rows per section must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SectionedVenue(1, 1, 1, -1.0, strategy),
+                        "tolerance must be >= 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> venue.holdSeats(0, EXPIRATION),
+                        "numSeatsToHold must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> venue.holdSeats(new int[] { 1, 0 }, EXPIRATION),
+                        "numSeatsToHold must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> venue.cancelReservation("AAAAAA"),
+                        "Reservation code AAAAAA not found"
+                )
+        );
+    }
+
+    @Test
+    void sectionsAreBandsOfRowsOfTheWholeHall() {
+        assertAll("check sections",
+                () -> assertEquals(3, venue.getNumSections(), "Number of sections"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, venue.getTotalNumSeats(), "Total number of seats"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, venue.getAvailableNumSeats(), "Available number of seats"),
+                () -> assertEquals(SEATS_PER_ROW, venue.getSection(2).getTotalNumSeats(), "Last section gets the odd row"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, venue.getSeats().size(), "Seat list size"),
+                () -> assertEquals("Row 3 Seat 1", venue.getSeats().get(2 * SEATS_PER_ROW).getId(), "First seat of section 1"),
+                () -> assertEquals("Row 5 Seat 4", venue.getSeats().getLast().getId(), "Last seat of the hall"),
+                () -> assertEquals(4.0, venue.getSection(2).getYPosition(0), "Row position counts from the stage"),
+                () -> assertEquals(SectionedVenue.DEFAULT_TOLERANCE, venue.getTolerance(), "Default tolerance")
+        );
+    }
+
+    @Test
+    void withoutToleranceSeatsAreHeldInTheOrderOfTheWholeHall() {
+        venue = new SectionedVenue(NUM_ROWS, SEATS_PER_ROW, ROWS_PER_SECTION, 0.0,
+                new RectangularVenueSimpleSeatPickingStrategy()
+        );
+        RectangularVenue hall = new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+        for (int i = 0; i < NUM_ROWS * SEATS_PER_ROW; i++) {
+            assertEquals(hall.holdSeats(1, EXPIRATION).getSeatsHeld().getFirst().getId(),
+                    venue.holdSeats(1, EXPIRATION).getSeatsHeld().getFirst().getId(),
+                    "Hold " + i + " should get the same seat as in a single venue"
+            );
+        }
+        assertEquals(0, venue.getAvailableNumSeats(), "All seats should be held");
+    }
+
+    @Test
+    void holdsStayWithinASection() {
+        SeatHold first = venue.holdSeats(6, EXPIRATION);
+        SeatHold second = venue.holdSeats(9, EXPIRATION);
+        SeatHold third = venue.holdSeats(5, EXPIRATION);
+        SeatHold fourth = venue.holdSeats(3, EXPIRATION);
+        SeatHold empty = venue.holdSeats(1, EXPIRATION);
+        assertAll("check holds",
+                () -> assertEquals(6, first.getNumSeatsHeld(), "First hold fits the front section"),
+                () -> assertTrue(inSection(first, 0), "First hold should be in the front section"),
+                () -> assertEquals(8, second.getNumSeatsHeld(), "No section has 9 seats, so the middle one's 8 are held"),
+                () -> assertTrue(inSection(second, 1), "Second hold should be in the middle section"),
+                () -> assertEquals(SEATS_PER_ROW, third.getNumSeatsHeld(), "No section has 5 seats, the back one has 4"),
+                () -> assertTrue(inSection(third, 2), "Third hold should be in the back section"),
+                () -> assertEquals(2, fourth.getNumSeatsHeld(), "No section has 3 seats left, the front one has 2"),
+                () -> assertTrue(inSection(fourth, 0), "Fourth hold should be in the front section"),
+                () -> assertEquals(0, empty.getNumSeatsHeld(), "Empty hold"),
+                () -> assertEquals(0, venue.getAvailableNumSeats(), "All seats should be held")
+        );
+    }
+
+    @Test
+    void holdsReservationsAndCancellationsGoToTheirSection() {
+        SeatHold front = venue.holdSeats(SEATS_PER_ROW * ROWS_PER_SECTION, EXPIRATION);
+        SeatHold middle = venue.holdSeats(2, EXPIRATION);
+        String reservationCode = venue.reserve(middle);
+        venue.removeHold(front);
+        assertAll("check sections",
+                () -> assertEquals(new SeatCounts(NUM_ROWS * SEATS_PER_ROW - 2, 0, 2), venue.getSeatCounts(), "Hall counts"),
+                () -> assertEquals(new SeatCounts(SEATS_PER_ROW * ROWS_PER_SECTION - 2, 0, 2),
+                        venue.getSection(1).getSeatCounts(),
+                        "Middle section counts"
+                ),
+                () -> assertEquals(SEATS_PER_ROW * ROWS_PER_SECTION, venue.getSection(0).getAvailableNumSeats(), "Front"),
+                () -> assertEquals(SEATS_PER_ROW * ROWS_PER_SECTION - 2, venue.getSection(1).getAvailableNumSeats(), "Middle"),
+                () -> assertTrue(middle.getSeatsHeld().stream().allMatch(Seat::isReserved), "Middle seats should be reserved"),
+                () -> assertTrue(venue.getSection(1).hasReservation(
+                        IdGenerator.decodeReservationCode(reservationCode)), "Middle reservation")
+        );
+        venue.cancelReservation(reservationCode);
+        assertEquals(NUM_ROWS * SEATS_PER_ROW, venue.getAvailableNumSeats(), "All seats should be available again");
+    }
+
+    @Test
+    void reservationCodesAreUniqueAcrossSections() {
+        SeatHold front = venue.holdSeats(1, EXPIRATION);
+        String reservationCode = venue.reserve(front, 42);
+        SeatHold other = venue.holdSeats(SEATS_PER_ROW * ROWS_PER_SECTION, EXPIRATION);
+        String otherCode = venue.reserve(other, 42);
+        venue.cancelReservation(otherCode);
+        assertAll("check reservation codes",
+                () -> assertFalse(inSection(other, 0), "Other hold should be in another section"),
+                () -> assertNotEquals(reservationCode, otherCode, "Other reservation should get a fresh code"),
+                () -> assertTrue(front.getSeatsHeld().get(0).isReserved(), "Cancelling it leaves the first one alone")
+        );
+    }
+
+    @Test
+    void emptyHoldsAreFoundInTheirSection() {
+        List<SeatHold> full = venue.holdSeats(new int[] { 8, 8, 4 }, EXPIRATION);
+        SeatHold empty = venue.holdSeats(1, EXPIRATION);
+        assertAll("check holds",
+                () -> assertEquals(0, venue.getAvailableNumSeats(), "All seats should be held"),
+                () -> assertTrue(inSection(full.get(2), 2), "Last request fills the back section"),
+                () -> assertTrue(venue.getSection(0).isLiveHold(empty), "Empty hold comes from the first section")
+        );
+        var _ = venue.reserve(empty);
+        venue.removeHold(empty);
+        assertAll("check empty hold",
+                () -> assertFalse(venue.getSection(0).isLiveHold(empty), "Empty hold should be reserved"),
+                () -> assertTrue(empty.expired(), "Empty hold should be removed")
+        );
+    }
+
+    @Test
+    void batchesHoldTheBestSeatsOfTheWholeHall() {
+        List<SeatHold> seatHolds = venue.holdSeats(new int[] { 2, 7, 2 }, EXPIRATION);
+        assertAll("check batch",
+                () -> assertEquals(List.of("Row 1 Seat 2", "Row 1 Seat 3"),
+                        TestUtil.seatIds(seatHolds.get(0).getSeatsHeld()),
+                        "First request"
+                ),
+                () -> assertEquals(7, seatHolds.get(1).getNumSeatsHeld(), "Second request fits the middle section"),
+                () -> assertTrue(inSection(seatHolds.get(1), 1), "Second request should be in the middle section"),
+                () -> assertEquals(List.of("Row 2 Seat 2", "Row 2 Seat 3"),
+                        TestUtil.seatIds(seatHolds.get(2).getSeatsHeld()),
+                        "Third request"
+                )
+        );
+    }
+
+    @Test
+    void holdsInOtherSectionsDontWaitForABusySection() throws Exception {
+        CountDownLatch picking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SeatPickingStrategy<RectangularVenue> simple = new RectangularVenueSimpleSeatPickingStrategy();
+        // the best seat of the middle section is 1.56 seats further back than that of the front section
+        venue = new SectionedVenue(NUM_ROWS, SEATS_PER_ROW, ROWS_PER_SECTION, 2.0, (RectangularVenue section, int numSeats) -> {
+            if (section == venue.getSection(0) && picking.getCount() > 0) {
+                picking.countDown();
+                try {
+                    assertTrue(release.await(10, TimeUnit.SECONDS), "Busy hold should be released");
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return simple.pickBestAvailableSeats(section, numSeats);
+        });
+        CompletableFuture<SeatHold> busy = CompletableFuture.supplyAsync(() -> venue.holdSeats(1, EXPIRATION));
+        assertTrue(picking.await(10, TimeUnit.SECONDS), "Busy hold should be picking");
+        SeatHold other = venue.holdSeats(1, EXPIRATION);
+        release.countDown();
+        assertAll("check holds",
+                () -> assertTrue(inSection(busy.get(), 0), "Busy hold should be in the front section"),
+                () -> assertTrue(inSection(other, 1), "Other hold should go to the next section, within tolerance"),
+                () -> assertEquals(List.of("Row 3 Seat 2"), TestUtil.seatIds(other.getSeatsHeld()), "Other hold's seat")
+        );
+    }
+
+    @Test
+    void manyThreadsHoldEverySeatOnce() throws Exception {
+        venue = new SectionedVenue(80, 25, 5, new RectangularVenueSimpleSeatPickingStrategy());
+        List<CompletableFuture<List<SeatHold>>> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            workers.add(CompletableFuture.supplyAsync(() -> {
+                List<SeatHold> seatHolds = new ArrayList<>();
+                for (int j = 0; j < 100; j++) {
+                    seatHolds.add(venue.holdSeats(3, EXPIRATION));
+                }
+                return seatHolds;
+            }));
+        }
+        int numSeatsHeld = 0;
+        for (CompletableFuture<List<SeatHold>> worker : workers) {
+            for (SeatHold seatHold : worker.get()) {
+                numSeatsHeld += seatHold.getNumSeatsHeld();
+            }
+        }
+        assertAll("check holds",
+                () -> assertEquals(800, venue.getAvailableNumSeats(), "Available seats"),
+                () -> assertEquals(800, venue.getSeats().stream().filter(Seat::isAvailable).count(), "Seats still available")
+        );
+        assertEquals(1_200, numSeatsHeld, "Seats held");
+    }
+
+    @Test
+    void strategyAppliesToAllSections() {
+        venue.setSeatPickingStrategy(new RectangularVenueContiguousSeatPickingStrategy());
+        SeatHold front = venue.holdSeats(SEATS_PER_ROW * ROWS_PER_SECTION - 1, EXPIRATION);
+        SeatHold block = venue.holdSeats(2, EXPIRATION);
+        assertAll("check holds",
+                () -> assertTrue(inSection(front, 0), "Front hold"),
+                () -> assertEquals(List.of("Row 3 Seat 2", "Row 3 Seat 3"),
+                        TestUtil.seatIds(block.getSeatsHeld()),
+                        "Block should stay together"
+                )
+        );
+    }
+
+    private boolean inSection(final SeatHold seatHold, final int section) {
+        return seatHold.getSeatsHeld().stream().allMatch(seat -> ((VenueSeat) seat).getVenue() == venue.getSection(section));
+    }
+
+    @Test
+    void seatListHandsOutViewsOfTheSections() {
+        Seat seat = venue.getSeats().get(SEATS_PER_ROW * ROWS_PER_SECTION + 1);
+        assertSame(venue.getSection(1), ((VenueSeat) seat).getVenue(), "Seat should be a view of the middle section");
+        assertThrows(IndexOutOfBoundsException.class, () -> venue.getSeats().get(NUM_ROWS * SEATS_PER_ROW), "Too high a seat");
+    }
+}
@@ -0,0 +1,209 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleWriterTicketServiceImplTest {
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+    private static final int NUM_ROWS = 3;
+    private static final int NUM_COLS = 3;
+    private static final long WAIT_FOR_EXPIRATION_IN_MS = 100L;
+    private static final Duration DEFAULT_SEAT_HOLD_CHECK_DURATION = Duration.ofMillis(1);
+    private Venue defaultVenue;
+    private SingleWriterTicketServiceImpl ticketService;
+
+    @BeforeEach
+    public void setup() {
+        defaultVenue = new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+        ticketService = new SingleWriterTicketServiceImpl(defaultVenue);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ticketService.close();
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptionsOnTheCallingThread() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> ticketService.findAndHoldSeats(2, "a"),
+                        "C'mon, you think [a] is an email address!? ;]"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> ticketService.findAndHoldSeats(0, CUSTOMER_EMAIL),
+                        "numSeatsToHold must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> ticketService.reserveSeats(0, CUSTOMER_EMAIL),
+                        "seatHoldId must be > 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> ticketService.cancelReservation(null),
+                        "reservationCode cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SingleWriterTicketServiceImpl(defaultVenue, Duration.ofSeconds(-1), Duration.ZERO, 1),
+                        "seatHoldCheckExpiration must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new SingleWriterTicketServiceImpl(defaultVenue, Duration.ofSeconds(1), Duration.ZERO, 3),
+                        "capacity must be a power of 2"
+                )
+        );
+    }
+
+    @Test
+    void holdReserveAndCancel() {
+        SeatHold seatHold = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        assertEquals(NUM_ROWS * NUM_COLS - 2, ticketService.numSeatsAvailable(), "Hold should reduce available seats");
+        String reservationCode = ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+        assertThat("Reservation code should match expected", reservationCode, matchesPattern("[A-Z0-9]{6}"));
+        TestUtil.testException(
+                IllegalStateException.class,
+                () -> ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL),
+                "SeatHold ID [" + seatHold.getId() + "] not found"
+        );
+        ticketService.cancelReservation(reservationCode);
+        assertAll("check cancellation",
+                () -> assertEquals(NUM_ROWS * NUM_COLS, ticketService.numSeatsAvailable(), "Seats should be available again"),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> ticketService.cancelReservation(reservationCode),
+                        "Reservation code " + reservationCode + " not found"
+                )
+        );
+    }
+
+    @Test
+    void batchesAreSingleCommands() {
+        List<BatchResult<SeatHold>> holds = ticketService.findAndHoldSeats(List.of(
+                new HoldRequest(2, CUSTOMER_EMAIL),
+                new HoldRequest(0, CUSTOMER_EMAIL)
+        ));
+        int id = holds.get(0).get().getId();
+        List<BatchResult<String>> reservations = ticketService.reserveSeats(List.of(
+                new ReservationRequest(id, CUSTOMER_EMAIL),
+                new ReservationRequest(id, CUSTOMER_EMAIL),
+                new ReservationRequest(0, CUSTOMER_EMAIL)
+        ));
+        assertAll("check results",
+                () -> assertEquals("numSeatsToHold must be > 0", holds.get(1).getFailure().getMessage(), "Zero seats"),
+                () -> assertThat("Reservation code", reservations.get(0).get(), matchesPattern("[A-Z0-9]{6}")),
+                () -> assertEquals("SeatHold ID [" + id + "] not found",
+                        reservations.get(1).getFailure().getMessage(),
+                        "Same hold can only be reserved once"
+                ),
+                () -> assertEquals("seatHoldId must be > 0", reservations.get(2).getFailure().getMessage(), "Zero ID"),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> ticketService.findAndHoldSeats((List<HoldRequest>) null),
+                        "requests cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> ticketService.reserveSeats((List<ReservationRequest>) null),
+                        "requests cannot be null"
+                )
+        );
+    }
+
+    @Test
+    void reserveExpiredButNotYetSweptSeatHoldReleasesSeats() {
+        try (SingleWriterTicketServiceImpl slowSweeper = new SingleWriterTicketServiceImpl(defaultVenue,
+                Duration.ofDays(1),
+                Duration.ZERO,
+                SingleWriterTicketServiceImpl.DEFAULT_RING_BUFFER_CAPACITY
+        )) {
+            SeatHold seatHold = slowSweeper.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            TestUtil.testException(
+                    IllegalStateException.class,
+                    () -> slowSweeper.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL),
+                    "SeatHold ID [" + seatHold.getId() + "] is expired"
+            );
+            assertEquals(NUM_ROWS * NUM_COLS, slowSweeper.numSeatsAvailable(), "Expired hold's seats should be available again");
+        }
+    }
+
+    @Test
+    void ownerThreadExpiresSeatHolds() throws InterruptedException {
+        try (SingleWriterTicketServiceImpl immediateExpiration = new SingleWriterTicketServiceImpl(defaultVenue,
+                DEFAULT_SEAT_HOLD_CHECK_DURATION,
+                Duration.ZERO,
+                SingleWriterTicketServiceImpl.DEFAULT_RING_BUFFER_CAPACITY
+        )) {
+            immediateExpiration.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            Thread.sleep(WAIT_FOR_EXPIRATION_IN_MS); // the owner thread wakes up for the next check even without commands
+            assertEquals(NUM_ROWS * NUM_COLS, immediateExpiration.numSeatsAvailable(), "No seats should be held anymore");
+        }
+    }
+
+    @Test
+    void closeReleasesOutstandingSeatHoldsAndRejectsLaterCommands() {
+        ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        assertFalse(ticketService.isClosed(), "Should not be closed until close() is called");
+        ticketService.close();
+        ticketService.close();
+        assertAll("check postconditions",
+                () -> assertTrue(ticketService.isClosed(), "Should be closed after close() is called"),
+                () -> assertEquals(NUM_ROWS * NUM_COLS, defaultVenue.getAvailableNumSeats(), "Held seats should be released"),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        ticketService::numSeatsAvailable,
+                        "SingleWriterTicketServiceImpl is closed"
+                )
+        );
+    }
+
+    @Test
+    void manyProducersOnATinyRingBuffer() throws Exception {
+        final int numThreads = 8;
+        final int numRoundTrips = 500;
+        Venue venue = new RectangularVenue(100, 100, new RectangularVenueSimpleSeatPickingStrategy());
+        AtomicInteger reservedSeats = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (SingleWriterTicketServiceImpl service = new SingleWriterTicketServiceImpl(venue,
+                Duration.ofSeconds(1),
+                Duration.ofMinutes(1),
+                2
+        )) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < numRoundTrips; j++) {
+                        SeatHold seatHold = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+                        service.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
+                        reservedSeats.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            assertAll("check postconditions",
+                    () -> assertEquals(numThreads * numRoundTrips, reservedSeats.get(), "Every round trip should succeed"),
+                    () -> assertEquals(venue.getTotalNumSeats() - reservedSeats.get(),
+                            service.numSeatsAvailable(),
+                            "No seat should be lost or double-booked"
+                    )
+            );
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
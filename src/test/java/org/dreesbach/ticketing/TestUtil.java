@@ -2,6 +2,8 @@ package org.dreesbach.ticketing;
 
 import org.junit.jupiter.api.function.Executable;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -12,4 +14,40 @@ public class TestUtil {
         Throwable exception = assertThrows(expectedType, test, "Exception expected");
         assertEquals(expectedMessage, exception.getMessage(), "Different exception message than expected");
     }
+
+    /**
+     * The IDs of some seats, in the same order.
+     *
+     * @param seats the seats
+     * @return the IDs
+     */
+    static List<String> seatIds(final List<Seat> seats) {
+        return seats.stream().map(Seat::getId).toList();
+    }
+
+    /**
+     * The IDs of some seats, sorted, for comparing seats that may come in a different order.
+     *
+     * @param seats the seats
+     * @return the IDs, sorted
+     */
+    static List<String> sortedSeatIds(final List<Seat> seats) {
+        return seats.stream().map(Seat::getId).sorted().toList();
+    }
+
+    /**
+     * Number of available seats in a map.
+     *
+     * @param seatMap the map
+     * @return number of seats
+     */
+    static int countAvailable(final SeatMap seatMap) {
+        int numAvailable = 0;
+        for (int seat = 0; seat < seatMap.size(); seat++) {
+            if (seatMap.isAvailable(seat)) {
+                numAvailable++;
+            }
+        }
+        return numAvailable;
+    }
 }
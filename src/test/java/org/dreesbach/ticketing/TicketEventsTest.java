@@ -0,0 +1,75 @@
+package org.dreesbach.ticketing;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketEventsTest {
+    private static final String CUSTOMER_EMAIL = "test@test.com";
+
+    @Test
+    void operationsAreRecorded() throws IOException {
+        RectangularVenue venue = new RectangularVenue(3, 3, new RectangularVenueSimpleSeatPickingStrategy());
+        List<RecordedEvent> events;
+        String reservationCode;
+        int partialHoldId;
+        Path file = Files.createTempFile("ticketing", ".jfr");
+        try (Recording recording = new Recording(); TicketServiceImpl service = new TicketServiceImpl(venue)) {
+            for (Class<? extends jdk.jfr.Event> eventClass : List.of(TicketEvents.HoldCreated.class,
+                    TicketEvents.Reservation.class,
+                    TicketEvents.Cancellation.class,
+                    TicketEvents.ExpirationSweep.class,
+                    TicketEvents.IdRetried.class
+            )) {
+                recording.enable(eventClass).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            reservationCode = service.reserveSeats(service.findAndHoldSeats(2, CUSTOMER_EMAIL).getId(), CUSTOMER_EMAIL);
+            venue.cancelReservation(reservationCode);
+            partialHoldId = service.findAndHoldSeats(10, CUSTOMER_EMAIL).getId();
+            var _ = service.expireSeatHolds(System.nanoTime() + Duration.ofHours(1).toNanos());
+            TicketEvents.idRetried(TicketEvents.RESERVATION_CODE, reservationCode);
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+        finally {
+            Files.delete(file);
+        }
+        List<RecordedEvent> holds = named(events, "HoldCreated");
+        RecordedEvent reservation = named(events, "Reservation").getFirst();
+        RecordedEvent cancellation = named(events, "Cancellation").getFirst();
+        RecordedEvent idRetried = named(events, "IdRetried").getFirst();
+        assertAll("check events",
+                () -> assertEquals(2, holds.size(), "Holds"),
+                () -> assertEquals(2, holds.getFirst().getInt("seatsGranted"), "Seats granted"),
+                () -> assertEquals(partialHoldId, holds.get(1).getInt("seatHoldId"), "Partial hold ID"),
+                () -> assertEquals(10, holds.get(1).getInt("seatsRequested"), "Seats requested"),
+                () -> assertEquals(9, holds.get(1).getInt("seatsGranted"), "Seats granted"),
+                () -> assertEquals(reservationCode, reservation.getString("reservationCode"), "Reservation code"),
+                () -> assertEquals(2, reservation.getInt("seatsReserved"), "Seats reserved"),
+                () -> assertEquals(reservationCode, cancellation.getString("reservationCode"), "Cancelled code"),
+                () -> assertEquals(2, cancellation.getInt("seatsReleased"), "Seats released"),
+                () -> assertTrue(named(events, "ExpirationSweep").stream()
+                        .anyMatch(sweep -> sweep.getInt("holdsScanned") == 1 && sweep.getInt("holdsExpired") == 1),
+                        "Sweep that expired the partial hold"),
+                () -> assertEquals(TicketEvents.RESERVATION_CODE, idRetried.getString("kind"), "Kind of ID"),
+                () -> assertEquals(reservationCode, idRetried.getString("id"), "ID")
+        );
+    }
+
+    private static List<RecordedEvent> named(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals("org.dreesbach.ticketing." + name)).toList();
+    }
+}
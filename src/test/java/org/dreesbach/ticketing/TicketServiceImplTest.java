@@ -1,6 +1,5 @@
 package org.dreesbach.ticketing;
 
-import org.dreesbach.ticketing.id.IdGenerator;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -13,7 +12,9 @@ import org.junit.jupiter.params.provider.CsvSource;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -23,6 +24,8 @@ import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TicketServiceImplTest {
@@ -182,9 +185,15 @@ class TicketServiceImplTest {
                 "Held seats should be tracked as held prior to reservation"
         );
         ticketService.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL);
-        assertEquals(0,
-                ((TicketServiceImpl) ticketService).numSeatsHeld(),
-                "Reserved seats should no longer be tracked as held once reserved"
+        assertAll("check counts",
+                () -> assertEquals(0,
+                        ((TicketServiceImpl) ticketService).numSeatsHeld(),
+                        "Reserved seats should no longer be tracked as held once reserved"
+                ),
+                () -> assertEquals(new SeatCounts(NUM_ROWS * NUM_COLS - 2, 0, 2),
+                        ((TicketServiceImpl) ticketService).seatCounts(),
+                        "Venue should count the seats as reserved"
+                )
         );
         // Reserving the same (now consumed) SeatHold ID again should fail cleanly instead of finding a stale entry.
         TestUtil.testException(
@@ -201,13 +210,11 @@ class TicketServiceImplTest {
                 () -> ticketService.reserveSeats(0, "test"),
                 "seatHoldId must be > 0"
         );
-        int id = IdGenerator.generateUniqueIntId();
         TestUtil.testException(
                 IllegalStateException.class,
-                () -> ticketService.reserveSeats(id, "test"),
-                "SeatHold ID [" + id + "] not found"
+                () -> ticketService.reserveSeats(1, "test"),
+                "SeatHold ID [1] not found"
         );
-        IdGenerator.retireId(id);
     }
 
     @Test
@@ -218,6 +225,40 @@ class TicketServiceImplTest {
         assertTrue(impl.isClosed(), "Should be closed after close() is called");
     }
 
+    @Test
+    void closeReleasesOutstandingSeatHolds() {
+        ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        ticketService.close();
+        assertAll("check postconditions",
+                () -> assertEquals(NUM_ROWS * NUM_COLS, ticketService.numSeatsAvailable(), "Held seats should be released"),
+                () -> assertEquals(0, ((TicketServiceImpl) ticketService).numSeatsHeld(), "No seats should be held anymore")
+        );
+    }
+
+    @Test
+    void sweepOnlyExpiresSeatHoldsThatAreDue() {
+        TicketServiceImpl impl = (TicketServiceImpl) ticketService;
+        ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        assertEquals(0, impl.expireSeatHolds(System.nanoTime()), "Nothing should be due yet");
+        long afterExpiration = System.nanoTime()
+                + TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME.plus(TicketServiceImpl.CHECK_SEAT_HOLD_EXPIRATION_DURATION)
+                .toNanos();
+        assertEquals(1, impl.expireSeatHolds(afterExpiration), "The SeatHold should be due");
+        assertEquals(0, impl.numSeatsHeld(), "No seats should be held anymore");
+    }
+
+    @Test
+    void seatsOfExpiredSeatHoldsCanBeHeldAgain() {
+        TicketServiceImpl impl = (TicketServiceImpl) ticketService;
+        ticketService.findAndHoldSeats(NUM_ROWS * NUM_COLS, CUSTOMER_EMAIL);
+        assertEquals(0, ticketService.findAndHoldSeats(1, CUSTOMER_EMAIL).getNumSeatsHeld(), "Venue should be sold out");
+        impl.expireSeatHolds(System.nanoTime() + TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME.multipliedBy(2).toNanos());
+        assertEquals(NUM_ROWS * NUM_COLS,
+                ticketService.findAndHoldSeats(NUM_ROWS * NUM_COLS, CUSTOMER_EMAIL).getNumSeatsHeld(),
+                "All seats should be available to hold again"
+        );
+    }
+
     @Test
     void ensureSeatHoldsExpire() throws InterruptedException {
         try (TicketService ticketServiceWithImmediateExpiration =
@@ -311,4 +352,416 @@ class TicketServiceImplTest {
             );
         }
     }
+    @Test
+    void perHoldExpirationTimesAreHonoured() throws InterruptedException {
+        try (TicketServiceImpl service =
+                new TicketServiceImpl(defaultVenue, DEFAULT_SEAT_HOLD_CHECK_DURATION, Duration.ofDays(1))) {
+            SeatHold shortHold = service.findAndHoldSeats(2, CUSTOMER_EMAIL, Duration.ZERO);
+            SeatHold defaultHold = service.findAndHoldSeats(3, CUSTOMER_EMAIL);
+            Thread.sleep(WAIT_FOR_EXPIRATION_IN_MS); // Ensure that the #expireSeatHolds method has had time to run
+            assertAll("check postconditions",
+                    () -> assertTrue(shortHold.expired(), "Hold with its own zero expiration time should have expired"),
+                    () -> assertFalse(defaultHold.expired(), "Hold with the default expiration time should not have expired"),
+                    () -> assertEquals(3, service.numSeatsHeld(), "Only the seats of the default hold should still be held")
+            );
+        }
+    }
+
+    @Test
+    void reserveExpiredButNotYetSweptSeatHoldReleasesSeats() {
+        try (TicketServiceImpl slowSweeper = new TicketServiceImpl(defaultVenue, Duration.ofDays(1), Duration.ZERO)) {
+            SeatHold seatHold = slowSweeper.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            TestUtil.testException(
+                    IllegalStateException.class,
+                    () -> slowSweeper.reserveSeats(seatHold.getId(), CUSTOMER_EMAIL),
+                    "SeatHold ID [" + seatHold.getId() + "] is expired"
+            );
+            assertAll("check postconditions",
+                    () -> assertEquals(0, slowSweeper.numSeatsHeld(), "Expired hold should no longer be tracked"),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats(),
+                            slowSweeper.numSeatsAvailable(),
+                            "Expired hold's seats should be available again"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void batchOfHoldsIsHeldInOrder() {
+        List<BatchResult<SeatHold>> results = ticketService.findAndHoldSeats(List.of(
+                new HoldRequest(2, CUSTOMER_EMAIL),
+                new HoldRequest(0, CUSTOMER_EMAIL),
+                new HoldRequest(3, "a"),
+                new HoldRequest(3, CUSTOMER_EMAIL)
+        ));
+        assertAll("check results",
+                () -> assertEquals(4, results.size(), "Should have one result per request"),
+                () -> assertEquals(List.of("Row 1 Seat 1", "Row 1 Seat 2"),
+                        TestUtil.sortedSeatIds(results.get(0).get().getSeatsHeld()),
+                        "First hold"
+                ),
+                () -> assertEquals("numSeatsToHold must be > 0", results.get(1).getFailure().getMessage(), "Zero seats"),
+                () -> assertEquals(IllegalArgumentException.class, results.get(2).getFailure().getClass(), "Bad email"),
+                () -> assertEquals(List.of("Row 1 Seat 3", "Row 2 Seat 1", "Row 2 Seat 2"),
+                        TestUtil.sortedSeatIds(results.get(3).get().getSeatsHeld()),
+                        "Failed requests shouldn't take any seats"
+                ),
+                () -> assertEquals(5, ((TicketServiceImpl) ticketService).numSeatsHeld(), "Holds should be tracked"),
+                () -> assertEquals(defaultVenue.getTotalNumSeats() - 5,
+                        ticketService.numSeatsAvailable(),
+                        "Holds should reduce number of available seats"
+                )
+        );
+    }
+
+    @Test
+    void batchOfReservationsIsReservedInOrder() {
+        try (TicketServiceImpl slowSweeper = new TicketServiceImpl(defaultVenue, Duration.ofDays(1), Duration.ZERO)) {
+            SeatHold expired = slowSweeper.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold first = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold second = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            int unknownId = expired.getId(); // held through the other service
+            List<BatchResult<String>> results = ticketService.reserveSeats(List.of(
+                    new ReservationRequest(first.getId(), CUSTOMER_EMAIL),
+                    new ReservationRequest(unknownId, CUSTOMER_EMAIL),
+                    new ReservationRequest(0, CUSTOMER_EMAIL),
+                    new ReservationRequest(second.getId(), CUSTOMER_EMAIL)
+            ));
+            List<BatchResult<String>> expiredResults =
+                    slowSweeper.reserveSeats(List.of(new ReservationRequest(expired.getId(), CUSTOMER_EMAIL)));
+            assertAll("check results",
+                    () -> assertThat("First code", results.get(0).get(), matchesPattern("[A-Z0-9]{6}")),
+                    () -> assertEquals("SeatHold ID [" + unknownId + "] not found",
+                            results.get(1).getFailure().getMessage(),
+                            "Unknown hold"
+                    ),
+                    () -> assertEquals("seatHoldId must be > 0", results.get(2).getFailure().getMessage(), "Zero ID"),
+                    () -> assertThat("Second code", results.get(3).get(), matchesPattern("[A-Z0-9]{6}")),
+                    () -> assertEquals("SeatHold ID [" + expired.getId() + "] is expired",
+                            expiredResults.get(0).getFailure().getMessage(),
+                            "Expired hold"
+                    ),
+                    () -> assertEquals(0, ((TicketServiceImpl) ticketService).numSeatsHeld(), "No holds should be left"),
+                    () -> assertTrue(first.getSeatsHeld().stream().allMatch(Seat::isReserved), "First hold's seats reserved"),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats() - 4,
+                            ticketService.numSeatsAvailable(),
+                            "Expired hold's seats should be available again"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void failedReservationsDontSpoilTheRestOfTheBatch() {
+        FailingVenue venue = new FailingVenue(defaultVenue);
+        try (TicketServiceImpl service = new TicketServiceImpl(venue)) {
+            SeatHold first = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold failing = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold failingLate = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold last = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            List<Seat> failingSeats = failing.getSeatsHeld();
+            venue.failBefore = failing.getId();
+            venue.failAfter = failingLate.getId();
+            List<BatchResult<String>> results = service.reserveSeats(List.of(
+                    new ReservationRequest(first.getId(), CUSTOMER_EMAIL),
+                    new ReservationRequest(failing.getId(), CUSTOMER_EMAIL),
+                    new ReservationRequest(failingLate.getId(), CUSTOMER_EMAIL),
+                    new ReservationRequest(last.getId(), CUSTOMER_EMAIL)
+            ));
+            assertAll("check results",
+                    () -> assertThat("First code", results.get(0).get(), matchesPattern("[A-Z0-9]{6}")),
+                    () -> assertEquals("Journal failed", results.get(1).getFailure().getMessage(), "Failed hold"),
+                    () -> assertEquals("Journal failed", results.get(2).getFailure().getMessage(), "Failed after reserving"),
+                    () -> assertThat("Last code", results.get(3).get(), matchesPattern("[A-Z0-9]{6}")),
+                    () -> assertTrue(failingSeats.stream().allMatch(Seat::isAvailable), "Failed hold's seats released"),
+                    () -> assertTrue(failingLate.getSeatsHeld().stream().allMatch(Seat::isReserved), "Reserved seats kept"),
+                    () -> assertEquals(0, service.numSeatsHeld(), "No holds should be left"),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats() - 6, service.numSeatsAvailable(), "Seats available")
+            );
+        }
+    }
+
+    @Test
+    void failedReservationsReleaseTheHold() {
+        FailingVenue venue = new FailingVenue(defaultVenue);
+        try (TicketServiceImpl service = new TicketServiceImpl(venue)) {
+            SeatHold failing = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            SeatHold failingLate = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            List<Seat> failingSeats = failing.getSeatsHeld();
+            venue.failBefore = failing.getId();
+            venue.failAfter = failingLate.getId();
+            assertAll("check failures",
+                    () -> TestUtil.testException(IllegalStateException.class,
+                            () -> service.reserveSeats(failing.getId(), CUSTOMER_EMAIL),
+                            "Journal failed"
+                    ),
+                    () -> TestUtil.testException(IllegalStateException.class,
+                            () -> service.reserveSeats(failingLate.getId(), CUSTOMER_EMAIL),
+                            "Journal failed"
+                    )
+            );
+            assertAll("check seats",
+                    () -> assertTrue(failingSeats.stream().allMatch(Seat::isAvailable), "Failed hold's seats released"),
+                    () -> assertTrue(failingLate.getSeatsHeld().stream().allMatch(Seat::isReserved), "Reserved seats kept"),
+                    () -> assertEquals(0, service.numSeatsHeld(), "No holds should be left"),
+                    () -> assertEquals(defaultVenue.getTotalNumSeats() - 2, service.numSeatsAvailable(), "Seats available")
+            );
+        }
+    }
+
+    @Test
+    void nullBatchesAndRequestsAreRejected() {
+        assertAll("check null handling",
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> ticketService.findAndHoldSeats((List<HoldRequest>) null),
+                        "requests cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> ticketService.reserveSeats((List<ReservationRequest>) null),
+                        "requests cannot be null"
+                ),
+                () -> assertEquals("request cannot be null",
+                        ticketService.findAndHoldSeats(Collections.singletonList(null)).get(0).getFailure().getMessage(),
+                        "Null hold request"
+                ),
+                () -> assertEquals("request cannot be null",
+                        ticketService.reserveSeats(Collections.singletonList(null)).get(0).getFailure().getMessage(),
+                        "Null reservation request"
+                )
+        );
+    }
+
+    @Test
+    void defaultBatchMethodsMakeOneCallPerRequest() {
+        TicketService unbatched = new TicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                return ticketService.numSeatsAvailable();
+            }
+
+            @Override
+            public SeatHold findAndHoldSeats(final int numSeatsToHold, final String customerEmail) {
+                return ticketService.findAndHoldSeats(numSeatsToHold, customerEmail);
+            }
+
+            @Override
+            public String reserveSeats(final int seatHoldId, final String customerEmail) {
+                return ticketService.reserveSeats(seatHoldId, customerEmail);
+            }
+
+            @Override
+            public void close() {
+                ticketService.close();
+            }
+        };
+        List<BatchResult<SeatHold>> holds =
+                unbatched.findAndHoldSeats(List.of(new HoldRequest(2, CUSTOMER_EMAIL), new HoldRequest(-1, CUSTOMER_EMAIL)));
+        List<BatchResult<String>> reservations = unbatched.reserveSeats(List.of(
+                new ReservationRequest(holds.get(0).get().getId(), CUSTOMER_EMAIL),
+                new ReservationRequest(holds.get(0).get().getId(), CUSTOMER_EMAIL)
+        ));
+        assertAll("check results",
+                () -> assertFalse(holds.get(1).isSuccess(), "Negative seats should fail"),
+                () -> assertTrue(reservations.get(0).isSuccess(), "First reservation should succeed"),
+                () -> assertEquals(IllegalStateException.class,
+                        reservations.get(1).getFailure().getClass(),
+                        "Second reservation of the same hold should fail"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> unbatched.findAndHoldSeats((List<HoldRequest>) null),
+                        "requests cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> unbatched.reserveSeats((List<ReservationRequest>) null),
+                        "requests cannot be null"
+                ),
+                () -> assertEquals("request cannot be null",
+                        unbatched.findAndHoldSeats(Collections.singletonList(null)).get(0).getFailure().getMessage(),
+                        "Null hold request"
+                ),
+                () -> assertEquals("request cannot be null",
+                        unbatched.reserveSeats(Collections.singletonList(null)).get(0).getFailure().getMessage(),
+                        "Null reservation request"
+                )
+        );
+    }
+
+    @Test
+    void batchResultRethrowsItsFailure() {
+        IllegalStateException failure = new IllegalStateException("nope");
+        BatchResult<String> failed = BatchResult.failure(failure);
+        BatchResult<String> succeeded = BatchResult.success("ABC123");
+        assertAll("check results",
+                () -> TestUtil.testException(IllegalStateException.class, failed::get, "nope"),
+                () -> assertEquals("BatchResult[failure=" + failure + "]", failed.toString(), "Failure string"),
+                () -> assertEquals("BatchResult[value=ABC123]", succeeded.toString(), "Success string"),
+                () -> assertNull(succeeded.getFailure(), "Success has no failure"),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> BatchResult.failure(null),
+                        "failure cannot be null"
+                )
+        );
+    }
+
+    @Test
+    void instrumentedServiceRecordsLatenciesAndCounts() {
+        TicketMetrics metrics = new TicketMetrics(1);
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+        try (TicketServiceImpl service = new TicketServiceImpl(venue, metrics)) {
+            SeatHold reserved = service.findAndHoldSeats(2, CUSTOMER_EMAIL);
+            var _ = service.reserveSeats(reserved.getId(), CUSTOMER_EMAIL);
+            List<BatchResult<SeatHold>> batch = service.findAndHoldSeats(List.of(new HoldRequest(3, CUSTOMER_EMAIL),
+                    new HoldRequest(NUM_ROWS * NUM_COLS, CUSTOMER_EMAIL)
+            ));
+            var _ = service.reserveSeats(List.of(new ReservationRequest(batch.get(0).get().getId(), CUSTOMER_EMAIL)));
+            var _ = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+            var _ = service.expireSeatHolds(
+                    System.nanoTime() + TicketServiceImpl.DEFAULT_SEAT_HOLD_EXPIRATION_TIME.multipliedBy(2).toNanos());
+            assertAll("check metrics",
+                    () -> assertEquals(4, metrics.count(TicketMetrics.Counter.HOLDS_CREATED), "Holds created"),
+                    () -> assertEquals(2, metrics.count(TicketMetrics.Counter.HOLDS_RESERVED), "Holds reserved"),
+                    () -> assertEquals(2, metrics.count(TicketMetrics.Counter.HOLDS_EXPIRED), "Holds expired"),
+                    () -> assertEquals(1, metrics.count(TicketMetrics.Counter.PARTIAL_HOLDS), "Partial holds"),
+                    () -> assertEquals(1, metrics.count(TicketMetrics.Counter.EMPTY_HOLDS), "Empty holds"),
+                    () -> assertEquals(3, metrics.latency(TicketMetrics.Latency.FIND_AND_HOLD_SEATS).count(), "Hold calls"),
+                    () -> assertEquals(2, metrics.latency(TicketMetrics.Latency.RESERVE_SEATS).count(), "Reserve calls"),
+                    // the background sweep runs as well
+                    () -> assertTrue(metrics.latency(TicketMetrics.Latency.EXPIRE_SEAT_HOLDS).count() >= 1, "Sweeps"),
+                    () -> assertEquals(4, metrics.latency(TicketMetrics.Latency.PICK_BEST_AVAILABLE_SEATS).count(), "Picks"),
+                    () -> assertEquals(5, metrics.latency(TicketMetrics.Latency.SERVICE_LOCK_WAIT).count(), "Service waits"),
+                    () -> assertEquals(3, metrics.latency(TicketMetrics.Latency.VENUE_LOCK_WAIT).count(), "Venue waits"),
+                    () -> assertTrue(metrics.latency(TicketMetrics.Latency.FIND_AND_HOLD_SEATS).maxNanos() > 0, "Hold time"),
+                    () -> assertSame(metrics, service.metrics(), "Metrics"),
+                    () -> TestUtil.testException(NullPointerException.class,
+                            () -> new TicketServiceImpl(venue, (TicketMetrics) null),
+                            "metrics cannot be null"
+                    ),
+                    () -> TestUtil.testException(IllegalArgumentException.class,
+                            () -> new TicketMetrics(3),
+                            "samplingInterval must be a power of two"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void latenciesAreSampled() {
+        final int numHolds = 1_000;
+        TicketMetrics metrics = new TicketMetrics();
+        RectangularVenue venue = new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+        try (TicketServiceImpl service = new TicketServiceImpl(venue, metrics)) {
+            for (int i = 0; i < numHolds; i++) {
+                var _ = service.findAndHoldSeats(1, CUSTOMER_EMAIL);
+            }
+        }
+        long numTimed = metrics.latency(TicketMetrics.Latency.FIND_AND_HOLD_SEATS).count();
+        assertAll("check sampling",
+                () -> assertEquals(numHolds, metrics.count(TicketMetrics.Counter.HOLDS_CREATED), "Every hold should be counted"),
+                () -> assertThat("Holds timed", numTimed, greaterThanOrEqualTo(1L)),
+                () -> assertThat("Holds timed", numTimed, lessThan((long) numHolds / 4))
+        );
+    }
+
+    @Test
+    void uninstrumentedServiceRecordsNothing() {
+        var _ = ticketService.findAndHoldSeats(2, CUSTOMER_EMAIL);
+        TicketMetrics metrics = ((TicketServiceImpl) ticketService).metrics();
+        assertAll("check metrics",
+                () -> assertEquals(0, metrics.count(TicketMetrics.Counter.HOLDS_CREATED), "Holds created"),
+                () -> assertEquals(0, metrics.latency(TicketMetrics.Latency.FIND_AND_HOLD_SEATS).count(), "Hold calls"),
+                () -> assertEquals(0, metrics.latency(TicketMetrics.Latency.VENUE_LOCK_WAIT).count(), "Venue waits")
+        );
+    }
+
+    /**
+     * A venue whose reservations of one hold fail before the seats are reserved, and of another after.
+     */
+    private static final class FailingVenue implements Venue {
+        private final Venue venue;
+        private int failBefore;
+        private int failAfter;
+
+        FailingVenue(final Venue venue) {
+            this.venue = venue;
+        }
+
+        @Override
+        public int getTotalNumSeats() {
+            return venue.getTotalNumSeats();
+        }
+
+        @Override
+        public int getAvailableNumSeats() {
+            return venue.getAvailableNumSeats();
+        }
+
+        @Override
+        public SeatCounts getSeatCounts() {
+            return venue.getSeatCounts();
+        }
+
+        @Override
+        public SeatMap getSeatMap() {
+            return venue.getSeatMap();
+        }
+
+        @Override
+        public SeatHold holdSeats(final int numSeatsToHold, final Duration seatHoldExpirationTime) {
+            return venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+        }
+
+        @Override
+        public List<SeatHold> holdSeats(final int[] numSeatsToHold, final Duration seatHoldExpirationTime) {
+            return venue.holdSeats(numSeatsToHold, seatHoldExpirationTime);
+        }
+
+        @Override
+        public void removeHold(final SeatHold seatHold) {
+            venue.removeHold(seatHold);
+        }
+
+        @Override
+        public void setSeatPickingStrategy(final SeatPickingStrategy<? extends Venue> seatPickingStrategy) {
+            venue.setSeatPickingStrategy(seatPickingStrategy);
+        }
+
+        @Override
+        public String reserve(final SeatHold seatHold) {
+            if (seatHold.getId() == failBefore) {
+                throw new IllegalStateException("Journal failed");
+            }
+            String code = venue.reserve(seatHold);
+            if (seatHold.getId() == failAfter) {
+                throw new IllegalStateException("Journal failed");
+            }
+            return code;
+        }
+
+        @Override
+        public String reserve(final SeatHold seatHold, final int reservationCode) {
+            if (seatHold.getId() == failBefore) {
+                throw new IllegalStateException("Journal failed");
+            }
+            String code = venue.reserve(seatHold, reservationCode);
+            if (seatHold.getId() == failAfter) {
+                throw new IllegalStateException("Journal failed");
+            }
+            return code;
+        }
+
+        @Override
+        public void cancelReservation(final String reservationCode) {
+            venue.cancelReservation(reservationCode);
+        }
+
+        @Override
+        public List<Seat> getSeats() {
+            return venue.getSeats();
+        }
+
+        @Override
+        public void printSeats() {
+            venue.printSeats();
+        }
+    }
 }
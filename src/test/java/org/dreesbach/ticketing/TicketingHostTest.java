@@ -0,0 +1,162 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketingHostTest {
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+    private static final int NUM_ROWS = 3;
+    private static final int NUM_COLS = 3;
+    private static final int NUM_SHARDS = 2;
+    private TicketingHost host;
+
+    @BeforeEach
+    public void setup() {
+        host = new TicketingHost(NUM_SHARDS, Duration.ofMillis(10), Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        host.close();
+    }
+
+    private static Venue newVenue() {
+        return new RectangularVenue(NUM_ROWS, NUM_COLS, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        var _ = host.addPerformance("matinee", newVenue());
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new TicketingHost(0, Duration.ofSeconds(1), Duration.ofSeconds(1)),
+                        "numShards must be > 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new TicketingHost(1, Duration.ofSeconds(1), null),
+                        "seatHoldExpirationTime cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> host.addPerformance(null, newVenue()),
+                        "performanceId cannot be null"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> host.addPerformance("evening", null),
+                        "venue cannot be null"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> host.addPerformance("matinee", newVenue()),
+                        "Performance [matinee] already exists"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> host.performance("evening"),
+                        "Performance [evening] not found"
+                )
+        );
+    }
+
+    @Test
+    void performancesSellTheirSeatsSeparately() throws Exception {
+        AsyncTicketService matinee = host.addPerformance("matinee", newVenue());
+        AsyncTicketService evening = host.addPerformance("evening", newVenue());
+        SeatHold seatHold = matinee.findAndHoldSeats(2, CUSTOMER_EMAIL).get();
+        List<BatchResult<SeatHold>> holds = evening.findAndHoldSeats(List.of(
+                new HoldRequest(NUM_ROWS * NUM_COLS, CUSTOMER_EMAIL)
+        )).get();
+        assertThat("Reservation code should match expected",
+                host.performance("matinee").reserveSeats(seatHold.getId(), CUSTOMER_EMAIL).get(),
+                matchesPattern("[A-Z0-9]{6}")
+        );
+        List<BatchResult<String>> reservations = evening.reserveSeats(List.of(
+                new ReservationRequest(holds.getFirst().get().getId(), CUSTOMER_EMAIL)
+        )).get();
+        assertAll("check performances",
+                () -> assertEquals(2, host.numPerformances(), "Number of performances"),
+                () -> assertEquals(NUM_ROWS * NUM_COLS - 2, matinee.numSeatsAvailable().get(), "Matinee seats available"),
+                () -> assertEquals(0, evening.numSeatsAvailable().get(), "Evening seats available"),
+                () -> assertTrue(reservations.getFirst().isSuccess(), "Evening reservation")
+        );
+    }
+
+    @Test
+    void holdsOfAllPerformancesExpire() throws Exception {
+        List<AsyncTicketService> performances = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            AsyncTicketService performance = host.addPerformance("performance " + i, newVenue());
+            var _ = performance.findAndHoldSeats(NUM_ROWS * NUM_COLS, CUSTOMER_EMAIL).get();
+            performances.add(performance);
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        for (AsyncTicketService performance : performances) {
+            while (performance.numSeatsAvailable().get() < NUM_ROWS * NUM_COLS && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(NUM_ROWS * NUM_COLS, performance.numSeatsAvailable().get(), "Holds should have expired");
+        }
+    }
+
+    @Test
+    void performancesDontAddThreads() throws Exception {
+        List<CompletableFuture<Integer>> requests = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            requests.add(host.addPerformance("performance " + i, newVenue()).numSeatsAvailable());
+        }
+        for (CompletableFuture<Integer> request : requests) {
+            var _ = request.get();
+        }
+        long numShardThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("ticketing-shard-"))
+                .count();
+        assertAll("check threads",
+                () -> assertEquals(1_000, host.numPerformances(), "Number of performances"),
+                () -> assertTrue(numShardThreads <= NUM_SHARDS, "At most one thread per shard, was " + numShardThreads)
+        );
+    }
+
+    @Test
+    void closingAPerformanceReleasesItsHolds() throws Exception {
+        Venue venue = newVenue();
+        AsyncTicketService performance = host.addPerformance("matinee", venue);
+        var _ = performance.findAndHoldSeats(2, CUSTOMER_EMAIL).get();
+        performance.close();
+        assertAll("check closed performance",
+                () -> assertEquals(NUM_ROWS * NUM_COLS, venue.getAvailableNumSeats(), "Held seats should be released"),
+                () -> assertEquals(0, host.numPerformances(), "Number of performances"),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> host.performance("matinee"),
+                        "Performance [matinee] not found"
+                )
+        );
+    }
+
+    @Test
+    void closingTheHostReleasesHoldsAndRejectsRequests() throws Exception {
+        Venue venue = newVenue();
+        AsyncTicketService performance = host.addPerformance("matinee", venue);
+        var _ = performance.findAndHoldSeats(2, CUSTOMER_EMAIL).get();
+        host.close();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> performance.findAndHoldSeats(1, CUSTOMER_EMAIL).get(),
+                "Requests should be rejected"
+        );
+        assertAll("check closed host",
+                () -> assertTrue(e.getCause() instanceof RejectedExecutionException, "Should be rejected"),
+                () -> assertEquals(NUM_ROWS * NUM_COLS, venue.getAvailableNumSeats(), "Held seats should be released")
+        );
+    }
+}
@@ -0,0 +1,108 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VenueLayoutTest {
+    private static final int NUM_ROWS = 4;
+    private static final int SEATS_PER_ROW = 5;
+
+    @Test
+    void invalidArgumentsThrowExceptions() {
+        assertAll("argument checking",
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> VenueLayout.of(-1, 1, 1),
+                        "First row must be >= 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> VenueLayout.prepare(-1, 1, 1),
+                        "First row must be >= 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> VenueLayout.of(0, 1),
+                        "Number of rows must be > 0"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> VenueLayout.of(1, 0),
+                        "Number of seats per row must be > 0"
+                ),
+                () -> TestUtil.testException(NullPointerException.class,
+                        () -> new RectangularVenue(null, new RectangularVenueSimpleSeatPickingStrategy()),
+                        "layout cannot be null"
+                )
+        );
+    }
+
+    @Test
+    void layoutsAreSharedByShape() {
+        VenueLayout layout = VenueLayout.of(NUM_ROWS, SEATS_PER_ROW);
+        assertAll("check layouts",
+                () -> assertSame(layout, VenueLayout.of(0, NUM_ROWS, SEATS_PER_ROW), "Same shape, same layout"),
+                () -> assertNotSame(layout, VenueLayout.of(1, NUM_ROWS, SEATS_PER_ROW), "Band further back"),
+                () -> assertNotSame(layout, VenueLayout.of(NUM_ROWS, SEATS_PER_ROW + 1), "Wider rows"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW, layout.getNumSeats(), "Number of seats"),
+                () -> assertEquals("Row 2 Seat 3", layout.getSeatId(SEATS_PER_ROW + 2), "Seat ID"),
+                () -> assertEquals(1.0, layout.getGoodness(SEATS_PER_ROW + 2), "Goodness of the center seat of row 2"),
+                () -> assertEquals("Row 4 Seat 1", VenueLayout.of(2, NUM_ROWS, SEATS_PER_ROW).getSeatId(SEATS_PER_ROW), "Band")
+        );
+    }
+
+    @Test
+    void layoutsCanBeWarmedUpAheadOfTheOnSale() {
+        final int numRows = 300;
+        final int seatsPerRow = 400;
+        CompletableFuture<VenueLayout> warmUp = VenueLayout.prepare(numRows, seatsPerRow);
+        VenueLayout layout = warmUp.join();
+        assertSame(layout, VenueLayout.prepare(0, numRows, seatsPerRow).join(), "Preparing again should yield the same layout");
+        RectangularVenue venue = new RectangularVenue(numRows, seatsPerRow, new RectangularVenueSimpleSeatPickingStrategy());
+        assertAll("check layout",
+                () -> assertTrue(warmUp.isDone(), "Layout should be ready"),
+                () -> assertSame(layout, venue.layout(), "The venue should use the prepared layout"),
+                () -> assertEquals("Row 1 Seat 200", venue.holdSeats(1, Duration.ofMinutes(1)).getSeatsHeld().getFirst().getId(),
+                        "Best seat"
+                )
+        );
+    }
+
+    @Test
+    void layoutsThatFailToBuildAreNotCached() {
+        final int numRows = 1 << 16;
+        final int seatsPerRow = 1 << 15; // too many seats to count in an int
+        CompletableFuture<VenueLayout> failed = VenueLayout.prepare(numRows, seatsPerRow);
+        assertThrows(CompletionException.class, failed::join, "Layout should fail to build");
+        CompletableFuture<VenueLayout> retried = VenueLayout.prepare(numRows, seatsPerRow);
+        assertAll("check retry",
+                () -> assertNotSame(failed, retried, "Preparing again should build the layout again"),
+                () -> assertThrows(CompletionException.class, retried::join, "And fail again")
+        );
+    }
+
+    @Test
+    void performancesOfALayoutSellTheirSeatsSeparately() {
+        VenueLayout layout = VenueLayout.of(NUM_ROWS, SEATS_PER_ROW);
+        RectangularVenue matinee = new RectangularVenue(layout, new RectangularVenueSimpleSeatPickingStrategy());
+        RectangularVenue evening = new RectangularVenue(layout, new RectangularVenueContiguousSeatPickingStrategy());
+        SeatHold matineeHold = matinee.holdSeats(3, Duration.ofMinutes(1));
+        var _ = matinee.reserve(matineeHold);
+        SeatHold eveningHold = evening.holdSeats(3, Duration.ofMinutes(1));
+        assertAll("check performances",
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 3, matinee.getAvailableNumSeats(), "Matinee seats available"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 3, evening.getAvailableNumSeats(), "Evening seats available"),
+                () -> assertEquals(matineeHold.getSeatsHeld().stream().map(Seat::getId).sorted().toList(),
+                        eveningHold.getSeatsHeld().stream().map(Seat::getId).sorted().toList(),
+                        "Both get the center of the front row"
+                ),
+                () -> assertEquals(new SeatCounts(NUM_ROWS * SEATS_PER_ROW - 3, 3, 0), evening.getSeatCounts(), "Evening")
+        );
+    }
+}
@@ -0,0 +1,67 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VenueSeatTest {
+    private RectangularVenue venue;
+    private Seat seat;
+
+    @BeforeEach
+    void setup() {
+        venue = new RectangularVenue(3, 4, new RectangularVenueSimpleSeatPickingStrategy());
+        // row 2 (0-indexed: 1), seat 3 (0-indexed: 2)
+        seat = venue.getSeat(6);
+    }
+
+    @Test
+    void idAndGoodnessAreComputedFromRowAndColumn() {
+        assertAll("computed seat metadata",
+                () -> assertEquals("Row 2 Seat 3", seat.getId(), "Seat ID should be derived from row and column"),
+                () -> assertEquals("Row 2 Seat 3", seat.toString(), "toString should be the seat ID"),
+                () -> assertEquals(venue.getGoodness(1, 2), seat.seatGoodness(), "Goodness should match the venue's")
+        );
+    }
+
+    @Test
+    void stateChangesGoThroughTheVenue() {
+        seat.hold();
+        assertAll("held",
+                () -> assertTrue(seat.isHeld(), "Seat should be held"),
+                () -> assertFalse(seat.isReserved(), "Seat should not be reserved"),
+                () -> assertEquals(SeatStates.HELD, venue.seatStates().get(6), "Venue should see the hold")
+        );
+        seat.reserve();
+        assertTrue(venue.getSeat(6).isReserved(), "A new view of the same seat should see the reservation");
+        seat.cancelReservation();
+        assertTrue(seat.isAvailable(), "Seat should be available again");
+        seat.hold();
+        seat.cancelHold();
+        assertTrue(seat.isAvailable(), "Seat should be available after cancelling the hold");
+    }
+
+    @Test
+    void viewsOfTheSameSeatAreEqual() {
+        Seat sameSeat = venue.getSeat(6);
+        Seat otherVenuesSeat = new RectangularVenue(3, 4, new RectangularVenueSimpleSeatPickingStrategy()).getSeat(6);
+        assertAll("equality",
+                () -> assertEquals(seat, sameSeat, "Views of the same seat should be equal"),
+                () -> assertEquals(seat.hashCode(), sameSeat.hashCode(), "Equal views should have equal hash codes"),
+                () -> assertNotEquals(seat, venue.getSeat(7), "Views of different seats should differ"),
+                () -> assertNotEquals(seat, otherVenuesSeat, "Views of seats in different venues should differ"),
+                () -> assertNotEquals(seat, new SeatImpl(seat.getId(), seat.seatGoodness()), "Only views are compared")
+        );
+    }
+
+    @Test
+    void outOfRangeSeatThrowsException() {
+        assertThrows(IndexOutOfBoundsException.class, () -> venue.getSeat(12), "Too high a seat index");
+    }
+}
@@ -0,0 +1,235 @@
+package org.dreesbach.ticketing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VenueSnapshotTest {
+    private static final int NUM_ROWS = 10;
+    private static final int SEATS_PER_ROW = 12;
+    private static final String CUSTOMER_EMAIL = "me@you.com";
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void snapshotRestoresSeatsHoldsAndReservations() throws IOException {
+        RectangularVenue venue = newVenue();
+        SeatHold reserved = venue.holdSeats(5, Duration.ofMinutes(1));
+        String reservationCode = venue.reserve(reserved);
+        SeatHold cancelled = venue.holdSeats(3, Duration.ofMinutes(1));
+        venue.cancelReservation(venue.reserve(cancelled));
+        SeatHold released = venue.holdSeats(2, Duration.ofMinutes(1));
+        venue.removeHold(released);
+        SeatHold live = venue.holdSeats(4, Duration.ofMinutes(1));
+        SeatHold expired = venue.holdSeats(1, Duration.ZERO);
+        Path path = tempDir.resolve("snapshot");
+        venue.writeSnapshot(path);
+        venue.removeHold(expired);
+        assertFalse(Files.exists(tempDir.resolve("snapshot.tmp")), "Temporary file should be gone");
+
+        RectangularVenue restored = newVenue();
+        List<SeatHold> liveHolds = restored.recover(VenueSnapshot.read(path), null);
+        assertAll("check restored venue",
+                () -> assertArrayEquals(states(venue), states(restored), "Seat states"),
+                () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 5 - 4, restored.getAvailableNumSeats(), "Seats available"),
+                () -> assertEquals(1, liveHolds.size(), "Only the live hold should be back"),
+                () -> assertEquals(live.getId(), liveHolds.get(0).getId(), "Hold ID"),
+                () -> assertEquals(TestUtil.sortedSeatIds(live.getSeatsHeld()),
+                        TestUtil.sortedSeatIds(liveHolds.get(0).getSeatsHeld()),
+                        "Held seats"
+                ),
+                () -> assertTrue(liveHolds.get(0).getExpirationNanos() > System.nanoTime(), "Hold should still be live")
+        );
+        var _ = restored.reserve(liveHolds.get(0));
+        restored.cancelReservation(reservationCode);
+        assertEquals(NUM_ROWS * SEATS_PER_ROW - 4, restored.getAvailableNumSeats(), "Seats available");
+    }
+
+    @Test
+    void snapshotAndJournalTailMatchTheWholeJournal() throws Exception {
+        Path journalPath = tempDir.resolve("journal");
+        Path snapshotPath = tempDir.resolve("snapshot");
+        RectangularVenue venue = newVenue();
+        try (Journal journal = new Journal(journalPath, Journal.Durability.NONE)) {
+            assertTrue(venue.recover(journal).isEmpty(), "Nothing to recover");
+            String beforeSnapshot = venue.reserve(venue.holdSeats(6, Duration.ofMinutes(1)));
+            SeatHold heldAcrossSnapshot = venue.holdSeats(3, Duration.ofMinutes(1));
+            SeatHold releasedAcrossSnapshot = venue.holdSeats(2, Duration.ofMinutes(1));
+            var _ = venue.holdSeats(4, Duration.ofMinutes(1));
+            venue.writeSnapshot(snapshotPath);
+            var _ = venue.reserve(heldAcrossSnapshot);
+            venue.removeHold(releasedAcrossSnapshot);
+            venue.cancelReservation(beforeSnapshot);
+            venue.cancelReservation(venue.reserve(venue.holdSeats(1, Duration.ofMinutes(1))));
+            var _ = venue.reserve(venue.holdSeats(7, Duration.ofMinutes(1)));
+            var _ = venue.holdSeats(2, Duration.ofMinutes(1));
+            journal.force();
+        }
+
+        RectangularVenue fromJournal = newVenue();
+        RectangularVenue fromSnapshot = newVenue();
+        try (Journal whole = new Journal(journalPath, Journal.Durability.NONE)) {
+            List<SeatHold> holdsFromJournal = fromJournal.recover(whole);
+            Path copy = Files.copy(journalPath, tempDir.resolve("copy"));
+            try (Journal tail = new Journal(copy, Journal.Durability.NONE)) {
+                List<SeatHold> holdsFromSnapshot = fromSnapshot.recover(VenueSnapshot.read(snapshotPath), tail);
+                assertAll("check recovered venues",
+                        () -> assertArrayEquals(states(venue), states(fromSnapshot), "Seat states from the snapshot"),
+                        () -> assertArrayEquals(states(fromJournal), states(fromSnapshot), "Seat states"),
+                        () -> assertEquals(venue.getAvailableNumSeats(), fromSnapshot.getAvailableNumSeats(), "Available"),
+                        () -> assertEquals(fromJournal.getAvailableNumSeats(), fromSnapshot.getAvailableNumSeats(), "Available"),
+                        () -> assertEquals(holdIds(holdsFromJournal), holdIds(holdsFromSnapshot), "Live holds")
+                );
+            }
+        }
+    }
+
+    @Test
+    void serviceRecoversFromASnapshotAndItsJournal() throws IOException {
+        Path journalPath = tempDir.resolve("journal");
+        Path snapshotPath = tempDir.resolve("snapshot");
+        RectangularVenue venue = newVenue();
+        SeatHold liveHold;
+        try (Journal journal = new Journal(journalPath, Journal.Durability.PER_OP);
+                TicketServiceImpl service = new TicketServiceImpl(venue, journal)) {
+            var _ = service.reserveSeats(service.findAndHoldSeats(2, CUSTOMER_EMAIL).getId(), CUSTOMER_EMAIL);
+            liveHold = service.findAndHoldSeats(3, CUSTOMER_EMAIL);
+            venue.writeSnapshot(snapshotPath);
+            var _ = service.reserveSeats(liveHold.getId(), CUSTOMER_EMAIL);
+        }
+        try (Journal journal = new Journal(journalPath, Journal.Durability.PER_OP);
+                TicketServiceImpl service = new TicketServiceImpl(newVenue(), VenueSnapshot.read(snapshotPath), journal)) {
+            assertAll("check recovered service",
+                    () -> assertEquals(NUM_ROWS * SEATS_PER_ROW - 2 - 3, service.numSeatsAvailable(), "Seats available"),
+                    () -> assertEquals(0, service.numSeatsHeld(), "The hold was reserved after the snapshot"),
+                    () -> assertEquals(new SeatCounts(NUM_ROWS * SEATS_PER_ROW - 2 - 3, 0, 2 + 3), service.seatCounts(), "Counts")
+            );
+        }
+    }
+
+    @Test
+    void brokenSnapshotsAreRejected() throws IOException {
+        Path path = tempDir.resolve("snapshot");
+        newVenue().writeSnapshot(path);
+        byte[] contents = Files.readAllBytes(path);
+        contents[contents.length / 2] ^= 1;
+        Path corrupt = Files.write(tempDir.resolve("corrupt"), contents);
+        Path tooShort = Files.write(tempDir.resolve("short"), new byte[] { 1 });
+        Path notASnapshot = Files.write(tempDir.resolve("other"),
+                "Hello, world! This is not a snapshot.".getBytes(StandardCharsets.US_ASCII)
+        );
+        Path newerVersion = Files.write(tempDir.resolve("newer"),
+                ByteBuffer.allocate(contents.length).putInt(0x544B5453).putInt(2).array()
+        );
+        assertAll("check rejected files",
+                () -> TestUtil.testException(IOException.class, () -> VenueSnapshot.read(corrupt), "Snapshot is corrupt"),
+                () -> TestUtil.testException(IOException.class, () -> VenueSnapshot.read(tooShort), "Not a snapshot"),
+                () -> TestUtil.testException(IOException.class, () -> VenueSnapshot.read(notASnapshot), "Not a snapshot"),
+                () -> TestUtil.testException(IOException.class,
+                        () -> VenueSnapshot.read(newerVersion),
+                        "Unsupported snapshot version 2"
+                )
+        );
+    }
+
+    @Test
+    void snapshotMustFitTheVenueAndItsJournal() throws IOException {
+        VenueSnapshot snapshot = newVenue().snapshot();
+        Path journalPath = tempDir.resolve("journal");
+        new Journal(journalPath, Journal.Durability.NONE).close();
+        RectangularVenue otherVenue = new RectangularVenue(SEATS_PER_ROW, NUM_ROWS, new RectangularVenueSimpleSeatPickingStrategy());
+        try (Journal journal = new Journal(journalPath, Journal.Durability.NONE)) {
+            assertAll("check mismatches",
+                    () -> TestUtil.testException(IllegalArgumentException.class,
+                            () -> otherVenue.recover(snapshot, null),
+                            "Snapshot is of a venue with 10 rows of 12 seats"
+                    ),
+                    () -> TestUtil.testException(IllegalArgumentException.class,
+                            () -> newVenue().recover(snapshot, journal),
+                            "Position 0 is outside of the journal, which ends at 8"
+                    ),
+                    () -> TestUtil.testException(IllegalArgumentException.class,
+                            () -> new TicketServiceImpl(newVenue(), snapshot, journal),
+                            "Position 0 is outside of the journal, which ends at 8"
+                    )
+            );
+        }
+    }
+
+    @Test
+    void builderChecksTheAnnouncedEntries() {
+        SeatStates seatStates = new SeatStates(1);
+        List<Seat> seats = List.of(newVenue().getSeat(0));
+        assertAll("check builder",
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> new VenueSnapshot.Builder(1, 1, 0, seatStates).holds(0).hold(1, 0, seats),
+                        "More holds than announced"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> new VenueSnapshot.Builder(1, 1, 0, seatStates).holds(0).reservations(0).reservation(1, seats),
+                        "More reservations than announced"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> new VenueSnapshot.Builder(1, 1, 0, seatStates).holds(1).reservations(0),
+                        "1 announced entries are missing"
+                ),
+                () -> TestUtil.testException(IllegalStateException.class,
+                        () -> new VenueSnapshot.Builder(1, 1, 0, seatStates).holds(0).reservations(1).build(),
+                        "1 announced entries are missing"
+                ),
+                () -> TestUtil.testException(IllegalArgumentException.class,
+                        () -> new VenueSnapshot.Builder(1, 1, 0, seatStates).holds(-1),
+                        "count must be >= 0"
+                )
+        );
+    }
+
+    @Test
+    void largeSnapshotsGrowTheBuffer() throws IOException {
+        final int numReservations = 5_000;
+        VenueSnapshot.Builder builder = new VenueSnapshot.Builder(NUM_ROWS, SEATS_PER_ROW, 0, new SeatStates(1)).holds(0);
+        List<Seat> seats = IntStream.range(0, NUM_ROWS * SEATS_PER_ROW).mapToObj(newVenue()::getSeat).toList();
+        builder.reservations(numReservations);
+        for (int code = 1; code <= numReservations; code++) {
+            builder.reservation(code, seats);
+        }
+        Path path = tempDir.resolve("snapshot");
+        builder.build().write(path);
+        int[] numVisited = new int[1];
+        VenueSnapshot.read(path).visit(
+                (id, expiresAtMillis, seatIndexes) -> numVisited[0]--,
+                (reservationCode, seatIndexes) -> {
+                    assertEquals(seats.size(), seatIndexes.length, "Seats of reservation " + reservationCode);
+                    numVisited[0]++;
+                }
+        );
+        assertEquals(numReservations, numVisited[0], "Reservations visited");
+    }
+
+    private static RectangularVenue newVenue() {
+        return new RectangularVenue(NUM_ROWS, SEATS_PER_ROW, new RectangularVenueSimpleSeatPickingStrategy());
+    }
+
+    private static int[] states(final RectangularVenue venue) {
+        return IntStream.range(0, venue.getTotalNumSeats()).map(venue.seatStates()::get).toArray();
+    }
+
+    private static List<Integer> holdIds(final List<SeatHold> seatHolds) {
+        return seatHolds.stream().map(SeatHold::getId).sorted().toList();
+    }
+}
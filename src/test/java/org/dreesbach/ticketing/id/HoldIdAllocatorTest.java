@@ -0,0 +1,127 @@
+package org.dreesbach.ticketing.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldIdAllocatorTest {
+    private static final int NUM_ID_GENERATION_ITERATIONS = 200_000;
+
+    @Test
+    void generatesPositiveIds() {
+        assertThat("ID should be > 0", new HoldIdAllocator().next(), greaterThan(0));
+    }
+
+    @Test
+    void multipleCallsGenerateDifferentIds() {
+        HoldIdAllocator allocator = new HoldIdAllocator();
+        assertNotEquals(allocator.next(), allocator.next(), "IDs should not be equal");
+    }
+
+    @Test
+    void idsDoNotLookSequential() {
+        HoldIdAllocator allocator = new HoldIdAllocator();
+        int[] ids = allocator.next(NUM_ID_GENERATION_ITERATIONS);
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        assertFalse(Arrays.equals(ids, sorted), "IDs should not come out in order");
+    }
+
+    @Test
+    void testUniqueIdsGenerated() {
+        HoldIdAllocator allocator = new HoldIdAllocator();
+        int[] ids = new int[NUM_ID_GENERATION_ITERATIONS * 2];
+        for (int i = 0; i < NUM_ID_GENERATION_ITERATIONS; i++) {
+            ids[i] = allocator.next();
+        }
+        System.arraycopy(allocator.next(NUM_ID_GENERATION_ITERATIONS), 0, ids, NUM_ID_GENERATION_ITERATIONS,
+                NUM_ID_GENERATION_ITERATIONS
+        );
+        assertAllUniqueAndPositive(ids);
+    }
+
+    @Test
+    void idsFromManyThreadsAreUnique() throws Exception {
+        final int numThreads = 8;
+        final int numPerThread = 50_000;
+        HoldIdAllocator allocator = new HoldIdAllocator();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            Future<?>[] futures = new Future<?>[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                futures[t] = executor.submit(() -> {
+                    int[] ids = new int[numPerThread];
+                    for (int i = 0; i < numPerThread; i++) {
+                        ids[i] = allocator.next();
+                    }
+                    return ids;
+                });
+            }
+            int[] allIds = new int[numThreads * numPerThread];
+            for (int t = 0; t < numThreads; t++) {
+                System.arraycopy((int[]) futures[t].get(), 0, allIds, t * numPerThread, numPerThread);
+            }
+            assertAllUniqueAndPositive(allIds);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void permutationIsABijectionOnASlice() {
+        // Everything in the low 2^20 values should map to 2^20 different values - a full 2^31 check would take too long
+        final int sliceSize = 1 << 20;
+        HoldIdAllocator allocator = new HoldIdAllocator(42, 4242);
+        int[] permuted = new int[sliceSize];
+        for (int i = 0; i < sliceSize; i++) {
+            permuted[i] = allocator.permute(i);
+            assertTrue(permuted[i] >= 0, "Permuted value should be a 31-bit value");
+        }
+        Arrays.sort(permuted);
+        for (int i = 1; i < sliceSize; i++) {
+            assertNotEquals(permuted[i - 1], permuted[i], "Permuted values should all be different");
+        }
+    }
+
+    @Test
+    void zeroIsNeverHandedOut() {
+        // keys that map the first counter value of this thread's stripe (of 16) to 0
+        int stripe = (int) (Thread.currentThread().threadId() & 15);
+        HoldIdAllocator single = new HoldIdAllocator(-stripe, 0);
+        HoldIdAllocator bulk = new HoldIdAllocator(-stripe, 0);
+        assertAll("check IDs",
+                () -> assertEquals(0, single.permute(stripe), "First counter value maps to ID 0"),
+                () -> assertThat("First ID should be skipped", single.next(), greaterThan(0)),
+                () -> assertTrue(Arrays.stream(bulk.next(NUM_ID_GENERATION_ITERATIONS)).allMatch(id -> id > 0),
+                        "No ID should be 0"
+                ),
+                () -> assertEquals(0, bulk.next(0).length, "Zero IDs requested"),
+                () -> assertEquals("count must be >= 0",
+                        assertThrows(IllegalArgumentException.class, () -> bulk.next(-1)).getMessage(),
+                        "Negative count"
+                )
+        );
+    }
+
+    private static void assertAllUniqueAndPositive(final int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        assertThat("IDs should be > 0", sorted[0], greaterThan(0));
+        for (int i = 1; i < sorted.length; i++) {
+            assertNotEquals(sorted[i - 1], sorted[i], "Only unique IDs expected");
+        }
+    }
+}
@@ -6,120 +6,114 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.number.OrderingComparison.greaterThan;
-import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class IdGeneratorTest {
 
     private static final int NUM_ID_GENERATION_ITERATIONS = 200_000;
-    private static final long MAX_ID_GENERATION_RUNTIME_IN_MS = 2_000L;
+    private static final int LARGEST_PACKED_CODE = (1 << 30) - 1;
 
     @Test
-    void generatesRandomId() {
-        assertThat("Random ID should be > 0", IdGenerator.generateUniqueIntId(), greaterThan(0));
-    }
-
-    @Test
-    void multipleCallsGenerateDifferentIds() {
-        int id1 = IdGenerator.generateUniqueIntId();
-        int id2 = IdGenerator.generateUniqueIntId();
-        assertNotEquals(id1, id2, "Random IDs should not be equal");
-    }
-
-    @Test
-    void manyCallsShouldExecuteFast() {
-        long start = System.currentTimeMillis();
-        int numIdsAtStart = IdGenerator.numUniqueIds();
+    void reservationCodesUseUnambiguousSymbols() {
         for (int i = 0; i < NUM_ID_GENERATION_ITERATIONS; i++) {
-            IdGenerator.generateUniqueIntId();
+            assertThat("Reservation code should only use unambiguous symbols",
+                    IdGenerator.generateReservationCode(),
+                    matchesPattern("[0-9A-HJKMNP-TV-Z]{6}")
+            );
         }
-        assertAll("check postconditions",
-                // This is a little bit iffy given different system configurations, but given the implementation it should be
-                // very quick to run and hopefully any reasonably recent computer should be able to hit this target. It's
-                // important that this can execute quickly to ensure that ID generation does not become a bottleneck in the
-                // high-demand environments this will be used in.
-                () -> assertThat("Should run in under " + MAX_ID_GENERATION_RUNTIME_IN_MS
-                                + " ms - note: may vary per machine! If you have problems with this test sporadically "
-                                + "failing, come talk to Carsten and we can find a better solution.",
-                        System.currentTimeMillis() - start,
-                        lessThan(MAX_ID_GENERATION_RUNTIME_IN_MS)
-                ), () -> assertEquals(NUM_ID_GENERATION_ITERATIONS,
-                        IdGenerator.numUniqueIds() - numIdsAtStart,
-                        "Should have the full number of IDs in use"
-                )
-        );
     }
 
     @Test
-    void manyReservationIdCallsShouldExecuteFast() {
-        long start = System.currentTimeMillis();
-        int numIdsAtStart = IdGenerator.numUniqueReservationIds();
-        for (int i = 0; i < NUM_ID_GENERATION_ITERATIONS; i++) {
-            IdGenerator.generateReservationCode();
-        }
-        assertAll("check postconditions",
-                // See the comment in manyCallsShouldExecuteFast
-                () -> assertThat("Should run in under " + MAX_ID_GENERATION_RUNTIME_IN_MS
-                                + " ms - note: may vary per machine! If you have problems with this test sporadically "
-                                + "failing, come talk to Carsten and we can find a better solution.",
-                        System.currentTimeMillis() - start,
-                        lessThan(MAX_ID_GENERATION_RUNTIME_IN_MS)
-                ), () -> assertEquals(NUM_ID_GENERATION_ITERATIONS,
-                        IdGenerator.numUniqueReservationIds() - numIdsAtStart,
-                        "Should have the full number of IDs in use"
+    void encodingRoundTrips() {
+        char[] buffer = new char[IdGenerator.MAX_RESERVATION_CODE_LENGTH + 2];
+        IdGenerator.encodeReservationCode(LARGEST_PACKED_CODE, buffer, 1);
+        assertAll("check encoding",
+                () -> assertEquals("000000", IdGenerator.encodeReservationCode(0), "Smallest packed code"),
+                () -> assertEquals("ZZZZZZ", IdGenerator.encodeReservationCode(LARGEST_PACKED_CODE), "Largest packed code"),
+                () -> assertEquals("00000Z", IdGenerator.encodeReservationCode(31), "Last symbol holds the lowest bits"),
+                () -> assertArrayEquals(new char[] { 0, 'Z', 'Z', 'Z', 'Z', 'Z', 'Z', 0 }, buffer, "Encoded into the buffer"),
+                () -> {
+                    for (int i = 0; i < NUM_ID_GENERATION_ITERATIONS; i++) {
+                        int packed = IdGenerator.nextReservationCode();
+                        assertEquals(packed,
+                                IdGenerator.decodeReservationCode(IdGenerator.encodeReservationCode(packed)),
+                                "Decoding should undo encoding"
+                        );
+                    }
+                },
+                () -> assertEquals("Invalid packed reservation code " + (LARGEST_PACKED_CODE + 1),
+                        assertThrows(IllegalArgumentException.class,
+                                () -> IdGenerator.encodeReservationCode(LARGEST_PACKED_CODE + 1)
+                        ).getMessage(),
+                        "Packed code too large"
+                ),
+                () -> assertEquals("Invalid packed reservation code -1",
+                        assertThrows(IllegalArgumentException.class, () -> IdGenerator.encodeReservationCode(-1)).getMessage(),
+                        "Negative packed code"
                 )
         );
     }
 
     @Test
-    void removeUsedId() {
-        int id = IdGenerator.generateUniqueIntId();
-        assertTrue(IdGenerator.retireId(id), "Expected previously-generated ID to be in use");
-    }
-
-    @Test
-    void removeUnusedId() {
-        assertFalse(IdGenerator.retireId(0), "IDs should start at 1 and 0 should never exist in the list of used IDs");
-    }
-
-    @Test
-    void removeUsedReservationId() {
-        String id = IdGenerator.generateReservationCode();
-        assertTrue(IdGenerator.retireReservationId(id), "Expected previously-generated ID to be in use");
-    }
-
-    @Test
-    void removeUnusedReservationId() {
-        assertFalse(
-                IdGenerator.retireReservationId("------"),
-                "IDs only have uppercase alphanumeric characters and this should never exist in the list of used IDs"
+    void decodingIsForgiving() {
+        assertAll("check decoding",
+                () -> assertEquals(IdGenerator.decodeReservationCode("AB12CD"),
+                        IdGenerator.decodeReservationCode("ab12cd"),
+                        "Lowercase reads like uppercase"
+                ),
+                () -> assertEquals(IdGenerator.decodeReservationCode("001111"),
+                        IdGenerator.decodeReservationCode("OoIiLl"),
+                        "Ambiguous letters read like the digits they look like"
+                )
         );
     }
 
     @Test
-    void callCounterAdvancesAndWrapsOnEachCall() {
-        int before = IdGenerator.getCallCounter();
-        IdGenerator.generateUniqueIntId();
-        int after = IdGenerator.getCallCounter();
-        int expected = (before + 1) % IdGenerator.MAX_CALL_COUNT_BEFORE_RESET;
-        assertEquals(expected,
-                after,
-                "callCounter should advance by one on each call (wrapping to 0 at the reseed threshold) instead of "
-                        + "staying fixed"
+    void decodingRejectsInvalidCodes() {
+        assertAll("check decoding",
+                () -> assertEquals("Expected a 6-character reservation code",
+                        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decodeReservationCode("BAD")).getMessage(),
+                        "Too short"
+                ),
+                () -> assertEquals("Invalid reservation code ABCDEU",
+                        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decodeReservationCode("ABCDEU")).getMessage(),
+                        "U isn't a symbol"
+                ),
+                () -> assertEquals("Invalid reservation code ABCDE-",
+                        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decodeReservationCode("ABCDE-")).getMessage(),
+                        "Neither is punctuation"
+                ),
+                () -> assertEquals("Invalid reservation code ABCDE\u00C4",
+                        assertThrows(IllegalArgumentException.class,
+                                () -> IdGenerator.decodeReservationCode("ABCDE\u00C4")
+                        ).getMessage(),
+                        "Nor anything beyond ASCII"
+                )
         );
     }
 
     @Test
-    void testUniqueIntIdsGenerated() {
-        Set<Integer> ids = new HashSet<>();
-        for (int i = 0; i < NUM_ID_GENERATION_ITERATIONS; i++) {
-            assertTrue(ids.add(IdGenerator.generateUniqueIntId()), "Only unique IDs expected");
+    void bulkGeneratedReservationCodesAreUnique() {
+        final int count = 1_000;
+        int[] codes = IdGenerator.nextReservationCodes(count);
+        Set<Integer> uniqueCodes = new HashSet<>();
+        for (int code : codes) {
+            assertTrue(code > 0 && code <= LARGEST_PACKED_CODE, "Packed code should be a positive 30-bit value");
+            uniqueCodes.add(code);
         }
+        assertAll("check bulk generation",
+                () -> assertEquals(count, uniqueCodes.size(), "Only unique codes expected"),
+                () -> assertEquals(0, IdGenerator.nextReservationCodes(0).length, "Zero codes requested"),
+                () -> assertEquals("count must be >= 0",
+                        assertThrows(IllegalArgumentException.class, () -> IdGenerator.nextReservationCodes(-1)).getMessage(),
+                        "Negative count of codes"
+                )
+        );
     }
 
     @Test
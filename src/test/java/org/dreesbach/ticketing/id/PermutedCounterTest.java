@@ -0,0 +1,60 @@
+package org.dreesbach.ticketing.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermutedCounterTest {
+    @Test
+    void bitsMustFitAPositiveInt() {
+        assertAll("argument checking",
+                () -> assertEquals("bits must be between 1 and 31",
+                        assertThrows(IllegalArgumentException.class, () -> new PermutedCounter(0, 1, 2)).getMessage(),
+                        "Zero bits"
+                ),
+                () -> assertEquals("bits must be between 1 and 31",
+                        assertThrows(IllegalArgumentException.class, () -> new PermutedCounter(32, 1, 2)).getMessage(),
+                        "32 bits"
+                )
+        );
+    }
+
+    @Test
+    void permutationIsABijectionForSmallWidths() {
+        for (int bits = 1; bits <= 16; bits++) {
+            PermutedCounter counter = new PermutedCounter(bits, 0x1234_5678, 0x9ABC_DEF0);
+            BitSet seen = new BitSet(1 << bits);
+            for (int value = 0; value < 1 << bits; value++) {
+                int permuted = counter.permute(value);
+                assertTrue(permuted >= 0 && permuted < 1 << bits, "Permuted value should have " + bits + " bits");
+                seen.set(permuted);
+            }
+            assertEquals(1 << bits, seen.cardinality(), "Every " + bits + "-bit value should come out exactly once");
+        }
+    }
+
+    @Test
+    void aStripeGoesThroughItsShareOfTheValuesBeforeComingAround() {
+        final int bits = 10;
+        final int numPerStripe = (1 << bits) / 16;
+        // with the second key 0, only the counter value stripe + 1 maps to 0 - and that's on another stripe
+        int stripe = (int) (Thread.currentThread().threadId() & 15);
+        PermutedCounter counter = new PermutedCounter(bits, -(stripe + 1), 0);
+        int[] firstRound = counter.next(numPerStripe);
+        int[] secondRound = counter.next(numPerStripe);
+        Arrays.sort(firstRound);
+        Arrays.sort(secondRound);
+        assertAll("check rounds",
+                () -> assertTrue(firstRound[0] > 0, "Values should be > 0"),
+                () -> assertEquals(numPerStripe, Arrays.stream(firstRound).distinct().count(), "Values should be distinct"),
+                () -> assertArrayEquals(firstRound, secondRound, "Second round should repeat the first")
+        );
+    }
+}